@@ -185,6 +185,15 @@ public class Antlr4Mojo extends AbstractMojo {
 	@Parameter(defaultValue = "${basedir}/src/main/antlr4/imports")
     private File libDirectory;
 
+	/**
+	 * Specify location of decision profiles exported by
+	 * {@code ParseInfo.exportProfile}. The profile for grammar {@code T} is
+	 * read from {@code T.profile} in this directory, and used to report the
+	 * costliest decisions in the grammar.
+	 */
+	@Parameter(defaultValue = "${basedir}/src/main/antlr4/profiles")
+	private File profileDirectory;
+
 	@Component
 	private BuildContext buildContext;
 
@@ -200,6 +209,10 @@ public class Antlr4Mojo extends AbstractMojo {
         return libDirectory;
     }
 
+	public File getProfileDirectory() {
+		return profileDirectory;
+	}
+
     void addSourceRoot(File outputDir) {
         project.addCompileSourceRoot(outputDir.getPath());
     }
@@ -334,6 +347,12 @@ public class Antlr4Mojo extends AbstractMojo {
 			args.add("-Werror");
 		}
 
+		// Use decision profiles gathered at runtime when they are available
+		if (getProfileDirectory() != null && getProfileDirectory().isDirectory()) {
+			args.add("-profile");
+			args.add(profileDirectory.getAbsolutePath());
+		}
+
 		if (forceATN) {
 			args.add("-Xforce-atn");
 		}
@@ -382,7 +401,7 @@ public class Antlr4Mojo extends AbstractMojo {
 		// Iterate each grammar file we were given and add it into the tool's list of
 		// grammars to process.
 		for (File grammarFile : grammarFiles) {
-			if (!buildContext.hasDelta(grammarFile)) {
+			if (!buildContext.hasDelta(grammarFile) && !hasProfileDelta(grammarFile)) {
 				continue;
 			}
 
@@ -415,6 +434,28 @@ public class Antlr4Mojo extends AbstractMojo {
 		return result;
 	}
 
+	/**
+	 * Determines whether the decision profile used for {@code grammarFile}
+	 * changed since the last build. The profile is read from
+	 * {@link #profileDirectory}, using the grammar file name with the
+	 * {@code .profile} extension.
+	 */
+	private boolean hasProfileDelta(File grammarFile) {
+		File profileDir = getProfileDirectory();
+		if (profileDir == null || !profileDir.isDirectory()) {
+			return false;
+		}
+
+		String grammarName = grammarFile.getName();
+		int extension = grammarName.lastIndexOf('.');
+		if (extension >= 0) {
+			grammarName = grammarName.substring(0, extension);
+		}
+
+		File profileFile = new File(profileDir, grammarName + ".profile");
+		return profileFile.isFile() && buildContext.hasDelta(profileFile);
+	}
+
 	private static String getPackageName(String relativeFolderPath) {
 		if (relativeFolderPath.contains("..")) {
 			throw new UnsupportedOperationException("Cannot handle relative paths containing '..'");
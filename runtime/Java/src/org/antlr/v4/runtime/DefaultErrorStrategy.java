@@ -33,7 +33,6 @@ package org.antlr.v4.runtime;
 import org.antlr.v4.runtime.atn.ATN;
 import org.antlr.v4.runtime.atn.ATNState;
 import org.antlr.v4.runtime.atn.PredictionContext;
-import org.antlr.v4.runtime.atn.RuleTransition;
 import org.antlr.v4.runtime.misc.IntervalSet;
 import org.antlr.v4.runtime.misc.NotNull;
 import org.antlr.v4.runtime.misc.Nullable;
@@ -163,6 +162,28 @@ public class DefaultErrorStrategy implements ANTLRErrorStrategy {
 		recognizer.notifyErrorListeners(e.getOffendingToken(recognizer), message, e);
 	}
 
+	/**
+	 * Determines whether the complete message describing a syntax error needs
+	 * to be formatted. Syntax errors are always reported through
+	 * {@link Parser#notifyErrorListeners}, but the complete message requires
+	 * computing expected token sets and input text, which is wasted work when
+	 * no listener will receive the message.
+	 *
+	 * <p>The default implementation returns {@code true} if the parser has at
+	 * least one error listener. When this method returns {@code false}, the
+	 * error is reported with a short message which only describes the
+	 * offending token.</p>
+	 *
+	 * @param recognizer the parser instance
+	 * @return {@code true} if the complete error message should be formatted,
+	 * otherwise {@code false}
+	 *
+	 * @since 4.4.1
+	 */
+	protected boolean isErrorMessageRequired(@NotNull Parser recognizer) {
+		return !recognizer.getErrorListeners().isEmpty();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 *
@@ -302,6 +323,12 @@ public class DefaultErrorStrategy implements ANTLRErrorStrategy {
 	protected void reportNoViableAlternative(@NotNull Parser recognizer,
 											 @NotNull NoViableAltException e)
 	{
+		if (!isErrorMessageRequired(recognizer)) {
+			String msg = "no viable alternative at input "+getTokenErrorDisplay(e.getOffendingToken());
+			notifyErrorListeners(recognizer, msg, e);
+			return;
+		}
+
 		TokenStream tokens = recognizer.getInputStream();
 		String input;
 		if ( tokens!=null ) {
@@ -327,6 +354,12 @@ public class DefaultErrorStrategy implements ANTLRErrorStrategy {
 	protected void reportInputMismatch(@NotNull Parser recognizer,
 									   @NotNull InputMismatchException e)
 	{
+		if (!isErrorMessageRequired(recognizer)) {
+			String msg = "mismatched input "+getTokenErrorDisplay(e.getOffendingToken(recognizer));
+			notifyErrorListeners(recognizer, msg, e);
+			return;
+		}
+
 		String msg = "mismatched input "+getTokenErrorDisplay(e.getOffendingToken(recognizer))+
 		" expecting "+e.getExpectedTokens().toString(recognizer.getVocabulary());
 		notifyErrorListeners(recognizer, msg, e);
@@ -375,6 +408,11 @@ public class DefaultErrorStrategy implements ANTLRErrorStrategy {
 		beginErrorCondition(recognizer);
 
 		Token t = recognizer.getCurrentToken();
+		if (!isErrorMessageRequired(recognizer)) {
+			recognizer.notifyErrorListeners(t, "extraneous input "+getTokenErrorDisplay(t), null);
+			return;
+		}
+
 		String tokenName = getTokenErrorDisplay(t);
 		IntervalSet expecting = getExpectedTokens(recognizer);
 		String msg = "extraneous input "+tokenName+" expecting "+
@@ -407,6 +445,11 @@ public class DefaultErrorStrategy implements ANTLRErrorStrategy {
 		beginErrorCondition(recognizer);
 
 		Token t = recognizer.getCurrentToken();
+		if (!isErrorMessageRequired(recognizer)) {
+			recognizer.notifyErrorListeners(t, "missing token at "+getTokenErrorDisplay(t), null);
+			return;
+		}
+
 		IntervalSet expecting = getExpectedTokens(recognizer);
 		String msg = "missing "+expecting.toString(recognizer.getVocabulary())+
 			" at "+getTokenErrorDisplay(t);
@@ -740,21 +783,15 @@ public class DefaultErrorStrategy implements ANTLRErrorStrategy {
 	 *
 	 *  Like Grosch I implement context-sensitive FOLLOW sets that are combined
 	 *  at run-time upon error to avoid overhead during parsing.
+	 *
+	 *  The combined sets are cached by the ATN for each distinct chain of
+	 *  invoking states (see ATN.getErrorRecoverySet), so the returned set is
+	 *  read-only.
 	 */
 	@NotNull
 	protected IntervalSet getErrorRecoverySet(@NotNull Parser recognizer) {
 		ATN atn = recognizer.getInterpreter().atn;
-		RuleContext ctx = recognizer._ctx;
-		IntervalSet recoverSet = new IntervalSet();
-		while ( ctx!=null && ctx.invokingState>=0 ) {
-			// compute what follows who invoked us
-			ATNState invokingState = atn.states.get(ctx.invokingState);
-			RuleTransition rt = (RuleTransition)invokingState.transition(0);
-			IntervalSet follow = atn.nextTokens(rt.followState);
-			recoverSet.addAll(follow);
-			ctx = ctx.parent;
-		}
-        recoverSet.remove(Token.EPSILON);
+		IntervalSet recoverSet = atn.getErrorRecoverySet(recognizer._ctx);
 //		System.out.println("recover set "+recoverSet.toString(recognizer.getTokenNames()));
 		return recoverSet;
 	}
@@ -0,0 +1,369 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * A variant of {@link TokenStreamRewriter} intended for applying a large
+ * number of edits to a single token stream.
+ *
+ * <p>
+ * {@link TokenStreamRewriter} records operations in a list and reconciles them
+ * every time the text is requested, which requires time quadratic in the
+ * number of operations. This class instead reconciles each operation with the
+ * previous ones as it is added, keeping the resulting edits in sorted maps
+ * keyed by token index. Adding an operation takes logarithmic time (plus the
+ * time to remove any edits it supersedes), and rendering only visits the
+ * tokens and edits within the requested interval. The text may be rendered to
+ * any {@link Appendable}, such as a {@link java.io.Writer}, without building
+ * the complete result in memory.</p>
+ *
+ * <p>
+ * Operations are combined according to the same rules used by
+ * {@link TokenStreamRewriter#reduceToSingleOperationPerIndex}, with one
+ * difference: an operation which conflicts with a previous operation is
+ * rejected immediately by throwing an {@link IllegalArgumentException}, and
+ * leaves the rewriter unchanged. In particular, an insertion within the
+ * boundaries of an existing replacement is an error even if a later
+ * replacement would have covered both.</p>
+ *
+ * <p>
+ * Like {@link TokenStreamRewriter}, this class makes no modifications to the
+ * token stream, and only operates on tokens which are already buffered by the
+ * stream.</p>
+ *
+ * @since 4.4.1
+ */
+public class IncrementalTokenStreamRewriter {
+	/** Our source stream */
+	@NotNull
+	protected final TokenStream tokens;
+
+	/**
+	 * Text inserted before a token, keyed by token index. No insertion is
+	 * located at or within the range of a replacement.
+	 */
+	@NotNull
+	protected final NavigableMap<Integer, Object> insertions = new TreeMap<Integer, Object>();
+
+	/**
+	 * Non-overlapping replacements, keyed by the index of the first token
+	 * replaced.
+	 */
+	@NotNull
+	protected final NavigableMap<Integer, Replacement> replacements = new TreeMap<Integer, Replacement>();
+
+	public IncrementalTokenStreamRewriter(@NotNull TokenStream tokens) {
+		this.tokens = tokens;
+	}
+
+	@NotNull
+	public final TokenStream getTokenStream() {
+		return tokens;
+	}
+
+	/**
+	 * Gets the number of distinct edits currently held by the rewriter, after
+	 * combining operations at the same index.
+	 */
+	public int getEditCount() {
+		return insertions.size() + replacements.size();
+	}
+
+	/** Removes all edits from the rewriter. */
+	public void clear() {
+		insertions.clear();
+		replacements.clear();
+	}
+
+	public void insertAfter(@NotNull Token t, Object text) {
+		insertAfter(t.getTokenIndex(), text);
+	}
+
+	public void insertAfter(int index, Object text) {
+		// to insert after, just insert before next index (even if past end)
+		insertBefore(index + 1, text);
+	}
+
+	public void insertBefore(@NotNull Token t, Object text) {
+		insertBefore(t.getTokenIndex(), text);
+	}
+
+	public void insertBefore(int index, Object text) {
+		Replacement replacement = replacements.get(index);
+		if (replacement != null) {
+			replacement.text = catOpText(text, replacement.text);
+			return;
+		}
+
+		Map.Entry<Integer, Replacement> previous = replacements.lowerEntry(index);
+		if (previous != null && index <= previous.getValue().lastIndex) {
+			throw new IllegalArgumentException("insert op " + describeInsert(index, text) + " within boundaries of previous " + previous.getValue());
+		}
+
+		Object existing = insertions.get(index);
+		insertions.put(index, existing != null ? catOpText(text, existing) : text);
+	}
+
+	public void replace(int index, @Nullable Object text) {
+		replace(index, index, text);
+	}
+
+	public void replace(@NotNull Token indexT, @Nullable Object text) {
+		replace(indexT, indexT, text);
+	}
+
+	public void replace(@NotNull Token from, @NotNull Token to, @Nullable Object text) {
+		replace(from.getTokenIndex(), to.getTokenIndex(), text);
+	}
+
+	public void replace(int from, int to, @Nullable Object text) {
+		if ( from > to || from<0 || to<0 || to >= tokens.size() ) {
+			throw new IllegalArgumentException("replace: range invalid: "+from+".."+to+"(size="+tokens.size()+")");
+		}
+
+		// an insertion before the first replaced token becomes part of the replacement
+		Object inserted = insertions.get(from);
+		if (inserted != null) {
+			text = inserted.toString() + (text != null ? text.toString() : "");
+		}
+
+		Replacement replacement = new Replacement(from, to, text);
+
+		// validate against overlapping replacements before making any changes
+		Map.Entry<Integer, Replacement> first = replacements.floorEntry(from);
+		if (first == null || first.getValue().lastIndex < from) {
+			first = replacements.higherEntry(from);
+		}
+
+		int start = from;
+		int stop = to;
+		if (first != null) {
+			for (Replacement previous : replacements.tailMap(first.getKey(), true).values()) {
+				if (previous.index > to) {
+					break;
+				}
+
+				if (previous.index >= from && previous.lastIndex <= to) {
+					// contained replacements are removed below
+					continue;
+				}
+
+				if (previous.text == null && text == null) {
+					// overlapping deletes are combined
+					start = Math.min(start, previous.index);
+					stop = Math.max(stop, previous.lastIndex);
+					continue;
+				}
+
+				throw new IllegalArgumentException("replace op boundaries of " + replacement + " overlap with previous " + previous);
+			}
+		}
+
+		replacement.index = start;
+		replacement.lastIndex = stop;
+
+		replacements.subMap(start, true, stop, true).clear();
+		insertions.subMap(from, true, to, true).clear();
+		replacements.put(start, replacement);
+	}
+
+	public void delete(int index) {
+		delete(index, index);
+	}
+
+	public void delete(int from, int to) {
+		replace(from, to, null);
+	}
+
+	public void delete(@NotNull Token indexT) {
+		delete(indexT, indexT);
+	}
+
+	public void delete(@NotNull Token from, @NotNull Token to) {
+		replace(from, to, null);
+	}
+
+	/** Return the text from the original tokens altered per the
+	 *  instructions given to this rewriter.
+	 */
+	@NotNull
+	public String getText() {
+		return getText(Interval.of(0, tokens.size() - 1));
+	}
+
+	/**
+	 * Return the text associated with the tokens in the interval from the
+	 * original token stream but with the alterations given to this rewriter.
+	 *
+	 * @see TokenStreamRewriter#getText(Interval)
+	 */
+	@NotNull
+	public String getText(@NotNull Interval interval) {
+		if (insertions.isEmpty() && replacements.isEmpty()) {
+			return tokens.getText(interval);
+		}
+
+		StringBuilder buf = new StringBuilder();
+		try {
+			appendText(buf, interval);
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+
+		return buf.toString();
+	}
+
+	/**
+	 * Appends the rewritten text of the entire token stream to
+	 * {@code output}.
+	 */
+	public void appendText(@NotNull Appendable output) throws IOException {
+		appendText(output, Interval.of(0, tokens.size() - 1));
+	}
+
+	/**
+	 * Appends the rewritten text of the tokens in {@code interval} to
+	 * {@code output}, producing the same text as {@link #getText(Interval)}.
+	 * The text is written as it is computed, so the complete result is never
+	 * held in memory.
+	 */
+	public void appendText(@NotNull Appendable output, @NotNull Interval interval) throws IOException {
+		int start = interval.a;
+		int stop = interval.b;
+
+		// ensure start/end are in range
+		if ( stop>tokens.size()-1 ) stop = tokens.size()-1;
+		if ( start<0 ) start = 0;
+
+		Iterator<Map.Entry<Integer, Object>> insertIterator = insertions.tailMap(start, true).entrySet().iterator();
+		Map.Entry<Integer, Object> nextInsert = insertIterator.hasNext() ? insertIterator.next() : null;
+		Iterator<Replacement> replaceIterator = replacements.tailMap(start, true).values().iterator();
+		Replacement nextReplace = replaceIterator.hasNext() ? replaceIterator.next() : null;
+
+		int i = start;
+		while ( i <= stop && i < tokens.size() ) {
+			while (nextInsert != null && nextInsert.getKey() < i) {
+				nextInsert = insertIterator.hasNext() ? insertIterator.next() : null;
+			}
+
+			while (nextReplace != null && nextReplace.index < i) {
+				nextReplace = replaceIterator.hasNext() ? replaceIterator.next() : null;
+			}
+
+			int nextEdit = Math.min(nextInsert != null ? nextInsert.getKey() : Integer.MAX_VALUE,
+									nextReplace != null ? nextReplace.index : Integer.MAX_VALUE);
+			for (; i < nextEdit && i <= stop && i < tokens.size(); i++) {
+				appendToken(output, tokens.get(i));
+			}
+
+			if ( i > stop || i >= tokens.size() ) {
+				break;
+			}
+
+			if (nextReplace != null && nextReplace.index == i) {
+				if (nextReplace.text != null) {
+					output.append(nextReplace.text.toString());
+				}
+
+				i = nextReplace.lastIndex + 1;
+			}
+			else {
+				output.append(String.valueOf(nextInsert.getValue()));
+				appendToken(output, tokens.get(i));
+				i++;
+			}
+		}
+
+		// include stuff after end if it's last index in buffer
+		// So, if they did an insertAfter(lastValidIndex, "foo"), include
+		// foo if end==lastValidIndex.
+		if ( stop==tokens.size()-1 ) {
+			for (Object text : insertions.tailMap(tokens.size(), true).values()) {
+				output.append(String.valueOf(text));
+			}
+		}
+	}
+
+	private static void appendToken(@NotNull Appendable output, @NotNull Token t) throws IOException {
+		if ( t.getType()!=Token.EOF ) {
+			output.append(t.getText());
+		}
+	}
+
+	protected String catOpText(Object a, Object b) {
+		String x = "";
+		String y = "";
+		if ( a!=null ) x = a.toString();
+		if ( b!=null ) y = b.toString();
+		return x+y;
+	}
+
+	private String describeInsert(int index, Object text) {
+		return "<InsertBeforeOp@"+(index < tokens.size() ? tokens.get(index) : "<EOF>")+":\""+text+"\">";
+	}
+
+	/**
+	 * Replaces the tokens {@code index..lastIndex} with {@code text}, or deletes
+	 * them when {@code text} is {@code null}.
+	 */
+	protected final class Replacement {
+		protected int index;
+		protected int lastIndex;
+		@Nullable
+		protected Object text;
+
+		public Replacement(int index, int lastIndex, @Nullable Object text) {
+			this.index = index;
+			this.lastIndex = lastIndex;
+			this.text = text;
+		}
+
+		@Override
+		public String toString() {
+			if ( text==null ) {
+				return "<DeleteOp@"+tokens.get(index)+
+						".."+tokens.get(lastIndex)+">";
+			}
+			return "<ReplaceOp@"+tokens.get(index)+
+					".."+tokens.get(lastIndex)+":\""+text+"\">";
+		}
+	}
+}
@@ -32,6 +32,8 @@ package org.antlr.v4.runtime;
 import org.antlr.v4.runtime.atn.LexerATNSimulator;
 import org.antlr.v4.runtime.misc.IntegerStack;
 import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
 import org.antlr.v4.runtime.misc.Tuple;
 import org.antlr.v4.runtime.misc.Tuple2;
 
@@ -141,44 +143,13 @@ public abstract class Lexer extends Recognizer<Integer, LexerATNSimulator>
 		// guaranteed at least have text of current token
 		int tokenStartMarker = _input.mark();
 		try{
-			outer:
-			while (true) {
-				if (_hitEOF) {
-					emitEOF();
-					return _token;
-				}
-
-				_token = null;
-				_channel = Token.DEFAULT_CHANNEL;
-				_tokenStartCharIndex = _input.index();
-				_tokenStartCharPositionInLine = getInterpreter().getCharPositionInLine();
-				_tokenStartLine = getInterpreter().getLine();
-				_text = null;
-				do {
-					_type = Token.INVALID_TYPE;
-//				System.out.println("nextToken line "+tokenStartLine+" at "+((char)input.LA(1))+
-//								   " in mode "+mode+
-//								   " at index "+input.index());
-					int ttype;
-					try {
-						ttype = getInterpreter().match(_input, _mode);
-					}
-					catch (LexerNoViableAltException e) {
-						notifyListeners(e);		// report error
-						recover(e);
-						ttype = SKIP;
-					}
-					if ( _input.LA(1)==IntStream.EOF ) {
-						_hitEOF = true;
-					}
-					if ( _type == Token.INVALID_TYPE ) _type = ttype;
-					if ( _type ==SKIP ) {
-						continue outer;
-					}
-				} while ( _type ==MORE );
-				if ( _token == null ) emit();
+			if (!matchNextToken()) {
+				emitEOF();
 				return _token;
 			}
+
+			if ( _token == null ) emit();
+			return _token;
 		}
 		finally {
 			// make sure we release marker after match or
@@ -187,6 +158,139 @@ public abstract class Lexer extends Recognizer<Integer, LexerATNSimulator>
 		}
 	}
 
+	/**
+	 * Match tokens from the char stream without creating {@link Token}
+	 * objects, storing the type, channel, start index, and stop index of each
+	 * token in the corresponding arrays starting at {@code offset}. Tokens are
+	 * matched exactly as {@link #nextToken} would match them, but a single
+	 * mark in the input stream is held for the entire batch and the token
+	 * factory is never invoked.
+	 *
+	 * <p>The EOF token is stored like any other token, and is always the last
+	 * token stored by a call which reaches the end of the input. Once the end
+	 * of the input is reached, each later call stores a single EOF token.</p>
+	 *
+	 * <p>If a lexer action calls {@link #emit(Token)}, the values are read
+	 * from the emitted token. Lexers which override {@link #nextToken} or
+	 * {@link #emit()} to emit more than one token per match must use
+	 * {@link #nextToken} instead of this method.</p>
+	 *
+	 * @param types The array receiving the token types.
+	 * @param channels The array receiving the token channels, or {@code null}
+	 * if the channels are not required.
+	 * @param starts The array receiving the start index of each token, or
+	 * {@code null} if the start indexes are not required.
+	 * @param stops The array receiving the stop index of each token, or
+	 * {@code null} if the stop indexes are not required.
+	 * @param offset The index of the first element to store in each array.
+	 * @param count The maximum number of tokens to match.
+	 * @return The number of tokens stored, which is less than {@code count}
+	 * only if the end of the input was reached.
+	 *
+	 * @since 4.4.1
+	 */
+	public int nextTokens(@NotNull int[] types, @Nullable int[] channels, @Nullable int[] starts, @Nullable int[] stops, int offset, int count) {
+		if (_input == null) {
+			throw new IllegalStateException("nextTokens requires a non-null input stream.");
+		}
+
+		if (offset < 0 || count < 0 || offset + count > types.length
+			|| (channels != null && offset + count > channels.length)
+			|| (starts != null && offset + count > starts.length)
+			|| (stops != null && offset + count > stops.length))
+		{
+			throw new IndexOutOfBoundsException();
+		}
+
+		int tokenStartMarker = _input.mark();
+		try {
+			for (int i = 0; i < count; i++) {
+				int type;
+				int channel;
+				int start;
+				int stop;
+				if (!matchNextToken()) {
+					type = Token.EOF;
+					channel = Token.DEFAULT_CHANNEL;
+					start = _input.index();
+					stop = start - 1;
+				}
+				else if (_token != null) {
+					type = _token.getType();
+					channel = _token.getChannel();
+					start = _token.getStartIndex();
+					stop = _token.getStopIndex();
+				}
+				else {
+					type = _type;
+					channel = _channel;
+					start = _tokenStartCharIndex;
+					stop = getCharIndex() - 1;
+				}
+
+				int index = offset + i;
+				types[index] = type;
+				if (channels != null) channels[index] = channel;
+				if (starts != null) starts[index] = start;
+				if (stops != null) stops[index] = stop;
+				if (type == Token.EOF) {
+					return i + 1;
+				}
+			}
+
+			return count;
+		}
+		finally {
+			_input.release(tokenStartMarker);
+		}
+	}
+
+	/**
+	 * Match the next token which is not skipped, leaving its type, channel,
+	 * and bounds in the lexer state.
+	 *
+	 * @return {@code true} if a token was matched, or {@code false} if the end
+	 * of the input was reached before another token could be matched.
+	 */
+	private boolean matchNextToken() {
+		outer:
+		while (true) {
+			if (_hitEOF) {
+				return false;
+			}
+
+			_token = null;
+			_channel = Token.DEFAULT_CHANNEL;
+			_tokenStartCharIndex = _input.index();
+			_tokenStartCharPositionInLine = getInterpreter().getCharPositionInLine();
+			_tokenStartLine = getInterpreter().getLine();
+			_text = null;
+			do {
+				_type = Token.INVALID_TYPE;
+//				System.out.println("nextToken line "+tokenStartLine+" at "+((char)input.LA(1))+
+//								   " in mode "+mode+
+//								   " at index "+input.index());
+				int ttype;
+				try {
+					ttype = getInterpreter().match(_input, _mode);
+				}
+				catch (LexerNoViableAltException e) {
+					notifyListeners(e);		// report error
+					recover(e);
+					ttype = SKIP;
+				}
+				if ( _input.LA(1)==IntStream.EOF ) {
+					_hitEOF = true;
+				}
+				if ( _type == Token.INVALID_TYPE ) _type = ttype;
+				if ( _type ==SKIP ) {
+					continue outer;
+				}
+			} while ( _type ==MORE );
+			return true;
+		}
+	}
+
 	/** Instruct the lexer to skip creating a token for current lexer rule
 	 *  and look for another token.  nextToken() knows to keep looking when
 	 *  a lexer rule finishes with token set to SKIP_TOKEN.  Recall that
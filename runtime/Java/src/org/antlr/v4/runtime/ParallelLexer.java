@@ -0,0 +1,446 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Lexes a large input by splitting it into chunks which are lexed in
+ * parallel, then joining the results into the list of tokens a single lexer
+ * would produce for the whole input.
+ *
+ * <p>
+ * The input is split at the start of a line. Each chunk is lexed
+ * speculatively by its own {@link Lexer}, starting in
+ * {@link Lexer#DEFAULT_MODE} with an empty mode stack. This assumption does
+ * not hold when a chunk starts inside a token or a mode, such as a multi-line
+ * string or comment, so the results are verified at every chunk boundary. The
+ * lexer of the preceding chunk continues past the end of its chunk until it
+ * produces a token which the next chunk's lexer also produced, with the same
+ * span, type and channel, and with both lexers left in the default mode with
+ * an empty mode stack. From that point on both lexers are in the same state,
+ * so the remaining tokens of the next chunk are used as they are. If no such
+ * token exists, the preceding lexer simply continues through the chunk. The
+ * result is always the same as lexing the input with a single lexer; how much
+ * of the work runs in parallel depends on how quickly the chunks
+ * resynchronize.</p>
+ *
+ * <p>
+ * The tokens are returned with token indexes and line numbers for the whole
+ * input. Errors reported by the lexers are recorded, and only the errors
+ * reported for the parts of the input which were accepted are passed to the
+ * error listeners of those lexers, in input order, once the input is
+ * lexed.</p>
+ *
+ * <p>
+ * This class requires that the state of the lexer between tokens is fully
+ * described by its mode and mode stack. Grammars which keep other state in
+ * lexer members, such as nesting counters used by predicates, must not be
+ * lexed in parallel. Tokens must implement {@link WritableToken}, as the
+ * tokens created by {@link CommonTokenFactory} do.</p>
+ *
+ * @since 4.4.1
+ */
+public class ParallelLexer {
+	/**
+	 * The default minimum number of characters in a chunk.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+	/**
+	 * Creates the lexers used for the chunks of the input.
+	 */
+	public interface LexerFactory {
+		/**
+		 * Creates a new lexer reading from {@code input}. The lexer is only
+		 * used by one thread.
+		 */
+		@NotNull
+		Lexer createLexer(@NotNull CharStream input);
+	}
+
+	@NotNull
+	private final LexerFactory lexerFactory;
+
+	@NotNull
+	private final ExecutorService executor;
+
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+	/**
+	 * Constructs a new {@link ParallelLexer}.
+	 *
+	 * @param lexerFactory The factory which creates the lexer for each chunk.
+	 * @param executor The executor which lexes the chunks. The first chunk
+	 * and the verification of chunk boundaries run on the calling thread.
+	 */
+	public ParallelLexer(@NotNull LexerFactory lexerFactory, @NotNull ExecutorService executor) {
+		this.lexerFactory = lexerFactory;
+		this.executor = executor;
+	}
+
+	public final int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Sets the minimum number of characters in a chunk. Each chunk ends at
+	 * the first line break following this many characters.
+	 */
+	public final void setChunkSize(int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("chunkSize must be positive");
+		}
+
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Lexes {@code input} from its beginning. The input itself is not
+	 * modified; each chunk is read through its own stream over the same
+	 * characters.
+	 *
+	 * @return The tokens of the input, ending with {@link Token#EOF}. The
+	 * list may be passed to a {@link ListTokenSource}.
+	 *
+	 * @exception InterruptedException if the current thread is interrupted
+	 * while waiting for a chunk
+	 */
+	@NotNull
+	public List<Token> tokenize(@NotNull ANTLRInputStream input) throws InterruptedException {
+		List<Chunk> chunks = split(input);
+		List<Future<Chunk>> futures = new ArrayList<Future<Chunk>>(chunks.size());
+		try {
+			for (int i = 1; i < chunks.size(); i++) {
+				final Chunk chunk = chunks.get(i);
+				final ANTLRInputStream chunkInput = input;
+				futures.add(executor.submit(new Callable<Chunk>() {
+					@Override
+					public Chunk call() {
+						try {
+							lexChunk(chunkInput, chunk);
+						}
+						catch (RuntimeException ex) {
+							// a speculative chunk cannot be used, but the
+							// lexer of the preceding chunk may still succeed
+							chunk.failed = true;
+						}
+
+						return chunk;
+					}
+				}));
+			}
+
+			lexChunk(input, chunks.get(0));
+			return join(chunks, futures);
+		}
+		finally {
+			for (Future<Chunk> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	@NotNull
+	private List<Chunk> split(@NotNull ANTLRInputStream input) {
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		int start = 0;
+		while (true) {
+			int end = input.n;
+			for (int i = start + chunkSize - 1; i < input.n - 1; i++) {
+				if (input.data[i] == '\n') {
+					end = i + 1;
+					break;
+				}
+			}
+
+			chunks.add(new Chunk(start, end));
+			if (end == input.n) {
+				return chunks;
+			}
+
+			start = end;
+		}
+	}
+
+	private void lexChunk(@NotNull ANTLRInputStream input, @NotNull Chunk chunk) {
+		ANTLRInputStream chunkInput = new ANTLRInputStream(input.data, input.n);
+		chunkInput.name = input.name;
+		chunkInput.p = chunk.start;
+
+		Lexer lexer = lexerFactory.createLexer(chunkInput);
+		chunk.lexer = lexer;
+		chunk.listeners = new ArrayList<ANTLRErrorListener<? super Integer>>(lexer.getErrorListeners());
+		lexer.removeErrorListeners();
+		lexer.addErrorListener(new ErrorRecorder(chunk));
+
+		while (true) {
+			Token t = lexer.nextToken();
+			boolean defaultState = isDefaultState(lexer);
+			if (t.getType() != Token.EOF && t.getStartIndex() >= chunk.end) {
+				chunk.pending = t;
+				chunk.pendingDefaultState = defaultState;
+				return;
+			}
+
+			chunk.defaultState.set(chunk.tokens.size(), defaultState);
+			chunk.tokens.add(t);
+			if (t.getType() == Token.EOF) {
+				return;
+			}
+		}
+	}
+
+	@NotNull
+	private List<Token> join(@NotNull List<Chunk> chunks, @NotNull List<Future<Chunk>> futures) throws InterruptedException {
+		List<Token> result = new ArrayList<Token>();
+
+		Chunk current = chunks.get(0);
+		int regionStart = 0;
+		List<ErrorRegion> regions = new ArrayList<ErrorRegion>();
+		boolean done = addTokens(result, current, 0);
+
+		int target = 1;
+		Chunk next = null;
+		int scan = 0;
+		while (!done) {
+			Token t;
+			boolean defaultState;
+			if (current.pending != null) {
+				t = current.pending;
+				defaultState = current.pendingDefaultState;
+				current.pending = null;
+			}
+			else {
+				t = current.lexer.nextToken();
+				defaultState = isDefaultState(current.lexer);
+			}
+
+			// chunks which end before this token can no longer be used
+			while (target < chunks.size() && chunks.get(target).end <= t.getStartIndex() && target < chunks.size() - 1) {
+				target++;
+				next = null;
+			}
+
+			if (next == null && target < chunks.size()) {
+				next = getChunk(futures, target - 1);
+				scan = 0;
+			}
+
+			// the position of EOF depends on how the lexer reached it, so the
+			// lexers are never synchronized on EOF
+			if (next != null && !next.failed && defaultState && t.getType() != Token.EOF) {
+				while (scan < next.tokens.size() && next.tokens.get(scan).getStartIndex() < t.getStartIndex()) {
+					scan++;
+				}
+
+				if (scan < next.tokens.size() && next.defaultState.get(scan) && isSameToken(t, next.tokens.get(scan))) {
+					next.lineOffset = t.getLine() + current.lineOffset - next.tokens.get(scan).getLine();
+					regions.add(new ErrorRegion(current, regionStart, t.getStartIndex()));
+					regionStart = t.getStartIndex();
+					current = next;
+					next = null;
+					target++;
+					done = addTokens(result, current, scan);
+					continue;
+				}
+			}
+
+			done = addToken(result, t, current.lineOffset);
+		}
+
+		regions.add(new ErrorRegion(current, regionStart, Integer.MAX_VALUE));
+		for (ErrorRegion region : regions) {
+			region.report();
+		}
+
+		return result;
+	}
+
+	@NotNull
+	private static Chunk getChunk(@NotNull List<Future<Chunk>> futures, int index) throws InterruptedException {
+		try {
+			return futures.get(index).get();
+		}
+		catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * Adds the tokens of {@code chunk} starting at {@code from} to
+	 * {@code result}.
+	 *
+	 * @return {@code true} if the last token added was {@link Token#EOF}.
+	 */
+	private static boolean addTokens(@NotNull List<Token> result, @NotNull Chunk chunk, int from) {
+		boolean eof = false;
+		for (int i = from; i < chunk.tokens.size(); i++) {
+			eof = addToken(result, chunk.tokens.get(i), chunk.lineOffset);
+		}
+
+		return eof;
+	}
+
+	private static boolean addToken(@NotNull List<Token> result, @NotNull Token t, int lineOffset) {
+		WritableToken token = (WritableToken)t;
+		if (lineOffset != 0) {
+			token.setLine(token.getLine() + lineOffset);
+		}
+
+		token.setTokenIndex(result.size());
+		result.add(token);
+		return token.getType() == Token.EOF;
+	}
+
+	private static boolean isSameToken(@NotNull Token a, @NotNull Token b) {
+		return a.getStartIndex() == b.getStartIndex()
+			&& a.getStopIndex() == b.getStopIndex()
+			&& a.getType() == b.getType()
+			&& a.getChannel() == b.getChannel();
+	}
+
+	private static boolean isDefaultState(@NotNull Lexer lexer) {
+		return lexer._mode == Lexer.DEFAULT_MODE && lexer._modeStack.isEmpty();
+	}
+
+	private static final class Chunk {
+		/** The index of the first character of the chunk. */
+		final int start;
+		/** The index following the last character of the chunk. */
+		final int end;
+
+		Lexer lexer;
+		List<ANTLRErrorListener<? super Integer>> listeners;
+
+		/** The tokens starting within the chunk, in the line numbers of {@link #lexer}. */
+		final List<Token> tokens = new ArrayList<Token>();
+		/** Marks the tokens after which {@link #lexer} was in the default state. */
+		final BitSet defaultState = new BitSet();
+
+		/** The first token starting after the chunk, or {@code null} once it is used. */
+		@Nullable
+		Token pending;
+		boolean pendingDefaultState;
+
+		final List<SyntaxError> errors = new ArrayList<SyntaxError>();
+
+		/** The line of the first character of the chunk, less one. */
+		int lineOffset;
+
+		boolean failed;
+
+		Chunk(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	private static final class SyntaxError {
+		final int startIndex;
+		final int line;
+		final int charPositionInLine;
+		final String msg;
+		final RecognitionException e;
+
+		SyntaxError(int startIndex, int line, int charPositionInLine, String msg, RecognitionException e) {
+			this.startIndex = startIndex;
+			this.line = line;
+			this.charPositionInLine = charPositionInLine;
+			this.msg = msg;
+			this.e = e;
+		}
+	}
+
+	/**
+	 * Records the errors reported by the lexer of a chunk, since the lexer
+	 * may report errors for input it was not responsible for.
+	 */
+	private static final class ErrorRecorder implements ANTLRErrorListener<Integer> {
+		private final Chunk chunk;
+
+		ErrorRecorder(Chunk chunk) {
+			this.chunk = chunk;
+		}
+
+		@Override
+		public <T extends Integer> void syntaxError(@NotNull Recognizer<T, ?> recognizer, @Nullable T offendingSymbol, int line, int charPositionInLine, @NotNull String msg, @Nullable RecognitionException e) {
+			int startIndex = e instanceof LexerNoViableAltException ? ((LexerNoViableAltException)e).getStartIndex() : chunk.lexer._tokenStartCharIndex;
+			chunk.errors.add(new SyntaxError(startIndex, line, charPositionInLine, msg, e));
+		}
+	}
+
+	/**
+	 * A range of the input for which the errors reported by the lexer of
+	 * {@link #chunk} are reported to its listeners.
+	 */
+	private static final class ErrorRegion {
+		final Chunk chunk;
+		final int start;
+		final int stop;
+
+		ErrorRegion(Chunk chunk, int start, int stop) {
+			this.chunk = chunk;
+			this.start = start;
+			this.stop = stop;
+		}
+
+		void report() {
+			for (SyntaxError error : chunk.errors) {
+				if (error.startIndex < start || error.startIndex >= stop) {
+					continue;
+				}
+
+				for (ANTLRErrorListener<? super Integer> listener : chunk.listeners) {
+					listener.syntaxError(chunk.lexer, null, error.line + chunk.lineOffset, error.charPositionInLine, error.msg, error.e);
+				}
+			}
+		}
+	}
+}
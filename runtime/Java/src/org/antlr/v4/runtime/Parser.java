@@ -44,9 +44,11 @@ import org.antlr.v4.runtime.misc.IntervalSet;
 import org.antlr.v4.runtime.misc.NotNull;
 import org.antlr.v4.runtime.misc.Nullable;
 import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeListener;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.antlr.v4.runtime.tree.TerminalNode;
+import org.antlr.v4.runtime.tree.TerminalNodeImpl;
 import org.antlr.v4.runtime.tree.pattern.ParseTreePattern;
 import org.antlr.v4.runtime.tree.pattern.ParseTreePatternMatcher;
 
@@ -154,6 +156,13 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 	 */
 	protected boolean _buildParseTrees = true;
 
+	/**
+	 * The id assigned to the next node added to the parse tree. This is reset
+	 * to 0 when the start rule of a new tree is entered.
+	 *
+	 * @see ParserRuleContext#getNodeId
+	 */
+	private int _nextNodeId;
 
 	/**
 	 * When {@link #setTrace}{@code (true)} is called, a reference to the
@@ -208,7 +217,9 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 	 * strategy to attempt recovery. If {@link #getBuildParseTree} is
 	 * {@code true} and the token index of the symbol returned by
 	 * {@link ANTLRErrorStrategy#recoverInline} is -1, the symbol is added to
-	 * the parse tree by calling {@link ParserRuleContext#addErrorNode}.</p>
+	 * the parse tree by calling {@link ParserRuleContext#addErrorNode}, and
+	 * {@link ParseTreeListener#visitErrorNode} is called on any parse
+	 * listeners.</p>
 	 *
 	 * @param ttype the token type to match
 	 * @return the matched symbol
@@ -228,7 +239,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 			if ( _buildParseTrees && t.getTokenIndex()==-1 ) {
 				// we must have conjured up a new token during single token insertion
 				// if it's not the current symbol
-				_ctx.addErrorNode(t);
+				addConjuredErrorNode(t);
 			}
 		}
 		return t;
@@ -244,7 +255,9 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 	 * strategy to attempt recovery. If {@link #getBuildParseTree} is
 	 * {@code true} and the token index of the symbol returned by
 	 * {@link ANTLRErrorStrategy#recoverInline} is -1, the symbol is added to
-	 * the parse tree by calling {@link ParserRuleContext#addErrorNode}.</p>
+	 * the parse tree by calling {@link ParserRuleContext#addErrorNode}, and
+	 * {@link ParseTreeListener#visitErrorNode} is called on any parse
+	 * listeners.</p>
 	 *
 	 * @return the matched symbol
 	 * @throws RecognitionException if the current input symbol did not match
@@ -263,13 +276,28 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 			if (_buildParseTrees && t.getTokenIndex() == -1) {
 				// we must have conjured up a new token during single token insertion
 				// if it's not the current symbol
-				_ctx.addErrorNode(t);
+				addConjuredErrorNode(t);
 			}
 		}
 
 		return t;
 	}
 
+	/**
+	 * Adds an error node for a symbol conjured up by
+	 * {@link ANTLRErrorStrategy#recoverInline} to the current context, and
+	 * calls {@link ParseTreeListener#visitErrorNode} on any parse listeners.
+	 */
+	private void addConjuredErrorNode(@NotNull Token t) {
+		ErrorNode node = _ctx.addErrorNode(t);
+		assignNodeId(node);
+		if (_parseListeners != null) {
+			for (ParseTreeListener listener : _parseListeners) {
+				listener.visitErrorNode(node);
+			}
+		}
+	}
+
 	/**
 	 * Track the {@link ParserRuleContext} objects during the parse and hook
 	 * them up using the {@link ParserRuleContext#children} list so that it
@@ -586,6 +614,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		if (_buildParseTrees || hasListener) {
 			if ( _errHandler.inErrorRecoveryMode(this) ) {
 				ErrorNode node = _ctx.addErrorNode(o);
+				if (_buildParseTrees) assignNodeId(node);
 				if (_parseListeners != null) {
 					for (ParseTreeListener listener : _parseListeners) {
 						listener.visitErrorNode(node);
@@ -594,6 +623,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 			}
 			else {
 				TerminalNode node = _ctx.addChild(o);
+				if (_buildParseTrees) assignNodeId(node);
 				if (_parseListeners != null) {
 					for (ParseTreeListener listener : _parseListeners) {
 						listener.visitTerminal(node);
@@ -612,6 +642,20 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		}
 	}
 
+	/**
+	 * Assigns the next node id of the current parse tree to {@code node}.
+	 *
+	 * @see ParserRuleContext#getNodeId
+	 */
+	protected void assignNodeId(@NotNull ParseTree node) {
+		if (node instanceof ParserRuleContext) {
+			((ParserRuleContext)node).setNodeId(_nextNodeId++);
+		}
+		else if (node instanceof TerminalNodeImpl) {
+			((TerminalNodeImpl)node).setNodeId(_nextNodeId++);
+		}
+	}
+
 	/**
 	 * Always called by generated parsers upon entry to a rule. Access field
 	 * {@link #_ctx} get the current context.
@@ -620,7 +664,15 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		setState(state);
 		_ctx = localctx;
 		_ctx.start = _input.LT(1);
-		if (_buildParseTrees) addContextToParseTree();
+		if (_buildParseTrees) {
+			if (_ctx.parent == null) {
+				// entering the start rule of a new tree
+				_nextNodeId = 0;
+			}
+
+			assignNodeId(_ctx);
+			addContextToParseTree();
+		}
         if ( _parseListeners != null) triggerEnterRuleEvent();
 	}
 
@@ -636,6 +688,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		_ctx = localctx;
 		_ctx.start = _input.LT(1);
 		if (_buildParseTrees) {
+			assignNodeId(_ctx);
 			addContextToParseTree();
 		}
 
@@ -693,6 +746,15 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		_precedenceStack.push(precedence);
 		_ctx = localctx;
 		_ctx.start = _input.LT(1);
+		if (_buildParseTrees) {
+			if (_ctx.parent == null) {
+				// entering the start rule of a new tree
+				_nextNodeId = 0;
+			}
+
+			assignNodeId(_ctx);
+		}
+
 		if (_parseListeners != null) {
 			triggerEnterRuleEvent(); // simulates rule entry for left-recursive rules
 		}
@@ -710,6 +772,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		_ctx = localctx;
 		_ctx.start = previous.start;
 		if (_buildParseTrees) {
+			assignNodeId(_ctx);
 			_ctx.addChild(previous);
 		}
 
@@ -216,6 +216,11 @@ public class ParserInterpreter extends Parser {
 		switch (transition.getSerializationType()) {
 		case Transition.EPSILON:
 			if (pushRecursionContextStates.get(p.stateNumber) && !(transition.target instanceof LoopEndState)) {
+				// the previous context is complete, as in generated parsers
+				if (_parseListeners != null) {
+					triggerExitRuleEvent();
+				}
+
 				InterpreterRuleContext ctx = new InterpreterRuleContext(_parentContextStack.peek().getItem1(), _parentContextStack.peek().getItem2(), _ctx.getRuleIndex());
 				pushNewRecursionContext(ctx, atn.ruleToStartState[p.ruleIndex].stateNumber, _ctx.getRuleIndex());
 			}
@@ -105,6 +105,14 @@ public class ParserRuleContext extends RuleContext {
 	 */
 	public RecognitionException exception;
 
+	/**
+	 * The dense id of this node within its parse tree, or -1 if no id was
+	 * assigned.
+	 *
+	 * @see #getNodeId
+	 */
+	private int nodeId = -1;
+
 	public ParserRuleContext() { }
 
 	public static ParserRuleContext emptyContext() {
@@ -119,12 +127,37 @@ public class ParserRuleContext extends RuleContext {
 
 		this.start = ctx.start;
 		this.stop = ctx.stop;
+		this.nodeId = ctx.nodeId;
 	}
 
 	public ParserRuleContext(@Nullable ParserRuleContext parent, int invokingStateNumber) {
 		super(parent, invokingStateNumber);
 	}
 
+	/**
+	 * Gets the id of this node within its parse tree. When a {@link Parser}
+	 * builds a parse tree, it assigns each node of the tree a distinct id
+	 * starting at 0, so ids may be used as indexes into arrays holding
+	 * information about the nodes of a single tree (see
+	 * {@link org.antlr.v4.runtime.tree.DenseParseTreeProperty}).
+	 *
+	 * @return The id of this node, or -1 if no id was assigned.
+	 * @since 4.4.1
+	 */
+	public int getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * Sets the id of this node within its parse tree.
+	 *
+	 * @see #getNodeId
+	 * @since 4.4.1
+	 */
+	public void setNodeId(int nodeId) {
+		this.nodeId = nodeId;
+	}
+
 	// Double dispatch methods for listeners
 
 	public void enterRule(ParseTreeListener listener) { }
@@ -0,0 +1,404 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This implementation of {@link TokenStream} runs its {@link TokenSource} on a
+ * separate thread, so lexing proceeds in parallel with the parser. Tokens are
+ * passed from the lexer thread to the thread reading the stream through a
+ * bounded single-producer, single-consumer ring buffer. The reader only waits
+ * when its lookahead reaches a token the lexer has not produced yet, and the
+ * lexer only waits when the ring buffer is full.
+ *
+ * <p>
+ * Tokens taken from the ring buffer are stored exactly as they are by
+ * {@link CommonTokenStream}, so {@link #mark}, {@link #seek}, {@link #get} and
+ * channel filtering behave the same way. This stream may be used anywhere a
+ * {@link CommonTokenStream} is used.</p>
+ *
+ * <p>
+ * Once the first token is requested, the token source belongs to the lexer
+ * thread until it returns {@link Token#EOF} or the stream is {@link #close
+ * closed}. Error listeners of the lexer are called on the lexer thread. If the
+ * token source throws an exception, the exception is rethrown to the reader
+ * when it reaches the position of the failure.</p>
+ *
+ * <p>
+ * If the parser stops before reading the whole input, call {@link #close} to
+ * stop the lexer thread.</p>
+ *
+ * @since 4.4.1
+ */
+public class PipelinedTokenStream extends CommonTokenStream {
+	/**
+	 * The default number of tokens which may be produced ahead of the
+	 * reader.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * The number of times a thread checks the ring buffer again before it
+	 * parks. Spinning only helps when the other thread can run at the same
+	 * time.
+	 */
+	private static final int SPIN_LIMIT = Runtime.getRuntime().availableProcessors() > 1 ? 128 : 0;
+
+	private final int capacity;
+
+	@Nullable
+	private final Executor executor;
+
+	/**
+	 * The ring buffer for the current token source, or {@code null} if the
+	 * lexer thread has not been started for it.
+	 */
+	@Nullable
+	private TokenRingBuffer buffer;
+
+	/**
+	 * Constructs a new {@link PipelinedTokenStream} using the specified token
+	 * source and the default token channel ({@link Token#DEFAULT_CHANNEL}).
+	 * The lexer runs on a new daemon thread.
+	 *
+	 * @param tokenSource The token source.
+	 */
+	public PipelinedTokenStream(@NotNull TokenSource tokenSource) {
+		this(tokenSource, Token.DEFAULT_CHANNEL);
+	}
+
+	/**
+	 * Constructs a new {@link PipelinedTokenStream} using the specified token
+	 * source and filtering tokens to the specified channel. The lexer runs on
+	 * a new daemon thread.
+	 *
+	 * @param tokenSource The token source.
+	 * @param channel The channel to use for filtering tokens.
+	 */
+	public PipelinedTokenStream(@NotNull TokenSource tokenSource, int channel) {
+		this(tokenSource, channel, DEFAULT_CAPACITY, null);
+	}
+
+	/**
+	 * Constructs a new {@link PipelinedTokenStream}.
+	 *
+	 * @param tokenSource The token source.
+	 * @param channel The channel to use for filtering tokens.
+	 * @param capacity The maximum number of tokens the lexer may produce
+	 * ahead of the reader. The value is rounded up to a power of two.
+	 * @param executor The executor which runs the lexer, or {@code null} to
+	 * run the lexer on a new daemon thread. The executor must not run the
+	 * lexer on the thread reading this stream.
+	 */
+	public PipelinedTokenStream(@NotNull TokenSource tokenSource, int channel, int capacity, @Nullable Executor executor) {
+		super(tokenSource, channel);
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+
+		this.capacity = capacity;
+		this.executor = executor;
+	}
+
+	/**
+	 * Stops the lexer thread for the current token source. Tokens which were
+	 * already read from this stream remain available, but reading past them
+	 * throws a {@link CancellationException}.
+	 */
+	public void close() {
+		if (buffer != null) {
+			buffer.close();
+		}
+	}
+
+	@Override
+	public void setTokenSource(@NotNull TokenSource tokenSource) {
+		close();
+		buffer = null;
+		super.setTokenSource(tokenSource);
+	}
+
+	@Override
+	protected int fetch(int n) {
+		if (fetchedEOF) {
+			return 0;
+		}
+
+		TokenRingBuffer buffer = this.buffer;
+		if (buffer == null) {
+			buffer = startLexer();
+		}
+
+		for (int i = 0; i < n; i++) {
+			Token t = buffer.take();
+			if ( t instanceof WritableToken ) {
+				((WritableToken)t).setTokenIndex(tokens.size());
+			}
+			tokens.add(t);
+			if ( t.getType()==Token.EOF ) {
+				fetchedEOF = true;
+				return i + 1;
+			}
+		}
+
+		return n;
+	}
+
+	@NotNull
+	private TokenRingBuffer startLexer() {
+		final TokenRingBuffer buffer = new TokenRingBuffer(capacity);
+		final TokenSource tokenSource = this.tokenSource;
+		Runnable producer = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						Token t = tokenSource.nextToken();
+						if (!buffer.put(t) || t.getType() == Token.EOF) {
+							return;
+						}
+					}
+				}
+				catch (Throwable ex) {
+					buffer.fail(ex);
+				}
+			}
+		};
+
+		this.buffer = buffer;
+		if (executor != null) {
+			executor.execute(producer);
+		}
+		else {
+			Thread thread = new Thread(producer, "lexer: " + tokenSource.getSourceName());
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		return buffer;
+	}
+
+	/**
+	 * A bounded ring buffer with one producing and one consuming thread. The
+	 * producer only writes {@link #tail} and the consumer only writes
+	 * {@link #head}, so neither side takes a lock. A thread which finds the
+	 * buffer full (or empty) spins briefly and then parks until the other
+	 * thread makes progress. A parked producer is only woken once the
+	 * consumer has made room for a batch of tokens, so the threads do not hand
+	 * off control after every token when they share a processor. A parked
+	 * consumer is woken as soon as the token it waits for is added, since the
+	 * producer may not add another token for an arbitrary amount of time.
+	 */
+	private static final class TokenRingBuffer {
+		private final Token[] slots;
+		private final int mask;
+		private final int wakeThreshold;
+
+		/** The number of tokens taken by the consumer. */
+		private volatile long head;
+		/** The number of tokens added by the producer. */
+		private volatile long tail;
+
+		private volatile boolean closed;
+		@Nullable
+		private volatile Throwable failure;
+
+		@Nullable
+		private volatile Thread parkedProducer;
+		@Nullable
+		private volatile Thread parkedConsumer;
+
+		/** The last value of {@link #head} read by the producer. */
+		private long cachedHead;
+		/** The last value of {@link #tail} read by the consumer. */
+		private long cachedTail;
+
+		public TokenRingBuffer(int capacity) {
+			int size = Integer.highestOneBit(capacity);
+			if (size < capacity) {
+				size <<= 1;
+			}
+
+			slots = new Token[size];
+			mask = size - 1;
+			wakeThreshold = Math.min(size, 64);
+		}
+
+		/**
+		 * Adds a token to the buffer, waiting for space if necessary.
+		 *
+		 * @return {@code true} if the token was added, or {@code false} if the
+		 * buffer was closed.
+		 */
+		public boolean put(@NotNull Token token) {
+			long t = tail;
+			if (t - cachedHead == slots.length) {
+				cachedHead = awaitSpace(t);
+				if (cachedHead < 0) {
+					return false;
+				}
+			}
+
+			slots[(int)t & mask] = token;
+			tail = t + 1;
+			Thread consumer = parkedConsumer;
+			if (consumer != null && t == head) {
+				LockSupport.unpark(consumer);
+			}
+
+			return true;
+		}
+
+		/**
+		 * Waits until the consumer makes room for the token at position
+		 * {@code t}.
+		 *
+		 * @return The current value of {@link #head}, or -1 if the buffer was
+		 * closed.
+		 */
+		private long awaitSpace(long t) {
+			int spins = 0;
+			long h;
+			while (t - (h = head) == slots.length) {
+				if (closed) {
+					return -1;
+				}
+
+				if (Thread.currentThread().isInterrupted()) {
+					close();
+					return -1;
+				}
+
+				if (spins++ < SPIN_LIMIT) {
+					continue;
+				}
+
+				parkedProducer = Thread.currentThread();
+				if (t - head == slots.length && !closed) {
+					LockSupport.park(this);
+				}
+
+				parkedProducer = null;
+			}
+
+			return closed ? -1 : h;
+		}
+
+		/**
+		 * Removes the next token from the buffer, waiting for the producer if
+		 * necessary.
+		 *
+		 * @exception CancellationException if the buffer was closed or the
+		 * current thread was interrupted while waiting
+		 */
+		@NotNull
+		public Token take() {
+			long h = head;
+			if (h == cachedTail) {
+				cachedTail = awaitToken(h);
+			}
+
+			int index = (int)h & mask;
+			Token token = slots[index];
+			slots[index] = null;
+			head = h + 1;
+			Thread producer = parkedProducer;
+			if (producer != null && slots.length - (tail - (h + 1)) >= wakeThreshold) {
+				LockSupport.unpark(producer);
+			}
+
+			return token;
+		}
+
+		/**
+		 * Waits until the producer adds the token at position {@code h}.
+		 *
+		 * @return The current value of {@link #tail}.
+		 */
+		private long awaitToken(long h) {
+			int spins = 0;
+			long t;
+			while (h == (t = tail)) {
+				Throwable failure = this.failure;
+				if (failure != null && h == tail) {
+					if (failure instanceof RuntimeException) {
+						throw (RuntimeException)failure;
+					}
+
+					if (failure instanceof Error) {
+						throw (Error)failure;
+					}
+
+					throw new IllegalStateException(failure);
+				}
+
+				if (closed) {
+					throw new CancellationException("The token stream was closed.");
+				}
+
+				if (Thread.currentThread().isInterrupted()) {
+					close();
+					throw new CancellationException("Interrupted while waiting for the lexer.");
+				}
+
+				if (spins++ < SPIN_LIMIT) {
+					continue;
+				}
+
+				parkedConsumer = Thread.currentThread();
+				if (h == tail && this.failure == null && !closed) {
+					LockSupport.park(this);
+				}
+
+				parkedConsumer = null;
+			}
+
+			return t;
+		}
+
+		public void fail(@NotNull Throwable failure) {
+			this.failure = failure;
+			LockSupport.unpark(parkedConsumer);
+		}
+
+		public void close() {
+			closed = true;
+			LockSupport.unpark(parkedProducer);
+			LockSupport.unpark(parkedConsumer);
+		}
+	}
+}
@@ -36,6 +36,8 @@ import org.antlr.v4.runtime.atn.ParseInfo;
 import org.antlr.v4.runtime.misc.Args;
 import org.antlr.v4.runtime.misc.NotNull;
 import org.antlr.v4.runtime.misc.Nullable;
+import org.antlr.v4.runtime.misc.ParseBudget;
+import org.antlr.v4.runtime.misc.ParseBudgetExceededException;
 import org.antlr.v4.runtime.misc.Utils;
 
 import java.util.ArrayList;
@@ -63,6 +65,9 @@ public abstract class Recognizer<Symbol, ATNInterpreter extends ATNSimulator> {
 
 	private int _stateNumber = -1;
 
+	@Nullable
+	private ParseBudget _budget;
+
 	/** Used to print out token names like ID during debugging and
 	 *  error reporting.  The generated parsers implement a method
 	 *  that overrides this to point to their String[] tokenNames.
@@ -204,6 +209,29 @@ public abstract class Recognizer<Symbol, ATNInterpreter extends ATNSimulator> {
 		_interp = interpreter;
 	}
 
+	/**
+	 * Gets the budget limiting the work performed by this recognizer, or
+	 * {@code null} if the recognizer is not limited.
+	 *
+	 * @since 4.4.1
+	 */
+	@Nullable
+	public ParseBudget getParseBudget() {
+		return _budget;
+	}
+
+	/**
+	 * Sets the budget limiting the work performed by this recognizer. When the
+	 * budget is exceeded, the ATN simulator throws a
+	 * {@link ParseBudgetExceededException} which bypasses error recovery.
+	 *
+	 * @param budget The budget, or {@code null} to remove the limits.
+	 * @since 4.4.1
+	 */
+	public void setParseBudget(@Nullable ParseBudget budget) {
+		_budget = budget;
+	}
+
 	/** What is the error header, normally line/character position information? */
 	@NotNull
 	public String getErrorHeader(@NotNull RecognitionException e) {
@@ -100,23 +100,39 @@ public class ATN {
 	 */
 	public LexerAction[] lexerActions;
 
+	/**
+	 * The executors for the individual actions in {@link #lexerActions},
+	 * created on first use by {@link #getLexerActionExecutor}.
+	 */
+	@Nullable
+	private volatile LexerActionExecutor[] lexerActionExecutors;
+
+	@NotNull
+	private volatile ConcurrentMap<LexerActionExecutor, LexerActionExecutor> lexerActionExecutorCache =
+		new ConcurrentHashMap<LexerActionExecutor, LexerActionExecutor>();
+
 	@NotNull
 	public final List<TokensStartState> modeToStartState = new ArrayList<TokensStartState>();
 
-	private final ConcurrentMap<PredictionContext, PredictionContext> contextCache =
-		new ConcurrentHashMap<PredictionContext, PredictionContext>();
+	@NotNull
+	private volatile ConcurrentPredictionContextCache contextCache = new ConcurrentPredictionContextCache();
 
 	@NotNull
 	public DFA[] decisionToDFA = new DFA[0];
 	@NotNull
 	public DFA[] modeToDFA = new DFA[0];
 
-	protected final ConcurrentMap<Integer, Integer> LL1Table = new ConcurrentHashMap<Integer, Integer>();
+	@NotNull
+	protected final LL1Table ll1Table;
+
+	@NotNull
+	private volatile FollowSetCache followSetCache = new FollowSetCache(this);
 
 	/** Used for runtime deserialization of ATNs from strings */
 	public ATN(@NotNull ATNType grammarType, int maxTokenType) {
 		this.grammarType = grammarType;
 		this.maxTokenType = maxTokenType;
+		this.ll1Table = new LL1Table(maxTokenType);
 	}
 
 	public final void clearDFA() {
@@ -130,8 +146,10 @@ public class ATN {
 			modeToDFA[i] = new DFA(modeToStartState.get(i));
 		}
 
-		contextCache.clear();
-		LL1Table.clear();
+		contextCache = new ConcurrentPredictionContextCache();
+		lexerActionExecutorCache = new ConcurrentHashMap<LexerActionExecutor, LexerActionExecutor>();
+		ll1Table.clear();
+		followSetCache = new FollowSetCache(this);
 	}
 
 	public int getContextCacheSize() {
@@ -142,6 +160,109 @@ public class ATN {
 		return PredictionContext.getCachedContext(context, contextCache, new PredictionContext.IdentityHashMap());
 	}
 
+	/**
+	 * Gets the thread-safe {@link PredictionContextCache} shared by
+	 * predictions made against this ATN. The cache is replaced when the DFA
+	 * is cleared.
+	 */
+	@NotNull
+	public ConcurrentPredictionContextCache getContextCache() {
+		return contextCache;
+	}
+
+	/**
+	 * Gets a shared {@link LexerActionExecutor} which executes only the lexer
+	 * action {@code lexerActions[actionIndex]}.
+	 *
+	 * <p>The executors are created together on first use. At that time, the
+	 * executors for chains of actions which directly follow each other in the
+	 * ATN, such as {@code -> pushMode(M), type(T)}, are computed as well, so
+	 * {@link LexerActionExecutor#append} returns them without allocating.</p>
+	 *
+	 * @since 4.4.1
+	 */
+	@NotNull
+	public LexerActionExecutor getLexerActionExecutor(int actionIndex) {
+		LexerActionExecutor[] executors = lexerActionExecutors;
+		if (executors == null) {
+			executors = createLexerActionExecutors();
+		}
+
+		return executors[actionIndex];
+	}
+
+	/**
+	 * Gets the instance of {@link LexerActionExecutor} equal to
+	 * {@code lexerActionExecutor} which is shared by the lexer DFA states of
+	 * this ATN. The cache is replaced when the DFA is cleared.
+	 *
+	 * @since 4.4.1
+	 */
+	@NotNull
+	public LexerActionExecutor getCachedLexerActionExecutor(@NotNull LexerActionExecutor lexerActionExecutor) {
+		LexerActionExecutor existing = lexerActionExecutorCache.putIfAbsent(lexerActionExecutor, lexerActionExecutor);
+		if (existing != null) {
+			return existing;
+		}
+
+		return lexerActionExecutor;
+	}
+
+	@NotNull
+	private synchronized LexerActionExecutor[] createLexerActionExecutors() {
+		LexerActionExecutor[] executors = lexerActionExecutors;
+		if (executors != null) {
+			return executors;
+		}
+
+		executors = new LexerActionExecutor[lexerActions.length];
+		for (int i = 0; i < executors.length; i++) {
+			executors[i] = LexerActionExecutor.append(null, lexerActions[i]);
+		}
+
+		for (ATNState state : states) {
+			if (state == null) {
+				continue;
+			}
+
+			for (int i = 0; i < state.getNumberOfOptimizedTransitions(); i++) {
+				Transition transition = state.getOptimizedTransition(i);
+				if (!(transition instanceof ActionTransition)) {
+					continue;
+				}
+
+				int actionIndex = ((ActionTransition)transition).actionIndex;
+				if (actionIndex < 0 || actionIndex >= executors.length) {
+					continue;
+				}
+
+				// follow the actions reachable through a single path of
+				// epsilon transitions, which is how consecutive lexer
+				// commands appear in the ATN
+				LexerActionExecutor executor = executors[actionIndex];
+				ATNState target = transition.target;
+				for (int depth = 0; depth < 16 && target.getNumberOfOptimizedTransitions() == 1; depth++) {
+					Transition next = target.getOptimizedTransition(0);
+					if (!next.isEpsilon()) {
+						break;
+					}
+
+					if (next instanceof ActionTransition) {
+						int nextActionIndex = ((ActionTransition)next).actionIndex;
+						if (nextActionIndex >= 0 && nextActionIndex < executors.length) {
+							executor = LexerActionExecutor.append(executor, lexerActions[nextActionIndex]);
+						}
+					}
+
+					target = next.target;
+				}
+			}
+		}
+
+		lexerActionExecutors = executors;
+		return executors;
+	}
+
 	public final DFA[] getDecisionToDFA() {
 		assert decisionToDFA != null && decisionToDFA.length == decisionToState.size();
 		return decisionToDFA;
@@ -228,7 +349,7 @@ public class ATN {
 	 * @param stateNumber the ATN state number
 	 * @param context the full parse context
 	 * @return The set of potentially valid input symbols which could follow the
-	 * specified state in the specified context.
+	 * specified state in the specified context. The returned set is read-only.
 	 * @throws IllegalArgumentException if the ATN does not contain a state with
 	 * number {@code stateNumber}
 	 */
@@ -238,29 +359,33 @@ public class ATN {
 			throw new IllegalArgumentException("Invalid state number.");
 		}
 
-		RuleContext ctx = context;
 		ATNState s = states.get(stateNumber);
 		IntervalSet following = nextTokens(s);
 		if (!following.contains(Token.EPSILON)) {
 			return following;
 		}
 
-		IntervalSet expected = new IntervalSet();
-		expected.addAll(following);
-		expected.remove(Token.EPSILON);
-		while (ctx != null && ctx.invokingState >= 0 && following.contains(Token.EPSILON)) {
-			ATNState invokingState = states.get(ctx.invokingState);
-			RuleTransition rt = (RuleTransition)invokingState.transition(0);
-			following = nextTokens(rt.followState);
-			expected.addAll(following);
-			expected.remove(Token.EPSILON);
-			ctx = ctx.parent;
-		}
-
-		if (following.contains(Token.EPSILON)) {
-			expected.add(Token.EOF);
-		}
+		return followSetCache.getExpectedTokens(stateNumber, following, context);
+	}
 
-		return expected;
+	/**
+	 * Computes the set of input symbols which could follow any of the rule
+	 * invocations in the specified {@code context}. This is the union of the
+	 * sets of symbols which could follow each invoking state within the rule
+	 * containing it, and is used as the resynchronization set during error
+	 * recovery.
+	 *
+	 * <p>The result is cached for each distinct chain of invoking states, so
+	 * repeated calls during error recovery do not walk the ATN again.</p>
+	 *
+	 * @param context the full parse context
+	 * @return A read-only set containing the input symbols which could follow
+	 * any rule invocation in {@code context}.
+	 *
+	 * @since 4.4.1
+	 */
+	@NotNull
+	public IntervalSet getErrorRecoverySet(@Nullable RuleContext context) {
+		return followSetCache.getErrorRecoverySet(context);
 	}
 }
@@ -0,0 +1,345 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A thread-safe {@link PredictionContextCache} which may be shared by all
+ * predictions made against a single {@link ATN}. Interned contexts, child
+ * contexts, and the results of {@link PredictionContext#join} are held through
+ * weak references, so entries remain available for as long as the contexts
+ * they refer to are reachable from elsewhere (typically from the configuration
+ * sets of DFA states), and are reclaimed by the garbage collector otherwise.
+ *
+ * <p>Join results are keyed by the identity of their operands. Since every
+ * context produced through this cache is interned, repeated full-context
+ * predictions operating on the same input contexts reuse previously computed
+ * merges instead of recomputing them.</p>
+ *
+ * @author Sam Harwell
+ * @see ATN#getContextCache
+ */
+public class ConcurrentPredictionContextCache extends PredictionContextCache {
+	private static final int KIND_CONTEXT = 0;
+	private static final int KIND_CHILD = 1;
+	private static final int KIND_JOIN = 2;
+
+	private final ConcurrentMap<Key, ValueReference> entries =
+		new ConcurrentHashMap<Key, ValueReference>();
+
+	private final ReferenceQueue<PredictionContext> queue = new ReferenceQueue<PredictionContext>();
+
+	/**
+	 * A reusable key for lookups, so looking up an existing entry does not
+	 * allocate.
+	 */
+	private final ThreadLocal<ProbeKey> probeKey = new ThreadLocal<ProbeKey>() {
+		@Override
+		protected ProbeKey initialValue() {
+			return new ProbeKey();
+		}
+	};
+
+	public ConcurrentPredictionContextCache() {
+		// every operation is overridden, so the maps of the base class are
+		// never needed
+		super(false);
+	}
+
+	/**
+	 * Gets the approximate number of entries currently held by the cache,
+	 * including entries whose contexts have been reclaimed but not yet
+	 * removed.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Removes all entries from the cache.
+	 */
+	public void clear() {
+		entries.clear();
+		while (queue.poll() != null) {
+			// the corresponding entries were removed above
+		}
+	}
+
+	@Override
+	public PredictionContext getAsCached(PredictionContext context) {
+		PredictionContext result = get(KIND_CONTEXT, context, null, 0);
+		if (result != null) {
+			return result;
+		}
+
+		return put(new WeakKey(KIND_CONTEXT, context, null, 0, queue), context);
+	}
+
+	@Override
+	public PredictionContext getChild(PredictionContext context, int invokingState) {
+		PredictionContext result = get(KIND_CHILD, context, null, invokingState);
+		if (result != null) {
+			return result;
+		}
+
+		result = getAsCached(context.getChild(invokingState));
+		return put(new WeakKey(KIND_CHILD, context, null, invokingState, queue), result);
+	}
+
+	@Override
+	public PredictionContext join(PredictionContext x, PredictionContext y) {
+		PredictionContext result = get(KIND_JOIN, x, y, 0);
+		if (result != null) {
+			return result;
+		}
+
+		result = getAsCached(PredictionContext.join(x, y, this));
+		return put(new WeakKey(KIND_JOIN, x, y, 0, queue), result);
+	}
+
+	@Nullable
+	private PredictionContext get(int kind, @NotNull PredictionContext x, @Nullable PredictionContext y, int value) {
+		ProbeKey key = probeKey.get();
+		key.set(kind, x, y, value);
+		try {
+			ValueReference reference = entries.get(key);
+			return reference != null ? reference.get() : null;
+		}
+		finally {
+			key.clear();
+		}
+	}
+
+	/**
+	 * Stores {@code value} for {@code key}, unless a live value was stored by
+	 * another thread in the meantime.
+	 *
+	 * @return The value associated with {@code key} after the operation.
+	 */
+	@NotNull
+	private PredictionContext put(@NotNull WeakKey key, @NotNull PredictionContext value) {
+		expungeStaleEntries();
+
+		ValueReference reference = new ValueReference(value, key, queue);
+		key.value = reference;
+		while (true) {
+			ValueReference existing = entries.putIfAbsent(key, reference);
+			if (existing == null) {
+				return value;
+			}
+
+			PredictionContext existingValue = existing.get();
+			if (existingValue != null) {
+				return existingValue;
+			}
+
+			entries.remove(key, existing);
+		}
+	}
+
+	private void expungeStaleEntries() {
+		for (Reference<? extends PredictionContext> reference = queue.poll(); reference != null; reference = queue.poll()) {
+			WeakKey key;
+			if (reference instanceof ValueReference) {
+				key = ((ValueReference)reference).key;
+			}
+			else {
+				key = ((KeyReference)reference).key;
+			}
+
+			ValueReference value = key.value;
+			if (value != null) {
+				entries.remove(key, value);
+			}
+		}
+	}
+
+	/**
+	 * The key of a cache entry. For {@link #KIND_CONTEXT} and
+	 * {@link #KIND_CHILD} entries, {@link #getX} is compared by value; for
+	 * {@link #KIND_JOIN} entries, the operands are compared by identity in
+	 * either order.
+	 */
+	private static abstract class Key {
+		protected int kind;
+		protected int value;
+		protected int hashCode;
+
+		protected final void initialize(int kind, @NotNull PredictionContext x, @Nullable PredictionContext y, int value) {
+			this.kind = kind;
+			this.value = value;
+
+			int hash;
+			switch (kind) {
+			case KIND_JOIN:
+				hash = x.hashCode() ^ y.hashCode();
+				break;
+
+			default:
+				hash = 7 * x.hashCode() + value;
+				break;
+			}
+
+			this.hashCode = 31 * hash + kind;
+		}
+
+		@Nullable
+		protected abstract PredictionContext getX();
+
+		@Nullable
+		protected abstract PredictionContext getY();
+
+		@Override
+		public final int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public final boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			else if (!(obj instanceof Key)) {
+				return false;
+			}
+
+			Key other = (Key)obj;
+			if (kind != other.kind || value != other.value || hashCode != other.hashCode) {
+				return false;
+			}
+
+			PredictionContext x = getX();
+			PredictionContext otherX = other.getX();
+			if (x == null || otherX == null) {
+				// one of the keys refers to a context which was reclaimed
+				return false;
+			}
+
+			if (kind != KIND_JOIN) {
+				return x == otherX || x.equals(otherX);
+			}
+
+			PredictionContext y = getY();
+			PredictionContext otherY = other.getY();
+			if (y == null || otherY == null) {
+				return false;
+			}
+
+			return (x == otherX && y == otherY) || (x == otherY && y == otherX);
+		}
+	}
+
+	/**
+	 * A key used for lookups, which holds its operands strongly while a
+	 * lookup is in progress. Each thread reuses a single instance.
+	 */
+	private static final class ProbeKey extends Key {
+		private PredictionContext x;
+		private PredictionContext y;
+
+		public void set(int kind, @NotNull PredictionContext x, @Nullable PredictionContext y, int value) {
+			initialize(kind, x, y, value);
+			this.x = x;
+			this.y = y;
+		}
+
+		public void clear() {
+			this.x = null;
+			this.y = null;
+		}
+
+		@Override
+		protected PredictionContext getX() {
+			return x;
+		}
+
+		@Override
+		protected PredictionContext getY() {
+			return y;
+		}
+	}
+
+	/**
+	 * The key stored in the cache, which holds its operands weakly.
+	 */
+	private static final class WeakKey extends Key {
+		private final KeyReference x;
+		private final KeyReference y;
+
+		/**
+		 * The value stored for this key. This field is assigned before the key
+		 * is published to the map.
+		 */
+		public volatile ValueReference value;
+
+		public WeakKey(int kind, @NotNull PredictionContext x, @Nullable PredictionContext y, int value, @NotNull ReferenceQueue<PredictionContext> queue) {
+			initialize(kind, x, y, value);
+			this.x = new KeyReference(x, this, queue);
+			this.y = y != null ? new KeyReference(y, this, queue) : null;
+		}
+
+		@Override
+		protected PredictionContext getX() {
+			return x.get();
+		}
+
+		@Override
+		protected PredictionContext getY() {
+			return y != null ? y.get() : null;
+		}
+	}
+
+	private static final class KeyReference extends WeakReference<PredictionContext> {
+		public final WeakKey key;
+
+		public KeyReference(PredictionContext referent, WeakKey key, ReferenceQueue<PredictionContext> queue) {
+			super(referent, queue);
+			this.key = key;
+		}
+	}
+
+	private static final class ValueReference extends WeakReference<PredictionContext> {
+		public final WeakKey key;
+
+		public ValueReference(PredictionContext referent, WeakKey key, ReferenceQueue<PredictionContext> queue) {
+			super(referent, queue);
+			this.key = key;
+		}
+	}
+}
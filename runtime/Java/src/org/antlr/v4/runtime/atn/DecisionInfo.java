@@ -228,6 +228,35 @@ public class DecisionInfo {
 	 */
 	public long LL_DFATransitions;
 
+	/**
+	 * The number of times full-context prediction for this decision found the
+	 * target of a context edge in the DFA.
+	 *
+	 * <p>If {@link ParserATNSimulator#enable_global_context_dfa} is
+	 * {@code false}, this value will be 0.</p>
+	 *
+	 * @see #contextEdgeMisses
+	 * @since 4.4.1
+	 */
+	public long contextEdgeHits;
+
+	/**
+	 * The number of times full-context prediction for this decision looked for
+	 * the target of a context edge in the DFA and did not find it.
+	 *
+	 * @see #contextEdgeHits
+	 * @since 4.4.1
+	 */
+	public long contextEdgeMisses;
+
+	/**
+	 * The number of context edges removed from DFA states of this decision
+	 * because a state reached {@link ParserATNSimulator#max_context_edges}.
+	 *
+	 * @since 4.4.1
+	 */
+	public long contextEdgeEvictions;
+
 	/**
 	 * Constructs a new instance of the {@link DecisionInfo} class to contain
 	 * statistics for a particular decision.
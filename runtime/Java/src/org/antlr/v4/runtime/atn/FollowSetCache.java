@@ -0,0 +1,239 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.RuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.IntervalSet;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class caches the context-sensitive follow sets used for error
+ * reporting and recovery. The cache is organized as a tree of invocation
+ * chains, where each node represents the sequence of invoking states from the
+ * outermost rule invocation to a particular rule invocation. Each node stores
+ * the error recovery set for its chain, and lazily computes the expected
+ * tokens for the ATN states reached within the innermost rule.
+ *
+ * <p>All sets returned by this class are read-only, and instances of this class
+ * may be safely shared by multiple threads.</p>
+ *
+ * @see ATN#getErrorRecoverySet
+ * @see ATN#getExpectedTokens
+ */
+final class FollowSetCache {
+	/**
+	 * The maximum number of invocation chains tracked by a single cache. Once
+	 * this limit is reached, follow sets for new invocation chains are computed
+	 * without being stored.
+	 */
+	public static final int MAX_NODES = 1 << 16;
+
+	@NotNull
+	private final ATN atn;
+	@NotNull
+	private final Node root;
+
+	private final AtomicInteger nodeCount = new AtomicInteger();
+
+	/**
+	 * A reusable buffer for the invoking states of a context, so finding the
+	 * node for a context does not allocate.
+	 */
+	private final ThreadLocal<int[]> invokingStatesBuffer = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[16];
+		}
+	};
+
+	public FollowSetCache(@NotNull ATN atn) {
+		this.atn = atn;
+		this.root = new Node(atn, null, -1, true);
+	}
+
+	@NotNull
+	public IntervalSet getErrorRecoverySet(@Nullable RuleContext context) {
+		return getNode(context).recoverySet;
+	}
+
+	/**
+	 * Gets the expected tokens for an ATN state whose follow set within its own
+	 * rule contains {@link Token#EPSILON}.
+	 */
+	@NotNull
+	public IntervalSet getExpectedTokens(int stateNumber, @NotNull IntervalSet following, @Nullable RuleContext context) {
+		Node node = getNode(context);
+		IntervalSet expected = node.expectedTokens.get(stateNumber);
+		if (expected != null) {
+			return expected;
+		}
+
+		expected = new IntervalSet();
+		expected.addAll(following);
+		expected.remove(Token.EPSILON);
+		expected.addAll(node.getExpectedFollow());
+		expected.setReadonly(true);
+		if (!node.cached) {
+			return expected;
+		}
+
+		IntervalSet existing = node.expectedTokens.putIfAbsent(stateNumber, expected);
+		return existing != null ? existing : expected;
+	}
+
+	@NotNull
+	private Node getNode(@Nullable RuleContext context) {
+		// collect the invoking states from the innermost invocation outward,
+		// and then follow them from the root of the cache
+		int[] invokingStates = invokingStatesBuffer.get();
+		int depth = 0;
+		for (RuleContext current = context; current != null && current.invokingState >= 0; current = current.parent) {
+			if (depth == invokingStates.length) {
+				invokingStates = Arrays.copyOf(invokingStates, depth * 2);
+				invokingStatesBuffer.set(invokingStates);
+			}
+
+			invokingStates[depth++] = current.invokingState;
+		}
+
+		Node node = root;
+		for (int i = depth - 1; i >= 0; i--) {
+			node = getChild(node, invokingStates[i]);
+		}
+
+		return node;
+	}
+
+	@NotNull
+	private Node getChild(@NotNull Node parent, int invokingState) {
+		Node node = parent.children.get(invokingState);
+		if (node != null) {
+			return node;
+		}
+
+		if (!parent.cached || nodeCount.get() >= MAX_NODES) {
+			return new Node(atn, parent, invokingState, false);
+		}
+
+		node = new Node(atn, parent, invokingState, true);
+		Node existing = parent.children.putIfAbsent(invokingState, node);
+		if (existing != null) {
+			return existing;
+		}
+
+		nodeCount.incrementAndGet();
+		return node;
+	}
+
+	private static final class Node {
+		@Nullable
+		private final Node parent;
+		/**
+		 * The set of tokens which can follow the invoking state of this node
+		 * within the rule containing it. This is {@code null} for the root.
+		 */
+		@Nullable
+		private final IntervalSet follow;
+		/**
+		 * The union of the follow sets of every invoking state in the chain,
+		 * excluding {@link Token#EPSILON}.
+		 */
+		@NotNull
+		private final IntervalSet recoverySet;
+
+		private final ConcurrentMap<Integer, Node> children = new ConcurrentHashMap<Integer, Node>(4);
+		private final ConcurrentMap<Integer, IntervalSet> expectedTokens = new ConcurrentHashMap<Integer, IntervalSet>(4);
+
+		/**
+		 * The tokens which can follow the end of the innermost rule in this
+		 * chain, computed on first use.
+		 */
+		private volatile IntervalSet expectedFollow;
+
+		/**
+		 * {@code true} if this node is stored in the cache; otherwise,
+		 * {@code false} if it was created after the cache reached
+		 * {@link #MAX_NODES}.
+		 */
+		private final boolean cached;
+
+		public Node(@NotNull ATN atn, @Nullable Node parent, int invokingState, boolean cached) {
+			this.parent = parent;
+			this.cached = cached;
+			if (parent == null) {
+				this.follow = null;
+				this.recoverySet = new IntervalSet();
+			}
+			else {
+				ATNState state = atn.states.get(invokingState);
+				RuleTransition rt = (RuleTransition)state.transition(0);
+				this.follow = atn.nextTokens(rt.followState);
+				this.recoverySet = new IntervalSet();
+				this.recoverySet.addAll(parent.recoverySet);
+				this.recoverySet.addAll(follow);
+				this.recoverySet.remove(Token.EPSILON);
+			}
+
+			this.recoverySet.setReadonly(true);
+		}
+
+		@NotNull
+		public IntervalSet getExpectedFollow() {
+			IntervalSet result = expectedFollow;
+			if (result != null) {
+				return result;
+			}
+
+			result = new IntervalSet();
+			if (parent == null) {
+				result.add(Token.EOF);
+			}
+			else {
+				result.addAll(follow);
+				result.remove(Token.EPSILON);
+				if (follow.contains(Token.EPSILON)) {
+					result.addAll(parent.getExpectedFollow());
+				}
+			}
+
+			result.setReadonly(true);
+			expectedFollow = result;
+			return result;
+		}
+	}
+}
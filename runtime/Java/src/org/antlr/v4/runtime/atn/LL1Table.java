@@ -0,0 +1,157 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class caches the alternative predicted by a decision when a single
+ * token of lookahead was enough to make the prediction.
+ *
+ * <p>Each decision has an array of alternatives indexed by token type,
+ * allocated the first time a prediction is stored for the decision. The array
+ * only covers token types up to the largest one stored so far, and grows by
+ * doubling, so decisions which only see low token types stay small in
+ * grammars with a large vocabulary. Lookups do not lock or allocate. The
+ * arrays are published through an {@link AtomicReferenceArray}, but the
+ * entries themselves are written without synchronization. This is safe
+ * because a decision always predicts the same alternative for a given token,
+ * so a reader sees either the stored alternative or a miss.</p>
+ *
+ * @since 4.4.1
+ */
+public class LL1Table {
+	private final int maxTokenType;
+
+	private volatile AtomicReferenceArray<short[]> tables =
+		new AtomicReferenceArray<short[]>(0);
+
+	public LL1Table(int maxTokenType) {
+		this.maxTokenType = maxTokenType;
+	}
+
+	/**
+	 * Gets the alternative predicted by {@code decision} when the next token
+	 * has type {@code tokenType}.
+	 *
+	 * @return The predicted alternative, or {@link ATN#INVALID_ALT_NUMBER} if
+	 * no prediction is stored.
+	 */
+	public int get(int decision, int tokenType) {
+		AtomicReferenceArray<short[]> tables = this.tables;
+		if (decision < 0 || decision >= tables.length()) {
+			return ATN.INVALID_ALT_NUMBER;
+		}
+
+		short[] table = tables.get(decision);
+		if (table == null || tokenType < 0 || tokenType >= table.length) {
+			return ATN.INVALID_ALT_NUMBER;
+		}
+
+		return table[tokenType];
+	}
+
+	/**
+	 * Stores the alternative predicted by {@code decision} when the next token
+	 * has type {@code tokenType}. Predictions for token types outside the
+	 * vocabulary of the ATN, or for alternatives which do not fit in a
+	 * {@code short}, are not stored.
+	 */
+	public void put(int decision, int tokenType, int alt) {
+		if (decision < 0 || tokenType < 0 || tokenType > maxTokenType || alt <= ATN.INVALID_ALT_NUMBER || alt > Short.MAX_VALUE) {
+			return;
+		}
+
+		AtomicReferenceArray<short[]> tables = this.tables;
+		if (decision >= tables.length()) {
+			tables = grow(decision + 1);
+		}
+
+		short[] table = tables.get(decision);
+		if (table == null || tokenType >= table.length) {
+			table = growTable(tables, decision, tokenType);
+		}
+
+		table[tokenType] = (short)alt;
+	}
+
+	/**
+	 * Removes all stored predictions.
+	 */
+	public synchronized void clear() {
+		tables = new AtomicReferenceArray<short[]>(0);
+	}
+
+	/**
+	 * Replaces the table of {@code decision} with a copy large enough to hold
+	 * {@code tokenType}. As with {@link #grow}, a prediction stored
+	 * concurrently in the old table may be lost.
+	 */
+	@NotNull
+	private short[] growTable(@NotNull AtomicReferenceArray<short[]> tables, int decision, int tokenType) {
+		while (true) {
+			short[] table = tables.get(decision);
+			if (table != null && tokenType < table.length) {
+				return table;
+			}
+
+			int length = table != null ? table.length : 0;
+			int newLength = Math.min(maxTokenType + 1, Math.max(tokenType + 1, 2 * length));
+			short[] result = table != null ? Arrays.copyOf(table, newLength) : new short[newLength];
+			if (tables.compareAndSet(decision, table, result)) {
+				return result;
+			}
+		}
+	}
+
+	/**
+	 * Replaces the per-decision array with a larger copy. A prediction stored
+	 * concurrently in the old array may be lost, which only causes a later
+	 * miss.
+	 */
+	private synchronized AtomicReferenceArray<short[]> grow(int minSize) {
+		AtomicReferenceArray<short[]> current = tables;
+		if (current.length() >= minSize) {
+			return current;
+		}
+
+		AtomicReferenceArray<short[]> result = new AtomicReferenceArray<short[]>(Math.max(minSize, current.length() * 2));
+		for (int i = 0; i < current.length(); i++) {
+			result.set(i, current.get(i));
+		}
+
+		tables = result;
+		return result;
+	}
+}
@@ -30,6 +30,7 @@
 
 package org.antlr.v4.runtime.atn;
 
+import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.IntStream;
 import org.antlr.v4.runtime.Lexer;
@@ -41,8 +42,13 @@ import org.antlr.v4.runtime.dfa.DFAState;
 import org.antlr.v4.runtime.misc.Interval;
 import org.antlr.v4.runtime.misc.NotNull;
 import org.antlr.v4.runtime.misc.Nullable;
+import org.antlr.v4.runtime.misc.ParseBudget;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 /** "dup" of ParserInterpreter */
 public class LexerATNSimulator extends ATNSimulator {
@@ -102,6 +108,13 @@ public class LexerATNSimulator extends ATNSimulator {
 
 	protected int mode = Lexer.DEFAULT_MODE;
 
+	/**
+	 * The budget of the lexer for the current call to {@link #match}, or
+	 * {@code null} if the lexer is not limited.
+	 */
+	@Nullable
+	protected ParseBudget budget;
+
 	/** Used during DFA/ATN exec to record the most recent accept configuration info */
 	@NotNull
 	protected final SimState prevAccept = new SimState();
@@ -127,6 +140,11 @@ public class LexerATNSimulator extends ATNSimulator {
 	public int match(@NotNull CharStream input, int mode) {
 		match_calls++;
 		this.mode = mode;
+		this.budget = recog != null ? recog.getParseBudget() : null;
+		if (budget != null) {
+			budget.consumeTransitions(1);
+		}
+
 		int mark = input.mark();
 		try {
 			this.startIndex = input.index();
@@ -140,6 +158,7 @@ public class LexerATNSimulator extends ATNSimulator {
 			}
 		}
         finally {
+			this.budget = null;
 			input.release(mark);
 		}
 	}
@@ -424,6 +443,10 @@ public class LexerATNSimulator extends ATNSimulator {
 			System.out.println("closure("+config.toString(recog, true)+")");
 		}
 
+		if (budget != null) {
+			budget.consumeTransitions(1);
+		}
+
 		if ( config.getState() instanceof RuleStopState ) {
 			if ( debug ) {
 				if ( recog!=null ) {
@@ -552,7 +575,15 @@ public class LexerATNSimulator extends ATNSimulator {
 				// getEpsilonTarget to return two configurations, so
 				// additional modifications are needed before we can support
 				// the split operation.
-				LexerActionExecutor lexerActionExecutor = LexerActionExecutor.append(config.getLexerActionExecutor(), atn.lexerActions[((ActionTransition)t).actionIndex]);
+				int actionIndex = ((ActionTransition)t).actionIndex;
+				LexerActionExecutor lexerActionExecutor = config.getLexerActionExecutor();
+				if (lexerActionExecutor == null) {
+					lexerActionExecutor = atn.getLexerActionExecutor(actionIndex);
+				}
+				else {
+					lexerActionExecutor = LexerActionExecutor.append(lexerActionExecutor, atn.lexerActions[actionIndex]);
+				}
+
 				c = config.transform(t.target, lexerActionExecutor, true);
 				break;
 			}
@@ -716,6 +747,11 @@ public class LexerATNSimulator extends ATNSimulator {
 		if ( firstConfigWithRuleStopState!=null ) {
 			int prediction = atn.ruleToTokenType[firstConfigWithRuleStopState.getState().ruleIndex];
 			LexerActionExecutor lexerActionExecutor = firstConfigWithRuleStopState.getLexerActionExecutor();
+			if (lexerActionExecutor != null) {
+				// share one executor between all accept states with the same actions
+				lexerActionExecutor = atn.getCachedLexerActionExecutor(lexerActionExecutor);
+			}
+
 			newState.setAcceptState(new AcceptStateInfo(prediction, lexerActionExecutor));
 		}
 
@@ -727,6 +763,106 @@ public class LexerATNSimulator extends ATNSimulator {
 		return atn.modeToDFA[mode];
 	}
 
+	/**
+	 * Computes the DFA of every lexer mode ahead of time, so tokens from
+	 * rarely used modes do not fall back to ATN simulation the first time
+	 * they appear in the input. Starting from the start state of each mode,
+	 * this method follows every character in the range of cached DFA edges
+	 * ({@link #MIN_DFA_EDGE} to {@link #MAX_DFA_EDGE}) until tokens of
+	 * {@code maxDepth} characters are covered or no new states are found.
+	 *
+	 * <p>
+	 * The DFA is stored in the {@link ATN}, so the states computed here are
+	 * used by every lexer sharing the ATN with this simulator. Semantic
+	 * predicates are not evaluated; states reached through a predicate are
+	 * left to be computed while lexing, just as they would be without this
+	 * method. This method may be called while other threads use the same
+	 * DFA.</p>
+	 *
+	 * @param maxDepth The maximum number of characters to follow from the
+	 * start state of each mode.
+	 * @return The number of DFA states added by this call.
+	 *
+	 * @since 4.4.1
+	 */
+	public int warmUp(int maxDepth) {
+		if (maxDepth < 0) {
+			throw new IllegalArgumentException("maxDepth must not be negative");
+		}
+
+		LexerATNSimulator simulator = new LexerATNSimulator(atn);
+		int added = 0;
+		for (int i = 0; i < atn.modeToDFA.length; i++) {
+			int initialStates = atn.modeToDFA[i].states.size();
+			simulator.warmUpMode(i, maxDepth);
+			added += atn.modeToDFA[i].states.size() - initialStates;
+		}
+
+		return added;
+	}
+
+	private void warmUpMode(int mode, int maxDepth) {
+		this.mode = mode;
+		this.startIndex = 0;
+
+		// the input only tracks the offset from the start of the token, which
+		// is used by position-dependent lexer actions
+		CharStream input = new ANTLRInputStream(new char[maxDepth], maxDepth);
+
+		DFA dfa = atn.modeToDFA[mode];
+		DFAState s0 = dfa.s0.get();
+		if (s0 == null) {
+			ATNConfigSet s0_closure = computeStartState(input, atn.modeToStartState.get(mode));
+			if (s0_closure.hasSemanticContext()) {
+				return;
+			}
+
+			s0 = addDFAState(s0_closure);
+			if (!dfa.s0.compareAndSet(null, s0)) {
+				s0 = dfa.s0.get();
+			}
+		}
+
+		Set<DFAState> visited = new HashSet<DFAState>();
+		visited.add(s0);
+		List<DFAState> current = new ArrayList<DFAState>();
+		current.add(s0);
+		for (int depth = 0; depth < maxDepth && !current.isEmpty(); depth++) {
+			List<DFAState> next = new ArrayList<DFAState>();
+			for (DFAState s : current) {
+				for (int t = MIN_DFA_EDGE; t <= MAX_DFA_EDGE; t++) {
+					DFAState target = s.getTarget(t);
+					if (target != null) {
+						if (target != ERROR && visited.add(target)) {
+							next.add(target);
+						}
+
+						continue;
+					}
+
+					input.seek(depth);
+					ATNConfigSet reach = new OrderedATNConfigSet();
+					getReachableConfigSet(input, s.configs, reach, t);
+					if (reach.hasSemanticContext()) {
+						continue;
+					}
+
+					if (reach.isEmpty()) {
+						addDFAEdge(s, t, ERROR);
+						continue;
+					}
+
+					target = addDFAEdge(s, t, reach);
+					if (visited.add(target)) {
+						next.add(target);
+					}
+				}
+			}
+
+			current = next;
+		}
+	}
+
 	/** Get the text matched so far for the current token.
 	 */
 	@NotNull
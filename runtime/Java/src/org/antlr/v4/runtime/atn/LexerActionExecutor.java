@@ -52,6 +52,14 @@ import java.util.Arrays;
  * @since 4.2
  */
 public class LexerActionExecutor {
+	/**
+	 * The maximum number of executors cached by {@link #append} and
+	 * {@link #fixOffsetBeforeMatch} for a single executor.
+	 */
+	private static final int MAX_CACHED_EXECUTORS = 16;
+
+	private static final LexerActionExecutor[] EMPTY_CACHE = new LexerActionExecutor[0];
+
 	@NotNull
 	private final LexerAction[] lexerActions;
 	/**
@@ -59,6 +67,30 @@ public class LexerActionExecutor {
 	 * of the performance-critical {@link LexerATNConfig#hashCode} operation.
 	 */
 	private final int hashCode;
+	/**
+	 * {@code true} if {@link #execute} needs to track the input position for
+	 * any of the actions of this executor.
+	 */
+	private final boolean positionDependent;
+	/**
+	 * The index of the first position-dependent action which does not have a
+	 * fixed offset yet, or -1 if there is no such action.
+	 */
+	private final int firstUnfixedIndex;
+
+	/**
+	 * Executors previously returned by {@link #append} for this executor. The
+	 * array is replaced (never modified) when an executor is added, so a lost
+	 * update only costs a later cache miss.
+	 */
+	@NotNull
+	private volatile LexerActionExecutor[] appendCache = EMPTY_CACHE;
+	/**
+	 * Executors previously returned by {@link #fixOffsetBeforeMatch} for this
+	 * executor, updated the same way as {@link #appendCache}.
+	 */
+	@NotNull
+	private volatile LexerActionExecutor[] fixedOffsetCache = EMPTY_CACHE;
 
 	/**
 	 * Constructs an executor for a sequence of {@link LexerAction} actions.
@@ -68,11 +100,22 @@ public class LexerActionExecutor {
 		this.lexerActions = lexerActions;
 
 		int hash = MurmurHash.initialize();
-		for (LexerAction lexerAction : lexerActions) {
+		boolean positionDependent = false;
+		int firstUnfixedIndex = -1;
+		for (int i = 0; i < lexerActions.length; i++) {
+			LexerAction lexerAction = lexerActions[i];
 			hash = MurmurHash.update(hash, lexerAction);
+			if (lexerAction.isPositionDependent()) {
+				positionDependent = true;
+				if (firstUnfixedIndex < 0 && !(lexerAction instanceof LexerIndexedCustomAction)) {
+					firstUnfixedIndex = i;
+				}
+			}
 		}
 
 		this.hashCode = MurmurHash.finish(hash, lexerActions.length);
+		this.positionDependent = positionDependent;
+		this.firstUnfixedIndex = firstUnfixedIndex;
 	}
 
 	/**
@@ -87,6 +130,10 @@ public class LexerActionExecutor {
 	 * @param lexerAction The lexer action to execute after the actions
 	 * specified in {@code lexerActionExecutor}.
 	 *
+	 * <p>The result is cached by {@code lexerActionExecutor}, so appending the
+	 * same action to the same executor again returns the same instance
+	 * without allocating.</p>
+	 *
 	 * @return A {@link LexerActionExecutor} for executing the combine actions
 	 * of {@code lexerActionExecutor} and {@code lexerAction}.
 	 */
@@ -96,9 +143,19 @@ public class LexerActionExecutor {
 			return new LexerActionExecutor(new LexerAction[] { lexerAction });
 		}
 
+		LexerActionExecutor[] cache = lexerActionExecutor.appendCache;
+		for (int i = 0; i < cache.length; i++) {
+			LexerAction[] cachedActions = cache[i].lexerActions;
+			if (cachedActions[cachedActions.length - 1].equals(lexerAction)) {
+				return cache[i];
+			}
+		}
+
 		LexerAction[] lexerActions = Arrays.copyOf(lexerActionExecutor.lexerActions, lexerActionExecutor.lexerActions.length + 1);
 		lexerActions[lexerActions.length - 1] = lexerAction;
-		return new LexerActionExecutor(lexerActions);
+		LexerActionExecutor result = new LexerActionExecutor(lexerActions);
+		lexerActionExecutor.appendCache = addToCache(cache, result);
+		return result;
 	}
 
 	/**
@@ -131,22 +188,38 @@ public class LexerActionExecutor {
 	 * for all position-dependent lexer actions.
 	 */
 	public LexerActionExecutor fixOffsetBeforeMatch(int offset) {
-		LexerAction[] updatedLexerActions = null;
-		for (int i = 0; i < lexerActions.length; i++) {
-			if (lexerActions[i].isPositionDependent() && !(lexerActions[i] instanceof LexerIndexedCustomAction)) {
-				if (updatedLexerActions == null) {
-					updatedLexerActions = lexerActions.clone();
-				}
+		if (firstUnfixedIndex < 0) {
+			return this;
+		}
+
+		LexerActionExecutor[] cache = fixedOffsetCache;
+		for (int i = 0; i < cache.length; i++) {
+			if (((LexerIndexedCustomAction)cache[i].lexerActions[firstUnfixedIndex]).getOffset() == offset) {
+				return cache[i];
+			}
+		}
 
+		LexerAction[] updatedLexerActions = lexerActions.clone();
+		for (int i = firstUnfixedIndex; i < lexerActions.length; i++) {
+			if (lexerActions[i].isPositionDependent() && !(lexerActions[i] instanceof LexerIndexedCustomAction)) {
 				updatedLexerActions[i] = new LexerIndexedCustomAction(offset, lexerActions[i]);
 			}
 		}
 
-		if (updatedLexerActions == null) {
-			return this;
+		LexerActionExecutor result = new LexerActionExecutor(updatedLexerActions);
+		fixedOffsetCache = addToCache(cache, result);
+		return result;
+	}
+
+	@NotNull
+	private static LexerActionExecutor[] addToCache(@NotNull LexerActionExecutor[] cache, @NotNull LexerActionExecutor executor) {
+		if (cache.length >= MAX_CACHED_EXECUTORS) {
+			return cache;
 		}
 
-		return new LexerActionExecutor(updatedLexerActions);
+		LexerActionExecutor[] updated = Arrays.copyOf(cache, cache.length + 1);
+		updated[cache.length] = executor;
+		return updated;
 	}
 
 	/**
@@ -178,6 +251,14 @@ public class LexerActionExecutor {
 	 * of the token.
 	 */
 	public void execute(@NotNull Lexer lexer, CharStream input, int startIndex) {
+		if (!positionDependent) {
+			for (int i = 0; i < lexerActions.length; i++) {
+				lexerActions[i].execute(lexer);
+			}
+
+			return;
+		}
+
 		boolean requiresSeek = false;
 		int stopIndex = input.index();
 		try {
@@ -30,11 +30,15 @@
 
 package org.antlr.v4.runtime.atn;
 
+import org.antlr.v4.runtime.Parser;
 import org.antlr.v4.runtime.dfa.DFA;
 import org.antlr.v4.runtime.misc.NotNull;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Properties;
 
 /**
  * This class provides access to specific and aggregate statistics gathered
@@ -187,4 +191,50 @@ public class ParseInfo {
 		DFA decisionToDFA = atnSimulator.atn.decisionToDFA[decision];
 		return decisionToDFA.states.size();
 	}
+
+	/**
+	 * Writes the aggregate statistics gathered for each decision to a profile
+	 * which can be passed to the ANTLR Tool using the {@code -profile} option.
+	 *
+	 * <p>
+	 * The profile is written in the format used by {@link Properties}. Only
+	 * decisions which were invoked at least once are included. The grammar
+	 * file name and the number of decisions in the ATN are recorded so the
+	 * Tool can ignore profiles which do not match the grammar being
+	 * processed.</p>
+	 *
+	 * @param writer The writer to receive the profile.
+	 * @throws IOException if an I/O error occurs while writing the profile
+	 *
+	 * @since 4.4.1
+	 */
+	public void exportProfile(@NotNull Writer writer) throws IOException {
+		Properties profile = new Properties();
+		Parser parser = atnSimulator.parser;
+		if (parser != null) {
+			profile.setProperty("grammar", parser.getGrammarFileName());
+		}
+
+		DecisionInfo[] decisions = atnSimulator.getDecisionInfo();
+		profile.setProperty("decisions", Integer.toString(decisions.length));
+		for (DecisionInfo info : decisions) {
+			if (info.invocations == 0) {
+				continue;
+			}
+
+			String prefix = "decision." + info.decision + ".";
+			profile.setProperty(prefix + "invocations", Long.toString(info.invocations));
+			profile.setProperty(prefix + "timeInPrediction", Long.toString(info.timeInPrediction));
+			profile.setProperty(prefix + "SLL_TotalLook", Long.toString(info.SLL_TotalLook));
+			profile.setProperty(prefix + "SLL_MaxLook", Long.toString(info.SLL_MaxLook));
+			profile.setProperty(prefix + "SLL_ATNTransitions", Long.toString(info.SLL_ATNTransitions));
+			profile.setProperty(prefix + "LL_Fallback", Long.toString(info.LL_Fallback));
+			profile.setProperty(prefix + "LL_TotalLook", Long.toString(info.LL_TotalLook));
+			profile.setProperty(prefix + "LL_MaxLook", Long.toString(info.LL_MaxLook));
+			profile.setProperty(prefix + "LL_ATNTransitions", Long.toString(info.LL_ATNTransitions));
+		}
+
+		profile.store(writer, "ANTLR decision profile");
+		writer.flush();
+	}
 }
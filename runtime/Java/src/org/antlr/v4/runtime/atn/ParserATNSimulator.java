@@ -48,6 +48,8 @@ import org.antlr.v4.runtime.misc.IntegerList;
 import org.antlr.v4.runtime.misc.Interval;
 import org.antlr.v4.runtime.misc.NotNull;
 import org.antlr.v4.runtime.misc.Nullable;
+import org.antlr.v4.runtime.misc.ParseBudget;
+import org.antlr.v4.runtime.misc.ParseBudgetExceededException;
 import org.antlr.v4.runtime.misc.Tuple;
 import org.antlr.v4.runtime.misc.Tuple2;
 
@@ -62,6 +64,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -314,9 +321,90 @@ public class ParserATNSimulator extends ATNSimulator {
 	 * configuration sets, and prediction contexts.</p>
 	 *
 	 * <p>
+	 * The number of context edges stored for each DFA state is limited by
+	 * {@link #max_context_edges}. When profiling, the effectiveness of the
+	 * cache can be checked with {@link DecisionInfo#contextEdgeHits} and
+	 * {@link DecisionInfo#contextEdgeMisses}.</p>
+	 *
+	 * <p>
 	 * The default value is {@code false}.</p>
 	 */
 	public boolean enable_global_context_dfa = false;
+
+	/**
+	 * The maximum number of context edges stored for a single DFA state when
+	 * {@link #enable_global_context_dfa} is {@code true}. Without a limit, a
+	 * state may get one context edge for every invoking state which reaches
+	 * it. When the limit is reached, an existing edge is evicted to make room
+	 * for the new one. A value less than 1 removes the limit.
+	 *
+	 * <p>
+	 * The default value is {@code 64}.</p>
+	 *
+	 * @since 4.4.1
+	 */
+	public int max_context_edges = 64;
+
+	/**
+	 * When {@code true}, {@link #adaptivePredict} finds an existing DFA start
+	 * state and runs the DFA without calling {@link #getStartState} or
+	 * allocating a {@link SimulatorState}, so a prediction answered entirely
+	 * by the DFA does not allocate. Subclasses which override
+	 * {@link #getStartState} to observe predictions should set this to
+	 * {@code false}.
+	 *
+	 * <p>
+	 * The default value is {@code true}.</p>
+	 *
+	 * @since 4.4.1
+	 */
+	public boolean optimize_dfa_start_state = true;
+
+	/**
+	 * An executor used to compute large full-context reach sets in parallel,
+	 * or {@code null} to compute every reach set on the calling thread. When
+	 * an executor is provided, a full-context reach operation whose
+	 * intermediate set holds at least {@link #parallel_reach_threshold}
+	 * configurations is split by alternative, and the closure of each
+	 * alternative is computed as a separate task. The results are merged in
+	 * order of alternative on the calling thread, so the DFA states created
+	 * for a given input do not depend on the order in which the tasks
+	 * complete. The closure steps of every task count against the
+	 * {@link ParseBudget} of the parser while the tasks run.
+	 *
+	 * <p>
+	 * The executor may be shared by any number of parsers. The default value
+	 * is {@code null}.</p>
+	 *
+	 * @since 4.4.1
+	 */
+	@Nullable
+	public ExecutorService parallel_reach_executor = null;
+
+	/**
+	 * The minimum size of the intermediate configuration set of a
+	 * full-context reach operation which is computed with
+	 * {@link #parallel_reach_executor}. Smaller sets are computed on the
+	 * calling thread, where the cost of handing off the work would exceed the
+	 * time saved.
+	 *
+	 * <p>
+	 * The default value is {@code 256}.</p>
+	 *
+	 * @since 4.4.1
+	 */
+	public int parallel_reach_threshold = 256;
+
+	/**
+	 * Determines whether predictions use the shared
+	 * {@link ATN#getContextCache context cache} of the ATN. When {@code false},
+	 * each prediction uses a new {@link PredictionContextCache} which is
+	 * discarded when the prediction completes.
+	 *
+	 * <p>
+	 * The default value is {@code true}.</p>
+	 */
+	public boolean share_context_cache = true;
 	public boolean optimize_unique_closure = true;
 	public boolean optimize_ll1 = true;
 	/**
@@ -352,6 +440,40 @@ public class ParserATNSimulator extends ATNSimulator {
 
 	private DFA dfa;
 
+	/**
+	 * The remaining outer context of the start state found by the last call
+	 * to {@link #getDFAStartState}.
+	 */
+	private ParserRuleContext startStateRemainingContext;
+
+	/**
+	 * The pending configurations of the closure operation, reused across
+	 * calls. Only the first {@link #closureStackSize} elements are in use.
+	 */
+	private ClosureFrame[] closureStack = new ClosureFrame[16];
+	private int closureStackSize;
+	/** Reused busy set and intermediate sets for {@link #closure(ATNConfigSet, ATNConfigSet, boolean, boolean, PredictionContextCache, boolean)}. */
+	private final Set<ATNConfig> closureBusy = new HashSet<ATNConfig>();
+	private final ATNConfigSet[] closureIntermediate = { new ATNConfigSet(), new ATNConfigSet() };
+	private boolean closureActive;
+	/**
+	 * Counts the closure steps of the current {@link #parallelClosure}
+	 * operation against the budget of the parser which started it, or
+	 * {@code null} if no such operation is in progress or the parser is not
+	 * limited.
+	 */
+	@Nullable
+	private ReachBudget reachBudget;
+	/** The simulators used for the tasks of {@link #parallelClosure}, created on demand. */
+	private ParserATNSimulator[] reachWorkers;
+
+	/**
+	 * The budget of the parser for the current call to
+	 * {@link #adaptivePredict}, or {@code null} if the parser is not limited.
+	 */
+	@Nullable
+	protected ParseBudget budget;
+
 	/** Testing only! */
 	public ParserATNSimulator(@NotNull ATN atn) {
 		this(null, atn);
@@ -389,17 +511,17 @@ public class ParserATNSimulator extends ATNSimulator {
 		DFA dfa = atn.decisionToDFA[decision];
 		assert dfa != null;
 		if (optimize_ll1 && !dfa.isPrecedenceDfa() && !dfa.isEmpty()) {
-			int ll_1 = input.LA(1);
-			if (ll_1 >= 0 && ll_1 <= Short.MAX_VALUE) {
-				int key = (decision << 16) + ll_1;
-				Integer alt = atn.LL1Table.get(key);
-				if (alt != null) {
-					return alt;
-				}
+			int alt = atn.ll1Table.get(decision, input.LA(1));
+			if (alt != ATN.INVALID_ALT_NUMBER) {
+				return alt;
 			}
 		}
 
 		this.dfa = dfa;
+		this.budget = parser != null ? parser.getParseBudget() : null;
+		if (budget != null) {
+			budget.consumeTransitions(1);
+		}
 
 		if (force_global_context) {
 			useContext = true;
@@ -413,12 +535,21 @@ public class ParserATNSimulator extends ATNSimulator {
 			outerContext = ParserRuleContext.emptyContext();
 		}
 
+		DFAState s0 = null;
+		ParserRuleContext remainingOuterContext = null;
+		if (optimize_dfa_start_state && !dfa.isEmpty()) {
+			// locate the start state without allocating a SimulatorState
+			s0 = getDFAStartState(dfa, outerContext, useContext);
+			remainingOuterContext = startStateRemainingContext;
+			startStateRemainingContext = null;
+		}
+
 		SimulatorState state = null;
-		if (!dfa.isEmpty()) {
+		if (!optimize_dfa_start_state && !dfa.isEmpty()) {
 			state = getStartState(dfa, input, outerContext, useContext);
 		}
 
-		if ( state==null ) {
+		if ( s0==null && state==null ) {
 			if ( outerContext==null ) outerContext = ParserRuleContext.emptyContext();
 			if ( debug ) System.out.println("ATN decision "+dfa.decision+
 											" exec LA(1)=="+ getLookaheadName(input) +
@@ -430,12 +561,20 @@ public class ParserATNSimulator extends ATNSimulator {
 		int m = input.mark();
 		int index = input.index();
 		try {
-			int alt = execDFA(dfa, input, index, state);
+			int alt;
+			if (state == null) {
+				alt = execDFA(dfa, input, index, outerContext, s0, useContext, remainingOuterContext);
+			}
+			else {
+				alt = execDFA(dfa, input, index, state);
+			}
+
 			if ( debug ) System.out.println("DFA after predictATN: "+dfa.toString(parser.getVocabulary(), parser.getRuleNames()));
 			return alt;
 		}
 		finally {
 			this.dfa = null;
+			this.budget = null;
 			input.seek(index);
 			input.release(m);
 		}
@@ -446,23 +585,36 @@ public class ParserATNSimulator extends ATNSimulator {
 										@NotNull ParserRuleContext outerContext,
 										boolean useContext) {
 
+		DFAState s0 = getDFAStartState(dfa, outerContext, useContext);
+		ParserRuleContext remainingContext = startStateRemainingContext;
+		startStateRemainingContext = null;
+		if (s0 == null) {
+			return null;
+		}
+
+		return new SimulatorState(outerContext, s0, useContext, remainingContext);
+	}
+
+	/**
+	 * Gets the existing DFA state to start a prediction from, following the
+	 * context edges of the full-context DFA as far as possible. The remaining
+	 * outer context for the returned state is stored in
+	 * {@link #startStateRemainingContext}.
+	 *
+	 * @return The start state, or {@code null} if the start state has not
+	 * been computed yet.
+	 */
+	@Nullable
+	private DFAState getDFAStartState(@NotNull DFA dfa, @NotNull ParserRuleContext outerContext, boolean useContext) {
+		startStateRemainingContext = outerContext;
 		if (!useContext) {
 			if (dfa.isPrecedenceDfa()) {
 				// the start state for a precedence DFA depends on the current
 				// parser precedence, and is provided by a DFA method.
-				DFAState state = dfa.getPrecedenceStartState(parser.getPrecedence(), false);
-				if (state == null) {
-					return null;
-				}
-
-				return new SimulatorState(outerContext, state, false, outerContext);
+				return dfa.getPrecedenceStartState(parser.getPrecedence(), false);
 			}
 			else {
-				if (dfa.s0.get() == null) {
-					return null;
-				}
-
-				return new SimulatorState(outerContext, dfa.s0.get(), false, outerContext);
+				return dfa.s0.get();
 			}
 		}
 
@@ -482,7 +634,7 @@ public class ParserATNSimulator extends ATNSimulator {
 
 		while (remainingContext != null && s0 != null && s0.isContextSensitive()) {
 			remainingContext = skipTailCalls(remainingContext);
-			s0 = s0.getContextTarget(getReturnState(remainingContext));
+			s0 = getContextTarget(dfa, s0, getReturnState(remainingContext));
 			if (remainingContext.isEmpty()) {
 				assert s0 == null || !s0.isContextSensitive();
 			}
@@ -491,40 +643,50 @@ public class ParserATNSimulator extends ATNSimulator {
 			}
 		}
 
-		if (s0 == null) {
-			return null;
-		}
-
-		return new SimulatorState(outerContext, s0, useContext, remainingContext);
+		startStateRemainingContext = remainingContext;
+		return s0;
 	}
 
 	protected int execDFA(@NotNull DFA dfa,
 					   @NotNull TokenStream input, int startIndex,
 					   @NotNull SimulatorState state)
     {
-		ParserRuleContext outerContext = state.outerContext;
+		return execDFA(dfa, input, startIndex, state.outerContext, state.s0, state.useContext, state.remainingOuterContext);
+	}
+
+	/**
+	 * Run a prediction through the DFA starting at {@code s0}. This method
+	 * does not allocate unless it falls back to the ATN, reports a conflict,
+	 * or fails to match the input.
+	 */
+	private int execDFA(@NotNull DFA dfa,
+						@NotNull TokenStream input, int startIndex,
+						@NotNull ParserRuleContext outerContext,
+						@NotNull DFAState s0,
+						boolean useContext,
+						@Nullable ParserRuleContext remainingOuterContext)
+	{
 		if ( dfa_debug ) System.out.println("DFA decision "+dfa.decision+
 											" exec LA(1)=="+ getLookaheadName(input) +
 											", outerContext="+outerContext.toString(parser));
 		if ( dfa_debug ) System.out.print(dfa.toString(parser.getVocabulary(), parser.getRuleNames()));
-		DFAState s = state.s0;
+		DFAState s = s0;
 
 		int t = input.LA(1);
-		ParserRuleContext remainingOuterContext = state.remainingOuterContext;
 
 		while ( true ) {
 			if ( dfa_debug ) System.out.println("DFA state "+s.stateNumber+" LA(1)=="+getLookaheadName(input));
-			if ( state.useContext ) {
+			if ( useContext ) {
 				while ( s.isContextSymbol(t) ) {
 					DFAState next = null;
 					if (remainingOuterContext != null) {
 						remainingOuterContext = skipTailCalls(remainingOuterContext);
-						next = s.getContextTarget(getReturnState(remainingOuterContext));
+						next = getContextTarget(dfa, s, getReturnState(remainingOuterContext));
 					}
 
 					if ( next == null ) {
 						// fail over to ATN
-						SimulatorState initialState = new SimulatorState(state.outerContext, s, state.useContext, remainingOuterContext);
+						SimulatorState initialState = new SimulatorState(outerContext, s, useContext, remainingOuterContext);
 						return execATN(dfa, input, startIndex, initialState);
 					}
 
@@ -534,7 +696,7 @@ public class ParserATNSimulator extends ATNSimulator {
 				}
 			}
 
-			if ( isAcceptState(s, state.useContext) ) {
+			if ( isAcceptState(s, useContext) ) {
 				if ( s.predicates!=null ) {
 					if ( dfa_debug ) System.out.println("accept "+s);
 				}
@@ -550,7 +712,7 @@ public class ParserATNSimulator extends ATNSimulator {
 			}
 
 			// t is not updated if one of these states is reached
-			assert !isAcceptState(s, state.useContext);
+			assert !isAcceptState(s, useContext);
 
 			// if no edge, pop over to ATN interpreter, update DFA and return
 			DFAState target = getExistingTargetState(s, t);
@@ -564,7 +726,7 @@ public class ParserATNSimulator extends ATNSimulator {
 									   " at DFA state "+s.stateNumber);
 				}
 
-				SimulatorState initialState = new SimulatorState(outerContext, s, state.useContext, remainingOuterContext);
+				SimulatorState initialState = new SimulatorState(outerContext, s, useContext, remainingOuterContext);
 				alt = execATN(dfa, input, startIndex, initialState);
 				if ( dfa_debug ) {
 					System.out.println("back from DFA update, alt="+alt+", dfa=\n"+dfa.toString(parser.getVocabulary(), parser.getRuleNames()));
@@ -576,13 +738,16 @@ public class ParserATNSimulator extends ATNSimulator {
 				return alt; // we've updated DFA, exec'd action, and have our deepest answer
 			}
 			else if ( target == ERROR ) {
-				SimulatorState errorState = new SimulatorState(outerContext, s, state.useContext, remainingOuterContext);
+				SimulatorState errorState = new SimulatorState(outerContext, s, useContext, remainingOuterContext);
 				return handleNoViableAlt(input, startIndex, errorState);
 			}
 			s = target;
-			if (!isAcceptState(s, state.useContext) && t != IntStream.EOF) {
+			if (!isAcceptState(s, useContext) && t != IntStream.EOF) {
 				input.consume();
 				t = input.LA(1);
+				if (budget != null) {
+					budget.checkLookahead(input.index() - startIndex + 1);
+				}
 			}
 		}
 //		if ( acceptState==null ) {
@@ -590,7 +755,7 @@ public class ParserATNSimulator extends ATNSimulator {
 //			return -1;
 //		}
 
-		if ( !state.useContext && s.configs.getConflictInfo()!=null ) {
+		if ( !useContext && s.configs.getConflictInfo()!=null ) {
 			if ( dfa.atnStartState instanceof DecisionState ) {
 				if (!userWantsCtxSensitive ||
 					(!s.configs.getDipsIntoOuterContext() && s.configs.isExactConflict()) ||
@@ -602,7 +767,7 @@ public class ParserATNSimulator extends ATNSimulator {
 					//}
 				}
 				else {
-					assert !state.useContext;
+					assert !useContext;
 
 					// Before attempting full context prediction, check to see if there are
 					// disambiguating or validating predicates to evaluate which allow an
@@ -628,7 +793,7 @@ public class ParserATNSimulator extends ATNSimulator {
 					}
 
 					if (reportAmbiguities) {
-						SimulatorState conflictState = new SimulatorState(outerContext, s, state.useContext, remainingOuterContext);
+						SimulatorState conflictState = new SimulatorState(outerContext, s, useContext, remainingOuterContext);
 						reportAttemptingFullContext(dfa, conflictingAlts, conflictState, startIndex, input.index());
 					}
 
@@ -769,7 +934,7 @@ public class ParserATNSimulator extends ATNSimulator {
 
 		SimulatorState previous = initialState;
 
-		PredictionContextCache contextCache = new PredictionContextCache();
+		PredictionContextCache contextCache = getContextCache();
 		while (true) { // while more work
 			SimulatorState nextState = computeReachSet(dfa, previous, t, contextCache);
 			if (nextState == null) {
@@ -795,10 +960,7 @@ public class ParserATNSimulator extends ATNSimulator {
 						&& dfa.decision >= 0
 						&& !D.configs.hasSemanticContext())
 					{
-						if (t >= 0 && t <= Short.MAX_VALUE) {
-							int key = (dfa.decision << 16) + t;
-							atn.LL1Table.put(key, predictedAlt);
-						}
+						atn.ll1Table.put(dfa.decision, t, predictedAlt);
 					}
 
 					if (useContext && always_try_local_context) {
@@ -878,6 +1040,9 @@ public class ParserATNSimulator extends ATNSimulator {
 			if (t != IntStream.EOF) {
 				input.consume();
 				t = input.LA(1);
+				if (budget != null) {
+					budget.checkLookahead(input.index() - startIndex + 1);
+				}
 			}
 		}
 	}
@@ -1009,6 +1174,20 @@ public class ParserATNSimulator extends ATNSimulator {
 		throw noViableAlt(input, previous.outerContext, previous.s0.configs, startIndex);
 	}
 
+	/**
+	 * Gets the {@link PredictionContextCache} used for a single prediction.
+	 *
+	 * @see #share_context_cache
+	 */
+	@NotNull
+	protected PredictionContextCache getContextCache() {
+		if (share_context_cache) {
+			return atn.getContextCache();
+		}
+
+		return new PredictionContextCache();
+	}
+
 	protected SimulatorState computeReachSet(DFA dfa, SimulatorState previous, int t, PredictionContextCache contextCache) {
 		final boolean useContext = previous.useContext;
 		ParserRuleContext remainingGlobalContext = previous.remainingOuterContext;
@@ -1019,7 +1198,7 @@ public class ParserATNSimulator extends ATNSimulator {
 				DFAState next = null;
 				if (remainingGlobalContext != null) {
 					remainingGlobalContext = skipTailCalls(remainingGlobalContext);
-					next = s.getContextTarget(getReturnState(remainingGlobalContext));
+					next = getContextTarget(dfa, s, getReturnState(remainingGlobalContext));
 				}
 
 				if ( next == null ) {
@@ -1158,7 +1337,13 @@ public class ParserATNSimulator extends ATNSimulator {
 			 */
 			final boolean collectPredicates = false;
 			boolean treatEofAsEpsilon = t == Token.EOF;
-			closure(reachIntermediate, reach, collectPredicates, hasMoreContext, contextCache, treatEofAsEpsilon);
+			if (useContext && parallel_reach_executor != null && reachIntermediate.size() >= parallel_reach_threshold) {
+				parallelClosure(parallel_reach_executor, reachIntermediate, reach, hasMoreContext, contextCache, treatEofAsEpsilon);
+			}
+			else {
+				closure(reachIntermediate, reach, collectPredicates, hasMoreContext, contextCache, treatEofAsEpsilon);
+			}
+
 			stepIntoGlobal = reach.getDipsIntoOuterContext();
 
 			if (t == IntStream.EOF) {
@@ -1281,7 +1466,7 @@ public class ParserATNSimulator extends ATNSimulator {
 		int previousContext = 0;
 		ParserRuleContext remainingGlobalContext = globalContext;
 		PredictionContext initialContext = useContext ? PredictionContext.EMPTY_FULL : PredictionContext.EMPTY_LOCAL; // always at least the implicit call to start rule
-		PredictionContextCache contextCache = new PredictionContextCache();
+		PredictionContextCache contextCache = getContextCache();
 		if (useContext) {
 			if (!enable_global_context_dfa) {
 				while (remainingGlobalContext != null) {
@@ -1301,13 +1486,13 @@ public class ParserATNSimulator extends ATNSimulator {
 				DFAState next;
 				remainingGlobalContext = skipTailCalls(remainingGlobalContext);
 				if (remainingGlobalContext.isEmpty()) {
-					next = s0.getContextTarget(PredictionContext.EMPTY_FULL_STATE_KEY);
+					next = getContextTarget(dfa, s0, PredictionContext.EMPTY_FULL_STATE_KEY);
 					previousContext = PredictionContext.EMPTY_FULL_STATE_KEY;
 					remainingGlobalContext = null;
 				}
 				else {
 					previousContext = getReturnState(remainingGlobalContext);
-					next = s0.getContextTarget(previousContext);
+					next = getContextTarget(dfa, s0, previousContext);
 					initialContext = initialContext.appendContext(previousContext, contextCache);
 					remainingGlobalContext = remainingGlobalContext.getParent();
 				}
@@ -1382,7 +1567,7 @@ public class ParserATNSimulator extends ATNSimulator {
 				}
 
 				next = addDFAState(dfa, configs, contextCache);
-				s0.setContextTarget(previousContext, next);
+				setContextTarget(dfa, s0, previousContext, next);
 			}
 
 			s0 = next;
@@ -1703,23 +1888,251 @@ public class ParserATNSimulator extends ATNSimulator {
 						   boolean hasMoreContext,
 						   @Nullable PredictionContextCache contextCache,
 						   boolean treatEofAsEpsilon)
+	{
+		closure(sourceConfigs, configs, collectPredicates, hasMoreContext, contextCache, treatEofAsEpsilon, null);
+	}
+
+	/**
+	 * Compute the closure of {@code sourceConfigs}, recording in
+	 * {@code trace} (if not {@code null}) where the contribution of each
+	 * configuration processed by the operation ends.
+	 */
+	private void closure(ATNConfigSet sourceConfigs,
+						 @NotNull ATNConfigSet configs,
+						 boolean collectPredicates,
+						 boolean hasMoreContext,
+						 @Nullable PredictionContextCache contextCache,
+						 boolean treatEofAsEpsilon,
+						 @Nullable ClosureTrace trace)
 	{
 		if (contextCache == null) {
 			contextCache = PredictionContextCache.UNCACHED;
 		}
 
-		ATNConfigSet currentConfigs = sourceConfigs;
-		Set<ATNConfig> closureBusy = new HashSet<ATNConfig>();
-		while (currentConfigs.size() > 0) {
-			ATNConfigSet intermediate = new ATNConfigSet();
-			for (ATNConfig config : currentConfigs) {
-				closure(config, configs, intermediate, closureBusy, collectPredicates, hasMoreContext, contextCache, 0, treatEofAsEpsilon);
+		// The work sets are reused unless closure is entered again while it
+		// is already running, e.g. from a semantic predicate.
+		boolean reuseWorkSets = !closureActive;
+		Set<ATNConfig> closureBusy = reuseWorkSets ? this.closureBusy : new HashSet<ATNConfig>();
+		closureActive = true;
+		try {
+			ATNConfigSet currentConfigs = sourceConfigs;
+			int nextIntermediate = 0;
+			while (currentConfigs.size() > 0) {
+				ATNConfigSet intermediate;
+				if (reuseWorkSets) {
+					intermediate = closureIntermediate[nextIntermediate];
+					intermediate.clear();
+					nextIntermediate ^= 1;
+				}
+				else {
+					intermediate = new ATNConfigSet();
+				}
+
+				for (ATNConfig config : currentConfigs) {
+					int deferred = intermediate.size();
+					closure(config, configs, intermediate, closureBusy, collectPredicates, hasMoreContext, contextCache, 0, treatEofAsEpsilon);
+					if (trace != null) {
+						trace.configEnds.add(configs.size());
+						trace.deferredCounts.add(intermediate.size() - deferred);
+					}
+				}
+
+				currentConfigs = intermediate;
+			}
+		}
+		finally {
+			if (reuseWorkSets) {
+				closureActive = false;
+				closureBusy.clear();
+				closureIntermediate[0].clear();
+				closureIntermediate[1].clear();
 			}
+		}
+	}
+
+	/**
+	 * Compute the closure of {@code sourceConfigs} in parallel, using one task
+	 * for each alternative represented in the set. Configurations for
+	 * different alternatives never merge and never share an entry in the
+	 * closure busy set, so the closure of each alternative is independent of
+	 * the others. The first alternative is computed on the calling thread.
+	 *
+	 * <p>
+	 * Once every task completes, the results are added to {@code configs} in
+	 * the order a sequential closure would add them. The sequential operation
+	 * handles the configurations deferred by every alternative in one round
+	 * before starting the next, so its result interleaves the alternatives.
+	 * Each task records a {@link ClosureTrace} of its rounds, which is used to
+	 * restore that order. Equal configuration sets must be in the same order
+	 * to find the same DFA state.</p>
+	 *
+	 * <p>
+	 * Predicates are not collected during a reach operation, so the tasks do
+	 * not evaluate semantic predicates or otherwise call into the parser.</p>
+	 */
+	private void parallelClosure(@NotNull ExecutorService executor,
+								 @NotNull ATNConfigSet sourceConfigs,
+								 @NotNull ATNConfigSet configs,
+								 boolean hasMoreContext,
+								 @NotNull PredictionContextCache contextCache,
+								 boolean treatEofAsEpsilon)
+	{
+		final boolean collectPredicates = false;
+		BitSet alts = sourceConfigs.getRepresentedAlternatives();
+		int partitionCount = alts.cardinality();
+		if (partitionCount < 2) {
+			closure(sourceConfigs, configs, collectPredicates, hasMoreContext, contextCache, treatEofAsEpsilon);
+			return;
+		}
+
+		ATNConfigSet[] partitions = new ATNConfigSet[partitionCount];
+		int[] partitionForAlt = new int[alts.length()];
+		for (int alt = alts.nextSetBit(0), i = 0; alt >= 0; alt = alts.nextSetBit(alt + 1), i++) {
+			partitions[i] = new ATNConfigSet();
+			partitionForAlt[alt] = i;
+		}
 
-			currentConfigs = intermediate;
+		for (ATNConfig config : sourceConfigs) {
+			partitions[partitionForAlt[config.getAlt()]].add(config, PredictionContextCache.UNCACHED);
+		}
+
+		// the shared context cache is thread safe; a per-prediction cache is not
+		boolean shareContextCache = contextCache == PredictionContextCache.UNCACHED || contextCache instanceof ConcurrentPredictionContextCache;
+
+		if (reachWorkers == null || reachWorkers.length < partitionCount) {
+			ParserATNSimulator[] workers = new ParserATNSimulator[partitionCount];
+			if (reachWorkers != null) {
+				System.arraycopy(reachWorkers, 0, workers, 0, reachWorkers.length);
+			}
+
+			reachWorkers = workers;
+		}
+
+		ATNConfigSet[] results = new ATNConfigSet[partitionCount];
+		ClosureTrace[] traces = new ClosureTrace[partitionCount];
+		List<Future<ATNConfigSet>> futures = new ArrayList<Future<ATNConfigSet>>(partitionCount - 1);
+		int completed = 0;
+		// every task, including the one on this thread, counts its steps into
+		// the same counter while the operation runs
+		ReachBudget reachBudget = budget != null ? new ReachBudget(budget) : null;
+		this.reachBudget = reachBudget;
+		try {
+			for (int i = 1; i < partitionCount; i++) {
+				ParserATNSimulator worker = reachWorkers[i];
+				if (worker == null) {
+					worker = createReachWorker();
+					reachWorkers[i] = worker;
+				}
+
+				worker.dfa = dfa;
+				worker.budget = null;
+				worker.reachBudget = reachBudget;
+				worker.optimize_tail_calls = optimize_tail_calls;
+				worker.tail_call_preserves_sll = tail_call_preserves_sll;
+
+				PredictionContextCache workerContextCache = shareContextCache ? contextCache : new PredictionContextCache();
+				traces[i] = new ClosureTrace();
+				futures.add(executor.submit(new ReachClosureTask(worker, partitions[i], configs.isOutermostConfigSet(), hasMoreContext, workerContextCache, treatEofAsEpsilon, traces[i])));
+			}
+
+			results[0] = new ATNConfigSet();
+			results[0].setOutermostConfigSet(configs.isOutermostConfigSet());
+			traces[0] = new ClosureTrace();
+			closure(partitions[0], results[0], collectPredicates, hasMoreContext, contextCache, treatEofAsEpsilon, traces[0]);
+
+			for (int i = 1; i < partitionCount; i++) {
+				results[i] = futures.get(i - 1).get();
+				completed++;
+			}
+		}
+		catch (InterruptedException ex) {
+			// finish the operation on this thread, but preserve the request
+			Thread.currentThread().interrupt();
+			closure(sourceConfigs, configs, collectPredicates, hasMoreContext, contextCache, treatEofAsEpsilon);
+			return;
+		}
+		catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+
+			throw new IllegalStateException(cause);
+		}
+		finally {
+			// a task which did not complete may still be using its worker, so
+			// the worker is dropped rather than used by a later operation
+			for (int i = completed; i < futures.size(); i++) {
+				futures.get(i).cancel(true);
+				reachWorkers[i + 1] = null;
+			}
+
+			this.reachBudget = null;
+			if (reachBudget != null) {
+				reachBudget.charge();
+			}
+		}
+
+		for (int i = 1; i < partitionCount; i++) {
+			ParserATNSimulator worker = reachWorkers[i];
+			worker.dfa = null;
+			worker.reachBudget = null;
+		}
+
+		// Replay the rounds of the sequential operation. Each entry of round
+		// is the partition of a configuration processed in that round.
+		IntegerList round = new IntegerList(sourceConfigs.size());
+		for (ATNConfig config : sourceConfigs) {
+			round.add(partitionForAlt[config.getAlt()]);
+		}
+
+		int[] processed = new int[partitionCount];
+		int[] added = new int[partitionCount];
+		while (!round.isEmpty()) {
+			IntegerList nextRound = new IntegerList();
+			for (int i = 0; i < round.size(); i++) {
+				int partition = round.get(i);
+				int index = processed[partition]++;
+				int end = traces[partition].configEnds.get(index);
+				for (; added[partition] < end; added[partition]++) {
+					configs.add(results[partition].get(added[partition]), contextCache);
+				}
+
+				for (int j = traces[partition].deferredCounts.get(index); j > 0; j--) {
+					nextRound.add(partition);
+				}
+			}
+
+			round = nextRound;
 		}
 	}
 
+	/**
+	 * Creates the simulator used by {@link #parallel_reach_executor} to
+	 * compute the closure of one alternative of a reach set. The returned
+	 * simulator is only used for closure operations, and only by one task at
+	 * a time. Subclasses which change how the closure is computed should
+	 * override this method to return an instance of the same type.
+	 *
+	 * @since 4.4.1
+	 */
+	@NotNull
+	protected ParserATNSimulator createReachWorker() {
+		return new ParserATNSimulator(parser, atn);
+	}
+
+	/**
+	 * Compute the closure of a single configuration. The operation is a
+	 * depth-first traversal of the epsilon edges of the ATN. It is performed
+	 * with an explicit stack of {@link ClosureFrame}s which is reused by later
+	 * calls, so deep epsilon chains do not consume Java stack space. The order
+	 * in which configurations are visited and added is the same as a
+	 * recursive traversal.
+	 */
 	protected void closure(@NotNull ATNConfig config,
 						   @NotNull ATNConfigSet configs,
 						   @Nullable ATNConfigSet intermediate,
@@ -1730,129 +2143,215 @@ public class ParserATNSimulator extends ATNSimulator {
 						   int depth,
 						   boolean treatEofAsEpsilon)
 	{
-		if ( debug ) System.out.println("closure("+config.toString(parser,true)+")");
-
-		if ( config.getState() instanceof RuleStopState ) {
-			// We hit rule end. If we have context info, use it
-			if ( !config.getContext().isEmpty() ) {
-				boolean hasEmpty = config.getContext().hasEmpty();
-				int nonEmptySize = config.getContext().size() - (hasEmpty ? 1 : 0);
-				for (int i = 0; i < nonEmptySize; i++) {
-					PredictionContext newContext = config.getContext().getParent(i); // "pop" return state
-					ATNState returnState = atn.states.get(config.getContext().getReturnState(i));
-					ATNConfig c = ATNConfig.create(returnState, config.getAlt(), newContext, config.getSemanticContext());
-					// While we have context to pop back from, we may have
-					// gotten that context AFTER having fallen off a rule.
-					// Make sure we track that we are now out of context.
-					c.setOuterContextDepth(config.getOuterContextDepth());
-					c.setPrecedenceFilterSuppressed(config.isPrecedenceFilterSuppressed());
-					assert depth > Integer.MIN_VALUE;
-					closure(c, configs, intermediate, closureBusy, collectPredicates, hasMoreContexts, contextCache, depth - 1, treatEofAsEpsilon);
-				}
-
-				if (!hasEmpty || !hasMoreContexts) {
-					return;
-				}
+		int base = closureStackSize;
+		pushClosureFrame(config, collectPredicates, depth);
+		try {
+			while (closureStackSize > base) {
+				closureStep(closureStack[closureStackSize - 1], configs, intermediate, closureBusy, hasMoreContexts, contextCache, treatEofAsEpsilon);
+			}
+		}
+		finally {
+			while (closureStackSize > base) {
+				closureStack[--closureStackSize].config = null;
+			}
+		}
+	}
+
+	/**
+	 * Resume the closure operation for {@code frame}, which is the top of the
+	 * closure stack. This method returns after pushing a frame for the next
+	 * configuration to visit, or after popping {@code frame} when its
+	 * configuration is complete.
+	 */
+	private void closureStep(@NotNull ClosureFrame frame,
+							 @NotNull ATNConfigSet configs,
+							 @Nullable ATNConfigSet intermediate,
+							 @NotNull Set<ATNConfig> closureBusy,
+							 boolean hasMoreContexts,
+							 @NotNull PredictionContextCache contextCache,
+							 boolean treatEofAsEpsilon)
+	{
+		ATNConfig config = frame.config;
+		if (frame.phase == ClosureFrame.START) {
+			if ( debug ) System.out.println("closure("+config.toString(parser,true)+")");
 
-				config = config.transform(config.getState(), PredictionContext.EMPTY_LOCAL, false);
+			if (reachBudget != null) {
+				reachBudget.consumeTransition();
 			}
-			else if (!hasMoreContexts) {
-				configs.add(config, contextCache);
-				return;
+			else if (budget != null) {
+				budget.consumeTransitions(1);
 			}
-			else {
-				// else if we have no context info, just chase follow links (if greedy)
-				if ( debug ) System.out.println("FALLING off rule "+
-												getRuleName(config.getState().ruleIndex));
 
-				if (config.getContext() == PredictionContext.EMPTY_FULL) {
-					// no need to keep full context overhead when we step out
-					config = config.transform(config.getState(), PredictionContext.EMPTY_LOCAL, false);
+			frame.phase = ClosureFrame.TRANSITIONS;
+			if ( config.getState() instanceof RuleStopState ) {
+				// We hit rule end. If we have context info, use it
+				if ( !config.getContext().isEmpty() ) {
+					frame.phase = ClosureFrame.RETURN_STATES;
 				}
-				else if (!config.getReachesIntoOuterContext() && PredictionContext.isEmptyLocal(config.getContext())) {
-					// add stop state when leaving decision rule for the first time
+				else if (!hasMoreContexts) {
 					configs.add(config, contextCache);
+					popClosureFrame();
+					return;
+				}
+				else {
+					// else if we have no context info, just chase follow links (if greedy)
+					if ( debug ) System.out.println("FALLING off rule "+
+													getRuleName(config.getState().ruleIndex));
+
+					if (config.getContext() == PredictionContext.EMPTY_FULL) {
+						// no need to keep full context overhead when we step out
+						config = config.transform(config.getState(), PredictionContext.EMPTY_LOCAL, false);
+						frame.config = config;
+					}
+					else if (!config.getReachesIntoOuterContext() && PredictionContext.isEmptyLocal(config.getContext())) {
+						// add stop state when leaving decision rule for the first time
+						configs.add(config, contextCache);
+					}
 				}
 			}
+
+			if (frame.phase == ClosureFrame.TRANSITIONS) {
+				addNonEpsilonConfig(config, configs, contextCache);
+			}
 		}
 
-		ATNState p = config.getState();
-		// optimization
-		if ( !p.onlyHasEpsilonTransitions() ) {
-            configs.add(config, contextCache);
-			// make sure to not return here, because EOF transitions can act as
-			// both epsilon transitions and non-epsilon transitions.
-            if ( debug ) System.out.println("added config "+configs);
-        }
+		if (frame.phase == ClosureFrame.RETURN_STATES) {
+			boolean hasEmpty = config.getContext().hasEmpty();
+			int nonEmptySize = config.getContext().size() - (hasEmpty ? 1 : 0);
+			if (frame.index < nonEmptySize) {
+				int i = frame.index++;
+				PredictionContext newContext = config.getContext().getParent(i); // "pop" return state
+				ATNState returnState = atn.states.get(config.getContext().getReturnState(i));
+				ATNConfig c = ATNConfig.create(returnState, config.getAlt(), newContext, config.getSemanticContext());
+				// While we have context to pop back from, we may have
+				// gotten that context AFTER having fallen off a rule.
+				// Make sure we track that we are now out of context.
+				c.setOuterContextDepth(config.getOuterContextDepth());
+				c.setPrecedenceFilterSuppressed(config.isPrecedenceFilterSuppressed());
+				assert frame.depth > Integer.MIN_VALUE;
+				pushClosureFrame(c, frame.collectPredicates, frame.depth - 1);
+				return;
+			}
 
-        for (int i=0; i<p.getNumberOfOptimizedTransitions(); i++) {
-            Transition t = p.getOptimizedTransition(i);
-            boolean continueCollecting =
-				!(t instanceof ActionTransition) && collectPredicates;
-            ATNConfig c = getEpsilonTarget(config, t, continueCollecting, depth == 0, contextCache, treatEofAsEpsilon);
-			if ( c!=null ) {
-				if (t instanceof RuleTransition) {
-					if (intermediate != null && !collectPredicates) {
-						intermediate.add(c, contextCache);
-						continue;
-					}
-				}
+			if (!hasEmpty || !hasMoreContexts) {
+				popClosureFrame();
+				return;
+			}
 
-				if (!t.isEpsilon() && !closureBusy.add(c)) {
-					// avoid infinite recursion for EOF* and EOF+
+			config = config.transform(config.getState(), PredictionContext.EMPTY_LOCAL, false);
+			frame.config = config;
+			frame.phase = ClosureFrame.TRANSITIONS;
+			frame.index = 0;
+			addNonEpsilonConfig(config, configs, contextCache);
+		}
+
+		ATNState p = config.getState();
+		while (frame.index < p.getNumberOfOptimizedTransitions()) {
+			Transition t = p.getOptimizedTransition(frame.index++);
+			boolean continueCollecting =
+				!(t instanceof ActionTransition) && frame.collectPredicates;
+			ATNConfig c = getEpsilonTarget(config, t, continueCollecting, frame.depth == 0, contextCache, treatEofAsEpsilon);
+			if ( c==null ) {
+				continue;
+			}
+
+			if (t instanceof RuleTransition) {
+				if (intermediate != null && !frame.collectPredicates) {
+					intermediate.add(c, contextCache);
 					continue;
 				}
+			}
 
-				int newDepth = depth;
-				if ( config.getState() instanceof RuleStopState ) {
-					// target fell off end of rule; mark resulting c as having dipped into outer context
-					// We can't get here if incoming config was rule stop and we had context
-					// track how far we dip into outer context.  Might
-					// come in handy and we avoid evaluating context dependent
-					// preds if this is > 0.
+			if (!t.isEpsilon() && !closureBusy.add(c)) {
+				// avoid infinite recursion for EOF* and EOF+
+				continue;
+			}
 
-					if (!closureBusy.add(c)) {
-						// avoid infinite recursion for right-recursive rules
-						continue;
-					}
+			int newDepth = frame.depth;
+			if ( config.getState() instanceof RuleStopState ) {
+				// target fell off end of rule; mark resulting c as having dipped into outer context
+				// We can't get here if incoming config was rule stop and we had context
+				// track how far we dip into outer context.  Might
+				// come in handy and we avoid evaluating context dependent
+				// preds if this is > 0.
 
-					if (dfa != null && dfa.isPrecedenceDfa()) {
-						int outermostPrecedenceReturn = ((EpsilonTransition)t).outermostPrecedenceReturn();
-						if (outermostPrecedenceReturn == dfa.atnStartState.ruleIndex) {
-							c.setPrecedenceFilterSuppressed(true);
-						}
+				if (!closureBusy.add(c)) {
+					// avoid infinite recursion for right-recursive rules
+					continue;
+				}
+
+				if (dfa != null && dfa.isPrecedenceDfa()) {
+					int outermostPrecedenceReturn = ((EpsilonTransition)t).outermostPrecedenceReturn();
+					if (outermostPrecedenceReturn == dfa.atnStartState.ruleIndex) {
+						c.setPrecedenceFilterSuppressed(true);
 					}
+				}
 
-					c.setOuterContextDepth(c.getOuterContextDepth() + 1);
-
-					assert newDepth > Integer.MIN_VALUE;
-					newDepth--;
-					if ( debug ) System.out.println("dips into outer ctx: "+c);
-				}
-				else if (t instanceof RuleTransition) {
-					if (optimize_tail_calls && ((RuleTransition)t).optimizedTailCall && (!tail_call_preserves_sll || !PredictionContext.isEmptyLocal(config.getContext()))) {
-						assert c.getContext() == config.getContext();
-						if (newDepth == 0) {
-							// the pop/push of a tail call would keep the depth
-							// constant, except we latch if it goes negative
-							newDepth--;
-							if (!tail_call_preserves_sll && PredictionContext.isEmptyLocal(config.getContext())) {
-								// make sure the SLL config "dips into the outer context" or prediction may not fall back to LL on conflict
-								c.setOuterContextDepth(c.getOuterContextDepth() + 1);
-							}
+				c.setOuterContextDepth(c.getOuterContextDepth() + 1);
+
+				assert newDepth > Integer.MIN_VALUE;
+				newDepth--;
+				if ( debug ) System.out.println("dips into outer ctx: "+c);
+			}
+			else if (t instanceof RuleTransition) {
+				if (optimize_tail_calls && ((RuleTransition)t).optimizedTailCall && (!tail_call_preserves_sll || !PredictionContext.isEmptyLocal(config.getContext()))) {
+					assert c.getContext() == config.getContext();
+					if (newDepth == 0) {
+						// the pop/push of a tail call would keep the depth
+						// constant, except we latch if it goes negative
+						newDepth--;
+						if (!tail_call_preserves_sll && PredictionContext.isEmptyLocal(config.getContext())) {
+							// make sure the SLL config "dips into the outer context" or prediction may not fall back to LL on conflict
+							c.setOuterContextDepth(c.getOuterContextDepth() + 1);
 						}
 					}
-					else {
-						// latch when newDepth goes negative - once we step out of the entry context we can't return
-						if (newDepth >= 0) {
-							newDepth++;
-						}
+				}
+				else {
+					// latch when newDepth goes negative - once we step out of the entry context we can't return
+					if (newDepth >= 0) {
+						newDepth++;
 					}
 				}
-
-				closure(c, configs, intermediate, closureBusy, continueCollecting, hasMoreContexts, contextCache, newDepth, treatEofAsEpsilon);
 			}
+
+			pushClosureFrame(c, continueCollecting, newDepth);
+			return;
 		}
+
+		popClosureFrame();
+	}
+
+	private void addNonEpsilonConfig(@NotNull ATNConfig config, @NotNull ATNConfigSet configs, @NotNull PredictionContextCache contextCache) {
+		// optimization
+		if ( !config.getState().onlyHasEpsilonTransitions() ) {
+			configs.add(config, contextCache);
+			// make sure to not return here, because EOF transitions can act as
+			// both epsilon transitions and non-epsilon transitions.
+			if ( debug ) System.out.println("added config "+configs);
+		}
+	}
+
+	private void pushClosureFrame(@NotNull ATNConfig config, boolean collectPredicates, int depth) {
+		if (closureStackSize == closureStack.length) {
+			closureStack = Arrays.copyOf(closureStack, closureStack.length * 2);
+		}
+
+		ClosureFrame frame = closureStack[closureStackSize];
+		if (frame == null) {
+			frame = new ClosureFrame();
+			closureStack[closureStackSize] = frame;
+		}
+
+		closureStackSize++;
+		frame.config = config;
+		frame.collectPredicates = collectPredicates;
+		frame.depth = depth;
+		frame.phase = ClosureFrame.START;
+		frame.index = 0;
+	}
+
+	private void popClosureFrame() {
+		closureStack[--closureStackSize].config = null;
 	}
 
 	@NotNull
@@ -2247,6 +2746,31 @@ public class ParserATNSimulator extends ATNSimulator {
 		return false;
 	}
 
+	/**
+	 * Gets the target of a context edge of {@code state} while predicting a
+	 * decision of {@code dfa}. This method is an extension point for
+	 * {@link ProfilingATNSimulator}, which counts the hits and misses.
+	 *
+	 * @since 4.4.1
+	 */
+	@Nullable
+	protected DFAState getContextTarget(@NotNull DFA dfa, @NotNull DFAState state, int invokingState) {
+		return state.getContextTarget(invokingState);
+	}
+
+	/**
+	 * Sets the target of a context edge of {@code state}, evicting another
+	 * context edge if the state already has {@link #max_context_edges} of them.
+	 *
+	 * @return {@code true} if a context edge was evicted; otherwise,
+	 * {@code false}.
+	 *
+	 * @since 4.4.1
+	 */
+	protected boolean setContextTarget(@NotNull DFA dfa, @NotNull DFAState state, int invokingState, @NotNull DFAState target) {
+		return state.setContextTarget(invokingState, target, max_context_edges);
+	}
+
 	@NotNull
 	protected DFAState addDFAEdge(@NotNull DFA dfa,
 								  @NotNull DFAState fromState,
@@ -2278,7 +2802,7 @@ public class ParserATNSimulator extends ATNSimulator {
 
 				next = addDFAContextState(dfa, from.configs, context, contextCache);
 				assert context != PredictionContext.EMPTY_FULL_STATE_KEY || next.configs.isOutermostConfigSet();
-				from.setContextTarget(context, next);
+				setContextTarget(dfa, from, context, next);
 				from = next;
 			}
 		}
@@ -2430,4 +2954,109 @@ public class ParserATNSimulator extends ATNSimulator {
 	public Parser getParser() {
 		return parser;
 	}
+
+	/**
+	 * Computes the closure of one partition of a reach set for
+	 * {@link #parallelClosure}.
+	 */
+	private static final class ReachClosureTask implements Callable<ATNConfigSet> {
+		private final ParserATNSimulator worker;
+		private final ATNConfigSet sourceConfigs;
+		private final boolean outermostConfigSet;
+		private final boolean hasMoreContext;
+		private final PredictionContextCache contextCache;
+		private final boolean treatEofAsEpsilon;
+		private final ClosureTrace trace;
+
+		public ReachClosureTask(ParserATNSimulator worker, ATNConfigSet sourceConfigs, boolean outermostConfigSet, boolean hasMoreContext, PredictionContextCache contextCache, boolean treatEofAsEpsilon, ClosureTrace trace) {
+			this.worker = worker;
+			this.sourceConfigs = sourceConfigs;
+			this.outermostConfigSet = outermostConfigSet;
+			this.hasMoreContext = hasMoreContext;
+			this.contextCache = contextCache;
+			this.treatEofAsEpsilon = treatEofAsEpsilon;
+			this.trace = trace;
+		}
+
+		@Override
+		public ATNConfigSet call() {
+			ATNConfigSet configs = new ATNConfigSet();
+			configs.setOutermostConfigSet(outermostConfigSet);
+			worker.closure(sourceConfigs, configs, false, hasMoreContext, contextCache, treatEofAsEpsilon, trace);
+			return configs;
+		}
+	}
+
+	/**
+	 * Counts the closure steps of the tasks of one parallel closure operation
+	 * against a {@link ParseBudget}. The budget is not thread-safe, so the
+	 * tasks count into a shared counter which is checked against the
+	 * transitions remaining in the budget when the operation started. The
+	 * total is charged to the budget when the operation ends.
+	 */
+	private static final class ReachBudget {
+		@NotNull
+		private final ParseBudget budget;
+		private final long remainingTransitions;
+		private final AtomicLong transitions = new AtomicLong();
+
+		public ReachBudget(@NotNull ParseBudget budget) {
+			this.budget = budget;
+			long maxTransitions = budget.getMaxTransitions();
+			this.remainingTransitions = maxTransitions == ParseBudget.UNLIMITED ? ParseBudget.UNLIMITED : maxTransitions - budget.getTransitions();
+		}
+
+		public void consumeTransition() {
+			long count = transitions.incrementAndGet();
+			if (count > remainingTransitions) {
+				throw new ParseBudgetExceededException(ParseBudgetExceededException.Limit.TRANSITIONS,
+					"parsing exceeded " + budget.getMaxTransitions() + " ATN transitions");
+			}
+
+			if (count % ParseBudget.TIME_CHECK_INTERVAL == 0) {
+				budget.checkDeadline();
+			}
+		}
+
+		public void charge() {
+			long count = transitions.get();
+			while (count > 0) {
+				int chunk = (int)Math.min(count, Integer.MAX_VALUE);
+				budget.consumeTransitions(chunk);
+				count -= chunk;
+			}
+		}
+	}
+
+	/**
+	 * Records the progress of a closure operation on a set of configurations,
+	 * with one entry in each list for every configuration processed, in the
+	 * order they were processed.
+	 */
+	private static final class ClosureTrace {
+		/** The size of the result after the configuration was processed. */
+		final IntegerList configEnds = new IntegerList();
+		/** The number of configurations the configuration deferred to the next round. */
+		final IntegerList deferredCounts = new IntegerList();
+	}
+
+	/**
+	 * A configuration whose closure is in progress, along with the point
+	 * where the operation resumes after the configurations reached from it
+	 * are complete.
+	 */
+	private static final class ClosureFrame {
+		/** The configuration has not been visited yet. */
+		static final int START = 0;
+		/** Following the return states of a rule stop state; {@link #index} is the next return state. */
+		static final int RETURN_STATES = 1;
+		/** Following the transitions of the state; {@link #index} is the next transition. */
+		static final int TRANSITIONS = 2;
+
+		ATNConfig config;
+		boolean collectPredicates;
+		int depth;
+		int phase;
+		int index;
+	}
 }
@@ -256,6 +256,12 @@ public abstract class PredictionContext {
 		return context == EMPTY_LOCAL;
 	}
 
+	/**
+	 * @deprecated Use
+	 * {@link #getCachedContext(PredictionContext, PredictionContextCache, PredictionContext.IdentityHashMap)}
+	 * instead.
+	 */
+	@Deprecated
 	public static PredictionContext getCachedContext(
 		@NotNull PredictionContext context,
 		@NotNull ConcurrentMap<PredictionContext, PredictionContext> contextCache,
@@ -316,6 +322,63 @@ public abstract class PredictionContext {
 		return updated;
 	}
 
+	/**
+	 * Gets the canonical instance of {@code context} from {@code contextCache},
+	 * after first replacing each of its parents with their canonical
+	 * instances.
+	 *
+	 * @param context The context to intern.
+	 * @param contextCache The cache holding canonical contexts.
+	 * @param visited A map used to avoid repeated work for contexts which
+	 * appear more than once in the graph.
+	 * @return The canonical instance of {@code context}.
+	 */
+	public static PredictionContext getCachedContext(
+		@NotNull PredictionContext context,
+		@NotNull PredictionContextCache contextCache,
+		@NotNull PredictionContext.IdentityHashMap visited) {
+		if (context.isEmpty()) {
+			return context;
+		}
+
+		PredictionContext existing = visited.get(context);
+		if (existing != null) {
+			return existing;
+		}
+
+		PredictionContext[] parents = null;
+		for (int i = 0; i < context.size(); i++) {
+			PredictionContext parent = getCachedContext(context.getParent(i), contextCache, visited);
+			if (parents == null && parent != context.getParent(i)) {
+				parents = new PredictionContext[context.size()];
+				for (int j = 0; j < i; j++) {
+					parents[j] = context.getParent(j);
+				}
+			}
+
+			if (parents != null) {
+				parents[i] = parent;
+			}
+		}
+
+		PredictionContext updated;
+		if (parents == null) {
+			updated = context;
+		}
+		else if (parents.length == 1) {
+			updated = new SingletonPredictionContext(parents[0], context.getReturnState(0));
+		}
+		else {
+			ArrayPredictionContext arrayPredictionContext = (ArrayPredictionContext)context;
+			updated = new ArrayPredictionContext(parents, arrayPredictionContext.returnStates, context.cachedHashCode);
+		}
+
+		existing = contextCache.getAsCached(updated);
+		visited.put(updated, existing);
+		visited.put(context, existing);
+		return existing;
+	}
+
 	public PredictionContext appendContext(int returnContext, PredictionContextCache contextCache) {
 		return appendContext(PredictionContext.EMPTY_FULL.getChild(returnContext), contextCache);
 	}
@@ -73,6 +73,8 @@ public class ProfilingATNSimulator extends ParserATNSimulator {
 		super(parser, parser.getInterpreter().atn);
 		optimize_ll1 = false;
 		reportAmbiguities = true;
+		// getStartState is overridden to track the current state
+		optimize_dfa_start_state = false;
 		numDecisions = atn.decisionToState.size();
 		decisions = new DecisionInfo[numDecisions];
 		for (int i=0; i<numDecisions; i++) {
@@ -201,6 +203,29 @@ public class ProfilingATNSimulator extends ParserATNSimulator {
 		return targetState;
 	}
 
+	@Override
+	protected DFAState getContextTarget(DFA dfa, DFAState state, int invokingState) {
+		DFAState target = super.getContextTarget(dfa, state, invokingState);
+		if (target != null) {
+			decisions[currentDecision].contextEdgeHits++;
+		}
+		else {
+			decisions[currentDecision].contextEdgeMisses++;
+		}
+
+		return target;
+	}
+
+	@Override
+	protected boolean setContextTarget(DFA dfa, DFAState state, int invokingState, DFAState target) {
+		boolean evicted = super.setContextTarget(dfa, state, invokingState, target);
+		if (evicted) {
+			decisions[currentDecision].contextEdgeEvictions++;
+		}
+
+		return evicted;
+	}
+
 	@Override
 	protected boolean evalSemanticContext(SemanticContext pred, ParserRuleContext parserCallStack, int alt) {
 		boolean result = super.evalSemanticContext(pred, parserCallStack, alt);
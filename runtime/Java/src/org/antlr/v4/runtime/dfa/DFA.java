@@ -34,10 +34,14 @@ import org.antlr.v4.runtime.Parser;
 import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.Vocabulary;
 import org.antlr.v4.runtime.VocabularyImpl;
+import org.antlr.v4.runtime.atn.ATN;
 import org.antlr.v4.runtime.atn.ATNConfigSet;
 import org.antlr.v4.runtime.atn.ATNState;
 import org.antlr.v4.runtime.atn.ATNType;
 import org.antlr.v4.runtime.atn.LexerATNSimulator;
+import org.antlr.v4.runtime.atn.PrecedencePredicateTransition;
+import org.antlr.v4.runtime.atn.RuleTransition;
+import org.antlr.v4.runtime.atn.Transition;
 import org.antlr.v4.runtime.misc.NotNull;
 import org.antlr.v4.runtime.misc.Nullable;
 
@@ -47,6 +51,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class DFA {
 	/** A set of all DFA states. Use {@link Map} so we can get old state back
@@ -90,6 +95,17 @@ public class DFA {
 	 */
 	private volatile boolean precedenceDfa;
 
+	/**
+	 * The start states of a precedence DFA, indexed by precedence, for SLL and
+	 * full-context predictions. The tables are sized by
+	 * {@link #getMaxPrecedence} when the DFA becomes a precedence DFA, so
+	 * reading a start state does not require a lock or an edge map lookup.
+	 * Start states for precedence values outside the table are only stored
+	 * in the edges of {@link #s0} and {@link #s0full}.
+	 */
+	private volatile AtomicReferenceArray<DFAState> precedenceStartStates;
+	private volatile AtomicReferenceArray<DFAState> fullContextPrecedenceStartStates;
+
 	public DFA(@NotNull ATNState atnStartState) {
 		this(atnStartState, 0);
 	}
@@ -160,6 +176,11 @@ public class DFA {
 			throw new IllegalStateException("Only precedence DFAs may contain a precedence start state.");
 		}
 
+		AtomicReferenceArray<DFAState> startStates = fullContext ? fullContextPrecedenceStartStates : precedenceStartStates;
+		if (startStates != null && precedence >= 0 && precedence < startStates.length()) {
+			return startStates.get(precedence);
+		}
+
 		// s0.get() and s0full.get() are never null for a precedence DFA
 		if (fullContext) {
 			return s0full.get().getTarget(precedence);
@@ -189,6 +210,12 @@ public class DFA {
 			return;
 		}
 
+		AtomicReferenceArray<DFAState> startStates = fullContext ? fullContextPrecedenceStartStates : precedenceStartStates;
+		if (startStates != null && precedence < startStates.length()) {
+			startStates.set(precedence, startState);
+		}
+
+		// the edges of s0 and s0full are still used to enumerate the start states
 		if (fullContext) {
 			synchronized (s0full) {
 				// s0full.get() is never null for a precedence DFA
@@ -214,6 +241,7 @@ public class DFA {
 	 * {@link #s0} is set to {@code null}; otherwise, it is initialized to a new
 	 * {@link DFAState} with an empty outgoing {@link DFAState#edges} array to
 	 * store the start states for individual precedence values.</li>
+	 * <li>The precedence start state tables are allocated or released</li>
 	 * <li>The {@link #precedenceDfa} field is updated</li>
 	 * </ul>
 	 *
@@ -226,16 +254,56 @@ public class DFA {
 			if (precedenceDfa) {
 				this.s0.set(new DFAState(emptyPrecedenceEdges, getEmptyContextEdgeMap(), new ATNConfigSet()));
 				this.s0full.set(new DFAState(emptyPrecedenceEdges, getEmptyContextEdgeMap(), new ATNConfigSet()));
+				int tableSize = getMaxPrecedence() + 1;
+				this.precedenceStartStates = new AtomicReferenceArray<DFAState>(tableSize);
+				this.fullContextPrecedenceStartStates = new AtomicReferenceArray<DFAState>(tableSize);
 			}
 			else {
 				this.s0.set(null);
 				this.s0full.set(null);
+				this.precedenceStartStates = null;
+				this.fullContextPrecedenceStartStates = null;
 			}
 
 			this.precedenceDfa = precedenceDfa;
 		}
 	}
 
+	/**
+	 * Gets the largest precedence value which can be passed to
+	 * {@link #getPrecedenceStartState} for this DFA. This is the largest
+	 * precedence of a rule transition invoking the rule containing this
+	 * decision, or of a precedence predicate within that rule.
+	 *
+	 * @since 4.4.1
+	 */
+	public int getMaxPrecedence() {
+		ATN atn = atnStartState.atn;
+		int ruleIndex = atnStartState.ruleIndex;
+		int maxPrecedence = 0;
+		for (ATNState state : atn.states) {
+			if (state == null) {
+				continue;
+			}
+
+			for (int i = 0; i < state.getNumberOfTransitions(); i++) {
+				Transition transition = state.transition(i);
+				if (transition instanceof RuleTransition) {
+					if (transition.target.ruleIndex == ruleIndex) {
+						maxPrecedence = Math.max(maxPrecedence, ((RuleTransition)transition).precedence);
+					}
+				}
+				else if (transition instanceof PrecedencePredicateTransition) {
+					if (state.ruleIndex == ruleIndex) {
+						maxPrecedence = Math.max(maxPrecedence, ((PrecedencePredicateTransition)transition).precedence);
+					}
+				}
+			}
+		}
+
+		return maxPrecedence;
+	}
+
 	public boolean isEmpty() {
 		if (isPrecedenceDfa()) {
 			return s0.get().getEdgeMap().isEmpty() && s0full.get().getEdgeMap().isEmpty();
@@ -87,9 +87,16 @@ public class DFAState {
 	@NotNull
 	private volatile AbstractEdgeMap<DFAState> contextEdges;
 
-	/** Symbols in this set require a global context transition before matching an input symbol. */
+	/**
+	 * Symbols in this set require a global context transition before matching
+	 * an input symbol. The set is replaced rather than modified when a symbol
+	 * is added, so it can be read without locking.
+	 */
 	@Nullable
-	private BitSet contextSymbols;
+	private volatile BitSet contextSymbols;
+
+	/** Rotates the choice of context edge to evict when {@link #contextEdges} is full. */
+	private int contextEdgeEvictionIndex;
 
 	/**
 	 * This list is computed by {@link ParserATNSimulator#predicateDFAState}.
@@ -127,7 +134,8 @@ public class DFAState {
 	}
 
 	public final boolean isContextSymbol(int symbol) {
-		if (!isContextSensitive() || symbol < edges.minIndex) {
+		BitSet contextSymbols = this.contextSymbols;
+		if (contextSymbols == null || symbol < edges.minIndex) {
 			return false;
 		}
 
@@ -136,11 +144,15 @@ public class DFAState {
 
 	public final void setContextSymbol(int symbol) {
 		assert isContextSensitive();
-		if (symbol < edges.minIndex) {
+		if (symbol < edges.minIndex || isContextSymbol(symbol)) {
 			return;
 		}
 
-		contextSymbols.set(symbol - edges.minIndex);
+		synchronized (this) {
+			BitSet updated = (BitSet)contextSymbols.clone();
+			updated.set(symbol - edges.minIndex);
+			contextSymbols = updated;
+		}
 	}
 
 	public void setContextSensitive(ATN atn) {
@@ -196,15 +208,34 @@ public class DFAState {
 		return edges.toMap();
 	}
 
-	public synchronized DFAState getContextTarget(int invokingState) {
+	public DFAState getContextTarget(int invokingState) {
 		if (invokingState == PredictionContext.EMPTY_FULL_STATE_KEY) {
 			invokingState = -1;
 		}
 
+		// the edge map supports reads without locking
 		return contextEdges.get(invokingState);
 	}
 
-	public synchronized void setContextTarget(int invokingState, DFAState target) {
+	public void setContextTarget(int invokingState, DFAState target) {
+		setContextTarget(invokingState, target, 0);
+	}
+
+	/**
+	 * Sets the target of the context edge for {@code invokingState}. If this
+	 * state already has {@code maxContextEdges} context edges and none of them
+	 * is for {@code invokingState}, another context edge is removed first.
+	 * Removing an edge only means a later prediction through this state has
+	 * to compute it again.
+	 *
+	 * @param maxContextEdges The maximum number of context edges, or a value
+	 * less than 1 if the number of context edges is not limited.
+	 * @return {@code true} if a context edge was evicted; otherwise,
+	 * {@code false}.
+	 *
+	 * @since 4.4.1
+	 */
+	public synchronized boolean setContextTarget(int invokingState, DFAState target, int maxContextEdges) {
 		if (!isContextSensitive()) {
 			throw new IllegalStateException("The state is not context sensitive.");
 		}
@@ -213,7 +244,30 @@ public class DFAState {
 			invokingState = -1;
 		}
 
+		boolean evicted = false;
+		if (maxContextEdges > 0 && contextEdges.size() >= maxContextEdges && !contextEdges.containsKey(invokingState)) {
+			// evict the edges in rotation, so recently added edges are not the
+			// only ones to be replaced
+			Integer[] keys = contextEdges.toMap().keySet().toArray(new Integer[0]);
+			int index = contextEdgeEvictionIndex % keys.length;
+			int victim = keys[index];
+			// wrap explicitly so the index never overflows
+			contextEdgeEvictionIndex = (index + 1) % keys.length;
+			contextEdges = contextEdges.remove(victim);
+			evicted = true;
+		}
+
 		contextEdges = contextEdges.put(invokingState, target);
+		return evicted;
+	}
+
+	/**
+	 * Gets the number of context edges leaving this state.
+	 *
+	 * @since 4.4.1
+	 */
+	public int getContextEdgeCount() {
+		return contextEdges.size();
 	}
 
 	public Map<Integer, DFAState> getContextEdgeMap() {
@@ -0,0 +1,632 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.runtime.misc;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.dfa.DFA;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Measure lexer and parser throughput for a generated grammar over a corpus
+ *  of input files.
+ *
+ *  $ java org.antlr.v4.runtime.misc.BenchmarkRig GrammarName startRuleName
+ *        corpus-dir-or-file(s)
+ *        [-ext .java] [-encoding encodingname]
+ *        [-threads N] [-warmup N] [-passes N]
+ *        [-SLL | -LL | -two-stage]
+ *        [-no-tree] [-clear-dfa] [-no-ll1]
+ *
+ *  <p>The corpus is read into memory once before the first pass, so the
+ *  reported times only include lexing and parsing. Each pass parses every
+ *  file once, distributing the files across the requested number of threads.
+ *  Warm-up passes are run but not reported. For each measured pass the rig
+ *  reports tokens/sec, files/sec, per-file latency percentiles, the number of
+ *  DFA states in the shared lexer and parser ATNs, garbage collections, and
+ *  (when the JVM supports per-thread allocation counters) the number of bytes
+ *  allocated per token.</p>
+ *
+ *  <p>Use -no-ll1 to disable {@link ParserATNSimulator#optimize_ll1}, which
+ *  shows the effect of the cached LL(1) predictions on parser throughput.</p>
+ *
+ *  <p>Use startRuleName='tokens' to benchmark only the lexer.</p>
+ *
+ *  @since 4.4.1
+ */
+public class BenchmarkRig {
+	public enum ParseMode {
+		/** Parse using {@link PredictionMode#SLL} only. */
+		SLL,
+		/** Parse using {@link PredictionMode#LL} only. */
+		LL,
+		/**
+		 * Parse using {@link PredictionMode#SLL} with a
+		 * {@link BailErrorStrategy}, and repeat the parse with
+		 * {@link PredictionMode#LL} if the first stage fails.
+		 */
+		TWO_STAGE,
+	}
+
+	protected String grammarName;
+	protected String startRuleName;
+	protected final List<String> inputPaths = new ArrayList<String>();
+	protected String extension = null;
+	protected String encoding = null;
+	protected int threads = 1;
+	protected int warmupPasses = 1;
+	protected int passes = 3;
+	protected ParseMode mode = ParseMode.TWO_STAGE;
+	protected boolean buildParseTree = true;
+	protected boolean clearDFA = false;
+	protected boolean optimizeLL1 = true;
+
+	private boolean valid;
+
+	private Class<? extends Lexer> lexerClass;
+	private Class<? extends Parser> parserClass;
+	private Method startRule;
+	private ATN lexerATN;
+	private ATN parserATN;
+
+	public BenchmarkRig(String[] args) throws Exception {
+		if ( args.length < 3 ) {
+			System.err.println("java org.antlr.v4.runtime.misc.BenchmarkRig GrammarName startRuleName\n" +
+							   "  corpus-dir-or-file(s) [-ext .java] [-encoding encodingname]\n" +
+							   "  [-threads N] [-warmup N] [-passes N]\n" +
+							   "  [-SLL | -LL | -two-stage] [-no-tree] [-clear-dfa] [-no-ll1]");
+			System.err.println("Use startRuleName='tokens' if GrammarName is a lexer grammar.");
+			return;
+		}
+		int i=0;
+		grammarName = args[i];
+		i++;
+		startRuleName = args[i];
+		i++;
+		while ( i<args.length ) {
+			String arg = args[i];
+			i++;
+			if ( arg.charAt(0)!='-' ) { // corpus directory or file
+				inputPaths.add(arg);
+				continue;
+			}
+			if ( arg.equals("-SLL") ) {
+				mode = ParseMode.SLL;
+			}
+			else if ( arg.equals("-LL") ) {
+				mode = ParseMode.LL;
+			}
+			else if ( arg.equals("-two-stage") ) {
+				mode = ParseMode.TWO_STAGE;
+			}
+			else if ( arg.equals("-no-tree") ) {
+				buildParseTree = false;
+			}
+			else if ( arg.equals("-clear-dfa") ) {
+				clearDFA = true;
+			}
+			else if ( arg.equals("-no-ll1") ) {
+				optimizeLL1 = false;
+			}
+			else if ( arg.equals("-ext") || arg.equals("-encoding") ||
+					  arg.equals("-threads") || arg.equals("-warmup") || arg.equals("-passes") )
+			{
+				if ( i>=args.length ) {
+					System.err.println("missing value on "+arg);
+					return;
+				}
+				String value = args[i];
+				i++;
+				if ( arg.equals("-ext") ) {
+					extension = value;
+				}
+				else if ( arg.equals("-encoding") ) {
+					encoding = value;
+				}
+				else if ( arg.equals("-threads") ) {
+					threads = Math.max(1, Integer.parseInt(value));
+				}
+				else if ( arg.equals("-warmup") ) {
+					warmupPasses = Math.max(0, Integer.parseInt(value));
+				}
+				else {
+					passes = Math.max(1, Integer.parseInt(value));
+				}
+			}
+			else {
+				System.err.println("unknown option "+arg);
+				return;
+			}
+		}
+
+		if ( inputPaths.isEmpty() ) {
+			System.err.println("missing corpus directory or input file(s)");
+			return;
+		}
+
+		valid = true;
+	}
+
+	public static void main(String[] args) throws Exception {
+		BenchmarkRig rig = new BenchmarkRig(args);
+		if ( rig.valid ) {
+			rig.process();
+		}
+	}
+
+	public void process() throws Exception {
+		if ( !loadRecognizers() ) {
+			return;
+		}
+
+		List<InputFile> corpus = loadCorpus();
+		if ( corpus.isEmpty() ) {
+			System.err.println("No input files found");
+			return;
+		}
+
+		long corpusChars = 0;
+		for (InputFile file : corpus) {
+			corpusChars += file.length;
+		}
+
+		System.out.format("Grammar=%s, Start=%s, Mode=%s, Threads=%d, Files=%d, Chars=%d, Tree=%s, LL1=%s%n",
+						  grammarName, startRuleName, isLexerOnly() ? "lexer" : mode, threads,
+						  corpus.size(), corpusChars, buildParseTree, optimizeLL1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (int pass = 0; pass < warmupPasses + passes; pass++) {
+				boolean warmup = pass < warmupPasses;
+				PassResult result = runPass(executor, corpus);
+				if ( !warmup ) {
+					report(pass - warmupPasses + 1, result);
+				}
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	protected boolean isLexerOnly() {
+		return startRuleName.equals(TestRig.LEXER_START_RULE_NAME);
+	}
+
+	private boolean loadRecognizers() throws Exception {
+		String lexerName = grammarName+"Lexer";
+		ClassLoader cl = Thread.currentThread().getContextClassLoader();
+		try {
+			lexerClass = cl.loadClass(lexerName).asSubclass(Lexer.class);
+		}
+		catch (ClassNotFoundException cnfe) {
+			// might be pure lexer grammar; no Lexer suffix then
+			lexerName = grammarName;
+			try {
+				lexerClass = cl.loadClass(lexerName).asSubclass(Lexer.class);
+			}
+			catch (ClassNotFoundException cnfe2) {
+				System.err.println("Can't load "+lexerName+" as lexer or parser");
+				return false;
+			}
+		}
+
+		// generated recognizers share one ATN (and its DFA cache) across all instances
+		lexerATN = lexerClass.getConstructor(CharStream.class).newInstance((CharStream)null).getATN();
+
+		if ( !isLexerOnly() ) {
+			String parserName = grammarName+"Parser";
+			parserClass = cl.loadClass(parserName).asSubclass(Parser.class);
+			try {
+				startRule = parserClass.getMethod(startRuleName);
+			}
+			catch (NoSuchMethodException nsme) {
+				System.err.println("No method for rule "+startRuleName+" or it has arguments");
+				return false;
+			}
+
+			parserATN = parserClass.getConstructor(TokenStream.class).newInstance((TokenStream)null).getATN();
+		}
+
+		return true;
+	}
+
+	private List<InputFile> loadCorpus() throws IOException {
+		List<File> files = new ArrayList<File>();
+		for (String path : inputPaths) {
+			collectFiles(new File(path), files);
+		}
+
+		List<InputFile> corpus = new ArrayList<InputFile>(files.size());
+		for (File file : files) {
+			Reader r;
+			if ( encoding!=null ) {
+				r = new InputStreamReader(new FileInputStream(file), encoding);
+			}
+			else {
+				r = new InputStreamReader(new FileInputStream(file));
+			}
+
+			try {
+				ANTLRInputStream input = new ANTLRInputStream(r);
+				corpus.add(new InputFile(file.getPath(), input.getText(Interval.of(0, input.size() - 1)).toCharArray()));
+			}
+			finally {
+				r.close();
+			}
+		}
+
+		return corpus;
+	}
+
+	private void collectFiles(File file, List<File> files) {
+		if ( file.isDirectory() ) {
+			File[] children = file.listFiles();
+			if ( children == null ) {
+				return;
+			}
+
+			Arrays.sort(children);
+			for (File child : children) {
+				collectFiles(child, files);
+			}
+		}
+		else if ( file.isFile() && (extension == null || file.getName().endsWith(extension)) ) {
+			files.add(file);
+		}
+	}
+
+	protected PassResult runPass(ExecutorService executor, List<InputFile> corpus) throws InterruptedException, ExecutionException {
+		if ( clearDFA ) {
+			clearDFA();
+		}
+
+		List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+		long gcCount = getCollectionCount(gcBeans);
+		long gcTime = getCollectionTime(gcBeans);
+
+		final ThreadLocal<Worker> workers = new ThreadLocal<Worker>();
+		List<Future<FileResult>> futures = new ArrayList<Future<FileResult>>(corpus.size());
+		long startTime = System.nanoTime();
+		for (final InputFile file : corpus) {
+			futures.add(executor.submit(new Callable<FileResult>() {
+				@Override
+				public FileResult call() throws Exception {
+					Worker worker = workers.get();
+					if ( worker == null ) {
+						worker = new Worker();
+						workers.set(worker);
+					}
+
+					return worker.parse(file);
+				}
+			}));
+		}
+
+		PassResult result = new PassResult(corpus.size());
+		for (Future<FileResult> future : futures) {
+			result.add(future.get());
+		}
+
+		result.elapsedNanos = System.nanoTime() - startTime;
+		result.gcCount = getCollectionCount(gcBeans) - gcCount;
+		result.gcTimeMillis = getCollectionTime(gcBeans) - gcTime;
+		return result;
+	}
+
+	protected void report(int pass, PassResult result) {
+		double seconds = result.elapsedNanos / 1e9;
+		long[] latencies = Arrays.copyOf(result.latencies, result.files);
+		Arrays.sort(latencies);
+
+		System.out.format("Pass %d: %d files, %d tokens in %.3fs (%.0f tokens/s, %.1f files/s)%n",
+						  pass, result.files, result.tokens, seconds,
+						  result.tokens / seconds, result.files / seconds);
+		System.out.format("  latency ms: p50=%.3f p90=%.3f p99=%.3f max=%.3f%n",
+						  percentile(latencies, 50) / 1e6, percentile(latencies, 90) / 1e6,
+						  percentile(latencies, 99) / 1e6, latencies[latencies.length - 1] / 1e6);
+		if ( !isLexerOnly() ) {
+			System.out.format("  syntax errors: %d files, second stage: %d files%n",
+							  result.filesWithErrors, result.secondStageFiles);
+		}
+
+		System.out.format("  DFA states: lexer=%d, parser=%d%n",
+						  getLexerDFAStateCount(), getParserDFAStateCount());
+		System.out.format("  GC: %d collections, %d ms", result.gcCount, result.gcTimeMillis);
+		if ( result.allocatedBytes >= 0 && result.tokens > 0 ) {
+			System.out.format(", %.1f bytes allocated/token", (double)result.allocatedBytes / result.tokens);
+		}
+
+		System.out.println();
+	}
+
+	protected int getLexerDFAStateCount() {
+		return getStateCount(lexerATN.modeToDFA);
+	}
+
+	protected int getParserDFAStateCount() {
+		return parserATN != null ? getStateCount(parserATN.decisionToDFA) : 0;
+	}
+
+	protected void clearDFA() {
+		lexerATN.clearDFA();
+		if ( parserATN != null ) {
+			parserATN.clearDFA();
+		}
+	}
+
+	private static int getStateCount(DFA[] dfas) {
+		int count = 0;
+		for (DFA dfa : dfas) {
+			if ( dfa != null ) {
+				count += dfa.states.size();
+			}
+		}
+
+		return count;
+	}
+
+	private static long percentile(long[] sorted, int percentile) {
+		int index = (int)Math.ceil(percentile / 100.0 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+
+	private static long getCollectionCount(List<GarbageCollectorMXBean> beans) {
+		long count = 0;
+		for (GarbageCollectorMXBean bean : beans) {
+			count += Math.max(0, bean.getCollectionCount());
+		}
+
+		return count;
+	}
+
+	private static long getCollectionTime(List<GarbageCollectorMXBean> beans) {
+		long time = 0;
+		for (GarbageCollectorMXBean bean : beans) {
+			time += Math.max(0, bean.getCollectionTime());
+		}
+
+		return time;
+	}
+
+	/**
+	 * Gets the number of bytes allocated by the current thread, or -1 if the
+	 * JVM does not support per-thread allocation counters. The counters are
+	 * exposed by {@code com.sun.management.ThreadMXBean}, which is accessed
+	 * reflectively to avoid a compile-time dependency on it.
+	 */
+	private static long getCurrentThreadAllocatedBytes() {
+		Method method = AllocationCounter.GET_THREAD_ALLOCATED_BYTES;
+		if ( method == null ) {
+			return -1;
+		}
+
+		try {
+			Object result = method.invoke(AllocationCounter.THREAD_BEAN, Thread.currentThread().getId());
+			return result instanceof Long ? (Long)result : -1;
+		}
+		catch (IllegalAccessException ex) {
+			return -1;
+		}
+		catch (InvocationTargetException ex) {
+			return -1;
+		}
+	}
+
+	private static final class AllocationCounter {
+		static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+		static final Method GET_THREAD_ALLOCATED_BYTES = findMethod();
+
+		private static Method findMethod() {
+			try {
+				Class<?> beanType = Class.forName("com.sun.management.ThreadMXBean");
+				if ( !beanType.isInstance(THREAD_BEAN) ) {
+					return null;
+				}
+
+				return beanType.getMethod("getThreadAllocatedBytes", long.class);
+			}
+			catch (ClassNotFoundException ex) {
+				return null;
+			}
+			catch (NoSuchMethodException ex) {
+				return null;
+			}
+			catch (SecurityException ex) {
+				return null;
+			}
+		}
+	}
+
+	/** Holds the lexer and parser instances reused by one benchmark thread. */
+	protected class Worker {
+		protected final Lexer lexer;
+		protected final Parser parser;
+
+		public Worker() throws Exception {
+			Constructor<? extends Lexer> lexerCtor = lexerClass.getConstructor(CharStream.class);
+			lexer = lexerCtor.newInstance((CharStream)null);
+			lexer.removeErrorListeners();
+
+			if ( parserClass != null ) {
+				Constructor<? extends Parser> parserCtor = parserClass.getConstructor(TokenStream.class);
+				parser = parserCtor.newInstance((TokenStream)null);
+				parser.removeErrorListeners();
+				parser.getInterpreter().optimize_ll1 = optimizeLL1;
+			}
+			else {
+				parser = null;
+			}
+		}
+
+		public FileResult parse(InputFile file) throws Exception {
+			long allocatedBefore = getCurrentThreadAllocatedBytes();
+			long startTime = System.nanoTime();
+
+			ANTLRInputStream input = new ANTLRInputStream(file.data, file.length);
+			input.name = file.name;
+			lexer.setInputStream(input);
+			CommonTokenStream tokens = new CommonTokenStream(lexer);
+			tokens.fill();
+
+			boolean syntaxErrors = false;
+			boolean secondStage = false;
+			if ( parser != null ) {
+				ParserATNSimulator interpreter = parser.getInterpreter();
+				parser.setBuildParseTree(buildParseTree);
+				parser.setInputStream(tokens);
+				if ( mode == ParseMode.TWO_STAGE ) {
+					interpreter.setPredictionMode(PredictionMode.SLL);
+					parser.setErrorHandler(new BailErrorStrategy());
+					try {
+						startRule.invoke(parser);
+					}
+					catch (InvocationTargetException ex) {
+						if ( !(ex.getCause() instanceof ParseCancellationException) ) {
+							throw ex;
+						}
+
+						secondStage = true;
+						tokens.reset();
+						parser.setInputStream(tokens);
+						interpreter.setPredictionMode(PredictionMode.LL);
+						parser.setErrorHandler(new DefaultErrorStrategy());
+						startRule.invoke(parser);
+					}
+				}
+				else {
+					interpreter.setPredictionMode(mode == ParseMode.SLL ? PredictionMode.SLL : PredictionMode.LL);
+					parser.setErrorHandler(new DefaultErrorStrategy());
+					startRule.invoke(parser);
+				}
+
+				syntaxErrors = parser.getNumberOfSyntaxErrors() > 0;
+				parser.setInputStream(null);
+			}
+
+			long latency = System.nanoTime() - startTime;
+			long allocatedAfter = getCurrentThreadAllocatedBytes();
+			long allocated = allocatedBefore >= 0 && allocatedAfter >= 0 ? allocatedAfter - allocatedBefore : -1;
+			return new FileResult(tokens.size(), latency, allocated, syntaxErrors, secondStage);
+		}
+	}
+
+	protected static class InputFile {
+		public final String name;
+		public final char[] data;
+		public final int length;
+
+		public InputFile(String name, char[] data) {
+			this.name = name;
+			this.data = data;
+			this.length = data.length;
+		}
+	}
+
+	protected static class FileResult {
+		public final int tokens;
+		public final long latencyNanos;
+		public final long allocatedBytes;
+		public final boolean syntaxErrors;
+		public final boolean secondStage;
+
+		public FileResult(int tokens, long latencyNanos, long allocatedBytes, boolean syntaxErrors, boolean secondStage) {
+			this.tokens = tokens;
+			this.latencyNanos = latencyNanos;
+			this.allocatedBytes = allocatedBytes;
+			this.syntaxErrors = syntaxErrors;
+			this.secondStage = secondStage;
+		}
+	}
+
+	protected static class PassResult {
+		public final long[] latencies;
+		public int files;
+		public long tokens;
+		public int filesWithErrors;
+		public int secondStageFiles;
+		/** The total bytes allocated while parsing, or -1 if unknown. */
+		public long allocatedBytes;
+		public long elapsedNanos;
+		public long gcCount;
+		public long gcTimeMillis;
+
+		public PassResult(int capacity) {
+			latencies = new long[capacity];
+		}
+
+		public void add(FileResult result) {
+			latencies[files++] = result.latencyNanos;
+			tokens += result.tokens;
+			if ( result.syntaxErrors ) {
+				filesWithErrors++;
+			}
+
+			if ( result.secondStage ) {
+				secondStageFiles++;
+			}
+
+			if ( result.allocatedBytes < 0 || allocatedBytes < 0 ) {
+				allocatedBytes = -1;
+			}
+			else {
+				allocatedBytes += result.allocatedBytes;
+			}
+		}
+	}
+}
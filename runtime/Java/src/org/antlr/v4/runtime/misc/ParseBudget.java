@@ -0,0 +1,201 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.runtime.misc;
+
+import org.antlr.v4.runtime.Recognizer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the resources a recognizer may spend on a single input. A budget
+ * bounds the elapsed wall time, the number of ATN transitions followed during
+ * adaptive prediction and lexing, and the number of lookahead symbols examined
+ * by a single prediction. When any limit is exceeded, the recognizer throws a
+ * {@link ParseBudgetExceededException}.
+ *
+ * <p>The checks performed by the ATN simulators are cooperative and designed to
+ * be cheap: transitions are counted with a simple increment, and the system
+ * clock is only consulted every {@link #TIME_CHECK_INTERVAL} transitions.
+ * Elapsed time is measured from the creation of the budget or the most recent
+ * call to {@link #reset}.</p>
+ *
+ * <p>A budget may be assigned to a lexer and the parser consuming its tokens
+ * (see {@link Recognizer#setParseBudget}), in which case both count against
+ * the same limits. Instances of this class are not thread-safe, so a budget
+ * should only be shared by recognizers running on the same thread.</p>
+ *
+ * @since 4.4.1
+ */
+public class ParseBudget {
+	/**
+	 * The value used for limits which should not be enforced.
+	 */
+	public static final long UNLIMITED = Long.MAX_VALUE;
+
+	/**
+	 * The number of transitions between successive checks of the system clock.
+	 */
+	public static final int TIME_CHECK_INTERVAL = 1024;
+
+	private final long maxTimeNanos;
+	private final long maxTransitions;
+	private final long maxLookahead;
+
+	private long startTime;
+	private long transitions;
+	private long nextCheck;
+
+	/**
+	 * Constructs a new budget.
+	 *
+	 * @param maxTime The maximum elapsed time, or {@link #UNLIMITED}.
+	 * @param unit The unit of {@code maxTime}.
+	 * @param maxTransitions The maximum number of ATN transitions, or
+	 * {@link #UNLIMITED}.
+	 * @param maxLookahead The maximum number of symbols examined by a single
+	 * prediction, or {@link #UNLIMITED}.
+	 */
+	public ParseBudget(long maxTime, @NotNull TimeUnit unit, long maxTransitions, long maxLookahead) {
+		if (maxTime < 0 || maxTransitions < 0 || maxLookahead < 0) {
+			throw new IllegalArgumentException("Budget limits must not be negative.");
+		}
+
+		this.maxTimeNanos = maxTime == UNLIMITED ? UNLIMITED : unit.toNanos(maxTime);
+		this.maxTransitions = maxTransitions;
+		this.maxLookahead = maxLookahead;
+		reset();
+	}
+
+	/**
+	 * Constructs a budget which only limits the elapsed time.
+	 */
+	public ParseBudget(long maxTime, @NotNull TimeUnit unit) {
+		this(maxTime, unit, UNLIMITED, UNLIMITED);
+	}
+
+	public final long getMaxTimeNanos() {
+		return maxTimeNanos;
+	}
+
+	public final long getMaxTransitions() {
+		return maxTransitions;
+	}
+
+	public final long getMaxLookahead() {
+		return maxLookahead;
+	}
+
+	/**
+	 * Gets the number of ATN transitions counted against this budget since it
+	 * was created or last reset.
+	 */
+	public final long getTransitions() {
+		return transitions;
+	}
+
+	/**
+	 * Gets the time elapsed since this budget was created or last reset.
+	 */
+	public final long getElapsedNanos() {
+		return System.nanoTime() - startTime;
+	}
+
+	/**
+	 * Restarts the clock and clears the transition count, allowing the budget
+	 * to be reused for another input.
+	 */
+	public void reset() {
+		startTime = System.nanoTime();
+		transitions = 0;
+		nextCheck = getNextCheck(0);
+	}
+
+	/**
+	 * Counts {@code count} transitions against this budget.
+	 *
+	 * @exception ParseBudgetExceededException if the transition limit is
+	 * exceeded, or if the clock was checked and the time limit is exceeded
+	 */
+	public final void consumeTransitions(int count) {
+		transitions += count;
+		if (transitions >= nextCheck) {
+			check();
+		}
+	}
+
+	/**
+	 * Verifies that a prediction examining {@code depth} symbols of lookahead
+	 * is within this budget.
+	 *
+	 * @exception ParseBudgetExceededException if the lookahead limit is
+	 * exceeded
+	 */
+	public final void checkLookahead(int depth) {
+		if (depth > maxLookahead) {
+			throw new ParseBudgetExceededException(ParseBudgetExceededException.Limit.LOOKAHEAD,
+				"prediction exceeded " + maxLookahead + " lookahead symbols");
+		}
+	}
+
+	/**
+	 * Verifies that the time limit of this budget has not been exceeded,
+	 * regardless of the number of transitions since the last check.
+	 *
+	 * @exception ParseBudgetExceededException if the time limit is exceeded
+	 */
+	public void checkDeadline() {
+		if (maxTimeNanos != UNLIMITED && getElapsedNanos() > maxTimeNanos) {
+			throw new ParseBudgetExceededException(ParseBudgetExceededException.Limit.TIME,
+				"parsing exceeded " + TimeUnit.NANOSECONDS.toMillis(maxTimeNanos) + " ms");
+		}
+	}
+
+	private void check() {
+		if (transitions > maxTransitions) {
+			throw new ParseBudgetExceededException(ParseBudgetExceededException.Limit.TRANSITIONS,
+				"parsing exceeded " + maxTransitions + " ATN transitions");
+		}
+
+		checkDeadline();
+		nextCheck = getNextCheck(transitions);
+	}
+
+	/**
+	 * Gets the transition count at which the limits are checked next, given
+	 * the current count. The check happens after at most
+	 * {@link #TIME_CHECK_INTERVAL} transitions, or sooner if the transition
+	 * limit is reached first.
+	 */
+	private long getNextCheck(long transitions) {
+		long limit = maxTransitions == UNLIMITED ? UNLIMITED : maxTransitions + 1;
+		return Math.min(transitions + TIME_CHECK_INTERVAL, limit);
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.runtime.misc;
+
+/**
+ * This exception is thrown when a recognizer exceeds one of the limits of its
+ * {@link ParseBudget}. Like other {@link ParseCancellationException}s, it
+ * bypasses the standard error recovery mechanisms.
+ *
+ * @since 4.4.1
+ */
+public class ParseBudgetExceededException extends ParseCancellationException {
+	private static final long serialVersionUID = 4915468412547227591L;
+
+	/**
+	 * Identifies the limit of a {@link ParseBudget} which was exceeded.
+	 */
+	public enum Limit {
+		/** The maximum elapsed time. */
+		TIME,
+		/** The maximum number of ATN transitions. */
+		TRANSITIONS,
+		/** The maximum lookahead depth of a single prediction. */
+		LOOKAHEAD,
+	}
+
+	@NotNull
+	private final Limit limit;
+
+	public ParseBudgetExceededException(@NotNull Limit limit, String message) {
+		super(message);
+		this.limit = limit;
+	}
+
+	/**
+	 * Gets the limit which was exceeded.
+	 */
+	@NotNull
+	public Limit getLimit() {
+		return limit;
+	}
+}
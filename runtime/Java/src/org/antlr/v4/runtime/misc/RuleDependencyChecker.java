@@ -39,14 +39,16 @@ import java.lang.annotation.Target;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -57,13 +59,36 @@ import java.util.logging.Logger;
 public class RuleDependencyChecker {
 	private static final Logger LOGGER = Logger.getLogger(RuleDependencyChecker.class.getName());
 
-	private static final Set<Class<?>> checkedTypes = new HashSet<Class<?>>();
-
+	private static final Set<Class<?>> checkedTypes =
+		Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
+
+	/**
+	 * Rule names and versions of recognizers, computed from a
+	 * {@link RuleVersionIndex} or with reflection.
+	 */
+	private static final ConcurrentMap<Class<?>, Tuple2<String[], int[]>> recognizerVersions =
+		new ConcurrentHashMap<Class<?>, Tuple2<String[], int[]>>();
+
+	/**
+	 * Verify the rule dependencies declared by {@code dependentClass} and its
+	 * nested classes against the current versions of the recognizers they
+	 * depend on.
+	 *
+	 * <p>When the {@link RuleDependencyIndex} generated by
+	 * {@link RuleDependencyProcessor} for the top-level class of
+	 * {@code dependentClass} is available, it is used instead of inspecting the
+	 * members of the classes with reflection. Either way, the dependencies of
+	 * each class are checked against the recognizer of its first dependency,
+	 * and that recognizer is marked as checked.</p>
+	 *
+	 * @exception IllegalStateException if a dependency is not satisfied.
+	 */
 	public static void checkDependencies(Class<?> dependentClass) {
 		if (isChecked(dependentClass)) {
 			return;
 		}
 
+		RuleDependencyIndex index = getDependencyIndex(dependentClass);
 		List<Class<?>> typesToCheck = new ArrayList<Class<?>>();
 		typesToCheck.add(dependentClass);
 		Collections.addAll(typesToCheck, dependentClass.getDeclaredClasses());
@@ -72,6 +97,11 @@ public class RuleDependencyChecker {
 				continue;
 			}
 
+			if (index != null) {
+				checkDependencies(index, clazz);
+				continue;
+			}
+
 			List<Tuple2<RuleDependency, AnnotatedElement>> dependencies = getDependencies(clazz);
 			if (dependencies.isEmpty()) {
 				continue;
@@ -81,21 +111,118 @@ public class RuleDependencyChecker {
 		}
 	}
 
-	private static boolean isChecked(Class<?> clazz) {
-		synchronized (checkedTypes) {
-			return checkedTypes.contains(clazz);
+	/**
+	 * Verify the dependencies declared by {@code clazz} in a generated
+	 * {@link RuleDependencyIndex}. Incompatible dependencies are reported by
+	 * the reflective check, so the message matches the one produced for
+	 * classes compiled without an index.
+	 */
+	private static void checkDependencies(@NotNull RuleDependencyIndex index, @NotNull Class<?> clazz) {
+		String typeName = clazz.getName();
+		Class<? extends Recognizer<?, ?>> recognizerClass = null;
+		int[] ruleVersions = null;
+		for (int i = 0; i < index.size(); i++) {
+			if (!typeName.equals(index.getDependentType(i))) {
+				continue;
+			}
+
+			if (recognizerClass == null) {
+				recognizerClass = index.getRecognizer(i);
+				ruleVersions = getRecognizerVersions(recognizerClass).getItem2();
+			}
+			else if (!recognizerClass.isAssignableFrom(index.getRecognizer(i))) {
+				continue;
+			}
+
+			int rule = index.getRule(i);
+			if (rule < 0 || rule >= ruleVersions.length || ruleVersions[rule] != index.getVersion(i)) {
+				List<Tuple2<RuleDependency, AnnotatedElement>> dependencies = getDependencies(clazz);
+				if (!dependencies.isEmpty()) {
+					checkDependencies(dependencies, dependencies.get(0).getItem1().recognizer());
+				}
+
+				return;
+			}
+		}
+
+		if (recognizerClass != null) {
+			markChecked(recognizerClass);
 		}
 	}
 
-	private static void markChecked(Class<?> clazz) {
-		synchronized (checkedTypes) {
-			checkedTypes.add(clazz);
+	@Nullable
+	private static RuleDependencyIndex getDependencyIndex(Class<?> dependentClass) {
+		Class<?> topLevelClass = dependentClass;
+		while (topLevelClass.getEnclosingClass() != null) {
+			topLevelClass = topLevelClass.getEnclosingClass();
+		}
+
+		return loadIndex(topLevelClass, RuleDependencyIndex.CLASS_NAME_SUFFIX, RuleDependencyIndex.class);
+	}
+
+	@NotNull
+	private static Tuple2<String[], int[]> getRecognizerVersions(Class<? extends Recognizer<?, ?>> recognizerClass) {
+		Tuple2<String[], int[]> result = recognizerVersions.get(recognizerClass);
+		if (result == null) {
+			RuleVersionIndex index = loadIndex(recognizerClass, RuleVersionIndex.CLASS_NAME_SUFFIX, RuleVersionIndex.class);
+			if (index != null) {
+				result = Tuple.create(index.getRuleNames(), index.getRuleVersions());
+			}
+			else {
+				String[] ruleNames = getRuleNames(recognizerClass);
+				result = Tuple.create(ruleNames, getRuleVersions(recognizerClass, ruleNames));
+			}
+
+			recognizerVersions.putIfAbsent(recognizerClass, result);
 		}
+
+		return result;
+	}
+
+	/**
+	 * Load and instantiate the generated index class for {@code clazz}, or
+	 * return {@code null} if the class was compiled without one.
+	 */
+	@Nullable
+	private static <T> T loadIndex(Class<?> clazz, String suffix, Class<T> indexType) {
+		try {
+			Class<?> indexClass = Class.forName(clazz.getName() + suffix, true, clazz.getClassLoader());
+			if (!indexType.isAssignableFrom(indexClass)) {
+				return null;
+			}
+
+			return indexType.cast(indexClass.getDeclaredConstructor().newInstance());
+		} catch (ClassNotFoundException ex) {
+			return null;
+		} catch (LinkageError ex) {
+			LOGGER.log(Level.WARNING, null, ex);
+		} catch (InstantiationException ex) {
+			LOGGER.log(Level.WARNING, null, ex);
+		} catch (IllegalAccessException ex) {
+			LOGGER.log(Level.WARNING, null, ex);
+		} catch (NoSuchMethodException ex) {
+			LOGGER.log(Level.WARNING, null, ex);
+		} catch (InvocationTargetException ex) {
+			LOGGER.log(Level.WARNING, null, ex);
+		} catch (SecurityException ex) {
+			LOGGER.log(Level.WARNING, null, ex);
+		}
+
+		return null;
+	}
+
+	private static boolean isChecked(Class<?> clazz) {
+		return checkedTypes.contains(clazz);
+	}
+
+	private static void markChecked(Class<?> clazz) {
+		checkedTypes.add(clazz);
 	}
 
 	private static void checkDependencies(List<Tuple2<RuleDependency, AnnotatedElement>> dependencies, Class<? extends Recognizer<?, ?>> recognizerClass) {
-		String[] ruleNames = getRuleNames(recognizerClass);
-		int[] ruleVersions = getRuleVersions(recognizerClass, ruleNames);
+		Tuple2<String[], int[]> versions = getRecognizerVersions(recognizerClass);
+		String[] ruleNames = versions.getItem1();
+		int[] ruleVersions = versions.getItem2();
 
 		StringBuilder incompatible = new StringBuilder();
 		for (Tuple2<RuleDependency, AnnotatedElement> dependency : dependencies) {
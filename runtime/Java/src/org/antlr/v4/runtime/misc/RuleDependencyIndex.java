@@ -0,0 +1,112 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.runtime.misc;
+
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.RuleDependency;
+
+/**
+ * The rule dependencies declared by a top-level class and its nested classes,
+ * generated at compile time by {@link RuleDependencyProcessor}.
+ *
+ * <p>The generated subclass for a class {@code p.Foo} is named
+ * {@code p.Foo_RuleDependencyIndex}. {@link RuleDependencyChecker} uses it in
+ * place of scanning the members of {@code Foo} with reflection.</p>
+ *
+ * <p>The dependencies of each dependent type are listed in the order of the
+ * {@link java.lang.annotation.Target} of {@link RuleDependency}: dependencies
+ * on the type itself, followed by its constructors, methods, and fields.</p>
+ *
+ * @since 4.4.1
+ */
+public abstract class RuleDependencyIndex {
+	/**
+	 * The suffix appended to the binary name of a top-level class to form the
+	 * name of its generated index.
+	 */
+	public static final String CLASS_NAME_SUFFIX = "_RuleDependencyIndex";
+
+	@NotNull
+	private final Class<?>[] recognizers;
+	@NotNull
+	private final int[] rules;
+	@NotNull
+	private final int[] versions;
+	@NotNull
+	private final String[] dependentTypes;
+
+	/**
+	 * Constructs a new index. The arrays hold the properties of one
+	 * {@link RuleDependency} at each index.
+	 *
+	 * @param recognizers The value of {@link RuleDependency#recognizer} for each dependency.
+	 * @param rules The value of {@link RuleDependency#rule} for each dependency.
+	 * @param versions The value of {@link RuleDependency#version} for each dependency.
+	 * @param dependentTypes The binary name of the class which declares the
+	 * annotated element of each dependency, or of the annotated class itself.
+	 */
+	protected RuleDependencyIndex(@NotNull Class<?>[] recognizers, @NotNull int[] rules, @NotNull int[] versions, @NotNull String[] dependentTypes) {
+		if (rules.length != recognizers.length || versions.length != recognizers.length || dependentTypes.length != recognizers.length) {
+			throw new IllegalArgumentException("The dependency arrays must have the same length.");
+		}
+
+		this.recognizers = recognizers;
+		this.rules = rules;
+		this.versions = versions;
+		this.dependentTypes = dependentTypes;
+	}
+
+	public final int size() {
+		return recognizers.length;
+	}
+
+	@SuppressWarnings("unchecked")
+	public final Class<? extends Recognizer<?, ?>> getRecognizer(int dependency) {
+		return (Class<? extends Recognizer<?, ?>>)recognizers[dependency];
+	}
+
+	public final int getRule(int dependency) {
+		return rules[dependency];
+	}
+
+	public final int getVersion(int dependency) {
+		return versions[dependency];
+	}
+
+	/**
+	 * Gets the binary name of the class which declares the dependency, in the
+	 * form returned by {@link Class#getName}.
+	 */
+	@NotNull
+	public final String getDependentType(int dependency) {
+		return dependentTypes[dependency];
+	}
+}
@@ -43,6 +43,7 @@ import org.antlr.v4.runtime.atn.Transition;
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.AnnotationMirror;
@@ -51,16 +52,24 @@ import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.MirroredTypeException;
 import javax.lang.model.type.TypeMirror;
 import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
 import java.lang.annotation.AnnotationTypeMismatchException;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -68,12 +77,23 @@ import java.util.Set;
 /**
  * A compile-time validator for rule dependencies.
  *
+ * <p>In addition to validating dependencies, this processor generates a
+ * {@link RuleDependencyIndex} for each top-level class declaring rule
+ * dependencies, and a {@link RuleVersionIndex} for each generated recognizer,
+ * which allow {@link RuleDependencyChecker} to check dependencies at runtime
+ * without reflection. Set the processor option
+ * {@code -Aantlr4.generateRuleDependencyIndex=false} to disable these
+ * files.</p>
+ *
  * @see RuleDependency
  * @see RuleDependencies
  * @author Sam Harwell
  */
 @SupportedAnnotationTypes({RuleDependencyProcessor.RuleDependencyClassName, RuleDependencyProcessor.RuleDependenciesClassName, RuleDependencyProcessor.RuleVersionClassName})
+@SupportedOptions({RuleDependencyProcessor.GenerateIndexOption})
 public class RuleDependencyProcessor extends AbstractProcessor {
+	public static final String GenerateIndexOption = "antlr4.generateRuleDependencyIndex";
+
 	public static final String RuleDependencyClassName = "org.antlr.v4.runtime.RuleDependency";
 	public static final String RuleDependenciesClassName = "org.antlr.v4.runtime.RuleDependencies";
 	public static final String RuleVersionClassName = "org.antlr.v4.runtime.RuleVersion";
@@ -122,9 +142,213 @@ public class RuleDependencyProcessor extends AbstractProcessor {
 			checkDependencies(entry.getValue(), entry.getKey());
 		}
 
+		if (!"false".equals(processingEnv.getOptions().get(GenerateIndexOption))) {
+			writeDependencyIndexes(dependencies);
+			writeRuleVersionIndexes(roundEnv);
+		}
+
 		return true;
 	}
 
+	private void writeDependencyIndexes(List<Tuple2<RuleDependency, Element>> dependencies) {
+		Map<TypeElement, List<Tuple2<RuleDependency, Element>>> dependentTypes
+			= new LinkedHashMap<TypeElement, List<Tuple2<RuleDependency, Element>>>();
+		for (Tuple2<RuleDependency, Element> dependency : dependencies) {
+			Element element = dependency.getItem2();
+			switch (element.getKind()) {
+			case CLASS:
+			case ENUM:
+			case INTERFACE:
+			case CONSTRUCTOR:
+			case FIELD:
+			case ENUM_CONSTANT:
+			case METHOD:
+				break;
+
+			default:
+				// the runtime checker does not support dependencies on other elements
+				continue;
+			}
+
+			TypeElement topLevelType = getTopLevelType(element);
+			if (topLevelType == null) {
+				continue;
+			}
+
+			List<Tuple2<RuleDependency, Element>> list = dependentTypes.get(topLevelType);
+			if (list == null) {
+				list = new ArrayList<Tuple2<RuleDependency, Element>>();
+				dependentTypes.put(topLevelType, list);
+			}
+
+			list.add(dependency);
+		}
+
+		for (Map.Entry<TypeElement, List<Tuple2<RuleDependency, Element>>> entry : dependentTypes.entrySet()) {
+			// the runtime checker uses the recognizer of the first dependency of each type, so match the order of its scan
+			List<Tuple2<RuleDependency, Element>> typeDependencies = entry.getValue();
+			Collections.sort(typeDependencies, new Comparator<Tuple2<RuleDependency, Element>>() {
+				@Override
+				public int compare(Tuple2<RuleDependency, Element> o1, Tuple2<RuleDependency, Element> o2) {
+					return getScanOrder(o1.getItem2()) - getScanOrder(o2.getItem2());
+				}
+			});
+
+			StringBuilder recognizers = new StringBuilder();
+			StringBuilder rules = new StringBuilder();
+			StringBuilder versions = new StringBuilder();
+			StringBuilder types = new StringBuilder();
+			try {
+				for (Tuple2<RuleDependency, Element> dependency : typeDependencies) {
+					String separator = recognizers.length() > 0 ? ", " : "";
+					recognizers.append(separator).append(processingEnv.getTypeUtils().erasure(getRecognizerType(dependency.getItem1()))).append(".class");
+					rules.append(separator).append(dependency.getItem1().rule());
+					versions.append(separator).append(dependency.getItem1().version());
+					types.append(separator).append(toStringLiteral(processingEnv.getElementUtils().getBinaryName(getDependentType(dependency.getItem2())).toString()));
+				}
+			}
+			catch (AnnotationTypeMismatchException ex) {
+				// the runtime checker falls back to reflection for this type
+				continue;
+			}
+
+			String arguments = String.format("new Class<?>[] { %s },%n\t\t\tnew int[] { %s },%n\t\t\tnew int[] { %s },%n\t\t\tnew String[] { %s }",
+											  recognizers, rules, versions, types);
+			writeIndex(entry.getKey(), RuleDependencyIndex.CLASS_NAME_SUFFIX, RuleDependencyIndex.class, arguments);
+		}
+	}
+
+	private void writeRuleVersionIndexes(RoundEnvironment roundEnv) {
+		Set<TypeElement> recognizerTypes = new LinkedHashSet<TypeElement>();
+		for (Element element : roundEnv.getElementsAnnotatedWith(RuleVersion.class)) {
+			Element enclosing = element.getEnclosingElement();
+			if (enclosing instanceof TypeElement && declaresRuleNames((TypeElement)enclosing)) {
+				recognizerTypes.add((TypeElement)enclosing);
+			}
+		}
+
+		for (TypeElement recognizerType : recognizerTypes) {
+			String[] ruleNames = getRuleNames(recognizerType.asType());
+			int[] ruleVersions = getRuleVersions(recognizerType.asType(), ruleNames);
+			StringBuilder names = new StringBuilder();
+			StringBuilder versions = new StringBuilder();
+			for (int i = 0; i < ruleNames.length; i++) {
+				String separator = i > 0 ? ", " : "";
+				names.append(separator).append(toStringLiteral(ruleNames[i]));
+				versions.append(separator).append(ruleVersions[i]);
+			}
+
+			String arguments = String.format("new String[] { %s },%n\t\t\tnew int[] { %s }", names, versions);
+			writeIndex(recognizerType, RuleVersionIndex.CLASS_NAME_SUFFIX, RuleVersionIndex.class, arguments);
+		}
+	}
+
+	/**
+	 * Does {@code type} declare the static {@code ruleNames} field of a
+	 * generated recognizer?
+	 */
+	private static boolean declaresRuleNames(TypeElement type) {
+		for (Element member : type.getEnclosedElements()) {
+			if (member.getKind() == ElementKind.FIELD
+				&& member.getSimpleName().contentEquals("ruleNames")
+				&& member.getModifiers().contains(Modifier.STATIC))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private void writeIndex(TypeElement type, String suffix, Class<?> baseClass, String constructorArguments) {
+		String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+		String className = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + suffix;
+		String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+
+		StringBuilder source = new StringBuilder();
+		if (!packageName.isEmpty()) {
+			source.append(String.format("package %s;%n%n", packageName));
+		}
+
+		source.append(String.format("/** Generated by %s for {@link %s}. */%n", RuleDependencyProcessor.class.getSimpleName(), type.getQualifiedName()));
+		source.append(String.format("public final class %s extends %s {%n", className, baseClass.getName()));
+		source.append(String.format("\tpublic %s() {%n", className));
+		source.append(String.format("\t\tsuper(%s);%n", constructorArguments));
+		source.append(String.format("\t}%n"));
+		source.append(String.format("}%n"));
+
+		try {
+			JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+			Writer writer = file.openWriter();
+			try {
+				writer.write(source.toString());
+			}
+			finally {
+				writer.close();
+			}
+		}
+		catch (IOException ex) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, String.format("Could not write %s: %s", qualifiedName, ex.getMessage()), type);
+		}
+	}
+
+	private static TypeElement getTopLevelType(Element element) {
+		Element current = element;
+		while (current != null) {
+			if (current instanceof TypeElement && ((TypeElement)current).getNestingKind() == NestingKind.TOP_LEVEL) {
+				return (TypeElement)current;
+			}
+
+			current = current.getEnclosingElement();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Gets the type which {@link RuleDependencyChecker#getDependencies} scans
+	 * to find a dependency on {@code element}.
+	 */
+	private static TypeElement getDependentType(Element element) {
+		if (element instanceof TypeElement) {
+			return (TypeElement)element;
+		}
+
+		return (TypeElement)element.getEnclosingElement();
+	}
+
+	private static int getScanOrder(Element element) {
+		switch (element.getKind()) {
+		case CONSTRUCTOR:
+			return 1;
+
+		case METHOD:
+			return 2;
+
+		case FIELD:
+		case ENUM_CONSTANT:
+			return 3;
+
+		default:
+			return 0;
+		}
+	}
+
+	private static String toStringLiteral(String value) {
+		StringBuilder builder = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				builder.append('\\');
+			}
+
+			builder.append(c);
+		}
+
+		return builder.append('"').toString();
+	}
+
 	private boolean checkClassNameConstants() {
 		boolean success = checkClassNameConstant(RuleDependencyClassName, RuleDependency.class);
 		success &= checkClassNameConstant(RuleDependenciesClassName, RuleDependencies.class);
@@ -0,0 +1,83 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.runtime.misc;
+
+import org.antlr.v4.runtime.RuleVersion;
+
+/**
+ * The rule names and {@link RuleVersion rule versions} of a recognizer,
+ * generated at compile time by {@link RuleDependencyProcessor}.
+ *
+ * <p>The generated subclass for a recognizer {@code p.FooParser} is named
+ * {@code p.FooParser_RuleVersionIndex}. {@link RuleDependencyChecker} uses it
+ * in place of reading the rule methods of the recognizer with reflection.</p>
+ *
+ * @since 4.4.1
+ */
+public abstract class RuleVersionIndex {
+	/**
+	 * The suffix appended to the binary name of a recognizer to form the name
+	 * of its generated index.
+	 */
+	public static final String CLASS_NAME_SUFFIX = "_RuleVersionIndex";
+
+	@NotNull
+	private final String[] ruleNames;
+	@NotNull
+	private final int[] ruleVersions;
+
+	protected RuleVersionIndex(@NotNull String[] ruleNames, @NotNull int[] ruleVersions) {
+		if (ruleNames.length != ruleVersions.length) {
+			throw new IllegalArgumentException("The rule name and version arrays must have the same length.");
+		}
+
+		this.ruleNames = ruleNames;
+		this.ruleVersions = ruleVersions;
+	}
+
+	/**
+	 * Gets the rule names of the recognizer, indexed by rule index. The
+	 * returned array must not be modified.
+	 */
+	@NotNull
+	public final String[] getRuleNames() {
+		return ruleNames;
+	}
+
+	/**
+	 * Gets the rule versions of the recognizer, indexed by rule index. The
+	 * returned array must not be modified.
+	 */
+	@NotNull
+	public final int[] getRuleVersions() {
+		return ruleVersions;
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.runtime.tree;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A {@link ParseTreeProperty} which stores values in an array indexed by the
+ * {@link ParserRuleContext#getNodeId dense node id} of each node, rather than
+ * in an identity hash map.
+ *
+ * <p>Node ids are only distinct within a single tree, so only the values for
+ * nodes of the tree containing the first node stored are kept in the array.
+ * Values for nodes of other trees, and for nodes without an id, are stored in
+ * the identity map of the base class.
+ * See {@link IntParseTreeProperty}, {@link LongParseTreeProperty}, and
+ * {@link BooleanParseTreeProperty} for variants which store primitive values
+ * without boxing.</p>
+ *
+ * @param <V> The type of the values.
+ * @since 4.4.1
+ */
+public class DenseParseTreeProperty<V> extends ParseTreeProperty<V> {
+	private static final Object[] EMPTY_VALUES = new Object[0];
+
+	@NotNull
+	private final NodeIdIndex index = new NodeIdIndex();
+
+	private Object[] values = EMPTY_VALUES;
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(ParseTree node) {
+		int id = index.indexOf(node);
+		if (id < 0) {
+			return super.get(node);
+		}
+
+		return id < values.length ? (V)values[id] : null;
+	}
+
+	@Override
+	public void put(ParseTree node, V value) {
+		int id = index.claim(node);
+		if (id < 0) {
+			super.put(node, value);
+			return;
+		}
+
+		if (id >= values.length) {
+			values = Arrays.copyOf(values, Math.max(id + 1, values.length * 2));
+		}
+
+		values[id] = value;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V removeFrom(ParseTree node) {
+		int id = index.indexOf(node);
+		if (id < 0) {
+			return super.removeFrom(node);
+		}
+
+		if (id >= values.length) {
+			return null;
+		}
+
+		V previous = (V)values[id];
+		values[id] = null;
+		return previous;
+	}
+}
@@ -0,0 +1,532 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.runtime.tree;
+
+import org.antlr.v4.runtime.InterpreterRuleContext;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.RuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+import org.antlr.v4.runtime.misc.Utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A parse tree stored in flat {@code int} arrays, built during parsing by a
+ * {@link FlatParseTreeBuilder}.
+ *
+ * <p>Each node is identified by an integer handle, and stores its kind (rule
+ * index or terminal), the tokens it spans, its parent, its first child, and its
+ * next sibling. Tokens are not copied; they are referenced by their index in
+ * the token stream the tree was parsed from.</p>
+ *
+ * <p>Two object views of the tree are created on demand.</p>
+ *
+ * <ul>
+ * <li>{@link #getParseTree} returns a lightweight, read-only {@link ParseTree}
+ * facade for a node. Facades support navigation, {@link ParseTree#getText},
+ * {@link ParseTree#toStringTree(Parser)}, and {@link ParseTreeVisitor}
+ * traversal through {@link ParseTreeVisitor#visitChildren}, without creating
+ * any rule contexts.</li>
+ * <li>{@link #getContext} materializes the {@link ParserRuleContext} subtree
+ * for a node, using the configured {@link SerializedParseTree.ContextFactory}
+ * so generated listeners and visitors may be used with it. A facade's
+ * {@link RuleNode#getRuleContext} returns the same context, so walking facades
+ * with a {@link ParseTreeWalker} materializes the subtrees it enters.</li>
+ * </ul>
+ *
+ * @since 4.4.1
+ */
+public class FlatParseTree {
+	/** The kind of a terminal node. */
+	static final int TERMINAL_NODE = -1;
+	/** The kind of an error node. */
+	static final int ERROR_NODE = -2;
+
+	@NotNull
+	private final TokenStream tokens;
+	@NotNull
+	private final List<Token> extraTokens;
+	/** Context classes of rule nodes; the first element is always {@code null}. */
+	@NotNull
+	private final List<Class<? extends ParserRuleContext>> contextClasses;
+
+	private final int nodeCount;
+	private final int root;
+
+	/**
+	 * The kind of each node. For rule nodes, the low 16 bits hold the rule
+	 * index and the remaining bits hold the index of the context class in
+	 * {@link #contextClasses} plus one.
+	 */
+	private final int[] kinds;
+	private final int[] startTokens;
+	private final int[] stopTokens;
+	private final int[] invokingStates;
+	private final int[] parents;
+	private final int[] firstChildren;
+	private final int[] nextSiblings;
+
+	@Nullable
+	private SerializedParseTree.ContextFactory contextFactory;
+
+	private ParseTree[] facades;
+	private ParserRuleContext[] contexts;
+
+	FlatParseTree(@NotNull TokenStream tokens, @NotNull List<Token> extraTokens, @NotNull List<Class<? extends ParserRuleContext>> contextClasses,
+				  int nodeCount, int root,
+				  int[] kinds, int[] startTokens, int[] stopTokens, int[] invokingStates,
+				  int[] parents, int[] firstChildren, int[] nextSiblings)
+	{
+		this.tokens = tokens;
+		this.extraTokens = extraTokens;
+		this.contextClasses = contextClasses;
+		this.nodeCount = nodeCount;
+		this.root = root;
+		this.kinds = kinds;
+		this.startTokens = startTokens;
+		this.stopTokens = stopTokens;
+		this.invokingStates = invokingStates;
+		this.parents = parents;
+		this.firstChildren = firstChildren;
+		this.nextSiblings = nextSiblings;
+	}
+
+	/**
+	 * Gets the token stream the tree was parsed from.
+	 */
+	@NotNull
+	public TokenStream getTokenStream() {
+		return tokens;
+	}
+
+	/**
+	 * Sets the factory used by {@link #getContext} to create rule contexts.
+	 * When no factory is set, {@link InterpreterRuleContext} instances are
+	 * created.
+	 */
+	public synchronized void setContextFactory(@Nullable SerializedParseTree.ContextFactory contextFactory) {
+		this.contextFactory = contextFactory;
+	}
+
+	/**
+	 * Gets the number of node handles used by the tree. Handles range from 0
+	 * to this value; nodes which were discarded while parsing are not
+	 * reachable from the root.
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Gets the root node of the tree.
+	 */
+	public int getRoot() {
+		return root;
+	}
+
+	public boolean isTerminalNode(int node) {
+		return kinds[node] < 0;
+	}
+
+	public boolean isErrorNode(int node) {
+		return kinds[node] == ERROR_NODE;
+	}
+
+	/**
+	 * Gets the rule index of a rule node, or -1 for a terminal node.
+	 */
+	public int getRuleIndex(int node) {
+		int kind = kinds[node];
+		return kind >= 0 ? kind & 0xFFFF : -1;
+	}
+
+	/**
+	 * Gets the parent of {@code node}, or -1 for the root.
+	 */
+	public int getParent(int node) {
+		return parents[node];
+	}
+
+	/**
+	 * Gets the first child of {@code node}, or -1 if it does not have
+	 * children.
+	 */
+	public int getFirstChild(int node) {
+		return firstChildren[node];
+	}
+
+	/**
+	 * Gets the node following {@code node} in the children of its parent, or
+	 * -1 if {@code node} is the last child.
+	 */
+	public int getNextSibling(int node) {
+		return nextSiblings[node];
+	}
+
+	public int getChildCount(int node) {
+		int count = 0;
+		for (int child = firstChildren[node]; child >= 0; child = nextSiblings[child]) {
+			count++;
+		}
+
+		return count;
+	}
+
+	public int getInvokingState(int node) {
+		return invokingStates[node];
+	}
+
+	/**
+	 * Gets the symbol of a terminal node, or the start token of a rule node.
+	 */
+	@Nullable
+	public Token getStartToken(int node) {
+		return getToken(startTokens[node]);
+	}
+
+	/**
+	 * Gets the symbol of a terminal node, or the stop token of a rule node.
+	 */
+	@Nullable
+	public Token getStopToken(int node) {
+		return getToken(stopTokens[node]);
+	}
+
+	/**
+	 * Gets the text of {@code node}, computed in the same manner as
+	 * {@link ParseTree#getText}.
+	 */
+	public String getText(int node) {
+		if (isTerminalNode(node)) {
+			return getStartToken(node).getText();
+		}
+
+		StringBuilder builder = new StringBuilder();
+		appendText(node, builder);
+		return builder.toString();
+	}
+
+	/**
+	 * Gets a read-only {@link ParseTree} facade for {@code node}. Repeated
+	 * calls for the same node return the same instance; the facade for a rule
+	 * node implements {@link RuleNode}, and the facade for a terminal node
+	 * implements {@link TerminalNode} or {@link ErrorNode}.
+	 */
+	@NotNull
+	public synchronized ParseTree getParseTree(int node) {
+		if (facades == null) {
+			facades = new ParseTree[nodeCount];
+		}
+
+		ParseTree facade = facades[node];
+		if (facade == null) {
+			if (isErrorNode(node)) {
+				facade = new ErrorNodeFacade(node);
+			}
+			else if (isTerminalNode(node)) {
+				facade = new TerminalNodeFacade(node);
+			}
+			else {
+				facade = new RuleNodeFacade(node);
+			}
+
+			facades[node] = facade;
+		}
+
+		return facade;
+	}
+
+	/**
+	 * Gets the {@link ParserRuleContext} for the rule node {@code node},
+	 * creating the contexts of the subtree rooted at {@code node} if
+	 * necessary. Repeated calls for the same node return the same instance.
+	 *
+	 * <p>The parent of the returned context is the context of the parent node
+	 * if it was already materialized, otherwise {@code null}. Rebuilt contexts
+	 * have their children, start and stop tokens, and invoking state restored,
+	 * but not the values of labels or rule arguments, locals, and return
+	 * values.</p>
+	 */
+	@NotNull
+	public synchronized ParserRuleContext getContext(int node) {
+		if (isTerminalNode(node)) {
+			throw new IllegalArgumentException("Only rule nodes have a context.");
+		}
+
+		if (contexts == null) {
+			contexts = new ParserRuleContext[nodeCount];
+		}
+
+		if (contexts[node] == null) {
+			int parent = parents[node];
+			materialize(node, parent >= 0 ? contexts[parent] : null);
+		}
+
+		return contexts[node];
+	}
+
+	private ParserRuleContext materialize(int node, @Nullable ParserRuleContext parent) {
+		ParserRuleContext context = createContext(node, parent);
+		contexts[node] = context;
+		for (int child = firstChildren[node]; child >= 0; child = nextSiblings[child]) {
+			if (isErrorNode(child)) {
+				context.addErrorNode(getStartToken(child));
+			}
+			else if (isTerminalNode(child)) {
+				context.addChild(getStartToken(child));
+			}
+			else if (contexts[child] != null) {
+				// materialized earlier, before this node
+				ParserRuleContext childContext = contexts[child];
+				childContext.parent = context;
+				context.addChild(childContext);
+			}
+			else {
+				context.addChild(materialize(child, context));
+			}
+		}
+
+		return context;
+	}
+
+	@NotNull
+	private ParserRuleContext createContext(int node, @Nullable ParserRuleContext parent) {
+		int kind = kinds[node];
+		int ruleIndex = kind & 0xFFFF;
+		int invokingState = invokingStates[node];
+		ParserRuleContext context;
+		if (contextFactory != null) {
+			Class<? extends ParserRuleContext> contextClass = contextClasses.get(kind >>> 16);
+			String contextType = contextClass != null && contextClass.getEnclosingClass() != null ? contextClass.getSimpleName() : null;
+			context = contextFactory.createContext(parent, invokingState, ruleIndex, contextType);
+		}
+		else {
+			context = new InterpreterRuleContext(parent, invokingState, ruleIndex);
+		}
+
+		context.start = getStartToken(node);
+		context.stop = getStopToken(node);
+		return context;
+	}
+
+	@Nullable
+	private Token getToken(int reference) {
+		if (reference >= 0) {
+			return tokens.get(reference);
+		}
+		else if (reference == -1) {
+			return null;
+		}
+
+		return extraTokens.get(-reference - 2);
+	}
+
+	private int getTokenIndex(int reference) {
+		if (reference >= 0) {
+			return reference;
+		}
+		else if (reference == -1) {
+			return -1;
+		}
+
+		return extraTokens.get(-reference - 2).getTokenIndex();
+	}
+
+	private void appendText(int node, @NotNull StringBuilder builder) {
+		for (int child = firstChildren[node]; child >= 0; child = nextSiblings[child]) {
+			if (isTerminalNode(child)) {
+				builder.append(getStartToken(child).getText());
+			}
+			else {
+				appendText(child, builder);
+			}
+		}
+	}
+
+	private void appendStringTree(int node, @Nullable List<String> ruleNames, @NotNull StringBuilder builder) {
+		if (isTerminalNode(node)) {
+			Token symbol = getStartToken(node);
+			String text = isErrorNode(node) && symbol.getType() == Token.EOF ? "<EOF>" : symbol.getText();
+			builder.append(Utils.escapeWhitespace(text, false));
+			return;
+		}
+
+		int ruleIndex = getRuleIndex(node);
+		String ruleName = ruleNames != null ? ruleNames.get(ruleIndex) : Integer.toString(ruleIndex);
+		if (firstChildren[node] < 0) {
+			builder.append(Utils.escapeWhitespace(ruleName, false));
+			return;
+		}
+
+		builder.append('(').append(Utils.escapeWhitespace(ruleName, false)).append(' ');
+		for (int child = firstChildren[node]; child >= 0; child = nextSiblings[child]) {
+			if (child != firstChildren[node]) {
+				builder.append(' ');
+			}
+
+			appendStringTree(child, ruleNames, builder);
+		}
+
+		builder.append(')');
+	}
+
+	private abstract class NodeFacade implements ParseTree {
+		protected final int node;
+		private ParseTree[] children;
+
+		protected NodeFacade(int node) {
+			this.node = node;
+		}
+
+		@Override
+		public RuleNode getParent() {
+			int parent = parents[node];
+			return parent >= 0 ? (RuleNode)getParseTree(parent) : null;
+		}
+
+		@Override
+		public ParseTree getChild(int i) {
+			ParseTree[] children = getChildren();
+			return i >= 0 && i < children.length ? children[i] : null;
+		}
+
+		@Override
+		public int getChildCount() {
+			return getChildren().length;
+		}
+
+		@Override
+		public String getText() {
+			return FlatParseTree.this.getText(node);
+		}
+
+		@Override
+		public Interval getSourceInterval() {
+			int start = getTokenIndex(startTokens[node]);
+			int stop = getTokenIndex(stopTokens[node]);
+			if (start < 0) {
+				return Interval.INVALID;
+			}
+
+			return Interval.of(start, stop);
+		}
+
+		@Override
+		public String toStringTree(Parser parser) {
+			StringBuilder builder = new StringBuilder();
+			appendStringTree(node, parser != null ? Arrays.asList(parser.getRuleNames()) : null, builder);
+			return builder.toString();
+		}
+
+		@Override
+		public String toStringTree() {
+			return toStringTree(null);
+		}
+
+		@Override
+		public String toString() {
+			return toStringTree();
+		}
+
+		private ParseTree[] getChildren() {
+			if (children == null) {
+				ParseTree[] result = new ParseTree[FlatParseTree.this.getChildCount(node)];
+				int i = 0;
+				for (int child = firstChildren[node]; child >= 0; child = nextSiblings[child]) {
+					result[i++] = getParseTree(child);
+				}
+
+				children = result;
+			}
+
+			return children;
+		}
+	}
+
+	private class RuleNodeFacade extends NodeFacade implements RuleNode {
+		public RuleNodeFacade(int node) {
+			super(node);
+		}
+
+		@Override
+		public RuleContext getRuleContext() {
+			return getContext(node);
+		}
+
+		@Override
+		public Object getPayload() {
+			return this;
+		}
+
+		@Override
+		public <T> T accept(ParseTreeVisitor<? extends T> visitor) {
+			return visitor.visitChildren(this);
+		}
+	}
+
+	private class TerminalNodeFacade extends NodeFacade implements TerminalNode {
+		public TerminalNodeFacade(int node) {
+			super(node);
+		}
+
+		@Override
+		public Token getSymbol() {
+			return getStartToken(node);
+		}
+
+		@Override
+		public Token getPayload() {
+			return getSymbol();
+		}
+
+		@Override
+		public <T> T accept(ParseTreeVisitor<? extends T> visitor) {
+			return visitor.visitTerminal(this);
+		}
+	}
+
+	private class ErrorNodeFacade extends TerminalNodeFacade implements ErrorNode {
+		public ErrorNodeFacade(int node) {
+			super(node);
+		}
+
+		@Override
+		public <T> T accept(ParseTreeVisitor<? extends T> visitor) {
+			return visitor.visitErrorNode(this);
+		}
+	}
+}
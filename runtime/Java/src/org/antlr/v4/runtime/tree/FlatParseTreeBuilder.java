@@ -0,0 +1,307 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.runtime.tree;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.IntegerStack;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A parse listener which records the parse tree as a {@link FlatParseTree}
+ * instead of a tree of {@link ParserRuleContext} objects.
+ *
+ * <p>Use {@link #install} to attach a builder to a parser. This disables
+ * {@link Parser#setBuildParseTree building} the regular parse tree, so the
+ * contexts created while parsing are discarded as soon as their rules
+ * return.</p>
+ *
+ * <pre>
+ * FlatParseTreeBuilder builder = FlatParseTreeBuilder.install(parser);
+ * parser.compilationUnit();
+ * FlatParseTree tree = builder.getTree();
+ * </pre>
+ *
+ * @since 4.4.1
+ */
+public class FlatParseTreeBuilder implements ParseTreeListener {
+	private static final int INITIAL_CAPACITY = 64;
+
+	@NotNull
+	private final Parser parser;
+
+	private int[] kinds;
+	private int[] startTokens;
+	private int[] stopTokens;
+	private int[] invokingStates;
+	private int[] parents;
+	private int[] firstChildren;
+	private int[] nextSiblings;
+	private int size;
+	private int root;
+
+	private List<Token> extraTokens;
+	private Map<Token, Integer> extraTokenReferences;
+	private List<Class<? extends ParserRuleContext>> contextClasses;
+	private Map<Class<? extends ParserRuleContext>, Integer> contextClassIndexes;
+
+	/** The rule nodes which have been entered but not exited. */
+	private final IntegerStack openNodes = new IntegerStack();
+	/** The last child of each node in {@link #openNodes}, or -1. */
+	private final IntegerStack openLastChildren = new IntegerStack();
+
+	@Nullable
+	private ParserRuleContext lastExited;
+	private int lastExitedNode;
+	private int lastExitedPreviousSibling;
+
+	public FlatParseTreeBuilder(@NotNull Parser parser) {
+		this.parser = parser;
+		clear();
+	}
+
+	/**
+	 * Create a builder for {@code parser}, disable building the regular parse
+	 * tree, and register the builder as a parse listener.
+	 */
+	@NotNull
+	public static FlatParseTreeBuilder install(@NotNull Parser parser) {
+		FlatParseTreeBuilder builder = new FlatParseTreeBuilder(parser);
+		parser.setBuildParseTree(false);
+		parser.addParseListener(builder);
+		return builder;
+	}
+
+	/**
+	 * Gets the tree recorded for the most recently completed start rule, or
+	 * {@code null} if no start rule has completed. The returned tree is not
+	 * affected by later parses.
+	 */
+	@Nullable
+	public FlatParseTree getTree() {
+		if (root < 0 || !openNodes.isEmpty()) {
+			return null;
+		}
+
+		return new FlatParseTree(parser.getInputStream(), extraTokens, contextClasses, size, root,
+			kinds, startTokens, stopTokens, invokingStates, parents, firstChildren, nextSiblings);
+	}
+
+	@Override
+	public void enterEveryRule(@NotNull ParserRuleContext ctx) {
+		int node;
+		if (lastExited != null && lastExited.getParent() == ctx) {
+			// a left-recursive rule adopted the previous context
+			node = addNode(0, -1, -1);
+			int previous = lastExitedNode;
+			if (!openNodes.isEmpty()) {
+				int parent = openNodes.peek();
+				if (lastExitedPreviousSibling < 0) {
+					firstChildren[parent] = -1;
+				}
+				else {
+					nextSiblings[lastExitedPreviousSibling] = -1;
+				}
+
+				openLastChildren.set(openLastChildren.size() - 1, lastExitedPreviousSibling);
+			}
+			else {
+				root = -1;
+			}
+
+			parents[previous] = node;
+			firstChildren[node] = previous;
+			openNodes.push(node);
+			openLastChildren.push(previous);
+		}
+		else {
+			if (openNodes.isEmpty()) {
+				// entering a new start rule
+				clear();
+			}
+
+			node = addNode(0, -1, -1);
+			openNodes.push(node);
+			openLastChildren.push(-1);
+		}
+
+		lastExited = null;
+	}
+
+	@Override
+	public void exitEveryRule(@NotNull ParserRuleContext ctx) {
+		int node = openNodes.pop();
+		openLastChildren.pop();
+
+		int ruleIndex = ctx.getRuleIndex();
+		if (ruleIndex < 0 || ruleIndex > 0xFFFF) {
+			throw new IllegalStateException("Rule index out of range: " + ruleIndex);
+		}
+
+		kinds[node] = ruleIndex | (getContextClassIndex(ctx.getClass()) << 16);
+		startTokens[node] = getTokenReference(ctx.getStart());
+		stopTokens[node] = getTokenReference(ctx.getStop());
+		invokingStates[node] = ctx.invokingState;
+
+		lastExited = ctx;
+		lastExitedNode = node;
+		lastExitedPreviousSibling = appendToOpenNode(node);
+		if (openNodes.isEmpty()) {
+			root = node;
+		}
+	}
+
+	@Override
+	public void visitTerminal(@NotNull TerminalNode node) {
+		addTerminal(FlatParseTree.TERMINAL_NODE, node.getSymbol());
+	}
+
+	@Override
+	public void visitErrorNode(@NotNull ErrorNode node) {
+		addTerminal(FlatParseTree.ERROR_NODE, node.getSymbol());
+	}
+
+	private void addTerminal(int kind, Token symbol) {
+		lastExited = null;
+		if (openNodes.isEmpty()) {
+			return;
+		}
+
+		int reference = getTokenReference(symbol);
+		int node = addNode(kind, reference, reference);
+		appendToOpenNode(node);
+	}
+
+	private void clear() {
+		kinds = new int[INITIAL_CAPACITY];
+		startTokens = new int[INITIAL_CAPACITY];
+		stopTokens = new int[INITIAL_CAPACITY];
+		invokingStates = new int[INITIAL_CAPACITY];
+		parents = new int[INITIAL_CAPACITY];
+		firstChildren = new int[INITIAL_CAPACITY];
+		nextSiblings = new int[INITIAL_CAPACITY];
+		size = 0;
+		root = -1;
+
+		extraTokens = new ArrayList<Token>();
+		extraTokenReferences = new HashMap<Token, Integer>();
+		contextClasses = new ArrayList<Class<? extends ParserRuleContext>>();
+		contextClasses.add(null);
+		contextClassIndexes = new HashMap<Class<? extends ParserRuleContext>, Integer>();
+
+		lastExited = null;
+	}
+
+	private int addNode(int kind, int startToken, int stopToken) {
+		if (size == kinds.length) {
+			int capacity = size * 2;
+			kinds = Arrays.copyOf(kinds, capacity);
+			startTokens = Arrays.copyOf(startTokens, capacity);
+			stopTokens = Arrays.copyOf(stopTokens, capacity);
+			invokingStates = Arrays.copyOf(invokingStates, capacity);
+			parents = Arrays.copyOf(parents, capacity);
+			firstChildren = Arrays.copyOf(firstChildren, capacity);
+			nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+		}
+
+		kinds[size] = kind;
+		startTokens[size] = startToken;
+		stopTokens[size] = stopToken;
+		invokingStates[size] = -1;
+		parents[size] = -1;
+		firstChildren[size] = -1;
+		nextSiblings[size] = -1;
+		return size++;
+	}
+
+	/**
+	 * Appends {@code node} to the children of the innermost open rule node,
+	 * and returns the previous last child of that node.
+	 */
+	private int appendToOpenNode(int node) {
+		if (openNodes.isEmpty()) {
+			return -1;
+		}
+
+		int parent = openNodes.peek();
+		int previous = openLastChildren.peek();
+		if (previous < 0) {
+			firstChildren[parent] = node;
+		}
+		else {
+			nextSiblings[previous] = node;
+		}
+
+		parents[node] = parent;
+		openLastChildren.set(openLastChildren.size() - 1, node);
+		return previous;
+	}
+
+	private int getTokenReference(@Nullable Token token) {
+		if (token == null) {
+			return -1;
+		}
+
+		int index = token.getTokenIndex();
+		if (index >= 0) {
+			return index;
+		}
+
+		// conjured tokens are not in the token stream
+		Integer reference = extraTokenReferences.get(token);
+		if (reference == null) {
+			reference = -extraTokens.size() - 2;
+			extraTokens.add(token);
+			extraTokenReferences.put(token, reference);
+		}
+
+		return reference;
+	}
+
+	private int getContextClassIndex(@NotNull Class<? extends ParserRuleContext> contextClass) {
+		Integer index = contextClassIndexes.get(contextClass);
+		if (index == null) {
+			index = contextClasses.size();
+			contextClasses.add(contextClass);
+			contextClassIndexes.put(contextClass, index);
+		}
+
+		return index;
+	}
+}
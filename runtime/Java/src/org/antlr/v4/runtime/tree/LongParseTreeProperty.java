@@ -0,0 +1,132 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.runtime.tree;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Associates {@code long} values with parse tree nodes without boxing. Like
+ * {@link DenseParseTreeProperty}, values are stored in an array indexed by the
+ * {@link ParserRuleContext#getNodeId dense node id} of each node. Values for
+ * nodes which are not in the same tree as the first node stored are kept in
+ * an identity map.
+ *
+ * @since 4.4.1
+ */
+public class LongParseTreeProperty {
+	private final long defaultValue;
+
+	private long[] values = new long[0];
+	private final BitSet present = new BitSet();
+
+	@NotNull
+	private final NodeIdIndex index = new NodeIdIndex();
+
+	/** Values for nodes which do not have a node id or belong to another tree. */
+	private Map<ParseTree, Long> annotations;
+
+	public LongParseTreeProperty() {
+		this(0L);
+	}
+
+	/**
+	 * @param defaultValue The value returned by {@link #get} for nodes which
+	 * do not have a value.
+	 */
+	public LongParseTreeProperty(long defaultValue) {
+		this.defaultValue = defaultValue;
+	}
+
+	public long get(ParseTree node) {
+		int id = index.indexOf(node);
+		if (id < 0) {
+			Long value = annotations != null ? annotations.get(node) : null;
+			return value != null ? value : defaultValue;
+		}
+
+		return present.get(id) ? values[id] : defaultValue;
+	}
+
+	public boolean contains(ParseTree node) {
+		int id = index.indexOf(node);
+		if (id < 0) {
+			return annotations != null && annotations.containsKey(node);
+		}
+
+		return present.get(id);
+	}
+
+	public void put(ParseTree node, long value) {
+		int id = index.claim(node);
+		if (id < 0) {
+			if (annotations == null) {
+				annotations = new IdentityHashMap<ParseTree, Long>();
+			}
+
+			annotations.put(node, value);
+			return;
+		}
+
+		if (id >= values.length) {
+			values = Arrays.copyOf(values, Math.max(id + 1, values.length * 2));
+		}
+
+		values[id] = value;
+		present.set(id);
+	}
+
+	/**
+	 * Removes the value associated with {@code node}.
+	 *
+	 * @return The previous value, or the default value if {@code node} did
+	 * not have a value.
+	 */
+	public long removeFrom(ParseTree node) {
+		long previous = get(node);
+		int id = index.indexOf(node);
+		if (id < 0) {
+			if (annotations != null) {
+				annotations.remove(node);
+			}
+		}
+		else {
+			present.clear(id);
+		}
+
+		return previous;
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.antlr.v4.runtime.tree;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+/**
+ * Decides which nodes of a parse tree property may be stored by their
+ * {@link ParserRuleContext#getNodeId dense node id}. Node ids restart at 0 for
+ * every tree, so only the nodes of the tree containing the first node stored
+ * are indexed by id. Nodes of other trees are reported as not having an id.
+ *
+ * @since 4.4.1
+ */
+final class NodeIdIndex {
+	/** The root of the tree whose nodes are indexed by id. */
+	@Nullable
+	private ParseTree root;
+
+	/**
+	 * The last node found to belong to the tree of {@link #root}. A node is
+	 * usually visited right after its parent or a sibling, so walking up from
+	 * a node rarely has to go further than its parent.
+	 */
+	@Nullable
+	private ParseTree lastMember;
+
+	/**
+	 * Gets the id of {@code node}, if it belongs to the tree whose nodes are
+	 * indexed by id.
+	 *
+	 * @return The id of {@code node}, or -1 if {@code node} does not have an
+	 * id or belongs to another tree.
+	 */
+	public int indexOf(@NotNull ParseTree node) {
+		int id = Trees.getNodeId(node);
+		if (id < 0 || root == null) {
+			return -1;
+		}
+
+		return isMember(node) ? id : -1;
+	}
+
+	/**
+	 * Gets the id of {@code node} for storing a value. If no node was stored
+	 * yet, the tree containing {@code node} becomes the tree whose nodes are
+	 * indexed by id.
+	 *
+	 * @return The id of {@code node}, or -1 if {@code node} does not have an
+	 * id or belongs to another tree.
+	 */
+	public int claim(@NotNull ParseTree node) {
+		int id = Trees.getNodeId(node);
+		if (id < 0) {
+			return -1;
+		}
+
+		if (root == null) {
+			root = getRoot(node);
+			lastMember = node;
+			return id;
+		}
+
+		return isMember(node) ? id : -1;
+	}
+
+	private boolean isMember(@NotNull ParseTree node) {
+		ParseTree current = node;
+		while (current != lastMember) {
+			ParseTree parent = current.getParent();
+			if (parent == null) {
+				if (current != root) {
+					// a left-recursive start rule gives the tree a new root
+					// while it is parsed
+					if (root.getParent() == null) {
+						return false;
+					}
+
+					root = getRoot(root);
+					if (current != root) {
+						return false;
+					}
+				}
+
+				break;
+			}
+
+			current = parent;
+		}
+
+		lastMember = node;
+		return true;
+	}
+
+	@NotNull
+	private static ParseTree getRoot(@NotNull ParseTree node) {
+		ParseTree current = node;
+		while (current.getParent() != null) {
+			current = current.getParent();
+		}
+
+		return current;
+	}
+}
@@ -0,0 +1,343 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.runtime.tree;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.misc.IntegerList;
+import org.antlr.v4.runtime.misc.IntegerStack;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A parse listener which indexes the nodes of a parse tree by rule index and
+ * token type while the tree is constructed. Once an index is attached to a
+ * parser with {@link Parser#addParseListener}, {@link Trees#findAllNodes},
+ * {@link org.antlr.v4.runtime.tree.xpath.XPath}, and
+ * {@link org.antlr.v4.runtime.tree.pattern.ParseTreePattern#findAll} locate
+ * nodes of the most recent parse tree through the index, so each query takes
+ * time proportional to the number of nodes it returns rather than the size of
+ * the tree.
+ *
+ * <p>
+ * Every node is assigned a sequence number when it is completed, which is
+ * after its descendants for rule nodes. Along with the sequence number of the
+ * first node in its subtree, this allows all indexed nodes within any subtree
+ * to be located with a binary search. Nodes are returned in the same order as
+ * a pre-order traversal of the tree.</p>
+ *
+ * <p>
+ * The index is cleared when the parser enters a new start rule. It describes
+ * the tree as it was built by the parser, and is not updated if the tree is
+ * modified afterwards.</p>
+ *
+ * @since 4.4.1
+ */
+public class ParseTreeIndex implements ParseTreeListener {
+	/** Nodes by sequence number. */
+	private ParseTree[] nodes = new ParseTree[64];
+	/** The sequence number of the first node in the subtree of each node. */
+	private int[] subtreeStarts = new int[64];
+	private int size;
+
+	/** Sequence numbers of rule nodes, indexed by rule index. */
+	private IntegerList[] ruleNodes = new IntegerList[0];
+	/** Sequence numbers of terminal nodes, indexed by token type + 1. */
+	private IntegerList[] tokenNodes = new IntegerList[0];
+
+	private final Map<ParseTree, Integer> ruleSequenceNumbers = new IdentityHashMap<ParseTree, Integer>();
+
+	private final IntegerStack enterStack = new IntegerStack();
+	@Nullable
+	private ParseTree lastExited;
+	private int lastExitedStart;
+
+	/**
+	 * Gets the index attached to {@code parser}, or {@code null} if no
+	 * {@link ParseTreeIndex} is registered as a parse listener.
+	 */
+	@Nullable
+	public static ParseTreeIndex getIndex(@Nullable Parser parser) {
+		if (parser == null) {
+			return null;
+		}
+
+		for (ParseTreeListener listener : parser.getParseListeners()) {
+			if (listener instanceof ParseTreeIndex) {
+				return (ParseTreeIndex)listener;
+			}
+		}
+
+		return null;
+	}
+
+	/** Removes all nodes from the index. */
+	public void clear() {
+		Arrays.fill(nodes, 0, size, null);
+		size = 0;
+		ruleNodes = new IntegerList[0];
+		tokenNodes = new IntegerList[0];
+		ruleSequenceNumbers.clear();
+		enterStack.clear();
+		lastExited = null;
+	}
+
+	/** Gets the number of nodes in the index. */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Determines if {@code t} is part of the tree described by this index.
+	 */
+	public boolean contains(@NotNull ParseTree t) {
+		if (t instanceof TerminalNode) {
+			ParseTree parent = t.getParent();
+			return parent != null && ruleSequenceNumbers.containsKey(parent);
+		}
+
+		return ruleSequenceNumbers.containsKey(t);
+	}
+
+	/**
+	 * Gets the nodes for rule {@code ruleIndex} within the subtree rooted at
+	 * {@code t}, including {@code t} itself.
+	 *
+	 * @see Trees#findAllRuleNodes
+	 */
+	@NotNull
+	public List<ParseTree> findAllRuleNodes(@NotNull ParseTree t, int ruleIndex) {
+		return findAllNodes(t, ruleIndex, false);
+	}
+
+	/**
+	 * Gets the terminal nodes of type {@code ttype} within the subtree rooted
+	 * at {@code t}, including {@code t} itself.
+	 *
+	 * @see Trees#findAllTokenNodes
+	 */
+	@NotNull
+	public List<ParseTree> findAllTokenNodes(@NotNull ParseTree t, int ttype) {
+		return findAllNodes(t, ttype, true);
+	}
+
+	/**
+	 * Gets the nodes matching {@code index} within the subtree rooted at
+	 * {@code t}, in the same order as {@link Trees#findAllNodes}.
+	 *
+	 * @exception IllegalArgumentException if {@code t} is not
+	 * {@linkplain #contains contained} in this index
+	 */
+	@NotNull
+	public List<ParseTree> findAllNodes(@NotNull ParseTree t, int index, boolean findTokens) {
+		if (t instanceof TerminalNode) {
+			if (!contains(t)) {
+				throw new IllegalArgumentException("The tree is not contained in this index.");
+			}
+
+			if (findTokens && ((TerminalNode)t).getSymbol().getType() == index) {
+				return Collections.singletonList(t);
+			}
+
+			return Collections.emptyList();
+		}
+
+		Integer sequenceNumber = ruleSequenceNumbers.get(t);
+		if (sequenceNumber == null) {
+			throw new IllegalArgumentException("The tree is not contained in this index.");
+		}
+
+		IntegerList[] lists = findTokens ? tokenNodes : ruleNodes;
+		int key = findTokens ? index + 1 : index;
+		if (key < 0 || key >= lists.length || lists[key] == null) {
+			return Collections.emptyList();
+		}
+
+		IntegerList list = lists[key];
+		int start = subtreeStarts[sequenceNumber];
+		int stop = sequenceNumber;
+		int from = list.binarySearch(start);
+		if (from < 0) {
+			from = -from - 1;
+		}
+
+		int to = list.binarySearch(from, list.size(), stop);
+		to = to < 0 ? -to - 1 : to + 1;
+		if (from >= to) {
+			return Collections.emptyList();
+		}
+
+		List<ParseTree> result = new ArrayList<ParseTree>(to - from);
+		if (findTokens) {
+			// terminal nodes are completed in document order
+			for (int i = from; i < to; i++) {
+				result.add(nodes[list.get(i)]);
+			}
+		}
+		else {
+			addInPreOrder(list, from, to, result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Adds the rule nodes with the sequence numbers in
+	 * {@code list[from..to)} to {@code result} in pre-order. The sequence
+	 * numbers are in post-order, so the nested nodes are first arranged in a
+	 * forest, where the descendants of each node are the nodes popped from a
+	 * stack when the node is reached.
+	 */
+	private void addInPreOrder(IntegerList list, int from, int to, List<ParseTree> result) {
+		int count = to - from;
+		int[] firstChild = new int[count];
+		int[] nextSibling = new int[count];
+		int[] stack = new int[count];
+		int stackSize = 0;
+		for (int i = 0; i < count; i++) {
+			int sequenceNumber = list.get(from + i);
+			int child = -1;
+			while (stackSize > 0 && list.get(from + stack[stackSize - 1]) >= subtreeStarts[sequenceNumber]) {
+				int descendant = stack[--stackSize];
+				nextSibling[descendant] = child;
+				child = descendant;
+			}
+
+			firstChild[i] = child;
+			stack[stackSize++] = i;
+		}
+
+		// the remaining stack holds the roots of the forest in order
+		int roots = stackSize;
+		for (int i = 0; i < roots - 1; i++) {
+			nextSibling[stack[i]] = stack[i + 1];
+		}
+
+		if (roots > 0) {
+			nextSibling[stack[roots - 1]] = -1;
+			int first = stack[0];
+			stackSize = 0;
+			stack[stackSize++] = first;
+			while (stackSize > 0) {
+				int current = stack[--stackSize];
+				result.add(nodes[list.get(from + current)]);
+				if (nextSibling[current] >= 0) {
+					stack[stackSize++] = nextSibling[current];
+				}
+
+				if (firstChild[current] >= 0) {
+					stack[stackSize++] = firstChild[current];
+				}
+			}
+		}
+	}
+
+	@Override
+	public void enterEveryRule(@NotNull ParserRuleContext ctx) {
+		int start = size;
+		if (ctx.getChildCount() > 0 && ctx.getChild(0) == lastExited) {
+			// a left-recursive or left-factored rule adopted the previous context
+			start = lastExitedStart;
+		}
+		else if (enterStack.isEmpty()) {
+			// entering a new start rule
+			clear();
+			start = 0;
+		}
+
+		enterStack.push(start);
+	}
+
+	@Override
+	public void exitEveryRule(@NotNull ParserRuleContext ctx) {
+		int start = enterStack.pop();
+		int sequenceNumber = add(ctx, start);
+		ruleSequenceNumbers.put(ctx, sequenceNumber);
+		int ruleIndex = ctx.getRuleIndex();
+		if (ruleIndex >= 0) {
+			getList(false, ruleIndex).add(sequenceNumber);
+		}
+
+		lastExited = ctx;
+		lastExitedStart = start;
+	}
+
+	@Override
+	public void visitTerminal(@NotNull TerminalNode node) {
+		int sequenceNumber = add(node, size);
+		getList(true, node.getSymbol().getType() + 1).add(sequenceNumber);
+	}
+
+	@Override
+	public void visitErrorNode(@NotNull ErrorNode node) {
+		visitTerminal(node);
+	}
+
+	private int add(@NotNull ParseTree node, int subtreeStart) {
+		if (size == nodes.length) {
+			nodes = Arrays.copyOf(nodes, size * 2);
+			subtreeStarts = Arrays.copyOf(subtreeStarts, size * 2);
+		}
+
+		nodes[size] = node;
+		subtreeStarts[size] = subtreeStart;
+		return size++;
+	}
+
+	@NotNull
+	private IntegerList getList(boolean tokens, int key) {
+		IntegerList[] lists = tokens ? tokenNodes : ruleNodes;
+		if (key >= lists.length) {
+			lists = Arrays.copyOf(lists, Math.max(key + 1, lists.length * 2));
+			if (tokens) {
+				tokenNodes = lists;
+			}
+			else {
+				ruleNodes = lists;
+			}
+		}
+
+		IntegerList list = lists[key];
+		if (list == null) {
+			list = new IntegerList();
+			lists[key] = list;
+		}
+
+		return list;
+	}
+}
@@ -0,0 +1,232 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.runtime.tree;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.IntegerList;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a token stream and an optional parse tree in a compact, versioned
+ * binary format which is read by {@link SerializedParseTree#deserialize}.
+ *
+ * <p>The serialized form contains the following sections, all written with
+ * the big-endian encoding of {@link DataOutput}.</p>
+ *
+ * <ul>
+ * <li>A header containing {@link #MAGIC} and {@link #SERIALIZED_VERSION}.</li>
+ * <li>A pool of distinct strings, used for token text and context type
+ * names.</li>
+ * <li>The token table, stored as one column of {@code int} values for each
+ * token property. The table holds the tokens of the stream, followed by any
+ * tokens which appear in the tree but not in the stream (e.g. tokens
+ * conjured by error recovery).</li>
+ * <li>The parse tree in pre-order. A rule node is written as its rule index,
+ * child count, invoking state, start and stop tokens, and the name of its
+ * generated context class. A terminal or error node is written as a negative
+ * node kind followed by its token.</li>
+ * </ul>
+ *
+ * @since 4.4.1
+ */
+public class ParseTreeSerializer {
+	/**
+	 * The first value written to every serialized parse tree ({@code "APT\0"}).
+	 */
+	public static final int MAGIC = 0x41505400;
+
+	/**
+	 * This is the current serialized version of the parse tree format.
+	 */
+	public static final int SERIALIZED_VERSION = 1;
+
+	/** The node kind written for a {@link TerminalNode}. */
+	public static final int TERMINAL_NODE = -1;
+	/** The node kind written for an {@link ErrorNode}. */
+	public static final int ERROR_NODE = -2;
+
+	/**
+	 * Serialize {@code tokens} and {@code tree} to {@code output}.
+	 *
+	 * @param output The output to write to.
+	 * @param tokens The tokens of the stream the tree was parsed from, in
+	 * order. This is typically {@link org.antlr.v4.runtime.BufferedTokenStream#getTokens()}
+	 * after the stream was filled.
+	 * @param tree The parse tree to write, or {@code null} to write only the
+	 * tokens.
+	 *
+	 * @exception IllegalArgumentException if {@code tree} contains a rule node
+	 * which is not a {@link ParserRuleContext}.
+	 */
+	public static void serialize(@NotNull DataOutput output, @NotNull List<? extends Token> tokens, @Nullable ParseTree tree) throws IOException {
+		// assign token table slots, appending tokens which only occur in the tree
+		List<Token> tokenTable = new ArrayList<Token>(tokens);
+		Map<Token, Integer> tokenSlots = new IdentityHashMap<Token, Integer>();
+		for (int i = 0; i < tokenTable.size(); i++) {
+			tokenSlots.put(tokenTable.get(i), i);
+		}
+
+		StringPool strings = new StringPool();
+		IntegerList nodes = new IntegerList();
+		int nodeCount = 0;
+		if (tree != null) {
+			Deque<ParseTree> stack = new ArrayDeque<ParseTree>();
+			stack.push(tree);
+			while (!stack.isEmpty()) {
+				ParseTree node = stack.pop();
+				nodeCount++;
+				if (node instanceof TerminalNode) {
+					nodes.add(node instanceof ErrorNode ? ERROR_NODE : TERMINAL_NODE);
+					nodes.add(getTokenSlot(((TerminalNode)node).getSymbol(), tokenTable, tokenSlots));
+					continue;
+				}
+
+				if (!(node instanceof ParserRuleContext)) {
+					throw new IllegalArgumentException("Only trees of ParserRuleContext and TerminalNode instances can be serialized.");
+				}
+
+				ParserRuleContext context = (ParserRuleContext)node;
+				Class<?> contextClass = context.getClass();
+				nodes.add(context.getRuleIndex());
+				nodes.add(context.getChildCount());
+				nodes.add(context.invokingState);
+				nodes.add(getTokenSlot(context.getStart(), tokenTable, tokenSlots));
+				nodes.add(getTokenSlot(context.getStop(), tokenTable, tokenSlots));
+				// generated contexts are nested in the parser; runtime context types are implied
+				nodes.add(contextClass.getEnclosingClass() != null ? strings.add(contextClass.getSimpleName()) : -1);
+				for (int i = context.getChildCount() - 1; i >= 0; i--) {
+					stack.push(context.getChild(i));
+				}
+			}
+		}
+
+		int[] textSlots = new int[tokenTable.size()];
+		for (int i = 0; i < textSlots.length; i++) {
+			String text = tokenTable.get(i).getText();
+			textSlots[i] = text != null ? strings.add(text) : -1;
+		}
+
+		output.writeInt(MAGIC);
+		output.writeInt(SERIALIZED_VERSION);
+
+		// string pool
+		output.writeInt(strings.values.size());
+		for (String value : strings.values) {
+			output.writeInt(value.length());
+			output.writeChars(value);
+		}
+
+		// token table, one column at a time
+		output.writeInt(tokens.size());
+		output.writeInt(tokenTable.size());
+		for (Token token : tokenTable) {
+			output.writeInt(token.getType());
+		}
+
+		for (Token token : tokenTable) {
+			output.writeInt(token.getChannel());
+		}
+
+		for (Token token : tokenTable) {
+			output.writeInt(token.getStartIndex());
+		}
+
+		for (Token token : tokenTable) {
+			output.writeInt(token.getStopIndex());
+		}
+
+		for (Token token : tokenTable) {
+			output.writeInt(token.getLine());
+		}
+
+		for (Token token : tokenTable) {
+			output.writeInt(token.getCharPositionInLine());
+		}
+
+		for (Token token : tokenTable) {
+			output.writeInt(token.getTokenIndex());
+		}
+
+		for (int textSlot : textSlots) {
+			output.writeInt(textSlot);
+		}
+
+		// parse tree
+		output.writeInt(nodeCount);
+		output.writeInt(nodes.size());
+		for (int i = 0; i < nodes.size(); i++) {
+			output.writeInt(nodes.get(i));
+		}
+	}
+
+	private static int getTokenSlot(@Nullable Token token, @NotNull List<Token> tokenTable, @NotNull Map<Token, Integer> tokenSlots) {
+		if (token == null) {
+			return -1;
+		}
+
+		Integer slot = tokenSlots.get(token);
+		if (slot == null) {
+			slot = tokenTable.size();
+			tokenTable.add(token);
+			tokenSlots.put(token, slot);
+		}
+
+		return slot;
+	}
+
+	private static final class StringPool {
+		private final List<String> values = new ArrayList<String>();
+		private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+		public int add(@NotNull String value) {
+			Integer index = indexes.get(value);
+			if (index == null) {
+				index = values.size();
+				values.add(value);
+				indexes.put(value, index);
+			}
+
+			return index;
+		}
+	}
+}
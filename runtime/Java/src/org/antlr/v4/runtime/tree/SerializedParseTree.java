@@ -0,0 +1,733 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.runtime.tree;
+
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.InterpreterRuleContext;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A read-only view of a token stream and parse tree written by
+ * {@link ParseTreeSerializer}.
+ *
+ * <p>The view stores the tokens and nodes in flat arrays, and provides
+ * navigation methods which operate on integer handles rather than objects. A
+ * token is identified by its slot in the token table, and a node is identified
+ * by its position in a pre-order traversal of the tree, so the root of the
+ * tree is node 0. The first {@link #getTokenCount} slots of the token table
+ * hold the tokens of the serialized stream.</p>
+ *
+ * <p>When an object model is required, {@link #getTokens} and
+ * {@link #toParseTree(ContextFactory)} create {@link Token} and
+ * {@link ParseTree} instances equivalent to the serialized ones. Rebuilt
+ * contexts have their children, start and stop tokens, and invoking state
+ * restored, but not the values of labels or rule arguments, locals, and return
+ * values.</p>
+ *
+ * @since 4.4.1
+ */
+public class SerializedParseTree {
+	/**
+	 * The maximum number of elements allocated for an array before the
+	 * elements are read from the input.
+	 */
+	private static final int READ_CHUNK_SIZE = 1024;
+
+	@NotNull
+	private final String[] strings;
+
+	private final int tokenCount;
+	private final int[] tokenTypes;
+	private final int[] tokenChannels;
+	private final int[] tokenStartIndexes;
+	private final int[] tokenStopIndexes;
+	private final int[] tokenLines;
+	private final int[] tokenCharPositions;
+	private final int[] tokenIndexes;
+	private final int[] tokenTexts;
+
+	/**
+	 * The rule index of each rule node, or {@link ParseTreeSerializer#TERMINAL_NODE}
+	 * or {@link ParseTreeSerializer#ERROR_NODE} for other nodes.
+	 */
+	private final int[] nodeKinds;
+	private final int[] childCounts;
+	private final int[] invokingStates;
+	/** The start token slot of each rule node, or the symbol slot of each terminal node. */
+	private final int[] startTokens;
+	private final int[] stopTokens;
+	private final int[] contextTypes;
+	private final int[] parents;
+	/** The node following the last descendant of each node. */
+	private final int[] subtreeEnds;
+
+	/** Token instances created by {@link #getToken}, indexed by slot. */
+	private final Token[] tokenObjects;
+
+	private SerializedParseTree(@NotNull String[] strings, int tokenCount, int tokenTableSize, int nodeCount) {
+		this.strings = strings;
+		this.tokenCount = tokenCount;
+		this.tokenTypes = new int[tokenTableSize];
+		this.tokenChannels = new int[tokenTableSize];
+		this.tokenStartIndexes = new int[tokenTableSize];
+		this.tokenStopIndexes = new int[tokenTableSize];
+		this.tokenLines = new int[tokenTableSize];
+		this.tokenCharPositions = new int[tokenTableSize];
+		this.tokenIndexes = new int[tokenTableSize];
+		this.tokenTexts = new int[tokenTableSize];
+		this.tokenObjects = new Token[tokenTableSize];
+
+		this.nodeKinds = new int[nodeCount];
+		this.childCounts = new int[nodeCount];
+		this.invokingStates = new int[nodeCount];
+		this.startTokens = new int[nodeCount];
+		this.stopTokens = new int[nodeCount];
+		this.contextTypes = new int[nodeCount];
+		this.parents = new int[nodeCount];
+		this.subtreeEnds = new int[nodeCount];
+	}
+
+	/**
+	 * Read a token stream and parse tree written by
+	 * {@link ParseTreeSerializer#serialize}.
+	 *
+	 * @exception IOException if an I/O error occurs, or if {@code input} does
+	 * not contain a supported version of the serialized format.
+	 */
+	@NotNull
+	public static SerializedParseTree deserialize(@NotNull DataInput input) throws IOException {
+		int magic = input.readInt();
+		if (magic != ParseTreeSerializer.MAGIC) {
+			throw new IOException("The input does not contain a serialized parse tree.");
+		}
+
+		int version = input.readInt();
+		if (version != ParseTreeSerializer.SERIALIZED_VERSION) {
+			String reason = String.format(Locale.getDefault(), "Could not deserialize parse tree with version %d (expected %d).", version, ParseTreeSerializer.SERIALIZED_VERSION);
+			throw new IOException(reason);
+		}
+
+		// counts are not trusted for allocations, so malformed input fails with EOFException instead of exhausting memory
+		int stringCount = readCount(input);
+		String[] strings = new String[Math.min(stringCount, READ_CHUNK_SIZE)];
+		for (int i = 0; i < stringCount; i++) {
+			if (i == strings.length) {
+				strings = Arrays.copyOf(strings, grow(strings.length, stringCount));
+			}
+
+			strings[i] = readString(input, readCount(input));
+		}
+
+		int tokenCount = readCount(input);
+		int tokenTableSize = readCount(input);
+		if (tokenCount > tokenTableSize) {
+			throw malformed();
+		}
+
+		// the node count is read before the node data, so the tokens are read into local arrays first
+		int[][] tokenColumns = new int[8][];
+		for (int column = 0; column < tokenColumns.length; column++) {
+			tokenColumns[column] = readInts(input, tokenTableSize);
+		}
+
+		int nodeCount = readCount(input);
+		int nodeDataSize = readCount(input);
+		int[] nodeData = readInts(input, nodeDataSize);
+		if (nodeCount > nodeDataSize / 2) {
+			// every node is written with at least two values
+			throw malformed();
+		}
+
+		SerializedParseTree result = new SerializedParseTree(strings, tokenCount, tokenTableSize, nodeCount);
+		System.arraycopy(tokenColumns[0], 0, result.tokenTypes, 0, tokenTableSize);
+		System.arraycopy(tokenColumns[1], 0, result.tokenChannels, 0, tokenTableSize);
+		System.arraycopy(tokenColumns[2], 0, result.tokenStartIndexes, 0, tokenTableSize);
+		System.arraycopy(tokenColumns[3], 0, result.tokenStopIndexes, 0, tokenTableSize);
+		System.arraycopy(tokenColumns[4], 0, result.tokenLines, 0, tokenTableSize);
+		System.arraycopy(tokenColumns[5], 0, result.tokenCharPositions, 0, tokenTableSize);
+		System.arraycopy(tokenColumns[6], 0, result.tokenIndexes, 0, tokenTableSize);
+		System.arraycopy(tokenColumns[7], 0, result.tokenTexts, 0, tokenTableSize);
+		for (int textSlot : result.tokenTexts) {
+			checkIndex(textSlot, strings.length);
+		}
+
+		int[] stack = new int[16];
+		int[] remaining = new int[16];
+		int depth = 0;
+		int read = 0;
+		for (int node = 0; node < nodeCount; node++) {
+			if (node > 0 && depth == 0) {
+				// every node after the root must be a descendant of it
+				throw malformed();
+			}
+
+			if (read + 2 > nodeDataSize) {
+				throw malformed();
+			}
+
+			int kind = nodeData[read];
+			result.nodeKinds[node] = kind;
+			result.parents[node] = depth > 0 ? stack[depth - 1] : -1;
+			if (depth > 0) {
+				remaining[depth - 1]--;
+			}
+
+			if (kind >= 0) {
+				if (read + 6 > nodeDataSize) {
+					throw malformed();
+				}
+
+				result.childCounts[node] = nodeData[read + 1];
+				result.invokingStates[node] = nodeData[read + 2];
+				result.startTokens[node] = checkIndex(nodeData[read + 3], tokenTableSize);
+				result.stopTokens[node] = checkIndex(nodeData[read + 4], tokenTableSize);
+				result.contextTypes[node] = checkIndex(nodeData[read + 5], stringCount);
+				read += 6;
+				if (result.childCounts[node] < 0) {
+					throw malformed();
+				}
+			}
+			else if (kind == ParseTreeSerializer.TERMINAL_NODE || kind == ParseTreeSerializer.ERROR_NODE) {
+				int symbol = nodeData[read + 1];
+				if (symbol < 0 || symbol >= tokenTableSize) {
+					throw malformed();
+				}
+
+				result.invokingStates[node] = -1;
+				result.startTokens[node] = symbol;
+				result.stopTokens[node] = symbol;
+				result.contextTypes[node] = -1;
+				read += 2;
+			}
+			else {
+				throw malformed();
+			}
+
+			if (result.childCounts[node] > 0) {
+				if (depth == stack.length) {
+					stack = Arrays.copyOf(stack, depth * 2);
+					remaining = Arrays.copyOf(remaining, depth * 2);
+				}
+
+				stack[depth] = node;
+				remaining[depth] = result.childCounts[node];
+				depth++;
+			}
+			else {
+				result.subtreeEnds[node] = node + 1;
+				while (depth > 0 && remaining[depth - 1] == 0) {
+					depth--;
+					result.subtreeEnds[stack[depth]] = node + 1;
+				}
+			}
+		}
+
+		if (depth != 0 || read != nodeDataSize) {
+			throw malformed();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Gets the number of tokens in the serialized token stream.
+	 */
+	public int getTokenCount() {
+		return tokenCount;
+	}
+
+	/**
+	 * Gets the number of slots in the token table. This includes the tokens
+	 * of the stream, followed by tokens which only appear in the tree.
+	 */
+	public int getTokenTableSize() {
+		return tokenTypes.length;
+	}
+
+	public int getTokenType(int slot) {
+		return tokenTypes[slot];
+	}
+
+	public int getTokenChannel(int slot) {
+		return tokenChannels[slot];
+	}
+
+	public int getTokenStartIndex(int slot) {
+		return tokenStartIndexes[slot];
+	}
+
+	public int getTokenStopIndex(int slot) {
+		return tokenStopIndexes[slot];
+	}
+
+	public int getTokenLine(int slot) {
+		return tokenLines[slot];
+	}
+
+	public int getTokenCharPositionInLine(int slot) {
+		return tokenCharPositions[slot];
+	}
+
+	/**
+	 * Gets the value {@link Token#getTokenIndex} returned for the token in
+	 * {@code slot} when it was serialized.
+	 */
+	public int getTokenIndex(int slot) {
+		return tokenIndexes[slot];
+	}
+
+	@Nullable
+	public String getTokenText(int slot) {
+		int text = tokenTexts[slot];
+		return text >= 0 ? strings[text] : null;
+	}
+
+	/**
+	 * Gets a {@link Token} instance for the token in {@code slot}. Repeated
+	 * calls for the same slot return the same instance.
+	 */
+	@NotNull
+	public synchronized Token getToken(int slot) {
+		Token token = tokenObjects[slot];
+		if (token == null) {
+			CommonToken commonToken = new CommonToken(tokenTypes[slot], getTokenText(slot));
+			commonToken.setChannel(tokenChannels[slot]);
+			commonToken.setStartIndex(tokenStartIndexes[slot]);
+			commonToken.setStopIndex(tokenStopIndexes[slot]);
+			commonToken.setLine(tokenLines[slot]);
+			commonToken.setCharPositionInLine(tokenCharPositions[slot]);
+			commonToken.setTokenIndex(tokenIndexes[slot]);
+			token = commonToken;
+			tokenObjects[slot] = token;
+		}
+
+		return token;
+	}
+
+	/**
+	 * Gets the tokens of the serialized token stream. The elements of the
+	 * list are created on demand by {@link #getToken}.
+	 */
+	@NotNull
+	public List<Token> getTokens() {
+		return new AbstractList<Token>() {
+			@Override
+			public Token get(int index) {
+				if (index < 0 || index >= tokenCount) {
+					throw new IndexOutOfBoundsException();
+				}
+
+				return getToken(index);
+			}
+
+			@Override
+			public int size() {
+				return tokenCount;
+			}
+		};
+	}
+
+	/**
+	 * Gets the number of nodes in the serialized parse tree, or 0 if only
+	 * tokens were serialized.
+	 */
+	public int getNodeCount() {
+		return nodeKinds.length;
+	}
+
+	public boolean isTerminalNode(int node) {
+		return nodeKinds[node] < 0;
+	}
+
+	public boolean isErrorNode(int node) {
+		return nodeKinds[node] == ParseTreeSerializer.ERROR_NODE;
+	}
+
+	/**
+	 * Gets the rule index of a rule node, or -1 for a terminal node.
+	 */
+	public int getRuleIndex(int node) {
+		return Math.max(nodeKinds[node], -1);
+	}
+
+	public int getChildCount(int node) {
+		return childCounts[node];
+	}
+
+	/**
+	 * Gets the {@code i}th child of {@code node}. This method requires time
+	 * linear in {@code i}; use {@link #getNextSibling} to enumerate children.
+	 */
+	public int getChild(int node, int i) {
+		if (i < 0 || i >= childCounts[node]) {
+			throw new IndexOutOfBoundsException();
+		}
+
+		int child = node + 1;
+		for (int j = 0; j < i; j++) {
+			child = subtreeEnds[child];
+		}
+
+		return child;
+	}
+
+	/**
+	 * Gets the parent of {@code node}, or -1 for the root.
+	 */
+	public int getParent(int node) {
+		return parents[node];
+	}
+
+	/**
+	 * Gets the node following {@code node} in the children of its parent, or
+	 * -1 if {@code node} is the last child or the root.
+	 */
+	public int getNextSibling(int node) {
+		int parent = parents[node];
+		int next = subtreeEnds[node];
+		if (parent < 0 || next >= subtreeEnds[parent]) {
+			return -1;
+		}
+
+		return next;
+	}
+
+	/**
+	 * Gets the node following the last descendant of {@code node} in the
+	 * pre-order numbering; the descendants of {@code node} are the nodes
+	 * {@code node + 1} up to this value.
+	 */
+	public int getSubtreeEnd(int node) {
+		return subtreeEnds[node];
+	}
+
+	public int getInvokingState(int node) {
+		return invokingStates[node];
+	}
+
+	/**
+	 * Gets the token slot of the symbol of a terminal node, or of the start
+	 * token of a rule node. Returns -1 if a rule node does not have a start
+	 * token.
+	 */
+	public int getStartToken(int node) {
+		return startTokens[node];
+	}
+
+	/**
+	 * Gets the token slot of the symbol of a terminal node, or of the stop
+	 * token of a rule node. Returns -1 if a rule node does not have a stop
+	 * token.
+	 */
+	public int getStopToken(int node) {
+		return stopTokens[node];
+	}
+
+	/**
+	 * Gets the simple name of the generated context class of a rule node, or
+	 * {@code null} if the node was not an instance of a generated context.
+	 */
+	@Nullable
+	public String getContextType(int node) {
+		int type = contextTypes[node];
+		return type >= 0 ? strings[type] : null;
+	}
+
+	/**
+	 * Gets the text of {@code node}, computed in the same manner as
+	 * {@link ParseTree#getText}.
+	 */
+	@NotNull
+	public String getText(int node) {
+		if (isTerminalNode(node)) {
+			String text = getTokenText(startTokens[node]);
+			return text != null ? text : "null";
+		}
+
+		StringBuilder builder = new StringBuilder();
+		for (int i = node + 1; i < subtreeEnds[node]; i++) {
+			if (isTerminalNode(i)) {
+				builder.append(getText(i));
+			}
+		}
+
+		return builder.toString();
+	}
+
+	/**
+	 * Create a parse tree of {@link InterpreterRuleContext} instances for the
+	 * serialized tree.
+	 *
+	 * @return The root of the tree, or {@code null} if only tokens were
+	 * serialized.
+	 */
+	@Nullable
+	public ParseTree toParseTree() {
+		return toParseTree(null);
+	}
+
+	/**
+	 * Create a parse tree for the serialized tree, using {@code factory} to
+	 * create rule contexts.
+	 *
+	 * @param factory The factory used to create rule contexts, or
+	 * {@code null} to create {@link InterpreterRuleContext} instances.
+	 * @return The root of the tree, or {@code null} if only tokens were
+	 * serialized.
+	 */
+	@Nullable
+	public ParseTree toParseTree(@Nullable ContextFactory factory) {
+		if (nodeKinds.length == 0) {
+			return null;
+		}
+
+		if (isTerminalNode(0)) {
+			Token symbol = getToken(startTokens[0]);
+			return isErrorNode(0) ? new ErrorNodeImpl(symbol) : new TerminalNodeImpl(symbol);
+		}
+
+		ParserRuleContext[] contexts = new ParserRuleContext[nodeKinds.length];
+		for (int node = 0; node < nodeKinds.length; node++) {
+			ParserRuleContext parent = node > 0 ? contexts[parents[node]] : null;
+			if (isTerminalNode(node)) {
+				Token symbol = getToken(startTokens[node]);
+				if (isErrorNode(node)) {
+					parent.addErrorNode(symbol);
+				}
+				else {
+					parent.addChild(symbol);
+				}
+
+				continue;
+			}
+
+			ParserRuleContext context;
+			if (factory != null) {
+				context = factory.createContext(parent, invokingStates[node], nodeKinds[node], getContextType(node));
+			}
+			else {
+				context = new InterpreterRuleContext(parent, invokingStates[node], nodeKinds[node]);
+			}
+
+			context.start = startTokens[node] >= 0 ? getToken(startTokens[node]) : null;
+			context.stop = stopTokens[node] >= 0 ? getToken(stopTokens[node]) : null;
+			if (parent != null) {
+				parent.addChild(context);
+			}
+
+			contexts[node] = context;
+		}
+
+		return contexts[0];
+	}
+
+	private static int readCount(@NotNull DataInput input) throws IOException {
+		int count = input.readInt();
+		if (count < 0) {
+			throw malformed();
+		}
+
+		return count;
+	}
+
+	@NotNull
+	private static int[] readInts(@NotNull DataInput input, int count) throws IOException {
+		int[] result = new int[Math.min(count, READ_CHUNK_SIZE)];
+		for (int i = 0; i < count; i++) {
+			if (i == result.length) {
+				result = Arrays.copyOf(result, grow(result.length, count));
+			}
+
+			result[i] = input.readInt();
+		}
+
+		return result;
+	}
+
+	@NotNull
+	private static String readString(@NotNull DataInput input, int length) throws IOException {
+		char[] chars = new char[Math.min(length, READ_CHUNK_SIZE)];
+		for (int i = 0; i < length; i++) {
+			if (i == chars.length) {
+				chars = Arrays.copyOf(chars, grow(chars.length, length));
+			}
+
+			chars[i] = input.readChar();
+		}
+
+		return new String(chars);
+	}
+
+	/**
+	 * Gets the capacity for an array of {@code capacity} elements which has
+	 * been filled while reading {@code count} elements. Arrays only grow as
+	 * the elements are actually read, so the memory used by a malformed count
+	 * is bounded by the size of the input.
+	 */
+	private static int grow(int capacity, int count) {
+		return (int)Math.min(count, 2L * capacity);
+	}
+
+	private static int checkIndex(int index, int size) throws IOException {
+		if (index < -1 || index >= size) {
+			throw malformed();
+		}
+
+		return index;
+	}
+
+	@NotNull
+	private static IOException malformed() {
+		return new IOException("The serialized parse tree is malformed.");
+	}
+
+	/**
+	 * Creates the rule contexts of a parse tree rebuilt by
+	 * {@link #toParseTree(ContextFactory)}.
+	 */
+	public interface ContextFactory {
+		/**
+		 * Create a context for a rule node. The returned context must have
+		 * {@code parent} as its parent, but should not be added to the
+		 * children of {@code parent}.
+		 *
+		 * @param parent The parent context, or {@code null} for the root.
+		 * @param invokingState The invoking state of the serialized context.
+		 * @param ruleIndex The rule index of the serialized context.
+		 * @param contextType The simple name of the generated context class of
+		 * the serialized context, or {@code null} if it was not an instance of
+		 * a generated context.
+		 */
+		@NotNull
+		ParserRuleContext createContext(@Nullable ParserRuleContext parent, int invokingState, int ruleIndex, @Nullable String contextType);
+	}
+
+	/**
+	 * A {@link ContextFactory} which creates instances of the context classes
+	 * generated for a parser, including the contexts of labeled alternatives.
+	 * Constructors are located by reflection once for each context type.
+	 */
+	public static class ParserContextFactory implements ContextFactory {
+		@NotNull
+		private final Class<? extends Parser> parserClass;
+
+		private final Map<String, Constructor<?>[]> constructors =
+			new ConcurrentHashMap<String, Constructor<?>[]>();
+
+		public ParserContextFactory(@NotNull Class<? extends Parser> parserClass) {
+			this.parserClass = parserClass;
+		}
+
+		@Override
+		public ParserRuleContext createContext(ParserRuleContext parent, int invokingState, int ruleIndex, String contextType) {
+			if (contextType == null) {
+				return new InterpreterRuleContext(parent, invokingState, ruleIndex);
+			}
+
+			try {
+				Constructor<?>[] ctors = getConstructors(contextType);
+				ParserRuleContext context = (ParserRuleContext)ctors[0].newInstance(parent, invokingState);
+				if (ctors.length > 1) {
+					// labeled alternative; copy from an instance of the rule context
+					context = (ParserRuleContext)ctors[1].newInstance(context);
+				}
+
+				return context;
+			}
+			catch (InstantiationException ex) {
+				throw new IllegalStateException("Could not create context " + contextType, ex);
+			}
+			catch (IllegalAccessException ex) {
+				throw new IllegalStateException("Could not create context " + contextType, ex);
+			}
+			catch (InvocationTargetException ex) {
+				throw new IllegalStateException("Could not create context " + contextType, ex);
+			}
+			catch (NoSuchMethodException ex) {
+				throw new IllegalStateException("Could not create context " + contextType, ex);
+			}
+		}
+
+		/**
+		 * Gets the {@code (ParserRuleContext, int)} constructor of the rule
+		 * context for {@code contextType}, followed by the copy constructor of
+		 * {@code contextType} if it is the context of a labeled alternative.
+		 */
+		@NotNull
+		private Constructor<?>[] getConstructors(@NotNull String contextType) throws NoSuchMethodException {
+			Constructor<?>[] result = constructors.get(contextType);
+			if (result != null) {
+				return result;
+			}
+
+			Class<? extends ParserRuleContext> contextClass = null;
+			for (Class<?> nested : parserClass.getClasses()) {
+				if (nested.getSimpleName().equals(contextType) && ParserRuleContext.class.isAssignableFrom(nested)) {
+					contextClass = nested.asSubclass(ParserRuleContext.class);
+					break;
+				}
+			}
+
+			if (contextClass == null) {
+				throw new NoSuchMethodException("No context " + contextType + " in " + parserClass.getName());
+			}
+
+			try {
+				result = new Constructor<?>[] { contextClass.getConstructor(ParserRuleContext.class, int.class) };
+			}
+			catch (NoSuchMethodException ex) {
+				Class<? extends ParserRuleContext> ruleContextClass = contextClass.getSuperclass().asSubclass(ParserRuleContext.class);
+				result = new Constructor<?>[] {
+					ruleContextClass.getConstructor(ParserRuleContext.class, int.class),
+					contextClass.getConstructor(ruleContextClass)
+				};
+			}
+
+			constructors.put(contextType, result);
+			return result;
+		}
+	}
+}
@@ -40,6 +40,14 @@ public class TerminalNodeImpl implements TerminalNode {
 	public Token symbol;
 	public RuleNode parent;
 
+	/**
+	 * The dense id of this node within its parse tree, or -1 if no id was
+	 * assigned.
+	 *
+	 * @see org.antlr.v4.runtime.ParserRuleContext#getNodeId
+	 */
+	private int nodeId = -1;
+
 	public TerminalNodeImpl(Token symbol) {	this.symbol = symbol;	}
 
 	@Override
@@ -48,6 +56,18 @@ public class TerminalNodeImpl implements TerminalNode {
 	@Override
 	public Token getSymbol() {return symbol;}
 
+	/**
+	 * @see org.antlr.v4.runtime.ParserRuleContext#getNodeId
+	 * @since 4.4.1
+	 */
+	public int getNodeId() { return nodeId; }
+
+	/**
+	 * @see org.antlr.v4.runtime.ParserRuleContext#setNodeId
+	 * @since 4.4.1
+	 */
+	public void setNodeId(int nodeId) { this.nodeId = nodeId; }
+
 	@Override
 	public RuleNode getParent() { return parent; }
 
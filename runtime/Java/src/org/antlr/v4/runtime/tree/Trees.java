@@ -41,10 +41,12 @@ import org.antlr.v4.runtime.tree.gui.TreePostScriptGenerator;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 
 /** A set of utility routines useful for all kinds of ANTLR trees. */
@@ -67,11 +69,12 @@ public class Trees {
 							   String fontName, int fontSize)
 		throws IOException
 	{
-		String ps = getPS(t, ruleNames, fontName, fontSize);
+		TreePostScriptGenerator psgen =
+			new TreePostScriptGenerator(ruleNames, t, fontName, fontSize);
 		FileWriter f = new FileWriter(fileName);
 		BufferedWriter bw = new BufferedWriter(f);
 		try {
-			bw.write(ps);
+			psgen.writePS(bw);
 		}
 		finally {
 			bw.close();
@@ -187,6 +190,41 @@ public class Trees {
 		return findAllNodes(t, ruleIndex, false);
 	}
 
+	/**
+	 * Like {@link #findAllTokenNodes(ParseTree, int)}, but uses {@code index}
+	 * to locate the nodes when it describes the tree containing {@code t}.
+	 *
+	 * @since 4.4.1
+	 */
+	public static Collection<ParseTree> findAllTokenNodes(ParseTree t, int ttype, @Nullable ParseTreeIndex index) {
+		return findAllNodes(t, ttype, true, index);
+	}
+
+	/**
+	 * Like {@link #findAllRuleNodes(ParseTree, int)}, but uses {@code index}
+	 * to locate the nodes when it describes the tree containing {@code t}.
+	 *
+	 * @since 4.4.1
+	 */
+	public static Collection<ParseTree> findAllRuleNodes(ParseTree t, int ruleIndex, @Nullable ParseTreeIndex index) {
+		return findAllNodes(t, ruleIndex, false, index);
+	}
+
+	/**
+	 * Like {@link #findAllNodes(ParseTree, int, boolean)}, but uses
+	 * {@code index} to locate the nodes when it describes the tree containing
+	 * {@code t}.
+	 *
+	 * @since 4.4.1
+	 */
+	public static List<ParseTree> findAllNodes(ParseTree t, int index, boolean findTokens, @Nullable ParseTreeIndex treeIndex) {
+		if (treeIndex != null && treeIndex.contains(t)) {
+			return treeIndex.findAllNodes(t, index, findTokens);
+		}
+
+		return findAllNodes(t, index, findTokens);
+	}
+
 	public static List<ParseTree> findAllNodes(ParseTree t, int index, boolean findTokens) {
 		List<ParseTree> nodes = new ArrayList<ParseTree>();
 		_findAllNodes(t, index, findTokens, nodes);
@@ -222,6 +260,53 @@ public class Trees {
 		return nodes;
 	}
 
+	/**
+	 * Gets the dense id of a parse tree node, as described in
+	 * {@link ParserRuleContext#getNodeId}.
+	 *
+	 * @return The id of {@code t}, or -1 if {@code t} does not have an id.
+	 * @since 4.4.1
+	 */
+	public static int getNodeId(@NotNull ParseTree t) {
+		if (t instanceof ParserRuleContext) {
+			return ((ParserRuleContext)t).getNodeId();
+		}
+		else if (t instanceof TerminalNodeImpl) {
+			return ((TerminalNodeImpl)t).getNodeId();
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Assigns dense ids to the nodes of {@code t} in pre-order, starting at 0.
+	 * This is only required for trees which were not built by a
+	 * {@link Parser}, such as trees created by hand.
+	 *
+	 * @return The number of ids assigned.
+	 * @since 4.4.1
+	 */
+	public static int assignNodeIds(@NotNull ParseTree t) {
+		int nextId = 0;
+		Deque<ParseTree> stack = new ArrayDeque<ParseTree>();
+		stack.push(t);
+		while (!stack.isEmpty()) {
+			ParseTree node = stack.pop();
+			if (node instanceof ParserRuleContext) {
+				((ParserRuleContext)node).setNodeId(nextId++);
+			}
+			else if (node instanceof TerminalNodeImpl) {
+				((TerminalNodeImpl)node).setNodeId(nextId++);
+			}
+
+			for (int i = node.getChildCount() - 1; i >= 0; i--) {
+				stack.push(node.getChild(i));
+			}
+		}
+
+		return nextId;
+	}
+
 	private Trees() {
 	}
 }
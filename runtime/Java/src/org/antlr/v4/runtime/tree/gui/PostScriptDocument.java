@@ -30,7 +30,11 @@
 
 package org.antlr.v4.runtime.tree.gui;
 
+import org.antlr.v4.runtime.misc.NotNull;
+
 import java.awt.Font;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -67,6 +71,8 @@ public class PostScriptDocument {
 	protected StringBuilder ps = new StringBuilder();
 	protected boolean closed = false;
 
+	private Writer writer;
+
 	public PostScriptDocument() {
 		this(DEFAULT_FONT, 12);
 	}
@@ -81,6 +87,33 @@ public class PostScriptDocument {
 		return header()+ps.toString();
 	}
 
+	/**
+	 * Write the document to {@code writer} instead of collecting it in memory.
+	 * The header is written immediately, so the bounding box must be set
+	 * before calling this method. Content produced so far is written right
+	 * away, and later content is written by each call to {@link #flush}.
+	 *
+	 * @since 4.4.1
+	 */
+	public void streamTo(@NotNull Writer writer) throws IOException {
+		this.writer = writer;
+		writer.append(header());
+		flush();
+	}
+
+	/**
+	 * Write the content buffered since the last call to the writer passed to
+	 * {@link #streamTo}. This method does nothing if the document is not
+	 * being streamed.
+	 *
+	 * @since 4.4.1
+	 */
+	public void flush() throws IOException {
+		if ( writer==null ) return;
+		writer.append(ps);
+		ps.setLength(0);
+	}
+
 	public void boundingBox(int w, int h) {
 		boundingBoxWidth = w;
 		boundingBoxHeight = h;
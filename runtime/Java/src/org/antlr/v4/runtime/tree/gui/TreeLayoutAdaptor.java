@@ -31,10 +31,13 @@
 package org.antlr.v4.runtime.tree.gui;
 
 import org.abego.treelayout.TreeForTreeLayout;
+import org.antlr.v4.runtime.misc.Nullable;
 import org.antlr.v4.runtime.tree.Tree;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 /** Adaptor ANTLR trees to {@link TreeForTreeLayout}. */
 public class TreeLayoutAdaptor implements TreeForTreeLayout<Tree> {
@@ -107,14 +110,27 @@ public class TreeLayoutAdaptor implements TreeForTreeLayout<Tree> {
 	}
 
 	private Tree root;
+	private final Set<? extends Tree> collapsedNodes;
 
 	public TreeLayoutAdaptor(Tree root) {
+		this(root, null);
+	}
+
+	/**
+	 * Adapt a tree where the children of the nodes in {@code collapsedNodes}
+	 * are hidden from the layout. The set is read while the layout is
+	 * computed, so it should use identity comparison like the layout itself.
+	 *
+	 * @since 4.4.1
+	 */
+	public TreeLayoutAdaptor(Tree root, @Nullable Set<? extends Tree> collapsedNodes) {
 		this.root = root;
+		this.collapsedNodes = collapsedNodes != null ? collapsedNodes : Collections.<Tree>emptySet();
 	}
 
 	@Override
 	public boolean isLeaf(Tree node) {
-		return node.getChildCount() == 0;
+		return node.getChildCount() == 0 || collapsedNodes.contains(node);
 	}
 
 	@Override
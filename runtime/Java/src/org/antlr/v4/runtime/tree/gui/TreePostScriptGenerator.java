@@ -35,6 +35,7 @@ import org.abego.treelayout.NodeExtentProvider;
 import org.abego.treelayout.TreeForTreeLayout;
 import org.abego.treelayout.TreeLayout;
 import org.abego.treelayout.util.DefaultConfiguration;
+import org.antlr.v4.runtime.misc.NotNull;
 import org.antlr.v4.runtime.misc.Nullable;
 import org.antlr.v4.runtime.misc.Utils;
 import org.antlr.v4.runtime.tree.ErrorNode;
@@ -42,7 +43,13 @@ import org.antlr.v4.runtime.tree.Tree;
 
 import java.awt.Dimension;
 import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 
 public class TreePostScriptGenerator {
 	public class VariableExtentProvide implements NodeExtentProvider<Tree> {
@@ -107,6 +114,142 @@ public class TreePostScriptGenerator {
 		return doc.getPS();
 	}
 
+	/**
+	 * Write the PostScript for the tree to {@code writer}. The document is
+	 * the same one returned by {@link #getPS}, but it is written one node at a
+	 * time instead of being built in memory first. As with {@link #getPS}, a
+	 * generator can only produce its document once.
+	 *
+	 * @since 4.4.1
+	 */
+	public void writePS(@NotNull Writer writer) throws IOException {
+		Dimension size = treeLayout.getBounds().getBounds().getSize();
+		doc.boundingBox(size.width, size.height);
+		doc.streamTo(writer);
+
+		// generate the edges and boxes (with text)
+		new EdgeVisitor() {
+			@Override
+			protected void visitEdge(Rectangle2D.Double parentBounds, Rectangle2D.Double childBounds) throws IOException {
+				doc.line(parentBounds.getCenterX(), parentBounds.y, childBounds.getCenterX(), childBounds.getMaxY());
+				doc.flush();
+			}
+		}.visitEdges();
+
+		for (Tree node : treeLayout.getNodeBounds().keySet()) {
+			generateNode(node);
+			doc.flush();
+		}
+
+		doc.close();
+		doc.flush();
+	}
+
+	/**
+	 * Write the tree to {@code writer} as an SVG document, one node at a time.
+	 * The layout and font metrics are the same ones used for the PostScript
+	 * output.
+	 *
+	 * @since 4.4.1
+	 */
+	public void writeSVG(@NotNull final Writer writer) throws IOException {
+		Dimension size = treeLayout.getBounds().getBounds().getSize();
+		final double height = size.height;
+		writer.write(String.format(Locale.US,
+			"<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+			"<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"%d\" height=\"%d\" font-family=\"%s\" font-size=\"%d\">\n",
+			size.width, size.height, escapeXml(doc.fontMetrics.getFont().getFamily()), doc.getFontSize()));
+
+		writer.write("<g stroke=\"black\" stroke-width=\"0.3\">\n");
+		new EdgeVisitor() {
+			@Override
+			protected void visitEdge(Rectangle2D.Double parentBounds, Rectangle2D.Double childBounds) throws IOException {
+				writer.write(String.format(Locale.US, "<line x1=\"%1.3f\" y1=\"%1.3f\" x2=\"%1.3f\" y2=\"%1.3f\"/>\n",
+										   parentBounds.getCenterX(), height - parentBounds.y, childBounds.getCenterX(), height - childBounds.getMaxY()));
+			}
+		}.visitEdges();
+		writer.write("</g>\n");
+
+		for (Tree node : treeLayout.getNodeBounds().keySet()) {
+			Rectangle2D.Double box = getBoundsOfNode(node);
+			if ( node instanceof ErrorNode ) {
+				writer.write(String.format(Locale.US, "<rect x=\"%1.3f\" y=\"%1.3f\" width=\"%1.3f\" height=\"%1.3f\" fill=\"#f2d4d1\"/>\n",
+										   box.x, height - box.getMaxY(), box.width, box.height));
+			}
+
+			String[] lines = getText(node).split("\n");
+			double x = box.x+nodeWidthPadding;
+			double y = box.y+nodeHeightPaddingBelow;
+			for (int i = 0; i < lines.length; i++) {
+				writer.write(String.format(Locale.US, "<text x=\"%1.3f\" y=\"%1.3f\" xml:space=\"preserve\">%s</text>\n",
+										   x, height - y, escapeXml(lines[i])));
+				y += doc.getLineHeight();
+			}
+		}
+
+		writer.write("</svg>\n");
+	}
+
+	/**
+	 * Visits the edges of the tree in the order they are generated by
+	 * {@link #generateEdges}, without recursion.
+	 */
+	private abstract class EdgeVisitor {
+		public void visitEdges() throws IOException {
+			Tree root = getTree().getRoot();
+			if (getTree().isLeaf(root)) {
+				return;
+			}
+
+			Deque<Tree> parents = new ArrayDeque<Tree>();
+			Deque<Iterator<Tree>> children = new ArrayDeque<Iterator<Tree>>();
+			parents.push(root);
+			children.push(getChildren(root).iterator());
+			while (!parents.isEmpty()) {
+				if (!children.peek().hasNext()) {
+					parents.pop();
+					children.pop();
+					continue;
+				}
+
+				Tree child = children.peek().next();
+				visitEdge(getBoundsOfNode(parents.peek()), getBoundsOfNode(child));
+				if (!getTree().isLeaf(child)) {
+					parents.push(child);
+					children.push(getChildren(child).iterator());
+				}
+			}
+		}
+
+		protected abstract void visitEdge(Rectangle2D.Double parentBounds, Rectangle2D.Double childBounds) throws IOException;
+	}
+
+	private static String escapeXml(String s) {
+		StringBuilder buf = new StringBuilder(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '&':
+				buf.append("&amp;");
+				break;
+			case '<':
+				buf.append("&lt;");
+				break;
+			case '>':
+				buf.append("&gt;");
+				break;
+			case '"':
+				buf.append("&quot;");
+				break;
+			default:
+				buf.append(c);
+				break;
+			}
+		}
+
+		return buf.toString();
+	}
+
 	protected void generateEdges(Tree parent) {
 		if (!getTree().isLeaf(parent)) {
 			Rectangle2D.Double parentBounds = getBoundsOfNode(parent);
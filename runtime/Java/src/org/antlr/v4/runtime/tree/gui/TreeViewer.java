@@ -66,6 +66,7 @@ import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
 import javax.swing.filechooser.FileFilter;
 import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreeNode;
 import javax.swing.tree.TreePath;
 import javax.swing.tree.TreeSelectionModel;
 import java.awt.BasicStroke;
@@ -83,14 +84,24 @@ import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.geom.CubicCurve2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -121,7 +132,7 @@ public class TreeViewer extends JComponent {
 		@Override
 		public double getWidth(Tree tree) {
 			FontMetrics fontMetrics = viewer.getFontMetrics(viewer.font);
-			String s = viewer.getText(tree);
+			String s = viewer.getDisplayText(tree);
 			int w = fontMetrics.stringWidth(s) + viewer.nodeWidthPadding*2;
 			return w;
 		}
@@ -130,7 +141,7 @@ public class TreeViewer extends JComponent {
 		public double getHeight(Tree tree) {
 			FontMetrics fontMetrics = viewer.getFontMetrics(viewer.font);
 			int h = fontMetrics.getHeight() + viewer.nodeHeightPadding*2;
-			String s = viewer.getText(tree);
+			String s = viewer.getDisplayText(tree);
 			String[] lines = s.split("\n");
 			return h * lines.length;
 		}
@@ -159,12 +170,43 @@ public class TreeViewer extends JComponent {
 	protected Color borderColor = null;
 	protected Color textColor = Color.black;
 
+	/**
+	 * Nodes whose children are hidden from the layout. Large trees are shown
+	 * with subtrees collapsed so that about {@link #maxVisibleNodes} nodes are
+	 * laid out, and clicking a node expands or collapses it.
+	 */
+	protected final Set<Tree> collapsedNodes =
+		Collections.newSetFromMap(new IdentityHashMap<Tree, Boolean>());
+	protected int maxVisibleNodes = 2000;
+
+	/** The laid out nodes sorted by the left edge of their box. */
+	private Tree[] nodesByX;
+	private double maxNodeWidth;
+	/** The union of the boxes in the visible part of each subtree. */
+	private Map<Tree, Rectangle2D.Double> subtreeBounds;
+
 	public TreeViewer(@Nullable List<String> ruleNames, Tree tree) {
 		setRuleNames(ruleNames);
 		if ( tree!=null ) {
 			setTree(tree);
 		}
 		setFont(font);
+		addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				Tree node = getNodeAt(e.getX() / scale, e.getY() / scale);
+				if ( node==null || node.getChildCount()==0 ) {
+					return;
+				}
+
+				if ( isCollapsed(node) ) {
+					expand(node);
+				}
+				else {
+					collapse(node);
+				}
+			}
+		});
 	}
 
 	private void updatePreferredSize() {
@@ -189,6 +231,20 @@ public class TreeViewer extends JComponent {
 	}
 
 	protected void paintEdges(Graphics g, Tree parent) {
+		paintEdges(g, parent, null);
+	}
+
+	/**
+	 * Paint the edges below {@code parent}, skipping subtrees that lie
+	 * entirely outside of {@code clip}.
+	 *
+	 * @since 4.4.1
+	 */
+	protected void paintEdges(Graphics g, Tree parent, @Nullable Rectangle2D clip) {
+		if ( clip!=null && !getSubtreeBounds(parent).intersects(clip) ) {
+			return;
+		}
+
 		if (!getTree().isLeaf(parent)) {
             BasicStroke stroke = new BasicStroke(1.0f, BasicStroke.CAP_ROUND,
                     BasicStroke.JOIN_ROUND);
@@ -201,7 +257,10 @@ public class TreeViewer extends JComponent {
 				Rectangle2D.Double childBounds = getBoundsOfNode(child);
 				double x2 = childBounds.getCenterX();
 				double y2 = childBounds.getMinY();
-				if (getUseCurvedEdges()) {
+				if (clip != null && !clip.intersectsLine(x1, y1, x2, y2)) {
+					// the edge is not visible
+				}
+				else if (getUseCurvedEdges()) {
 					CubicCurve2D c = new CubicCurve2D.Double();
 					double ctrlx1 = x1;
 					double ctrly1 = (y1+y2)/2;
@@ -213,7 +272,7 @@ public class TreeViewer extends JComponent {
 					g.drawLine((int) x1, (int) y1,
 							   (int) x2, (int) y2);
 				}
-				paintEdges(g, child);
+				paintEdges(g, child, clip);
 			}
 		}
 	}
@@ -238,7 +297,7 @@ public class TreeViewer extends JComponent {
 
 		// draw the text on top of the box (possibly multiple lines)
 		g.setColor(textColor);
-		String s = getText(tree);
+		String s = getDisplayText(tree);
 		String[] lines = s.split("\n");
 		FontMetrics m = getFontMetrics(font);
 		int x = (int) box.x + arcSize / 2 + nodeWidthPadding;
@@ -279,14 +338,78 @@ public class TreeViewer extends JComponent {
 //
 //		g2.setTransform(at);
 
-		paintEdges(g, getTree().getRoot());
+		// only paint what intersects the visible region
+		Rectangle2D clip = g.getClipBounds();
+		paintEdges(g, getTree().getRoot(), clip);
 
 		// paint the boxes
-		for (Tree Tree : treeLayout.getNodeBounds().keySet()) {
+		for (Tree Tree : getNodesInRegion(clip)) {
 			paintBox(g, Tree);
 		}
 	}
 
+	/**
+	 * Get the laid out nodes whose boxes intersect {@code region}, or all of
+	 * the laid out nodes if {@code region} is {@code null}.
+	 *
+	 * @since 4.4.1
+	 */
+	@NotNull
+	protected List<Tree> getNodesInRegion(@Nullable Rectangle2D region) {
+		if ( nodesByX==null ) {
+			return Collections.emptyList();
+		}
+
+		if ( region==null ) {
+			return Arrays.asList(nodesByX);
+		}
+
+		// binary search for the first box which could reach the region
+		double minX = region.getMinX() - maxNodeWidth;
+		int low = 0;
+		int high = nodesByX.length;
+		while ( low<high ) {
+			int mid = (low + high) >>> 1;
+			if ( getBoundsOfNode(nodesByX[mid]).x < minX ) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+
+		List<Tree> result = new ArrayList<Tree>();
+		for (int i = low; i < nodesByX.length; i++) {
+			Rectangle2D.Double box = getBoundsOfNode(nodesByX[i]);
+			if ( box.x > region.getMaxX() ) {
+				break;
+			}
+
+			if ( box.intersects(region) ) {
+				result.add(nodesByX[i]);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Get the laid out node at a point in unscaled coordinates, or
+	 * {@code null} if there is no node at that point.
+	 *
+	 * @since 4.4.1
+	 */
+	@Nullable
+	public Tree getNodeAt(double x, double y) {
+		for (Tree node : getNodesInRegion(new Rectangle2D.Double(x, y, 0, 0))) {
+			if ( getBoundsOfNode(node).contains(x, y) ) {
+				return node;
+			}
+		}
+
+		return null;
+	}
+
 	@Override
 	protected Graphics getComponentGraphics(Graphics g) {
 		Graphics2D g2d=(Graphics2D)g;
@@ -370,7 +493,6 @@ public class TreeViewer extends JComponent {
 
 		Tree parseTreeRoot = viewer.getTree().getRoot();
 		TreeNodeWrapper nodeRoot = new TreeNodeWrapper(parseTreeRoot, viewer);
-		fillTree(nodeRoot, parseTreeRoot, viewer);
 		final JTree tree = new JTree(nodeRoot);
 		tree.getSelectionModel().setSelectionMode(TreeSelectionModel.SINGLE_TREE_SELECTION);
 
@@ -489,23 +611,6 @@ public class TreeViewer extends JComponent {
 		return pngFile;
 	}
 
-	private static void fillTree(TreeNodeWrapper node, Tree tree, TreeViewer viewer) {
-
-		if (tree == null) {
-			return;
-		}
-
-		for (int i = 0; i < tree.getChildCount(); i++) {
-
-			Tree childTree = tree.getChild(i);
-			TreeNodeWrapper childNode = new TreeNodeWrapper(childTree, viewer);
-
-			node.add(childNode);
-
-			fillTree(childNode, childTree, viewer);
-		}
-	}
-
 	private Dimension getScaledTreeSize() {
 		Dimension scaledTreeSize =
 			treeLayout.getBounds().getBounds().getSize();
@@ -569,6 +674,20 @@ public class TreeViewer extends JComponent {
 		return s;
 	}
 
+	/** Get the text shown in the box for a node, which marks collapsed nodes. */
+	protected String getDisplayText(Tree tree) {
+		String s = getText(tree);
+		if ( isCollapsed(tree) ) {
+			s += " ...";
+		}
+
+		return s;
+	}
+
+	protected Rectangle2D.Double getSubtreeBounds(Tree node) {
+		return subtreeBounds.get(node);
+	}
+
 	public TreeTextProvider getTreeTextProvider() {
 		return treeTextProvider;
 	}
@@ -671,23 +790,152 @@ public class TreeViewer extends JComponent {
 	}
 
 	public void setTree(Tree root) {
+		collapsedNodes.clear();
 		if ( root!=null ) {
-			boolean useIdentity = true; // compare node identity
-			this.treeLayout =
-				new TreeLayout<Tree>(new TreeLayoutAdaptor(root),
-									 new TreeViewer.VariableExtentProvide(this),
-									 new DefaultConfiguration<Tree>(gapBetweenLevels,
-																	gapBetweenNodes),
-									 useIdentity);
-			// Let the UI display this new AST.
-			updatePreferredSize();
+			collapseLargeSubtrees(root);
+			layoutTree(root);
 		}
 		else {
 			this.treeLayout = null;
+			this.nodesByX = null;
+			this.subtreeBounds = null;
 			repaint();
 		}
 	}
 
+	public boolean isCollapsed(Tree node) {
+		return collapsedNodes.contains(node);
+	}
+
+	/**
+	 * Show the children of {@code node}. Large subtrees below it are
+	 * collapsed the same way they are when a tree is first shown.
+	 *
+	 * @since 4.4.1
+	 */
+	public void expand(Tree node) {
+		if ( treeLayout==null || !collapsedNodes.remove(node) ) {
+			return;
+		}
+
+		collapseLargeSubtrees(node);
+		layoutTree(getTree().getRoot());
+	}
+
+	/**
+	 * Hide the children of {@code node}.
+	 *
+	 * @since 4.4.1
+	 */
+	public void collapse(Tree node) {
+		if ( treeLayout==null || node.getChildCount()==0 || !collapsedNodes.add(node) ) {
+			return;
+		}
+
+		layoutTree(getTree().getRoot());
+	}
+
+	public int getMaxVisibleNodes() {
+		return maxVisibleNodes;
+	}
+
+	/**
+	 * Set the number of nodes to lay out before collapsing subtrees, when a
+	 * tree is shown or a node is expanded.
+	 *
+	 * @since 4.4.1
+	 */
+	public void setMaxVisibleNodes(int maxVisibleNodes) {
+		this.maxVisibleNodes = maxVisibleNodes;
+	}
+
+	/**
+	 * Expand the nodes below {@code root} breadth-first until expanding the
+	 * next node would show more than {@link #maxVisibleNodes} nodes, and
+	 * collapse the remaining nodes. The children of {@code root} itself are
+	 * always shown, and nodes which are already collapsed stay collapsed.
+	 */
+	protected void collapseLargeSubtrees(Tree root) {
+		int visible = 1;
+		Deque<Tree> queue = new ArrayDeque<Tree>();
+		queue.add(root);
+		while ( !queue.isEmpty() ) {
+			Tree node = queue.remove();
+			int n = node.getChildCount();
+			if ( n==0 || collapsedNodes.contains(node) ) {
+				continue;
+			}
+
+			if ( node!=root && visible + n > maxVisibleNodes ) {
+				collapsedNodes.add(node);
+				continue;
+			}
+
+			visible += n;
+			for (int i = 0; i < n; i++) {
+				queue.add(node.getChild(i));
+			}
+		}
+	}
+
+	/**
+	 * Lay out the visible part of the tree, and index the result so painting
+	 * only has to visit the nodes which intersect the visible region.
+	 */
+	protected void layoutTree(Tree root) {
+		boolean useIdentity = true; // compare node identity
+		this.treeLayout =
+			new TreeLayout<Tree>(new TreeLayoutAdaptor(root, collapsedNodes),
+								 new TreeViewer.VariableExtentProvide(this),
+								 new DefaultConfiguration<Tree>(gapBetweenLevels,
+																gapBetweenNodes),
+								 useIdentity);
+
+		final Map<Tree, Rectangle2D.Double> bounds = treeLayout.getNodeBounds();
+		nodesByX = bounds.keySet().toArray(new Tree[bounds.size()]);
+		Arrays.sort(nodesByX, new Comparator<Tree>() {
+			@Override
+			public int compare(Tree o1, Tree o2) {
+				return Double.compare(bounds.get(o1).x, bounds.get(o2).x);
+			}
+		});
+
+		maxNodeWidth = 0;
+		for (Rectangle2D.Double box : bounds.values()) {
+			maxNodeWidth = Math.max(maxNodeWidth, box.width);
+		}
+
+		// visit the nodes in pre-order, then compute bounds bottom-up
+		List<Tree> preorder = new ArrayList<Tree>(bounds.size());
+		Deque<Tree> stack = new ArrayDeque<Tree>();
+		stack.push(root);
+		while ( !stack.isEmpty() ) {
+			Tree node = stack.pop();
+			preorder.add(node);
+			if ( !getTree().isLeaf(node) ) {
+				for (Tree child : getTree().getChildren(node)) {
+					stack.push(child);
+				}
+			}
+		}
+
+		subtreeBounds = new IdentityHashMap<Tree, Rectangle2D.Double>(bounds.size());
+		for (int i = preorder.size() - 1; i >= 0; i--) {
+			Tree node = preorder.get(i);
+			Rectangle2D.Double r = (Rectangle2D.Double)bounds.get(node).clone();
+			if ( !getTree().isLeaf(node) ) {
+				for (Tree child : getTree().getChildren(node)) {
+					Rectangle2D.union(r, subtreeBounds.get(child), r);
+				}
+			}
+
+			subtreeBounds.put(node, r);
+		}
+
+		// Let the UI display this new AST.
+		updatePreferredSize();
+	}
+
 	public double getScale() {
 		return scale;
 	}
@@ -708,11 +956,43 @@ public class TreeViewer extends JComponent {
 
 		final TreeViewer viewer;
 
+		// children are created when the JTree first asks for them
+		private boolean childrenLoaded;
+
 		TreeNodeWrapper(Tree tree, TreeViewer viewer) {
 			super(tree);
 			this.viewer = viewer;
 		}
 
+		@Override
+		public boolean isLeaf() {
+			return ((Tree)getUserObject()).getChildCount() == 0;
+		}
+
+		@Override
+		public int getChildCount() {
+			loadChildren();
+			return super.getChildCount();
+		}
+
+		@Override
+		public TreeNode getChildAt(int index) {
+			loadChildren();
+			return super.getChildAt(index);
+		}
+
+		private void loadChildren() {
+			if (childrenLoaded) {
+				return;
+			}
+
+			childrenLoaded = true;
+			Tree tree = (Tree)getUserObject();
+			for (int i = 0; i < tree.getChildCount(); i++) {
+				add(new TreeNodeWrapper(tree.getChild(i), viewer));
+			}
+		}
+
 		@Override
 		public String toString() {
 			return viewer.getText((Tree) this.getUserObject());
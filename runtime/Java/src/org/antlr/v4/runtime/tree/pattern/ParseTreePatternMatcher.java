@@ -52,6 +52,8 @@ import org.antlr.v4.runtime.tree.TerminalNode;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A tree pattern matching mechanism for ANTLR {@link ParseTree}s.
@@ -136,6 +138,13 @@ public class ParseTreePatternMatcher {
 	protected String stop = ">";
 	protected String escape = "\\"; // e.g., \< and \> must escape BOTH!
 
+	/**
+	 * Patterns previously returned by {@link #compile}, keyed by the pattern
+	 * string, start rule, and the delimiters in effect when it was compiled.
+	 */
+	private final ConcurrentMap<PatternKey, ParseTreePattern> compiledPatterns =
+		new ConcurrentHashMap<PatternKey, ParseTreePattern>();
+
 	/**
 	 * Constructs a {@link ParseTreePatternMatcher} or from a {@link Lexer} and
 	 * {@link Parser} object. The lexer input stream is altered for tokenizing
@@ -213,8 +222,40 @@ public class ParseTreePatternMatcher {
 	/**
 	 * For repeated use of a tree pattern, compile it to a
 	 * {@link ParseTreePattern} using this method.
+	 *
+	 * <p>Compiled patterns are immutable and cached by this matcher, so
+	 * compiling the same pattern string for the same rule (with the same
+	 * delimiters) returns the previously compiled instance. This method may be
+	 * called concurrently from multiple threads.</p>
 	 */
 	public ParseTreePattern compile(String pattern, int patternRuleIndex) {
+		PatternKey key = new PatternKey(pattern, patternRuleIndex, start, stop, escape);
+		ParseTreePattern result = compiledPatterns.get(key);
+		if (result != null) {
+			return result;
+		}
+
+		// the lexer is shared, so only one pattern may be tokenized at a time
+		synchronized (lexer) {
+			result = compiledPatterns.get(key);
+			if (result == null) {
+				result = compileImpl(pattern, patternRuleIndex);
+				compiledPatterns.put(key, result);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Removes all patterns from the cache used by {@link #compile}.
+	 */
+	public void clearPatternCache() {
+		compiledPatterns.clear();
+	}
+
+	@NotNull
+	protected ParseTreePattern compileImpl(String pattern, int patternRuleIndex) {
 		List<? extends Token> tokenList = tokenize(pattern);
 		ListTokenSource tokenSrc = new ListTokenSource(tokenList);
 		CommonTokenStream tokens = new CommonTokenStream(tokenSrc);
@@ -530,4 +571,47 @@ public class ParseTreePatternMatcher {
 
 		return chunks;
 	}
+
+	private static final class PatternKey {
+		private final String pattern;
+		private final int patternRuleIndex;
+		private final String start;
+		private final String stop;
+		private final String escape;
+
+		public PatternKey(String pattern, int patternRuleIndex, String start, String stop, String escape) {
+			this.pattern = pattern;
+			this.patternRuleIndex = patternRuleIndex;
+			this.start = start;
+			this.stop = stop;
+			this.escape = escape;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			else if (!(obj instanceof PatternKey)) {
+				return false;
+			}
+
+			PatternKey other = (PatternKey)obj;
+			return patternRuleIndex == other.patternRuleIndex
+				&& pattern.equals(other.pattern)
+				&& start.equals(other.start)
+				&& stop.equals(other.stop)
+				&& (escape != null ? escape.equals(other.escape) : other.escape == null);
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = pattern.hashCode();
+			hash = 31 * hash + patternRuleIndex;
+			hash = 31 * hash + start.hashCode();
+			hash = 31 * hash + stop.hashCode();
+			hash = 31 * hash + (escape != null ? escape.hashCode() : 0);
+			return hash;
+		}
+	}
 }
@@ -0,0 +1,221 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.runtime.tree.pattern;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A collection of compiled tree patterns which are matched against a parse
+ * tree together in a single traversal.
+ *
+ * <p>Patterns are grouped by the rule index of their root and by the type of
+ * their first token, so each rule node of the tree is only compared to the
+ * patterns which could possibly match it. A pattern whose first element is a
+ * rule tag (e.g. {@code <expr> + <expr>}) is compared to every node for its
+ * rule.</p>
+ *
+ * <p>Like {@link ParseTreePattern#findAll} with the XPath {@code //rule}, a
+ * pattern is only compared to subtrees rooted at a context for the pattern's
+ * start rule. Instances of this class are immutable and may be shared between
+ * threads.</p>
+ *
+ * @since 4.4.1
+ */
+public class ParseTreePatternSet {
+	/**
+	 * The first-token key used for patterns which do not start with a
+	 * specific token.
+	 */
+	private static final int ANY_TOKEN = Integer.MIN_VALUE;
+
+	@NotNull
+	private final List<ParseTreePattern> patterns;
+
+	/**
+	 * Maps a rule index to the patterns rooted at that rule, grouped by the
+	 * type of their first token.
+	 */
+	private final Map<Integer, PatternGroup> groups = new HashMap<Integer, PatternGroup>();
+
+	public ParseTreePatternSet(@NotNull Collection<? extends ParseTreePattern> patterns) {
+		this.patterns = Collections.unmodifiableList(new ArrayList<ParseTreePattern>(patterns));
+		for (int i = 0; i < this.patterns.size(); i++) {
+			ParseTreePattern pattern = this.patterns.get(i);
+			int ruleIndex = pattern.getPatternRuleIndex();
+			PatternGroup group = groups.get(ruleIndex);
+			if (group == null) {
+				group = new PatternGroup();
+				groups.put(ruleIndex, group);
+			}
+
+			group.add(getFirstTokenType(pattern), i);
+		}
+	}
+
+	/**
+	 * Gets the patterns in this set, in the order they were provided to the
+	 * constructor.
+	 */
+	@NotNull
+	public List<ParseTreePattern> getPatterns() {
+		return patterns;
+	}
+
+	/**
+	 * Find all successful matches of the patterns in this set against
+	 * {@code tree} and its descendants.
+	 *
+	 * @param tree The root of the parse tree to search.
+	 * @return A list of the successful matches. Matches are ordered by a
+	 * pre-order traversal of {@code tree}, and matches at the same node are
+	 * ordered by the position of the pattern in {@link #getPatterns}.
+	 */
+	@NotNull
+	public List<ParseTreeMatch> findAll(@NotNull ParseTree tree) {
+		List<ParseTreeMatch> matches = new ArrayList<ParseTreeMatch>();
+		Deque<ParseTree> stack = new ArrayDeque<ParseTree>();
+		stack.push(tree);
+		while (!stack.isEmpty()) {
+			ParseTree node = stack.pop();
+			if (!(node instanceof ParserRuleContext)) {
+				continue;
+			}
+
+			ParserRuleContext context = (ParserRuleContext)node;
+			PatternGroup group = groups.get(context.getRuleIndex());
+			if (group != null) {
+				group.match(context, patterns, matches);
+			}
+
+			for (int i = context.getChildCount() - 1; i >= 0; i--) {
+				stack.push(context.getChild(i));
+			}
+		}
+
+		return matches;
+	}
+
+	/**
+	 * Gets the type of the token which must appear first in any subtree
+	 * matched by {@code pattern}, or {@link #ANY_TOKEN} if the first element
+	 * of the pattern is a rule tag.
+	 */
+	private static int getFirstTokenType(@NotNull ParseTreePattern pattern) {
+		ParseTreePatternMatcher matcher = pattern.getMatcher();
+		ParseTree node = pattern.getPatternTree();
+		while (!(node instanceof TerminalNode)) {
+			if (node.getChildCount() == 0 || matcher.getRuleTagToken(node) != null) {
+				return ANY_TOKEN;
+			}
+
+			node = node.getChild(0);
+		}
+
+		return ((TerminalNode)node).getSymbol().getType();
+	}
+
+	/**
+	 * Gets the type of the first leaf of {@code tree} reached by following the
+	 * first child of each node, or {@link Token#INVALID_TYPE} if that path ends
+	 * at a rule node with no children.
+	 */
+	private static int getFirstTokenType(@NotNull ParseTree tree) {
+		ParseTree node = tree;
+		while (!(node instanceof TerminalNode)) {
+			if (node.getChildCount() == 0) {
+				return Token.INVALID_TYPE;
+			}
+
+			node = node.getChild(0);
+		}
+
+		return ((TerminalNode)node).getSymbol().getType();
+	}
+
+	private static final class PatternGroup {
+		private final List<Integer> anyToken = new ArrayList<Integer>();
+		private final Map<Integer, List<Integer>> byToken = new HashMap<Integer, List<Integer>>();
+
+		public void add(int firstTokenType, int patternIndex) {
+			if (firstTokenType == ANY_TOKEN) {
+				anyToken.add(patternIndex);
+				return;
+			}
+
+			List<Integer> list = byToken.get(firstTokenType);
+			if (list == null) {
+				list = new ArrayList<Integer>();
+				byToken.put(firstTokenType, list);
+			}
+
+			list.add(patternIndex);
+		}
+
+		public void match(@NotNull ParserRuleContext context, @NotNull List<ParseTreePattern> patterns, @NotNull List<ParseTreeMatch> matches) {
+			List<Integer> typed = byToken.isEmpty() ? null : byToken.get(getFirstTokenType(context));
+			if (typed == null) {
+				typed = Collections.emptyList();
+			}
+
+			// merge the two candidate lists so matches are reported in pattern order
+			int i = 0;
+			int j = 0;
+			while (i < anyToken.size() || j < typed.size()) {
+				int patternIndex;
+				if (j >= typed.size() || (i < anyToken.size() && anyToken.get(i) < typed.get(j))) {
+					patternIndex = anyToken.get(i++);
+				}
+				else {
+					patternIndex = typed.get(j++);
+				}
+
+				ParseTreePattern pattern = patterns.get(patternIndex);
+				ParseTreeMatch match = pattern.getMatcher().match(context, pattern);
+				if (match.succeeded()) {
+					matches.add(match);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,333 @@
+package org.antlr.v4.runtime.tree.xpath;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compiled form of an {@link XPath} which evaluates all of its path elements
+ * in a single depth-first traversal of the tree.
+ *
+ * <p>
+ * The path is treated as a state machine where state {@code j} means the
+ * first {@code j} path elements have been matched. The active states of each
+ * node are computed from the states of its parent, so every node is visited
+ * at most once, and subtrees which cannot contribute to a match are skipped.
+ * Several compiled paths may be evaluated in the same traversal with
+ * {@link #evaluate(ParseTree, List)}.</p>
+ *
+ * <p>
+ * The nodes matched by a compiled path are the same nodes returned by
+ * {@link XPath#evaluate}, except that the synthetic root node used by
+ * {@link XPath} is never returned. The results are returned in document
+ * order.</p>
+ *
+ * <p>
+ * Instances are immutable and may be shared by multiple threads. Use
+ * {@link #compile} to obtain a cached instance for a parser.</p>
+ */
+public class CompiledXPath {
+	/** The maximum number of elements in a compiled path. */
+	public static final int MAX_ELEMENTS = 63;
+
+	private static final Map<ATN, Map<String, CompiledXPath>> cache =
+		new WeakHashMap<ATN, Map<String, CompiledXPath>>();
+
+	private static final int RULE = 0;
+	private static final int TOKEN = 1;
+	private static final int WILDCARD = 2;
+
+	protected final String path;
+
+	private final int[] kinds;
+	private final int[] indexes;
+	/** Bit {@code j} is set if element {@code j} is an anywhere element. */
+	private final long anywhere;
+	/** Bit {@code j} is set if element {@code j} is inverted. */
+	private final long inverted;
+
+	public CompiledXPath(@NotNull Parser parser, @NotNull String path) {
+		this(path, new XPath(parser, path).elements);
+	}
+
+	protected CompiledXPath(@NotNull String path, @NotNull XPathElement[] elements) {
+		if (elements.length > MAX_ELEMENTS) {
+			throw new IllegalArgumentException("Path '" + path + "' has more than " + MAX_ELEMENTS + " elements");
+		}
+
+		this.path = path;
+		this.kinds = new int[elements.length];
+		this.indexes = new int[elements.length];
+		long anywhere = 0;
+		long inverted = 0;
+		for (int i = 0; i < elements.length; i++) {
+			XPathElement element = elements[i];
+			if (element instanceof XPathRuleElement) {
+				kinds[i] = RULE;
+				indexes[i] = ((XPathRuleElement)element).ruleIndex;
+			}
+			else if (element instanceof XPathRuleAnywhereElement) {
+				kinds[i] = RULE;
+				indexes[i] = ((XPathRuleAnywhereElement)element).ruleIndex;
+				anywhere |= 1L << i;
+			}
+			else if (element instanceof XPathTokenElement) {
+				kinds[i] = TOKEN;
+				indexes[i] = ((XPathTokenElement)element).tokenType;
+			}
+			else if (element instanceof XPathTokenAnywhereElement) {
+				kinds[i] = TOKEN;
+				indexes[i] = ((XPathTokenAnywhereElement)element).tokenType;
+				anywhere |= 1L << i;
+			}
+			else if (element instanceof XPathWildcardElement) {
+				kinds[i] = WILDCARD;
+			}
+			else if (element instanceof XPathWildcardAnywhereElement) {
+				kinds[i] = WILDCARD;
+				anywhere |= 1L << i;
+			}
+			else {
+				throw new IllegalArgumentException("Unsupported path element " + element);
+			}
+
+			if (element.invert) {
+				inverted |= 1L << i;
+			}
+		}
+
+		this.anywhere = anywhere;
+		this.inverted = inverted;
+	}
+
+	/**
+	 * Gets a compiled form of {@code path} for trees produced by
+	 * {@code parser}. Compiled paths are cached for each {@link ATN}, so
+	 * repeated calls with the same path do not parse it again.
+	 */
+	@NotNull
+	public static CompiledXPath compile(@NotNull Parser parser, @NotNull String path) {
+		Map<String, CompiledXPath> paths;
+		synchronized (cache) {
+			paths = cache.get(parser.getATN());
+			if (paths == null) {
+				paths = new ConcurrentHashMap<String, CompiledXPath>();
+				cache.put(parser.getATN(), paths);
+			}
+		}
+
+		CompiledXPath result = paths.get(path);
+		if (result == null) {
+			result = new CompiledXPath(parser, path);
+			paths.put(path, result);
+		}
+
+		return result;
+	}
+
+	@NotNull
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * Return a list of all nodes starting at {@code t} as root that satisfy
+	 * the path.
+	 */
+	@NotNull
+	public List<ParseTree> evaluate(@NotNull ParseTree t) {
+		return evaluate(t, Collections.singletonList(this)).get(0);
+	}
+
+	/**
+	 * Evaluates several compiled paths in a single traversal of {@code t}.
+	 *
+	 * @return A list containing the nodes matched by each path, in the same
+	 * order as {@code paths}.
+	 */
+	@NotNull
+	public static List<List<ParseTree>> evaluate(@NotNull ParseTree t, @NotNull List<? extends CompiledXPath> paths) {
+		int count = paths.size();
+		CompiledXPath[] compiled = paths.toArray(new CompiledXPath[count]);
+		List<List<ParseTree>> results = new ArrayList<List<ParseTree>>(count);
+		for (int i = 0; i < count; i++) {
+			results.add(new ArrayList<ParseTree>());
+		}
+
+		if (count == 0) {
+			return results;
+		}
+
+		// For each depth and path, three masks are stored:
+		//   matched: bit j is set if the node was matched by element j-1
+		//   searching: bit j is set if the node is within the scope of anywhere element j
+		//   stepping: bit j is set if the children of the node are tested against element j
+		final int stride = 3 * count;
+		long[] masks = new long[stride * 16];
+		ParseTree[] nodes = new ParseTree[16];
+		int[] childIndexes = new int[16];
+
+		// the synthetic root is matched by the empty path and has a single child
+		for (int i = 0; i < count; i++) {
+			CompiledXPath xpath = compiled[i];
+			if (xpath.kinds.length == 0) {
+				continue;
+			}
+
+			if ((xpath.anywhere & 1) != 0) {
+				masks[3 * i + 1] = 1;
+			}
+			else {
+				masks[3 * i + 2] = 1;
+			}
+		}
+
+		int depth = 0;
+		nodes[1] = t;
+		childIndexes[1] = -1;
+		while (true) {
+			ParseTree node = nodes[depth + 1];
+			if (node != null && childIndexes[depth + 1] < 0) {
+				// entering a node at depth+1
+				int current = depth + 1;
+				if ((current + 1) * stride > masks.length) {
+					masks = Arrays.copyOf(masks, masks.length * 2);
+				}
+
+				boolean hasChildren = node.getChildCount() > 0;
+				boolean active = false;
+				int parentBase = depth * stride;
+				int base = current * stride;
+				for (int i = 0; i < count; i++) {
+					CompiledXPath xpath = compiled[i];
+					long parentSearching = masks[parentBase + 3 * i + 1];
+					long parentStepping = masks[parentBase + 3 * i + 2];
+					long matched = 0;
+					for (long bits = parentStepping; bits != 0; bits &= bits - 1) {
+						int j = Long.numberOfTrailingZeros(bits);
+						if (xpath.matchesChild(j, node)) {
+							matched |= 1L << (j + 1);
+						}
+					}
+
+					long searching = parentSearching;
+					long stepping = 0;
+					int length = xpath.kinds.length;
+					for (int j = 0; j <= length; j++) {
+						long bit = 1L << j;
+						if ((matched & bit) != 0 && j < length && hasChildren) {
+							if ((xpath.anywhere & bit) != 0) {
+								searching |= bit;
+							}
+							else {
+								stepping |= bit;
+							}
+						}
+
+						if ((searching & bit) != 0 && xpath.matchesDescendant(j, node)) {
+							matched |= bit << 1;
+						}
+					}
+
+					if ((matched & (1L << length)) != 0) {
+						results.get(i).add(node);
+					}
+
+					if (!hasChildren) {
+						searching = 0;
+					}
+
+					masks[base + 3 * i] = matched;
+					masks[base + 3 * i + 1] = searching;
+					masks[base + 3 * i + 2] = stepping;
+					active |= searching != 0 || stepping != 0;
+				}
+
+				childIndexes[current] = active ? 0 : node.getChildCount();
+				depth = current;
+			}
+
+			// move to the next child of the node at depth, or return to its parent
+			ParseTree parent = nodes[depth];
+			if (depth == 0) {
+				break;
+			}
+
+			int childIndex = childIndexes[depth];
+			if (childIndex < parent.getChildCount()) {
+				childIndexes[depth] = childIndex + 1;
+				if (depth + 1 >= nodes.length) {
+					nodes = Arrays.copyOf(nodes, nodes.length * 2);
+					childIndexes = Arrays.copyOf(childIndexes, childIndexes.length * 2);
+				}
+
+				nodes[depth + 1] = parent.getChild(childIndex);
+				childIndexes[depth + 1] = -1;
+			}
+			else {
+				nodes[depth] = null;
+				depth--;
+				if (depth == 0) {
+					break;
+				}
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Determines if {@code node} is matched by element {@code j} when applied
+	 * to the parent of {@code node}.
+	 */
+	private boolean matchesChild(int j, ParseTree node) {
+		boolean invert = (inverted & (1L << j)) != 0;
+		switch (kinds[j]) {
+		case RULE:
+			return node instanceof ParserRuleContext
+				&& (((ParserRuleContext)node).getRuleIndex() == indexes[j]) != invert;
+
+		case TOKEN:
+			return node instanceof TerminalNode
+				&& (((TerminalNode)node).getSymbol().getType() == indexes[j]) != invert;
+
+		default:
+			return !invert;
+		}
+	}
+
+	/**
+	 * Determines if {@code node} is matched by anywhere element {@code j}
+	 * applied to {@code node} or one of its ancestors.
+	 */
+	private boolean matchesDescendant(int j, ParseTree node) {
+		switch (kinds[j]) {
+		case RULE:
+			return node instanceof ParserRuleContext
+				&& ((ParserRuleContext)node).getRuleIndex() == indexes[j];
+
+		case TOKEN:
+			return node instanceof TerminalNode
+				&& ((TerminalNode)node).getSymbol().getType() == indexes[j];
+
+		default:
+			return (inverted & (1L << j)) == 0;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return path;
+	}
+}
@@ -7,6 +7,7 @@ import org.antlr.v4.runtime.Parser;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeIndex;
 
 import java.io.IOException;
 import java.io.StringReader;
@@ -199,6 +200,7 @@ loop:
 		dummyRoot.children = Collections.singletonList(t); // don't set t's parent.
 
 		Collection<ParseTree> work = Collections.<ParseTree>singleton(dummyRoot);
+		ParseTreeIndex index = ParseTreeIndex.getIndex(parser);
 
 		int i = 0;
 		while ( i < elements.length ) {
@@ -208,7 +210,16 @@ loop:
 					// only try to match next element if it has children
 					// e.g., //func/*/stat might have a token node for which
 					// we can't go looking for stat nodes.
-					Collection<? extends ParseTree> matching = elements[i].evaluate(node);
+					ParseTree target = node;
+					if ( node==dummyRoot &&
+						 (elements[i] instanceof XPathRuleAnywhereElement ||
+						  elements[i] instanceof XPathTokenAnywhereElement) )
+					{
+						// the dummy root itself can't match a rule or token,
+						// so search from t where the index applies
+						target = t;
+					}
+					Collection<? extends ParseTree> matching = elements[i].evaluate(target, index);
 					next.addAll(matching);
 				}
 			}
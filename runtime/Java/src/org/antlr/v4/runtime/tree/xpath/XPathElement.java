@@ -1,6 +1,8 @@
 package org.antlr.v4.runtime.tree.xpath;
 
+import org.antlr.v4.runtime.misc.Nullable;
 import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeIndex;
 
 import java.util.Collection;
 
@@ -21,6 +23,14 @@ public abstract class XPathElement {
 	 */
 	public abstract Collection<ParseTree> evaluate(ParseTree t);
 
+	/**
+	 * Given tree rooted at {@code t} return all nodes matched by this path
+	 * element, using {@code index} to locate the nodes where possible.
+	 */
+	public Collection<ParseTree> evaluate(ParseTree t, @Nullable ParseTreeIndex index) {
+		return evaluate(t);
+	}
+
 	@Override
 	public String toString() {
 		String inv = invert ? "!" : "";
@@ -1,6 +1,7 @@
 package org.antlr.v4.runtime.tree.xpath;
 
 import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeIndex;
 import org.antlr.v4.runtime.tree.Trees;
 
 import java.util.Collection;
@@ -19,4 +20,9 @@ public class XPathRuleAnywhereElement extends XPathElement {
 	public Collection<ParseTree> evaluate(ParseTree t) {
 		return Trees.findAllRuleNodes(t, ruleIndex);
 	}
+
+	@Override
+	public Collection<ParseTree> evaluate(ParseTree t, ParseTreeIndex index) {
+		return Trees.findAllRuleNodes(t, ruleIndex, index);
+	}
 }
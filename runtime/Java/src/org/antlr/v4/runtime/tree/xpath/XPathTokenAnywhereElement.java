@@ -1,6 +1,7 @@
 package org.antlr.v4.runtime.tree.xpath;
 
 import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeIndex;
 import org.antlr.v4.runtime.tree.Trees;
 
 import java.util.Collection;
@@ -16,4 +17,9 @@ public class XPathTokenAnywhereElement extends XPathElement {
 	public Collection<ParseTree> evaluate(ParseTree t) {
 		return Trees.findAllTokenNodes(t, tokenType);
 	}
+
+	@Override
+	public Collection<ParseTree> evaluate(ParseTree t, ParseTreeIndex index) {
+		return Trees.findAllTokenNodes(t, tokenType, index);
+	}
 }
@@ -99,6 +99,10 @@ public class AnalysisPipeline {
 			g.decisionLOOK.set(s.decision, look);
 			g.tool.log("LL1", "LL(1)? " + disjoint(look));
 		}
+
+		if ( g.tool.profile!=null ) {
+			new DecisionProfileAnalyzer(g).process();
+		}
 	}
 
 	/** Return whether lookahead sets are disjoint; no lookahead => not disjoint */
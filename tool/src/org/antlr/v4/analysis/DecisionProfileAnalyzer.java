@@ -0,0 +1,213 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.analysis;
+
+import org.antlr.v4.runtime.atn.DecisionState;
+import org.antlr.v4.tool.ErrorType;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.Rule;
+import org.antlr.v4.tool.ast.GrammarAST;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Reports the costliest decisions of a parser grammar, based on a profile
+ * exported at runtime by
+ * {@link org.antlr.v4.runtime.atn.ParseInfo#exportProfile}.
+ *
+ * <p>
+ * The profile is located using the {@code -profile} option of the tool. If the
+ * option names a directory, the profile for grammar {@code T} is read from the
+ * file {@code T.profile} in that directory, and grammars without a profile are
+ * silently skipped. If the option names a file, the profile is only applied to
+ * the grammar it was gathered for.</p>
+ */
+public class DecisionProfileAnalyzer {
+	/**
+	 * The file extension used for profiles located in a profile directory.
+	 */
+	public static final String PROFILE_EXTENSION = ".profile";
+
+	/**
+	 * Decisions accounting for at least this fraction of the total time spent
+	 * in prediction are reported as costly.
+	 */
+	public static final double COSTLY_DECISION_THRESHOLD = 0.10;
+
+	/**
+	 * The maximum number of decisions reported for a single grammar.
+	 */
+	public static final int MAX_REPORTED_DECISIONS = 10;
+
+	public final Grammar g;
+
+	public DecisionProfileAnalyzer(Grammar g) {
+		this.g = g;
+	}
+
+	public void process() {
+		File profileFile = getProfileFile();
+		if (profileFile == null) {
+			return;
+		}
+
+		Properties profile = loadProfile(profileFile);
+		if (profile == null) {
+			return;
+		}
+
+		String grammarFileName = new File(g.fileName).getName();
+		String profiledGrammar = profile.getProperty("grammar");
+		if (profiledGrammar != null && !profiledGrammar.equals(grammarFileName)) {
+			// a single profile file only applies to the grammar it came from
+			return;
+		}
+
+		int decisionCount = g.atn.getNumberOfDecisions();
+		if (!Integer.toString(decisionCount).equals(profile.getProperty("decisions"))) {
+			g.tool.errMgr.toolError(ErrorType.STALE_PROFILE, profileFile.getPath(), g.name);
+			return;
+		}
+
+		final long[] timeInPrediction = new long[decisionCount];
+		long[] invocations = new long[decisionCount];
+		long[] fallbacks = new long[decisionCount];
+		long[] maxLook = new long[decisionCount];
+		long totalTime = 0;
+		try {
+			for (int decision = 0; decision < decisionCount; decision++) {
+				String prefix = "decision." + decision + ".";
+				timeInPrediction[decision] = getLong(profile, prefix + "timeInPrediction");
+				invocations[decision] = getLong(profile, prefix + "invocations");
+				fallbacks[decision] = getLong(profile, prefix + "LL_Fallback");
+				maxLook[decision] = Math.max(getLong(profile, prefix + "SLL_MaxLook"), getLong(profile, prefix + "LL_MaxLook"));
+				totalTime += timeInPrediction[decision];
+			}
+		}
+		catch (NumberFormatException ex) {
+			g.tool.errMgr.toolError(ErrorType.ERROR_READING_PROFILE_FILE, ex, profileFile.getPath(), ex.getMessage());
+			return;
+		}
+
+		if (totalTime == 0) {
+			return;
+		}
+
+		List<Integer> decisions = new ArrayList<Integer>(decisionCount);
+		for (int decision = 0; decision < decisionCount; decision++) {
+			decisions.add(decision);
+		}
+
+		Collections.sort(decisions, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				if (timeInPrediction[o1] != timeInPrediction[o2]) {
+					return timeInPrediction[o1] > timeInPrediction[o2] ? -1 : 1;
+				}
+
+				return o1 - o2;
+			}
+		});
+
+		int reported = 0;
+		for (int decision : decisions) {
+			double share = (double)timeInPrediction[decision] / totalTime;
+			g.tool.log("profile", "decision " + decision + ": " + String.format("%.1f%%", share * 100) + " of prediction time, " + invocations[decision] + " invocations");
+			if (share < COSTLY_DECISION_THRESHOLD || reported >= MAX_REPORTED_DECISIONS) {
+				continue;
+			}
+
+			DecisionState state = g.atn.getDecisionState(decision);
+			Rule rule = g.getRule(state.ruleIndex);
+			String statistics = String.format("%.1f%% of prediction time, %d invocations, %d full-context predictions, max lookahead %d",
+				share * 100, invocations[decision], fallbacks[decision], maxLook[decision]);
+			g.tool.errMgr.grammarError(ErrorType.COSTLY_DECISION, g.fileName, ((GrammarAST)rule.ast.getChild(0)).getToken(), decision, rule.name, statistics);
+			reported++;
+		}
+	}
+
+	protected File getProfileFile() {
+		String profile = g.tool.profile;
+		if (profile == null) {
+			return null;
+		}
+
+		File file = new File(profile);
+		if (!file.isAbsolute() && g.tool.inputDirectory != null) {
+			file = new File(g.tool.inputDirectory, profile);
+		}
+
+		if (file.isDirectory()) {
+			file = new File(file, g.name + PROFILE_EXTENSION);
+			if (!file.exists()) {
+				return null;
+			}
+		}
+
+		return file;
+	}
+
+	protected Properties loadProfile(File file) {
+		Properties profile = new Properties();
+		try {
+			InputStream input = new FileInputStream(file);
+			try {
+				profile.load(input);
+			}
+			finally {
+				input.close();
+			}
+		}
+		catch (IOException ex) {
+			g.tool.errMgr.toolError(ErrorType.ERROR_READING_PROFILE_FILE, ex, file.getPath(), ex.getMessage());
+			return null;
+		}
+
+		return profile;
+	}
+
+	private static long getLong(Properties profile, String key) {
+		String value = profile.getProperty(key);
+		if (value == null) {
+			return 0;
+		}
+
+		return Long.parseLong(value.trim());
+	}
+}
@@ -114,6 +114,14 @@ public enum ErrorType {
 	 * <p>error reading imported grammar '<em>arg</em>' referenced in '<em>arg2</em>'</p>
 	 */
 	ERROR_READING_IMPORTED_GRAMMAR(11, "error reading imported grammar '<arg>' referenced in '<arg2>'", ErrorSeverity.ERROR),
+	/**
+	 * Compiler Error 12.
+	 *
+	 * <p>error reading profile file '<em>filename</em>': <em>reason</em></p>
+	 *
+	 * @since 4.4.1
+	 */
+	ERROR_READING_PROFILE_FILE(12, "error reading profile file '<arg>': <arg2>", ErrorSeverity.ERROR),
 
 	/**
 	 * Compiler Error 20.
@@ -972,6 +980,35 @@ public enum ErrorType {
 	 * <p>rule '<em>rule</em>': lexer rules cannot specify a base context</p>
 	 */
 	LEXER_RULE_CANNOT_HAVE_BASE_CONTEXT(168, "rule '<arg>': lexer rules cannot specify a base context", ErrorSeverity.ERROR),
+	/**
+	 * Compiler Warning 169.
+	 *
+	 * <p>decision <em>decision</em> in rule '<em>rule</em>' is costly in the supplied profile: <em>statistics</em></p>
+	 *
+	 * <p>
+	 * A profile exported by {@link org.antlr.v4.runtime.atn.ParseInfo#exportProfile}
+	 * was passed to the tool using the {@code -profile} option, and the
+	 * decision accounted for a large share of the total time spent in
+	 * prediction. Decisions which frequently fall back to full-context
+	 * prediction or require long lookahead are the best candidates for
+	 * rewriting.</p>
+	 *
+	 * @since 4.4.1
+	 */
+	COSTLY_DECISION(169, "decision <arg> in rule '<arg2>' is costly in the supplied profile: <arg3>", ErrorSeverity.WARNING),
+	/**
+	 * Compiler Warning 170.
+	 *
+	 * <p>profile '<em>filename</em>' does not match the decisions in grammar '<em>grammar</em>' and was ignored</p>
+	 *
+	 * <p>
+	 * The number of decisions recorded in the profile differs from the number
+	 * of decisions in the grammar, which means the profile was gathered from
+	 * an older version of the grammar.</p>
+	 *
+	 * @since 4.4.1
+	 */
+	STALE_PROFILE(170, "profile '<arg>' does not match the decisions in grammar '<arg2>' and was ignored", ErrorSeverity.WARNING),
 
 	/*
 	 * Backward incompatibility errors
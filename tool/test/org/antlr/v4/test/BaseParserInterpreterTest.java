@@ -0,0 +1,111 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.test;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+
+/**
+ * Shared fixtures for tests which run grammars with a
+ * {@link ParserInterpreter}.
+ */
+public abstract class BaseParserInterpreterTest extends BaseTest {
+
+	/**
+	 * Creates a lexer grammar with the tokens {@code A}, {@code B} and
+	 * {@code C}, which match {@code a}, {@code b} and {@code c}.
+	 */
+	protected static LexerGrammar createABCLexerGrammar() throws Exception {
+		return new LexerGrammar(
+			"lexer grammar L;\n" +
+			"A : 'a' ;\n" +
+			"B : 'b' ;\n" +
+			"C : 'c' ;\n");
+	}
+
+	/**
+	 * Creates the grammar {@code s : t t EOF ; t : A B C ;} for the tokens of
+	 * {@link #createABCLexerGrammar}.
+	 */
+	protected static Grammar createABCGrammar(LexerGrammar lg) throws Exception {
+		return new Grammar(
+			"parser grammar T;\n"+
+			"s : t t EOF ;\n" +
+			"t : A B C ;",
+			lg);
+	}
+
+	/**
+	 * Creates a lexer grammar for integers and the operators {@code *} and
+	 * {@code +}.
+	 */
+	protected static LexerGrammar createExpressionLexerGrammar() throws Exception {
+		return new LexerGrammar(
+			"lexer grammar L;\n" +
+			"INT : [0-9]+ ;\n" +
+			"MUL : '*' ;\n" +
+			"ADD : '+' ;\n");
+	}
+
+	/**
+	 * Creates a left-recursive expression grammar with the start rule
+	 * {@code s} for the tokens of {@link #createExpressionLexerGrammar}.
+	 */
+	protected static Grammar createExpressionGrammar(LexerGrammar lg) throws Exception {
+		return new Grammar(
+			"parser grammar T;\n" +
+			"s : e ;\n" +
+			"e : e MUL e | e ADD e | INT ;",
+			lg);
+	}
+
+	/**
+	 * Creates a parser interpreter for {@code g} which reads the tokens
+	 * {@code lg} produces for {@code input}.
+	 */
+	protected static ParserInterpreter createParserInterpreter(LexerGrammar lg, Grammar g, String input) {
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(new ANTLRInputStream(input));
+		return g.createParserInterpreter(new CommonTokenStream(lexEngine));
+	}
+
+	/**
+	 * Parses {@code input} starting at {@code startRule}, and returns the
+	 * parse tree in LISP form.
+	 */
+	protected static String parseToStringTree(LexerGrammar lg, Grammar g, String startRule, String input) {
+		ParserInterpreter parser = createParserInterpreter(lg, g, input);
+		return parser.parse(g.rules.get(startRule).index).toStringTree(parser);
+	}
+}
@@ -32,14 +32,22 @@ package org.antlr.v4.test;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.atn.ATN;
 import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.LexerActionExecutor;
+import org.antlr.v4.runtime.dfa.DFAState;
 import org.antlr.v4.runtime.misc.Utils;
 import org.antlr.v4.tool.DOTGenerator;
 import org.antlr.v4.tool.LexerGrammar;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 
@@ -308,6 +316,89 @@ public class TestATNLexerInterpreter extends BaseTest {
 		checkLexerMatches(lg, "a", expecting);
 	}
 
+	@Test public void testNextTokensBatch() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n"+
+			"A : 'a' ;\n"+
+			"B : 'bb' -> channel(HIDDEN) ;\n"+
+			"WS : ' ' -> skip ;\n");
+		LexerInterpreter lexer = lg.createLexerInterpreter(new ANTLRInputStream("a bb a"));
+		int[] types = new int[3];
+		int[] channels = new int[3];
+		int[] starts = new int[3];
+		int[] stops = new int[3];
+
+		assertEquals(2, lexer.nextTokens(types, channels, starts, stops, 1, 2));
+		assertArrayEquals(new int[] { 0, 1, 2 }, types);
+		assertArrayEquals(new int[] { 0, Token.DEFAULT_CHANNEL, Token.HIDDEN_CHANNEL }, channels);
+		assertArrayEquals(new int[] { 0, 0, 2 }, starts);
+		assertArrayEquals(new int[] { 0, 0, 3 }, stops);
+
+		assertEquals(2, lexer.nextTokens(types, null, starts, null, 0, 3));
+		assertEquals(1, types[0]);
+		assertEquals(Token.EOF, types[1]);
+		assertEquals(5, starts[0]);
+		assertEquals(6, starts[1]);
+	}
+
+	@Test public void testWarmUpCoversModes() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n"+
+			"ID : [a-z]+ ;\n" +
+			"OPEN : '<<' -> pushMode(HEREDOC) ;\n" +
+			"WS : ' ' -> skip ;\n" +
+			"mode HEREDOC;\n" +
+			"CLOSE : '>>' -> popMode ;\n" +
+			"TEXT : ~'>'+ ;\n");
+		String input = "abc <<x y>> de";
+
+		LexerInterpreter lexer = lg.createLexerInterpreter(new ANTLRInputStream(input));
+		ATN atn = lexer.getATN();
+		int added = lexer.getInterpreter().warmUp(3);
+		assertTrue(added > 0);
+		assertNotNull(atn.modeToDFA[0].s0.get());
+		assertNotNull(atn.modeToDFA[1].s0.get());
+		assertEquals(0, lexer.getInterpreter().warmUp(3));
+
+		int warmStates = atn.modeToDFA[0].states.size() + atn.modeToDFA[1].states.size();
+		List<? extends Token> tokens = lexer.getAllTokens();
+		assertEquals("[ID, OPEN, TEXT, CLOSE, ID]", getTokenNames(lg, tokens).toString());
+		assertEquals(warmStates, atn.modeToDFA[0].states.size() + atn.modeToDFA[1].states.size());
+	}
+
+	@Test public void testEqualLexerActionsShareExecutor() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n"+
+			"A : 'a' -> channel(HIDDEN), type(C) ;\n" +
+			"B : 'b' -> channel(HIDDEN), type(C) ;\n" +
+			"C : 'c' ;\n");
+
+		LexerInterpreter lexer = lg.createLexerInterpreter(new ANTLRInputStream("abc"));
+		List<? extends Token> tokens = lexer.getAllTokens();
+		assertEquals("[C, C, C]", getTokenNames(lg, tokens).toString());
+		assertEquals(Token.HIDDEN_CHANNEL, tokens.get(0).getChannel());
+		assertEquals(Token.HIDDEN_CHANNEL, tokens.get(1).getChannel());
+		assertEquals(Token.DEFAULT_CHANNEL, tokens.get(2).getChannel());
+
+		Set<LexerActionExecutor> executors = Collections.newSetFromMap(new IdentityHashMap<LexerActionExecutor, Boolean>());
+		for (DFAState state : lexer.getATN().modeToDFA[0].states.keySet()) {
+			if (state.getLexerActionExecutor() != null) {
+				executors.add(state.getLexerActionExecutor());
+			}
+		}
+
+		assertEquals(1, executors.size());
+	}
+
+	private List<String> getTokenNames(LexerGrammar lg, List<? extends Token> tokens) {
+		List<String> names = new ArrayList<String>();
+		for (Token token : tokens) {
+			names.add(lg.getTokenDisplayName(token.getType()));
+		}
+
+		return names;
+	}
+
 	protected void checkLexerMatches(LexerGrammar lg, String inputString, String expecting) {
 		ATN atn = createATN(lg, true);
 		CharStream input = new ANTLRInputStream(inputString);
@@ -0,0 +1,68 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.test;
+
+import org.antlr.v4.runtime.atn.ConcurrentPredictionContextCache;
+import org.antlr.v4.runtime.atn.PredictionContext;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertSame;
+
+/**
+ * Runs the graph node tests against the shared
+ * {@link ConcurrentPredictionContextCache}.
+ */
+public class TestConcurrentGraphNodes extends TestGraphNodes {
+
+	@Before
+	@Override
+	public void setUp() {
+		contextCache = new ConcurrentPredictionContextCache();
+	}
+
+	@Test public void testInterning() {
+		PredictionContext a1 = createSingleton(createSingleton(PredictionContext.EMPTY_FULL, 1), 2);
+		PredictionContext a2 = new ConcurrentPredictionContextCache().getChild(
+			new ConcurrentPredictionContextCache().getChild(PredictionContext.EMPTY_FULL, 1), 2);
+		assertSame(a1, contextCache.getAsCached(a2));
+		assertSame(a1, PredictionContext.getCachedContext(a2, contextCache, new PredictionContext.IdentityHashMap()));
+	}
+
+	@Test public void testJoinReuse() {
+		PredictionContext x = createSingleton(PredictionContext.EMPTY_FULL, 1);
+		PredictionContext y = createSingleton(PredictionContext.EMPTY_FULL, 2);
+		PredictionContext joined = contextCache.join(x, y);
+		assertSame(joined, contextCache.join(y, x));
+		assertSame(joined, array(x, y));
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.test;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestDeepRuleChain extends BaseTest {
+
+	@Test public void testClosureOverDeepRuleChain() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"A : 'a' ;\n" +
+			"B : 'b' ;\n" +
+			"C : 'c' ;\n" +
+			"D : 'd' ;\n");
+
+		// both alternatives of s enter a chain of 1000 rule invocations
+		int depth = 1000;
+		StringBuilder grammarText = new StringBuilder("parser grammar T;\n");
+		grammarText.append("s : r0 C | r0 D ;\n");
+		for (int i = 0; i < depth; i++) {
+			grammarText.append("r").append(i).append(" : r").append(i + 1).append(" ;\n");
+		}
+
+		grammarText.append("r").append(depth).append(" : A | B ;\n");
+		Grammar g = new Grammar(grammarText.toString(), lg);
+
+		ATN atn = g.atn;
+		int ruleIndex = g.rules.get("s").index;
+		int decision = -1;
+		for (int i = 0; i < atn.decisionToState.size(); i++) {
+			if (atn.decisionToState.get(i).ruleIndex == ruleIndex) {
+				decision = i;
+				break;
+			}
+		}
+
+		assertTrue(decision >= 0);
+
+		// a recursive closure needs several frames per rule invocation, which
+		// overflows this stack long before the end of the chain
+		assertEquals(2, predictOnSmallStack(lg, g, "bd", decision, false));
+		assertEquals(2, predictOnSmallStack(lg, g, "bd", decision, true));
+		assertEquals(1, predictOnSmallStack(lg, g, "ac", decision, true));
+	}
+
+	private static int predictOnSmallStack(LexerGrammar lg, Grammar g, String input, final int decision, boolean fullContext) throws InterruptedException {
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(new ANTLRInputStream(input));
+		final CommonTokenStream tokens = new CommonTokenStream(lexEngine);
+		tokens.fill();
+		tokens.seek(0);
+		ParserInterpreter parser = g.createParserInterpreter(tokens);
+		final ParserATNSimulator interpreter = parser.getInterpreter();
+		interpreter.optimize_ll1 = false;
+		interpreter.force_global_context = fullContext;
+
+		final int[] prediction = new int[1];
+		final Throwable[] failure = new Throwable[1];
+		Thread thread = new Thread(null, new Runnable() {
+			@Override
+			public void run() {
+				try {
+					prediction[0] = interpreter.adaptivePredict(tokens, decision, null);
+				}
+				catch (Throwable t) {
+					failure[0] = t;
+				}
+			}
+		}, "predict", 256 * 1024);
+		thread.start();
+		thread.join();
+
+		assertNull(String.valueOf(failure[0]), failure[0]);
+		return prediction[0];
+	}
+}
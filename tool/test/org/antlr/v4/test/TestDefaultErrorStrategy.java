@@ -0,0 +1,180 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.test;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.RuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.RuleTransition;
+import org.antlr.v4.runtime.misc.IntervalSet;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.Trees;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestDefaultErrorStrategy extends BaseParserInterpreterTest {
+
+	@Test public void testErrorRecoveryWithoutListeners() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"A : 'a' ;\n" +
+			"B : 'b' ;\n" +
+			"LB : '[' ;\n" +
+			"RB : ']' ;\n" +
+			"CARET : '^' ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n"+
+			"s : LB t RB ;\n" +
+			"t : u CARET A ;\n" +
+			"u : A | B ;",
+			lg);
+
+		String expected = null;
+		for (int i = 0; i < 3; i++) {
+			ParserInterpreter parser = createParserInterpreter(lg, g, "[b]");
+			if (i > 0) {
+				// the first parse reports messages; the others only count errors
+				parser.removeErrorListeners();
+			}
+
+			ParseTree t = parser.parse(g.rules.get("s").index);
+			assertEquals(1, parser.getNumberOfSyntaxErrors());
+			if (expected == null) {
+				expected = t.toStringTree(parser);
+			}
+
+			assertEquals(expected, t.toStringTree(parser));
+		}
+
+		// without listeners, overrides of notifyErrorListeners still receive
+		// a message, but it does not list the expected tokens
+		final List<String> messages = new ArrayList<String>();
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(new ANTLRInputStream("[b]"));
+		CommonTokenStream tokens = new CommonTokenStream(lexEngine);
+		ATN atn = g.createParserInterpreter(tokens).getATN();
+		ParserInterpreter parser = new ParserInterpreter(g.fileName, g.getVocabulary(), Arrays.asList(g.getRuleNames()), atn, tokens) {
+			@Override
+			public void notifyErrorListeners(Token offendingToken, String msg, RecognitionException e) {
+				messages.add(msg);
+				super.notifyErrorListeners(offendingToken, msg, e);
+			}
+		};
+		parser.removeErrorListeners();
+		parser.parse(g.rules.get("s").index);
+		assertEquals(Arrays.asList("mismatched input ']'"), messages);
+	}
+
+	@Test public void testCachedFollowSetsMatchUncached() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"A : 'a' ;\n" +
+			"B : 'b' ;\n" +
+			"C : 'c' ;\n" +
+			"SEMI : ';' ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n"+
+			"s : t SEMI? EOF ;\n" +
+			"t : u C? | B t ;\n" +
+			"u : A v | B ;\n" +
+			"v : A? ;",
+			lg);
+
+		ParserInterpreter parser = createParserInterpreter(lg, g, "bbaa;");
+		ParseTree tree = parser.parse(g.rules.get("s").index);
+		assertEquals(0, parser.getNumberOfSyntaxErrors());
+
+		ATN atn = parser.getATN();
+		// the second pass reads the cached sets
+		for (int pass = 0; pass < 2; pass++) {
+			for (ParseTree node : Trees.descendants(tree)) {
+				if (!(node instanceof ParserRuleContext)) {
+					continue;
+				}
+
+				ParserRuleContext ctx = (ParserRuleContext)node;
+				assertEquals(computeErrorRecoverySet(atn, ctx), atn.getErrorRecoverySet(ctx));
+				for (ATNState state : atn.states) {
+					if (state == null || state.ruleIndex != ctx.getRuleIndex()) {
+						continue;
+					}
+
+					assertEquals(computeExpectedTokens(atn, state.stateNumber, ctx), atn.getExpectedTokens(state.stateNumber, ctx));
+				}
+			}
+		}
+	}
+
+	private static IntervalSet computeExpectedTokens(ATN atn, int stateNumber, RuleContext ctx) {
+		IntervalSet following = atn.nextTokens(atn.states.get(stateNumber));
+		IntervalSet expected = new IntervalSet();
+		expected.addAll(following);
+		expected.remove(Token.EPSILON);
+		while (ctx != null && ctx.invokingState >= 0 && following.contains(Token.EPSILON)) {
+			RuleTransition rt = (RuleTransition)atn.states.get(ctx.invokingState).transition(0);
+			following = atn.nextTokens(rt.followState);
+			expected.addAll(following);
+			expected.remove(Token.EPSILON);
+			ctx = ctx.parent;
+		}
+
+		if (following.contains(Token.EPSILON)) {
+			expected.add(Token.EOF);
+		}
+
+		return expected;
+	}
+
+	private static IntervalSet computeErrorRecoverySet(ATN atn, RuleContext ctx) {
+		IntervalSet recoverSet = new IntervalSet();
+		while (ctx != null && ctx.invokingState >= 0) {
+			RuleTransition rt = (RuleTransition)atn.states.get(ctx.invokingState).transition(0);
+			recoverSet.addAll(atn.nextTokens(rt.followState));
+			ctx = ctx.parent;
+		}
+
+		recoverSet.remove(Token.EPSILON);
+		return recoverSet;
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.test;
+
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.tree.BooleanParseTreeProperty;
+import org.antlr.v4.runtime.tree.DenseParseTreeProperty;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.IntParseTreeProperty;
+import org.antlr.v4.runtime.tree.LongParseTreeProperty;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNodeImpl;
+import org.antlr.v4.runtime.tree.Trees;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestDenseNodeIds extends BaseParserInterpreterTest {
+
+	@Test public void testDenseNodeIds() throws Exception {
+		LexerGrammar lg = createExpressionLexerGrammar();
+		Grammar g = createExpressionGrammar(lg);
+
+		ParserInterpreter parser = createParserInterpreter(lg, g, "1+2*3");
+		ParseTree t = parser.parse(g.rules.get("s").index);
+		assertEquals("(s (e (e 1) + (e (e 2) * (e 3))))", t.toStringTree(parser));
+
+		// every node has a distinct id in [0, n)
+		List<ParseTree> nodes = Trees.descendants(t);
+		BitSet ids = new BitSet();
+		for (ParseTree node : nodes) {
+			int id = Trees.getNodeId(node);
+			assertTrue(id >= 0 && id < nodes.size());
+			assertFalse(ids.get(id));
+			ids.set(id);
+		}
+
+		DenseParseTreeProperty<String> text = new DenseParseTreeProperty<String>();
+		IntParseTreeProperty depth = new IntParseTreeProperty(-1);
+		for (ParseTree node : nodes) {
+			text.put(node, node.getText());
+			depth.put(node, Trees.getAncestors(node).size());
+		}
+
+		for (ParseTree node : nodes) {
+			assertEquals(node.getText(), text.get(node));
+			assertEquals(Trees.getAncestors(node).size(), depth.get(node));
+		}
+
+		assertEquals("1+2*3", text.removeFrom(t));
+		assertNull(text.get(t));
+		assertEquals(0, depth.removeFrom(t));
+		assertEquals(-1, depth.get(t));
+
+		// nodes without an id are stored separately
+		TerminalNodeImpl detached = new TerminalNodeImpl(parser.getInputStream().get(0));
+		assertEquals(-1, Trees.getNodeId(detached));
+		assertFalse(depth.contains(detached));
+		depth.put(detached, 7);
+		assertEquals(7, depth.get(detached));
+		assertEquals(-1, depth.get(t));
+	}
+
+	@Test public void testDenseNodeIdsWithErrorRecovery() throws Exception {
+		LexerGrammar lg = createABCLexerGrammar();
+		Grammar g = createABCGrammar(lg);
+
+		// the first B is missing, and conjured by single token insertion;
+		// the extra A is consumed during error recovery
+		ParserInterpreter parser = createParserInterpreter(lg, g, "acaabc");
+		parser.removeErrorListeners();
+		ParseTree t = parser.parse(g.rules.get("s").index);
+		assertEquals(2, parser.getNumberOfSyntaxErrors());
+
+		List<ParseTree> nodes = Trees.descendants(t);
+		BitSet ids = new BitSet();
+		int errorNodes = 0;
+		for (ParseTree node : nodes) {
+			if (node instanceof ErrorNode) {
+				errorNodes++;
+			}
+
+			int id = Trees.getNodeId(node);
+			assertTrue(id >= 0 && id < nodes.size());
+			assertFalse(ids.get(id));
+			ids.set(id);
+		}
+
+		assertEquals(2, errorNodes);
+	}
+
+	@Test public void testDenseNodeIdsForSeveralTrees() throws Exception {
+		LexerGrammar lg = createABCLexerGrammar();
+		Grammar g = createABCGrammar(lg);
+
+		// node ids restart at 0 for every parse
+		List<ParseTree> first = Trees.descendants(parseDenseTree(lg, g, "abcabc"));
+		List<ParseTree> second = Trees.descendants(parseDenseTree(lg, g, "abcabc"));
+		assertEquals(first.size(), second.size());
+		for (int i = 0; i < first.size(); i++) {
+			assertEquals(Trees.getNodeId(first.get(i)), Trees.getNodeId(second.get(i)));
+		}
+
+		DenseParseTreeProperty<String> tree = new DenseParseTreeProperty<String>();
+		IntParseTreeProperty ints = new IntParseTreeProperty();
+		LongParseTreeProperty longs = new LongParseTreeProperty();
+		BooleanParseTreeProperty booleans = new BooleanParseTreeProperty();
+		for (ParseTree node : first) {
+			tree.put(node, "first");
+			ints.put(node, 1);
+			longs.put(node, 1L);
+			booleans.put(node, true);
+		}
+
+		for (ParseTree node : second) {
+			assertNull(tree.get(node));
+			assertFalse(ints.contains(node));
+			assertFalse(longs.contains(node));
+			assertFalse(booleans.contains(node));
+			tree.put(node, "second");
+			ints.put(node, 2);
+			longs.put(node, 2L);
+			booleans.put(node, false);
+		}
+
+		for (ParseTree node : first) {
+			assertEquals("first", tree.get(node));
+			assertEquals(1, ints.get(node));
+			assertEquals(1L, longs.get(node));
+			assertTrue(booleans.get(node));
+		}
+
+		for (ParseTree node : second) {
+			assertEquals("second", tree.get(node));
+			assertEquals(2, ints.get(node));
+			assertEquals(2L, longs.get(node));
+			assertFalse(booleans.get(node));
+			assertTrue(booleans.contains(node));
+		}
+
+		assertEquals("second", tree.removeFrom(second.get(0)));
+		assertNull(tree.get(second.get(0)));
+		assertEquals("first", tree.get(first.get(0)));
+	}
+
+	private static ParseTree parseDenseTree(LexerGrammar lg, Grammar g, String input) {
+		ParserInterpreter parser = createParserInterpreter(lg, g, input);
+		return parser.parse(g.rules.get("s").index);
+	}
+}
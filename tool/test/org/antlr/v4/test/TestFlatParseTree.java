@@ -0,0 +1,76 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.test;
+
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.tree.FlatParseTree;
+import org.antlr.v4.runtime.tree.FlatParseTreeBuilder;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestFlatParseTree extends BaseParserInterpreterTest {
+
+	@Test public void testFlatParseTree() throws Exception {
+		LexerGrammar lg = createExpressionLexerGrammar();
+		Grammar g = createExpressionGrammar(lg);
+
+		String input = "1+2*3";
+		String expected = "(s (e (e 1) + (e (e 2) * (e 3))))";
+		assertEquals(expected, parseToStringTree(lg, g, "s", input));
+
+		ParserInterpreter parser = createParserInterpreter(lg, g, input);
+		FlatParseTreeBuilder builder = FlatParseTreeBuilder.install(parser);
+		ParseTree t = parser.parse(g.rules.get("s").index);
+		assertEquals(0, t.getChildCount());
+
+		FlatParseTree tree = builder.getTree();
+		int root = tree.getRoot();
+		assertEquals(g.rules.get("s").index, tree.getRuleIndex(root));
+		assertEquals(1, tree.getChildCount(root));
+		assertEquals(input, tree.getText(root));
+
+		int e = tree.getFirstChild(root);
+		assertEquals(3, tree.getChildCount(e));
+		assertEquals("1", tree.getText(tree.getFirstChild(e)));
+		assertEquals(-1, tree.getNextSibling(e));
+
+		ParseTree facade = tree.getParseTree(root);
+		assertEquals(expected, facade.toStringTree(parser));
+		assertEquals(input, facade.getText());
+		assertEquals(facade, facade.getChild(0).getParent());
+
+		assertEquals(expected, tree.getContext(root).toStringTree(parser));
+	}
+}
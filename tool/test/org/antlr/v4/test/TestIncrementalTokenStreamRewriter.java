@@ -0,0 +1,137 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.test;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.IncrementalTokenStreamRewriter;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.TokenStreamRewriter;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TestIncrementalTokenStreamRewriter extends BaseTest {
+
+	@Test public void testMatchesTokenStreamRewriter() throws Exception {
+		CommonTokenStream stream = createStream("abcccba");
+		TokenStreamRewriter expected = new TokenStreamRewriter(stream);
+		IncrementalTokenStreamRewriter rewriter = new IncrementalTokenStreamRewriter(stream);
+
+		expected.insertBefore(0, "<");
+		rewriter.insertBefore(0, "<");
+		expected.insertBefore(2, "x");
+		rewriter.insertBefore(2, "x");
+		expected.insertBefore(2, "y");
+		rewriter.insertBefore(2, "y");
+		expected.replace(2, 4, "foo");
+		rewriter.replace(2, 4, "foo");
+		expected.insertBefore(2, "z");
+		rewriter.insertBefore(2, "z");
+		expected.delete(5);
+		rewriter.delete(5);
+		expected.delete(5, 6);
+		rewriter.delete(5, 6);
+		expected.insertAfter(6, ">");
+		rewriter.insertAfter(6, ">");
+
+		assertEquals("<abzyxfoo>", rewriter.getText());
+		assertEquals(expected.getText(), rewriter.getText());
+		assertEquals(expected.getText(Interval.of(1, 4)), rewriter.getText(Interval.of(1, 4)));
+		assertEquals(expected.getText(Interval.of(3, 6)), rewriter.getText(Interval.of(3, 6)));
+		assertEquals(4, rewriter.getEditCount());
+	}
+
+	@Test public void testReplaceContainedReplaces() throws Exception {
+		CommonTokenStream stream = createStream("abcccba");
+		IncrementalTokenStreamRewriter rewriter = new IncrementalTokenStreamRewriter(stream);
+		rewriter.replace(2, "x");
+		rewriter.insertBefore(4, "y");
+		rewriter.replace(3, 4, "z");
+		rewriter.replace(1, 5, "foo");
+		assertEquals("afooa", rewriter.getText());
+		assertEquals(1, rewriter.getEditCount());
+	}
+
+	@Test public void testConflictsRejectedImmediately() throws Exception {
+		CommonTokenStream stream = createStream("abcccba");
+		IncrementalTokenStreamRewriter rewriter = new IncrementalTokenStreamRewriter(stream);
+		rewriter.replace(2, 4, "x");
+
+		try {
+			rewriter.insertBefore(3, "y");
+			fail("Expected an exception for an insert within a replace.");
+		}
+		catch (IllegalArgumentException ex) {
+			assertEquals("insert op <InsertBeforeOp@[@3,3:3='c',<3>,1:3]:\"y\"> within boundaries of previous <ReplaceOp@[@2,2:2='c',<3>,1:2]..[@4,4:4='c',<3>,1:4]:\"x\">", ex.getMessage());
+		}
+
+		try {
+			rewriter.replace(1, 3, "z");
+			fail("Expected an exception for overlapping replaces.");
+		}
+		catch (IllegalArgumentException ex) {
+			assertEquals("replace op boundaries of <ReplaceOp@[@1,1:1='b',<2>,1:1]..[@3,3:3='c',<3>,1:3]:\"z\"> overlap with previous <ReplaceOp@[@2,2:2='c',<3>,1:2]..[@4,4:4='c',<3>,1:4]:\"x\">", ex.getMessage());
+		}
+
+		// the rejected operations have no effect
+		assertEquals("abxba", rewriter.getText());
+	}
+
+	@Test public void testAppendText() throws Exception {
+		CommonTokenStream stream = createStream("abc");
+		IncrementalTokenStreamRewriter rewriter = new IncrementalTokenStreamRewriter(stream);
+		rewriter.insertBefore(0, "0");
+		rewriter.replace(1, "x");
+		rewriter.insertAfter(2, "y");
+
+		StringWriter writer = new StringWriter();
+		rewriter.appendText(writer);
+		assertEquals("0axcy", writer.toString());
+	}
+
+	protected CommonTokenStream createStream(String input) throws Exception {
+		LexerGrammar g = new LexerGrammar(
+			"lexer grammar T;\n"+
+			"A : 'a';\n" +
+			"B : 'b';\n" +
+			"C : 'c';\n");
+		LexerInterpreter lexEngine = g.createLexerInterpreter(new ANTLRInputStream(input));
+		CommonTokenStream stream = new CommonTokenStream(lexEngine);
+		stream.fill();
+		return stream;
+	}
+}
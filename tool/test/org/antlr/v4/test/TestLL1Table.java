@@ -0,0 +1,142 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.test;
+
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.LL1Table;
+import org.antlr.v4.tool.Grammar;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestLL1Table extends BaseTest {
+
+	@Test public void testPutAndGet() throws Exception {
+		LL1Table table = new LL1Table(10);
+		assertEquals(ATN.INVALID_ALT_NUMBER, table.get(0, 1));
+
+		table.put(0, 1, 2);
+		table.put(0, 10, 3);
+		table.put(5, 4, 1);
+		assertEquals(2, table.get(0, 1));
+		assertEquals(3, table.get(0, 10));
+		assertEquals(1, table.get(5, 4));
+		assertEquals(ATN.INVALID_ALT_NUMBER, table.get(0, 4));
+		assertEquals(ATN.INVALID_ALT_NUMBER, table.get(1, 1));
+		assertEquals(ATN.INVALID_ALT_NUMBER, table.get(-1, 1));
+		assertEquals(ATN.INVALID_ALT_NUMBER, table.get(6, 1));
+
+		table.clear();
+		assertEquals(ATN.INVALID_ALT_NUMBER, table.get(0, 1));
+		assertEquals(ATN.INVALID_ALT_NUMBER, table.get(5, 4));
+	}
+
+	@Test public void testValuesNotStored() throws Exception {
+		LL1Table table = new LL1Table(10);
+		table.put(0, Token.EOF, 1);
+		table.put(0, 11, 1);
+		table.put(0, 2, ATN.INVALID_ALT_NUMBER);
+		table.put(0, 3, Short.MAX_VALUE + 1);
+		table.put(-1, 1, 1);
+		assertEquals(ATN.INVALID_ALT_NUMBER, table.get(0, Token.EOF));
+		assertEquals(ATN.INVALID_ALT_NUMBER, table.get(0, 11));
+		assertEquals(ATN.INVALID_ALT_NUMBER, table.get(0, 2));
+		assertEquals(ATN.INVALID_ALT_NUMBER, table.get(0, 3));
+		assertEquals(ATN.INVALID_ALT_NUMBER, table.get(-1, 1));
+
+		table.put(0, 3, Short.MAX_VALUE);
+		assertEquals(Short.MAX_VALUE, table.get(0, 3));
+	}
+
+	@Test public void testLargeVocabulary() throws Exception {
+		LL1Table table = new LL1Table(Character.MAX_VALUE);
+		for (int decision = 0; decision < 1000; decision++) {
+			table.put(decision, 1 + decision % 4, 2);
+		}
+
+		// tables only cover the token types which were stored
+		table.put(7, Character.MAX_VALUE, 3);
+		table.put(7, 40000, 4);
+		for (int decision = 0; decision < 1000; decision++) {
+			assertEquals(2, table.get(decision, 1 + decision % 4));
+			assertEquals(ATN.INVALID_ALT_NUMBER, table.get(decision, 5));
+			assertEquals(ATN.INVALID_ALT_NUMBER, table.get(decision, 30000));
+		}
+
+		assertEquals(3, table.get(7, Character.MAX_VALUE));
+		assertEquals(4, table.get(7, 40000));
+		assertEquals(2, table.get(7, 4));
+		assertEquals(ATN.INVALID_ALT_NUMBER, table.get(7, 40001));
+	}
+
+	@Test public void testLargeVocabularyGrammar() throws Exception {
+		StringBuilder grammar = new StringBuilder("parser grammar T;\ntokens { ");
+		for (int i = 1; i <= 3000; i++) {
+			grammar.append(i > 1 ? ", " : "").append("T").append(i);
+		}
+
+		grammar.append(" }\n");
+		grammar.append("s : a a a a EOF ;\n");
+		grammar.append("a : T1 | T3000 | T1500 T1 | T1500 T2 ;\n");
+		Grammar g = new Grammar(grammar.toString());
+		String[] input = { "T3000", "T1500", "T2", "T1", "T1500", "T1" };
+		String expected = "(s (a T3000) (a T1500 T2) (a T1) (a T1500 T1) EOF)";
+
+		// the second parse with the same ATN uses the predictions cached by the first
+		ParserInterpreter parser = g.createParserInterpreter(createTokenStream(g, input));
+		assertEquals(expected, parser.parse(g.rules.get("s").index).toStringTree(parser));
+		parser.setInputStream(createTokenStream(g, input));
+		assertEquals(expected, parser.parse(g.rules.get("s").index).toStringTree(parser));
+		assertEquals(0, parser.getNumberOfSyntaxErrors());
+
+		parser = g.createParserInterpreter(createTokenStream(g, input));
+		parser.getInterpreter().optimize_ll1 = false;
+		assertEquals(expected, parser.parse(g.rules.get("s").index).toStringTree(parser));
+	}
+
+	private static TokenStream createTokenStream(Grammar g, String[] input) {
+		List<Token> tokens = new ArrayList<Token>();
+		for (String name : input) {
+			tokens.add(new CommonToken(g.getTokenType(name), name));
+		}
+
+		return new CommonTokenStream(new ListTokenSource(tokens));
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.test;
+
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.ParallelLexer;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestParallelLexer extends BaseTest {
+
+	@Test public void testMatchesSingleLexer() throws Exception {
+		final LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"STRING : '\"' ~'\"'* '\"' ;\n" +
+			"ID : [a-z]+ ;\n" +
+			"WS : [ \\n]+ -> skip ;\n" +
+			"OPEN : '<' -> pushMode(TAG) ;\n" +
+			"mode TAG;\n" +
+			"CLOSE : '>' -> popMode ;\n" +
+			"TEXT : ~'>'+ ;\n");
+
+		// strings and tags span lines, so some chunks start in the wrong mode
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			switch (i % 4) {
+			case 0:
+				input.append("abc def\n");
+				break;
+			case 1:
+				input.append("x \"multi\nline\nstring\" y\n");
+				break;
+			case 2:
+				input.append("<tag\nbody\n> z\n");
+				break;
+			default:
+				input.append("# bad\n");
+				break;
+			}
+		}
+
+		String text = input.toString();
+		Lexer singleLexer = lg.createLexerInterpreter(new ANTLRInputStream(text));
+		ErrorRecorder expectedErrors = new ErrorRecorder();
+		singleLexer.removeErrorListeners();
+		singleLexer.addErrorListener(expectedErrors);
+		CommonTokenStream expected = new CommonTokenStream(singleLexer);
+		expected.fill();
+		// every '#' is a token recognition error
+		assertEquals(50, expectedErrors.errors.size());
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (int chunkSize = 1; chunkSize <= 64; chunkSize *= 4) {
+				final ErrorRecorder errors = new ErrorRecorder();
+				ParallelLexer.LexerFactory factory = new ParallelLexer.LexerFactory() {
+					@Override
+					public Lexer createLexer(CharStream input) {
+						Lexer lexer = lg.createLexerInterpreter(input);
+						lexer.removeErrorListeners();
+						lexer.addErrorListener(errors);
+						return lexer;
+					}
+				};
+
+				ParallelLexer lexer = new ParallelLexer(factory, executor);
+				lexer.setChunkSize(chunkSize);
+				List<Token> tokens = lexer.tokenize(new ANTLRInputStream(text));
+				assertEquals(describe(expected.getTokens()), describe(tokens));
+				assertEquals(expectedErrors.errors, errors.errors);
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	private static List<String> describe(List<Token> tokens) {
+		List<String> result = new ArrayList<String>();
+		for (Token token : tokens) {
+			result.add(token.getTokenIndex() + ":" + token.getType() + ":" + token.getStartIndex() + "-" + token.getStopIndex() + "@" + token.getLine() + ":" + token.getCharPositionInLine());
+		}
+
+		return result;
+	}
+
+	/**
+	 * Records the position and message of each error, in the order they are
+	 * reported. Lexers of all chunks share one recorder.
+	 */
+	private static final class ErrorRecorder implements ANTLRErrorListener<Integer> {
+		final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+
+		@Override
+		public <T extends Integer> void syntaxError(Recognizer<T, ?> recognizer, T offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+			errors.add(line + ":" + charPositionInLine + " " + msg);
+		}
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.test;
+
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.atn.ATNConfig;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.runtime.misc.ParseBudget;
+import org.antlr.v4.runtime.misc.ParseBudgetExceededException;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestParallelReach extends BaseParserInterpreterTest {
+
+	@Test public void testParallelReachMatchesSequentialReach() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"A : 'a' ;\n" +
+			"PLUS : '+' ;\n" +
+			"MULT : '*' ;\n" +
+			"LP : '(' ;\n" +
+			"RP : ')' ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : e EOF ;\n" +
+			"e : e MULT e\n" +
+			"  | e PLUS e\n" +
+			"  | LP e RP\n" +
+			"  | A\n" +
+			"  ;\n",
+			lg);
+
+		String input = "a+a*(a+a*a)*a+(a)";
+		String expected = parseWithFullContext(lg, g, input, null);
+
+		ThreadPoolExecutor executor = (ThreadPoolExecutor)Executors.newFixedThreadPool(2);
+		try {
+			assertEquals(expected, parseWithFullContext(lg, g, input, executor));
+			assertTrue(executor.getTaskCount() > 0);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test public void testParallelReachBuildsSequentialDFA() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"A : 'a' ;\n" +
+			"B : 'b' ;\n" +
+			"C : 'c' ;\n" +
+			"X : 'x' ;\n" +
+			"Y : 'y' ;\n");
+		// after 'a', the closure of the first alternative defers the call to
+		// t to a later round than the closure of the others
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : A t X | A B C Y | A C ;\n" +
+			"t : B C | C B ;\n",
+			lg);
+
+		ThreadPoolExecutor executor = (ThreadPoolExecutor)Executors.newFixedThreadPool(2);
+		try {
+			for (String input : new String[] { "abcx", "abcy" }) {
+				ParserInterpreter sequential = createFullContextParser(lg, g, input, null);
+				sequential.getInterpreter().enable_global_context_dfa = true;
+				ParserInterpreter parallel = createFullContextParser(lg, g, input, executor);
+				parallel.getInterpreter().enable_global_context_dfa = true;
+
+				int startRule = g.rules.get("s").index;
+				assertEquals(sequential.parse(startRule).toStringTree(sequential), parallel.parse(startRule).toStringTree(parallel));
+				DFA[] sequentialDFA = sequential.getATN().decisionToDFA;
+				DFA[] parallelDFA = parallel.getATN().decisionToDFA;
+				for (int i = 0; i < sequentialDFA.length; i++) {
+					assertEquals(getDFAStates(sequentialDFA[i]), getDFAStates(parallelDFA[i]));
+				}
+			}
+
+			assertTrue(executor.getTaskCount() > 0);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test public void testParallelReachCountsAgainstBudget() throws Exception {
+		LexerGrammar lg = createABCLexerGrammar();
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : t A EOF | t B EOF | t C EOF ;\n" +
+			"t : C t | C ;",
+			lg);
+
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 30; i++) {
+			input.append('c');
+		}
+
+		input.append('b');
+		long transitions = parseWithTransitionLimit(lg, g, input.toString(), null, ParseBudget.UNLIMITED).getTransitions();
+
+		ThreadPoolExecutor executor = (ThreadPoolExecutor)Executors.newFixedThreadPool(2);
+		try {
+			// the steps of every task are charged to the budget
+			assertEquals(transitions, parseWithTransitionLimit(lg, g, input.toString(), executor, ParseBudget.UNLIMITED).getTransitions());
+			assertTrue(executor.getTaskCount() > 0);
+
+			try {
+				parseWithTransitionLimit(lg, g, input.toString(), executor, transitions / 2);
+				fail("Expected the transition limit to be exceeded.");
+			}
+			catch (ParseBudgetExceededException ex) {
+				assertEquals(ParseBudgetExceededException.Limit.TRANSITIONS, ex.getLimit());
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	private static ParseBudget parseWithTransitionLimit(LexerGrammar lg, Grammar g, String input, ExecutorService executor, long maxTransitions) {
+		ParserInterpreter parser = createFullContextParser(lg, g, input, executor);
+		ParseBudget budget = new ParseBudget(ParseBudget.UNLIMITED, TimeUnit.SECONDS, maxTransitions, ParseBudget.UNLIMITED);
+		parser.setParseBudget(budget);
+		parser.parse(g.rules.get("s").index);
+		return budget;
+	}
+
+	/**
+	 * Describes the states of {@code dfa} in order of state number, listing
+	 * the configurations of each state in the order they appear in the set.
+	 * The order matters, because it is part of the identity of a DFA state.
+	 */
+	private static String getDFAStates(DFA dfa) {
+		Map<Integer, DFAState> states = new TreeMap<Integer, DFAState>();
+		for (DFAState state : dfa.states.keySet()) {
+			states.put(state.stateNumber, state);
+		}
+
+		StringBuilder builder = new StringBuilder();
+		for (DFAState state : states.values()) {
+			builder.append(state.stateNumber).append(':');
+			for (ATNConfig config : state.configs) {
+				builder.append(' ').append(config);
+			}
+
+			builder.append('\n');
+		}
+
+		return builder.toString();
+	}
+
+	private String parseWithFullContext(LexerGrammar lg, Grammar g, String input, ExecutorService executor) {
+		ParserInterpreter parser = createFullContextParser(lg, g, input, executor);
+		ParseTree t = parser.parse(g.rules.get("s").index);
+		assertEquals(0, parser.getNumberOfSyntaxErrors());
+		return t.toStringTree(parser);
+	}
+
+	private static ParserInterpreter createFullContextParser(LexerGrammar lg, Grammar g, String input, ExecutorService executor) {
+		ParserInterpreter parser = createParserInterpreter(lg, g, input);
+		ParserATNSimulator interpreter = parser.getInterpreter();
+		interpreter.optimize_ll1 = false;
+		interpreter.force_global_context = true;
+		interpreter.parallel_reach_executor = executor;
+		interpreter.parallel_reach_threshold = 1;
+		return parser;
+	}
+}
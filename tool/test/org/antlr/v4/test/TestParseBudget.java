@@ -0,0 +1,131 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.test;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.misc.ParseBudget;
+import org.antlr.v4.runtime.misc.ParseBudgetExceededException;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestParseBudget extends BaseParserInterpreterTest {
+
+	@Test public void testParseBudget() throws Exception {
+		LexerGrammar lg = createABCLexerGrammar();
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : A* B | A* C ;",
+			lg);
+
+		String input = "aaaaaaaac";
+		assertEquals("(s a a a a a a a a c)", parseToStringTree(lg, g, "s", input));
+
+		ParseBudget[] budgets = {
+			new ParseBudget(ParseBudget.UNLIMITED, TimeUnit.NANOSECONDS, ParseBudget.UNLIMITED, 4),
+			new ParseBudget(ParseBudget.UNLIMITED, TimeUnit.NANOSECONDS, 10, ParseBudget.UNLIMITED),
+		};
+		ParseBudgetExceededException.Limit[] limits = {
+			ParseBudgetExceededException.Limit.LOOKAHEAD,
+			ParseBudgetExceededException.Limit.TRANSITIONS,
+		};
+
+		for (int i = 0; i < budgets.length; i++) {
+			ParserInterpreter parser = createParserInterpreter(lg, g, input);
+			parser.getInterpreter().clearDFA();
+			parser.setParseBudget(budgets[i]);
+			try {
+				parser.parse(g.rules.get("s").index);
+				fail("Expected the parse budget to be exceeded.");
+			}
+			catch (ParseBudgetExceededException ex) {
+				assertEquals(limits[i], ex.getLimit());
+			}
+		}
+
+		// a budget may be shared by the lexer and parser
+		ParseBudget budget = new ParseBudget(1, TimeUnit.MINUTES);
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(new ANTLRInputStream(input));
+		lexEngine.setParseBudget(budget);
+		ParserInterpreter parser = g.createParserInterpreter(new CommonTokenStream(lexEngine));
+		parser.setParseBudget(budget);
+		assertEquals("(s a a a a a a a a c)", parser.parse(g.rules.get("s").index).toStringTree(parser));
+		assertTrue(budget.getTransitions() > 0);
+	}
+
+	@Test public void testTimeOnlyParseBudget() throws Exception {
+		ParseBudget budget = new ParseBudget(0, TimeUnit.NANOSECONDS);
+		assertEquals(ParseBudget.UNLIMITED, budget.getMaxTransitions());
+		Thread.sleep(1);
+
+		// the clock is only checked every TIME_CHECK_INTERVAL transitions
+		budget.consumeTransitions(ParseBudget.TIME_CHECK_INTERVAL - 1);
+		assertEquals(ParseBudget.TIME_CHECK_INTERVAL - 1, budget.getTransitions());
+		try {
+			budget.consumeTransitions(1);
+			fail("Expected the parse budget to be exceeded.");
+		}
+		catch (ParseBudgetExceededException ex) {
+			assertEquals(ParseBudgetExceededException.Limit.TIME, ex.getLimit());
+		}
+
+		// a time limit which is not reached never interrupts the parse
+		budget = new ParseBudget(1, TimeUnit.MINUTES);
+		for (int i = 0; i < 10; i++) {
+			budget.consumeTransitions(ParseBudget.TIME_CHECK_INTERVAL);
+		}
+
+		assertEquals(10L * ParseBudget.TIME_CHECK_INTERVAL, budget.getTransitions());
+
+		budget = new ParseBudget(0, TimeUnit.NANOSECONDS);
+		Thread.sleep(1);
+		try {
+			budget.checkDeadline();
+			fail("Expected the parse budget to be exceeded.");
+		}
+		catch (ParseBudgetExceededException ex) {
+			assertEquals(ParseBudgetExceededException.Limit.TIME, ex.getLimit());
+		}
+
+		budget.reset();
+		budget.consumeTransitions(ParseBudget.TIME_CHECK_INTERVAL - 1);
+		assertEquals(ParseBudget.TIME_CHECK_INTERVAL - 1, budget.getTransitions());
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.test;
+
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeIndex;
+import org.antlr.v4.runtime.tree.Trees;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestParseTreeIndex extends BaseParserInterpreterTest {
+
+	@Test public void testParseTreeIndexWithConjuredTokens() throws Exception {
+		LexerGrammar lg = createABCLexerGrammar();
+		Grammar g = createABCGrammar(lg);
+
+		// the first B is missing, and conjured by single token insertion
+		ParserInterpreter parser = createParserInterpreter(lg, g, "acabc");
+		parser.removeErrorListeners();
+		ParseTreeIndex index = new ParseTreeIndex();
+		parser.addParseListener(index);
+		ParseTree tree = parser.parse(g.rules.get("s").index);
+		assertEquals(1, parser.getNumberOfSyntaxErrors());
+
+		List<ParseTree> errorNodes = Trees.findAllNodes(tree, lg.getTokenType("B"), true);
+		assertEquals(2, errorNodes.size());
+		assertTrue(errorNodes.get(0) instanceof ErrorNode);
+
+		for (ParseTree subtree : Trees.descendants(tree)) {
+			assertTrue(index.contains(subtree));
+			for (int ruleIndex = 0; ruleIndex < parser.getRuleNames().length; ruleIndex++) {
+				assertEquals(Trees.findAllNodes(subtree, ruleIndex, false), index.findAllNodes(subtree, ruleIndex, false));
+			}
+
+			for (int ttype = Token.EOF; ttype <= parser.getATN().maxTokenType; ttype++) {
+				assertEquals(Trees.findAllNodes(subtree, ttype, true), index.findAllNodes(subtree, ttype, true));
+			}
+		}
+	}
+}
@@ -12,15 +12,19 @@ import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.pattern.ParseTreeMatch;
 import org.antlr.v4.runtime.tree.pattern.ParseTreePattern;
 import org.antlr.v4.runtime.tree.pattern.ParseTreePatternMatcher;
+import org.antlr.v4.runtime.tree.pattern.ParseTreePatternSet;
 import org.junit.Test;
 
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class TestParseTreeMatcher extends BaseTest {
@@ -404,6 +408,55 @@ public class TestParseTreeMatcher extends BaseTest {
 		checkPatternMatch(grammar, "expr", input, pattern, "X6");
 	}
 
+	@Test public void testPatternSet() throws Exception {
+		String grammar =
+			"grammar X7;\n" +
+			"s   : stat+ ;\n" +
+			"stat: ID '=' expr ';'\n" +
+			"    | 'return' expr ';'\n" +
+			"    ;\n" +
+			"expr: expr '*' expr\n" +
+			"    | ID\n" +
+			"    | INT\n" +
+			"    ;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"WS : [ \\r\\n\\t]+ -> skip ;\n";
+		boolean ok = rawGenerateAndBuildRecognizer("X7.g4", grammar, "X7Parser", "X7Lexer", false);
+		assertTrue(ok);
+
+		ParseTree tree = execParser("s", "x = 3*4; return y; z = a;", "X7Parser", "X7Lexer");
+
+		ParseTreePatternMatcher m = getPatternMatcher("X7");
+		int stat = m.getParser().getRuleIndex("stat");
+		int expr = m.getParser().getRuleIndex("expr");
+		ParseTreePattern assign = m.compile("<ID> = <expr>;", stat);
+		assertSame(assign, m.compile("<ID> = <expr>;", stat));
+
+		ParseTreePatternSet patterns = new ParseTreePatternSet(Arrays.asList(
+			assign,
+			m.compile("return <expr>;", stat),
+			m.compile("<expr> * <expr>", expr),
+			m.compile("<INT>", expr),
+			m.compile("<ID>", expr)));
+
+		List<String> results = new ArrayList<String>();
+		for (ParseTreeMatch match : patterns.findAll(tree)) {
+			results.add(match.getPattern().getPattern() + "@" + match.getTree().getText());
+		}
+
+		List<String> expected = Arrays.asList(
+			"<ID> = <expr>;@x=3*4;",
+			"<expr> * <expr>@3*4",
+			"<INT>@3",
+			"<INT>@4",
+			"return <expr>;@returny;",
+			"<ID>@y",
+			"<ID> = <expr>;@z=a;",
+			"<ID>@a");
+		assertEquals(expected, results);
+	}
+
 	public ParseTreeMatch checkPatternMatch(String grammar, String startRule,
 											String input, String pattern,
 											String grammarName)
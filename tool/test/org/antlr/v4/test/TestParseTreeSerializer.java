@@ -0,0 +1,129 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.test;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeSerializer;
+import org.antlr.v4.runtime.tree.SerializedParseTree;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestParseTreeSerializer extends BaseTest {
+
+	@Test public void testSerializeParseTree() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"A : 'a' ;\n" +
+			"B : 'b' ;\n" +
+			"WS : ' ' -> channel(HIDDEN) ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : e e ;\n" +
+			"e : A | B ;",
+			lg);
+
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(new ANTLRInputStream("a b"));
+		CommonTokenStream tokens = new CommonTokenStream(lexEngine);
+		ParserInterpreter parser = g.createParserInterpreter(tokens);
+		ParseTree t = parser.parse(g.rules.get("s").index);
+		tokens.fill();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ParseTreeSerializer.serialize(new DataOutputStream(bytes), tokens.getTokens(), t);
+		SerializedParseTree serialized = SerializedParseTree.deserialize(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		List<Token> restoredTokens = serialized.getTokens();
+		assertEquals(4, restoredTokens.size());
+		for (int i = 0; i < restoredTokens.size(); i++) {
+			assertEquals(tokens.get(i).toString(), restoredTokens.get(i).toString());
+		}
+
+		// (s (e a) (e b))
+		assertEquals(5, serialized.getNodeCount());
+		assertEquals(g.rules.get("s").index, serialized.getRuleIndex(0));
+		assertEquals(2, serialized.getChildCount(0));
+		assertEquals(3, serialized.getChild(0, 1));
+		assertEquals(3, serialized.getNextSibling(1));
+		assertEquals(-1, serialized.getNextSibling(3));
+		assertEquals(3, serialized.getParent(4));
+		assertTrue(serialized.isTerminalNode(4));
+		assertEquals(2, serialized.getStartToken(4));
+		assertEquals("ab", serialized.getText(0));
+
+		ParseTree restored = serialized.toParseTree();
+		assertEquals(t.toStringTree(parser), restored.toStringTree(parser));
+	}
+
+	@Test public void testDeserializeMalformedParseTree() throws Exception {
+		// huge string count, huge string length, huge token table, node count exceeding the node data
+		int[][] inputs = {
+			{ Integer.MAX_VALUE },
+			{ 1, Integer.MAX_VALUE },
+			{ 0, 0, Integer.MAX_VALUE },
+			{ 0, 0, 0, Integer.MAX_VALUE, 2, ParseTreeSerializer.ERROR_NODE, 0 },
+		};
+
+		for (int[] input : inputs) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream output = new DataOutputStream(bytes);
+			output.writeInt(ParseTreeSerializer.MAGIC);
+			output.writeInt(ParseTreeSerializer.SERIALIZED_VERSION);
+			for (int value : input) {
+				output.writeInt(value);
+			}
+
+			try {
+				SerializedParseTree.deserialize(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+				fail("Expected an IOException.");
+			}
+			catch (IOException ex) {
+				// expected
+			}
+		}
+	}
+}
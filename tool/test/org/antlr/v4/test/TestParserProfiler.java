@@ -36,15 +36,23 @@ import org.antlr.v4.runtime.LexerInterpreter;
 import org.antlr.v4.runtime.ParserInterpreter;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.atn.DecisionInfo;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.runtime.misc.Utils;
+import org.antlr.v4.tool.ErrorType;
 import org.antlr.v4.tool.Grammar;
 import org.antlr.v4.tool.LexerGrammar;
 import org.antlr.v4.tool.Rule;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.Arrays;
+import java.util.Properties;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class TestParserProfiler extends BaseTest {
 	LexerGrammar lg;
@@ -178,6 +186,83 @@ public class TestParserProfiler extends BaseTest {
 		assertEquals(expecting, info[1].toString());
 	}
 
+	@Test public void testContextEdgeCounters() throws Exception {
+		Grammar g = new Grammar(
+			"parser grammar T;\n"+
+			"s : '+' a | '*' b | '.' c ;\n" +
+			"a : e ID ;\n" +
+			"b : e INT ID ;\n" +
+			"c : e INT ID ;\n" +
+			"e : INT | ;\n",
+			lg);
+		String[] input = { "+ 1 x", "* 1 x", ". 1 x", "+ 1 x", "* 1 x", ". 1 x" };
+
+		// e is invoked from three states, so the first round of parses adds
+		// three context edges and the second round finds them
+		ParserInterpreter parser = parseWithGlobalContextDFA(g, 0, input);
+		DecisionInfo info = parser.getParseInfo().getDecisionInfo()[1];
+		assertEquals(3, info.contextEdgeHits);
+		assertTrue(info.contextEdgeMisses >= 3);
+		assertEquals(0, info.contextEdgeEvictions);
+		assertEquals(3, getMaxContextEdgeCount(parser.getATN().decisionToDFA[1]));
+	}
+
+	@Test public void testContextEdgeEviction() throws Exception {
+		Grammar g = new Grammar(
+			"parser grammar T;\n"+
+			"s : '+' a | '*' b | '.' c ;\n" +
+			"a : e ID ;\n" +
+			"b : e INT ID ;\n" +
+			"c : e INT ID ;\n" +
+			"e : INT | ;\n",
+			lg);
+		String[] input = { "+ 1 x", "* 1 x", ". 1 x", "+ 1 x", "* 1 x", ". 1 x" };
+
+		String[] expected = new String[input.length];
+		ParserInterpreter parser = parseWithGlobalContextDFA(g, 0, input);
+		for (int i = 0; i < input.length; i++) {
+			parser.setInputStream(new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream(input[i]))));
+			expected[i] = parser.parse(g.rules.get("s").index).toStringTree(parser);
+		}
+
+		// with room for two context edges, each new edge replaces an old one
+		parser = parseWithGlobalContextDFA(g, 2, input);
+		DecisionInfo info = parser.getParseInfo().getDecisionInfo()[1];
+		assertEquals(3, info.contextEdgeEvictions);
+		assertEquals(2, getMaxContextEdgeCount(parser.getATN().decisionToDFA[1]));
+
+		// evicted edges are computed again, with the same result
+		for (int i = 0; i < input.length; i++) {
+			parser.setInputStream(new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream(input[i]))));
+			assertEquals(expected[i], parser.parse(g.rules.get("s").index).toStringTree(parser));
+		}
+
+		assertEquals(2, getMaxContextEdgeCount(parser.getATN().decisionToDFA[1]));
+	}
+
+	private ParserInterpreter parseWithGlobalContextDFA(Grammar g, int maxContextEdges, String... input) {
+		ParserInterpreter parser = g.createParserInterpreter(null);
+		parser.setProfile(true);
+		parser.getInterpreter().enable_global_context_dfa = true;
+		parser.getInterpreter().max_context_edges = maxContextEdges;
+		for (String s : input) {
+			parser.setInputStream(new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream(s))));
+			parser.parse(g.rules.get("s").index);
+			assertEquals(0, parser.getNumberOfSyntaxErrors());
+		}
+
+		return parser;
+	}
+
+	private static int getMaxContextEdgeCount(DFA dfa) {
+		int max = 0;
+		for (DFAState state : dfa.states.keySet()) {
+			max = Math.max(max, state.getContextEdgeCount());
+		}
+
+		return max;
+	}
+
 	@Test public void testSimpleLanguage() throws Exception {
 		Grammar g = new Grammar(TestXPath.grammar);
 		String input =
@@ -256,6 +341,83 @@ public class TestParserProfiler extends BaseTest {
 		assertEquals(null, stderrDuringParse);
 	}
 
+	@Test public void testExportProfile() throws Exception {
+		Grammar g = new Grammar(
+				"parser grammar T;\n" +
+				"s : ID ';'{}\n" +
+				"  | ID '.'\n" +
+				"  ;\n",
+				lg);
+
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(new ANTLRInputStream("xyz;"));
+		ParserInterpreter parser = g.createParserInterpreter(new CommonTokenStream(lexEngine));
+		parser.setProfile(true);
+		parser.parse(g.rules.get("s").index);
+
+		StringWriter writer = new StringWriter();
+		parser.getParseInfo().exportProfile(writer);
+		Properties profile = new Properties();
+		profile.load(new StringReader(writer.toString()));
+		assertEquals("1", profile.getProperty("decisions"));
+		assertEquals("1", profile.getProperty("decision.0.invocations"));
+		assertEquals("2", profile.getProperty("decision.0.SLL_TotalLook"));
+		assertEquals("0", profile.getProperty("decision.0.LL_Fallback"));
+	}
+
+	@Test public void testCostlyDecisionFromProfile() throws Exception {
+		String grammar =
+			"grammar T;\n" +
+			"s : ID ';' | ID '.' ;\n" +
+			"ID : [a-z]+ ;\n";
+		ErrorQueue equeue = antlr("T.g4", grammar, false);
+		assertEquals(0, equeue.size());
+		String expectedParser = new String(Utils.readFile(tmpdir + "/TParser.java"));
+
+		writeFile(tmpdir, "T.profile",
+			"grammar=T.g4\n" +
+			"decisions=1\n" +
+			"decision.0.invocations=20\n" +
+			"decision.0.timeInPrediction=1000\n" +
+			"decision.0.LL_Fallback=3\n" +
+			"decision.0.SLL_MaxLook=2\n" +
+			"decision.0.LL_MaxLook=4\n");
+		equeue = antlr("T.g4", grammar, false, "-profile", tmpdir);
+		assertEquals(0, equeue.errors.size());
+		assertEquals(1, equeue.warnings.size());
+		assertEquals(ErrorType.COSTLY_DECISION, equeue.warnings.get(0).getErrorType());
+		Object[] args = equeue.warnings.get(0).getArgs();
+		assertEquals(0, args[0]);
+		assertEquals("s", args[1]);
+		assertEquals("100.0% of prediction time, 20 invocations, 3 full-context predictions, max lookahead 4", args[2]);
+
+		// the profile is only used for reporting
+		assertEquals(expectedParser, new String(Utils.readFile(tmpdir + "/TParser.java")));
+	}
+
+	@Test public void testStaleProfile() throws Exception {
+		String grammar =
+			"grammar T;\n" +
+			"s : ID ';' | ID '.' ;\n" +
+			"ID : [a-z]+ ;\n";
+		ErrorQueue equeue = antlr("T.g4", grammar, false);
+		assertEquals(0, equeue.size());
+		String expectedParser = new String(Utils.readFile(tmpdir + "/TParser.java"));
+
+		writeFile(tmpdir, "T.profile",
+			"grammar=T.g4\n" +
+			"decisions=3\n" +
+			"decision.0.invocations=20\n" +
+			"decision.0.timeInPrediction=1000\n");
+		equeue = antlr("T.g4", grammar, false, "-profile", tmpdir);
+		assertEquals(0, equeue.errors.size());
+		assertEquals(1, equeue.warnings.size());
+		assertEquals(ErrorType.STALE_PROFILE, equeue.warnings.get(0).getErrorType());
+		Object[] args = equeue.warnings.get(0).getArgs();
+		assertTrue(args[0].toString().endsWith("T.profile"));
+		assertEquals("T", args[1]);
+		assertEquals(expectedParser, new String(Utils.readFile(tmpdir + "/TParser.java")));
+	}
+
 	public DecisionInfo[] interpAndGetDecisionInfo(
 			LexerGrammar lg, Grammar g,
 			String startRule, String... input)
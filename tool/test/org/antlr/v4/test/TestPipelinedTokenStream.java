@@ -0,0 +1,159 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.test;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.PipelinedTokenStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestPipelinedTokenStream extends TestBufferedTokenStream {
+
+	@Override
+	protected TokenStream createTokenStream(TokenSource src) {
+		return new PipelinedTokenStream(src);
+	}
+
+	@Test public void testSmallBufferWithSeek() throws Exception {
+		LexerGrammar g = new LexerGrammar(
+			"lexer grammar t;\n"+
+			"ID : 'a'..'z'+;\n" +
+			"INT : '0'..'9'+;\n" +
+			"WS : ' '+ -> channel(HIDDEN);\n");
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			input.append("x ").append(i).append(' ');
+		}
+
+		LexerInterpreter expectedLexer = g.createLexerInterpreter(new ANTLRInputStream(input.toString()));
+		CommonTokenStream expected = new CommonTokenStream(expectedLexer);
+		expected.fill();
+
+		LexerInterpreter lexEngine = g.createLexerInterpreter(new ANTLRInputStream(input.toString()));
+		PipelinedTokenStream tokens = new PipelinedTokenStream(lexEngine, Token.DEFAULT_CHANNEL, 4, null);
+		while (tokens.LA(1) != Token.EOF) {
+			int marker = tokens.mark();
+			int index = tokens.index();
+			assertEquals(expected.get(index).getText(), tokens.LT(1).getText());
+			// look past the end of the ring buffer and return
+			tokens.LT(10);
+			tokens.seek(index);
+			tokens.release(marker);
+			assertEquals(index, tokens.LT(1).getTokenIndex());
+			tokens.consume();
+		}
+
+		assertEquals(expected.size(), tokens.size());
+		assertEquals(expected.getText(), tokens.getText());
+	}
+
+	@Test(timeout = 10000)
+	public void testReaderWakesWhileSourceBlocks() throws Exception {
+		final CountDownLatch tokenRead = new CountDownLatch(1);
+		TokenSource source = new TokenSource() {
+			private int count;
+
+			@Override
+			public Token nextToken() {
+				if (count++ == 0) {
+					return new CommonToken(1, "a");
+				}
+
+				// the second token is only produced after the reader saw the first
+				try {
+					if (!tokenRead.await(10, TimeUnit.SECONDS)) {
+						throw new IllegalStateException("The first token was not read.");
+					}
+				}
+				catch (InterruptedException ex) {
+					throw new IllegalStateException(ex);
+				}
+
+				return new CommonToken(Token.EOF, "<EOF>");
+			}
+
+			@Override
+			public int getLine() {
+				return 1;
+			}
+
+			@Override
+			public int getCharPositionInLine() {
+				return count;
+			}
+
+			@Override
+			public CharStream getInputStream() {
+				return null;
+			}
+
+			@Override
+			public String getSourceName() {
+				return "blocking";
+			}
+
+			@Override
+			public void setTokenFactory(TokenFactory factory) {
+			}
+
+			@Override
+			public TokenFactory getTokenFactory() {
+				return CommonTokenFactory.DEFAULT;
+			}
+		};
+
+		PipelinedTokenStream tokens = new PipelinedTokenStream(source);
+		try {
+			assertEquals("a", tokens.LT(1).getText());
+			tokenRead.countDown();
+			tokens.consume();
+			assertEquals(Token.EOF, tokens.LA(1));
+		}
+		finally {
+			tokens.close();
+		}
+	}
+
+}
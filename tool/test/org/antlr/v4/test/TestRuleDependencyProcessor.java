@@ -0,0 +1,295 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.test;
+
+import org.antlr.v4.runtime.misc.RuleDependencyChecker;
+import org.antlr.v4.runtime.misc.RuleDependencyIndex;
+import org.antlr.v4.runtime.misc.RuleDependencyProcessor;
+import org.antlr.v4.runtime.misc.RuleVersionIndex;
+import org.junit.Test;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the indexes generated by {@link RuleDependencyProcessor}, and the use
+ * of them by {@link RuleDependencyChecker}.
+ */
+public class TestRuleDependencyProcessor extends BaseTest {
+	private static final String GRAMMAR =
+		"grammar T;\n" +
+		"a : b ;\n" +
+		"b @version{<version>} : 'x' ;\n";
+
+	private static final String DEPENDENT =
+		"import org.antlr.v4.runtime.RuleDependency;\n" +
+		"@RuleDependency(recognizer=TParser.class, rule=TParser.RULE_a, version=0)\n" +
+		"public class Dependent {\n" +
+		"	@RuleDependency(recognizer=TParser.class, rule=TParser.RULE_b, version=0)\n" +
+		"	public void foo() { }\n" +
+		"	public static class Nested {\n" +
+		"		@RuleDependency(recognizer=TParser.class, rule=TParser.RULE_b, version=0)\n" +
+		"		public int field;\n" +
+		"	}\n" +
+		"}\n";
+
+	@Test
+	public void testGeneratedIndexes() throws Exception {
+		generateParser("T", 0);
+		writeFile(tmpdir, "Dependent.java", DEPENDENT);
+		List<Diagnostic<? extends JavaFileObject>> diagnostics = processAndCompile("TParser.java", "Dependent.java");
+		assertNoErrors(diagnostics);
+
+		assertTrue(new File(tmpdir, "Dependent_RuleDependencyIndex.java").isFile());
+		assertTrue(new File(tmpdir, "TParser_RuleVersionIndex.java").isFile());
+
+		ClassLoader loader = createClassLoader();
+		RuleVersionIndex versionIndex = (RuleVersionIndex)loader.loadClass("TParser_RuleVersionIndex").newInstance();
+		assertArrayEquals(new String[] { "a", "b" }, versionIndex.getRuleNames());
+		assertArrayEquals(new int[] { 0, 0 }, versionIndex.getRuleVersions());
+
+		RuleDependencyIndex index = (RuleDependencyIndex)loader.loadClass("Dependent_RuleDependencyIndex").newInstance();
+		assertEquals(3, index.size());
+		List<String> dependencies = new ArrayList<String>();
+		for (int i = 0; i < index.size(); i++) {
+			assertEquals("TParser", index.getRecognizer(i).getName());
+			assertEquals(0, index.getVersion(i));
+			dependencies.add(index.getDependentType(i) + ":" + index.getRule(i));
+		}
+
+		// the class dependency precedes the method dependency, as in the reflective scan
+		assertTrue(dependencies.indexOf("Dependent:0") >= 0);
+		assertTrue(dependencies.indexOf("Dependent:0") < dependencies.indexOf("Dependent:1"));
+		assertTrue(dependencies.contains("Dependent$Nested:1"));
+
+		RuleDependencyChecker.checkDependencies(loader.loadClass("Dependent"));
+	}
+
+	@Test
+	public void testIndexedDependencyFailure() throws Exception {
+		generateParser("T", 0);
+		writeFile(tmpdir, "Dependent.java", DEPENDENT);
+		assertNoErrors(processAndCompile("TParser.java", "Dependent.java"));
+
+		// update the recognizer without recompiling the dependent class
+		generateParser("T", 1);
+		assertNoErrors(processAndCompile("TParser.java"));
+
+		String indexedMessage = getDependencyFailure("Dependent");
+		assertTrue(new File(tmpdir, "Dependent_RuleDependencyIndex.class").delete());
+		String reflectionMessage = getDependencyFailure("Dependent");
+		assertEquals("Element public void Dependent.foo() dependent on rule b@0 (found @1) in TParser\n", reflectionMessage);
+		assertEquals(reflectionMessage, indexedMessage);
+	}
+
+	/**
+	 * Dependencies of a class are checked against the recognizer of its
+	 * first dependency, both with and without the generated index.
+	 */
+	@Test
+	public void testDependenciesOnOtherRecognizersSkipped() throws Exception {
+		generateParser("T", 0);
+		generateParser("U", 0);
+		writeFile(tmpdir, "Mixed.java",
+			"import org.antlr.v4.runtime.RuleDependency;\n" +
+			"@RuleDependency(recognizer=TParser.class, rule=TParser.RULE_a, version=0)\n" +
+			"public class Mixed {\n" +
+			"	@RuleDependency(recognizer=UParser.class, rule=UParser.RULE_b, version=0)\n" +
+			"	public void foo() { }\n" +
+			"}\n");
+		assertNoErrors(processAndCompile("TParser.java", "UParser.java", "Mixed.java"));
+
+		generateParser("U", 1);
+		assertNoErrors(processAndCompile("UParser.java"));
+
+		RuleDependencyChecker.checkDependencies(createClassLoader().loadClass("Mixed"));
+		assertTrue(new File(tmpdir, "Mixed_RuleDependencyIndex.class").delete());
+		RuleDependencyChecker.checkDependencies(createClassLoader().loadClass("Mixed"));
+	}
+
+	@Test
+	public void testDisableIndexOption() throws Exception {
+		generateParser("T", 0);
+		writeFile(tmpdir, "Dependent.java", DEPENDENT);
+		List<String> options = Collections.singletonList("-A" + RuleDependencyProcessor.GenerateIndexOption + "=false");
+		List<Diagnostic<? extends JavaFileObject>> diagnostics = compileWithProcessors(Collections.singletonList(new RuleDependencyProcessor()), options, "TParser.java", "Dependent.java");
+		assertNoErrors(diagnostics);
+		for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+			// javac warns about options which are not supported by any processor
+			assertFalse(diagnostic.getMessage(null), diagnostic.getMessage(null).contains(RuleDependencyProcessor.GenerateIndexOption));
+		}
+
+		assertFalse(new File(tmpdir, "Dependent_RuleDependencyIndex.java").exists());
+		assertFalse(new File(tmpdir, "TParser_RuleVersionIndex.java").exists());
+		assertTrue(new File(tmpdir, "Dependent.class").isFile());
+	}
+
+	@Test
+	public void testIndexWriteFailureIsWarning() throws Exception {
+		generateParser("T", 0);
+		writeFile(tmpdir, "Dependent.java", DEPENDENT);
+		List<Processor> processors = Arrays.<Processor>asList(new ConflictingIndexProcessor(), new RuleDependencyProcessor());
+		List<Diagnostic<? extends JavaFileObject>> diagnostics = compileWithProcessors(processors, Collections.<String>emptyList(), "TParser.java", "Dependent.java");
+		assertNoErrors(diagnostics);
+
+		Diagnostic<? extends JavaFileObject> warning = null;
+		for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+			if (diagnostic.getKind() == Diagnostic.Kind.WARNING && diagnostic.getMessage(null).startsWith("Could not write Dependent_RuleDependencyIndex")) {
+				warning = diagnostic;
+			}
+		}
+
+		assertNotNull(warning);
+
+		// the conflicting class is not an index, so the checker falls back to reflection
+		RuleDependencyChecker.checkDependencies(createClassLoader().loadClass("Dependent"));
+	}
+
+	private void generateParser(String grammarName, int version) {
+		String grammar = GRAMMAR.replace("grammar T;", "grammar " + grammarName + ";").replace("<version>", Integer.toString(version));
+		ErrorQueue equeue = antlr(grammarName + ".g4", grammar, false, "-no-listener");
+		assertTrue(equeue.errors.toString(), equeue.errors.isEmpty());
+	}
+
+	private String getDependencyFailure(String className) throws Exception {
+		try {
+			RuleDependencyChecker.checkDependencies(createClassLoader().loadClass(className));
+			fail("Expected an IllegalStateException.");
+			return null;
+		}
+		catch (IllegalStateException ex) {
+			return ex.getMessage();
+		}
+	}
+
+	private ClassLoader createClassLoader() throws Exception {
+		return new URLClassLoader(new URL[] { new File(tmpdir).toURI().toURL() }, ClassLoader.getSystemClassLoader());
+	}
+
+	private List<Diagnostic<? extends JavaFileObject>> processAndCompile(String... fileNames) throws IOException {
+		return compileWithProcessors(Collections.singletonList(new RuleDependencyProcessor()), Collections.<String>emptyList(), fileNames);
+	}
+
+	private List<Diagnostic<? extends JavaFileObject>> compileWithProcessors(List<? extends Processor> processors, List<String> extraOptions, String... fileNames) throws IOException {
+		List<File> files = new ArrayList<File>();
+		for (String fileName : fileNames) {
+			files.add(new File(tmpdir, fileName));
+		}
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+		try {
+			List<String> options = new ArrayList<String>(getCompileOptions());
+			options.addAll(Arrays.asList("-s", tmpdir));
+			options.addAll(extraOptions);
+			JavaCompiler.CompilationTask task =
+				compiler.getTask(null, fileManager, diagnostics, options, null, fileManager.getJavaFileObjectsFromFiles(files));
+			task.setProcessors(processors);
+			task.call();
+		}
+		finally {
+			fileManager.close();
+		}
+
+		return diagnostics.getDiagnostics();
+	}
+
+	private static void assertNoErrors(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+		for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+			assertFalse(diagnostic.toString(), diagnostic.getKind() == Diagnostic.Kind.ERROR);
+		}
+	}
+
+	/**
+	 * Creates {@code Dependent_RuleDependencyIndex} before
+	 * {@link RuleDependencyProcessor} runs, so the processor is unable to
+	 * create its index.
+	 */
+	@SupportedAnnotationTypes("*")
+	private static class ConflictingIndexProcessor extends AbstractProcessor {
+		private boolean created;
+
+		@Override
+		public SourceVersion getSupportedSourceVersion() {
+			return SourceVersion.latestSupported();
+		}
+
+		@Override
+		public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+			if (!created) {
+				created = true;
+				try {
+					JavaFileObject file = processingEnv.getFiler().createSourceFile("Dependent_RuleDependencyIndex");
+					Writer writer = file.openWriter();
+					try {
+						writer.write("public class Dependent_RuleDependencyIndex { }\n");
+					}
+					finally {
+						writer.close();
+					}
+				}
+				catch (IOException ex) {
+					throw new IllegalStateException(ex);
+				}
+			}
+
+			return false;
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.test;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.Tree;
+import org.antlr.v4.runtime.tree.gui.TreePostScriptGenerator;
+import org.antlr.v4.runtime.tree.gui.TreeViewer;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link TreePostScriptGenerator} and {@link TreeViewer}, neither of
+ * which requires a display.
+ */
+public class TestTreeViewer extends BaseTest {
+
+	@Test public void testWritePSMatchesGetPS() throws Exception {
+		ParserInterpreter parser = createParser("(((a)))");
+		ParseTree t = parser.parse(0);
+		List<String> ruleNames = Arrays.asList(parser.getRuleNames());
+
+		String expected = new TreePostScriptGenerator(ruleNames, t).getPS();
+		StringWriter writer = new StringWriter();
+		new TreePostScriptGenerator(ruleNames, t).writePS(writer);
+		assertEquals(expected, writer.toString());
+	}
+
+	@Test public void testWriteSVG() throws Exception {
+		ParserInterpreter parser = createParser("((a<&\"b>))");
+		ParseTree t = parser.parse(0);
+		List<String> ruleNames = Arrays.asList(parser.getRuleNames());
+
+		StringWriter writer = new StringWriter();
+		new TreePostScriptGenerator(ruleNames, t).writeSVG(writer);
+		Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(new StringReader(writer.toString())));
+		assertEquals("svg", document.getDocumentElement().getTagName());
+
+		// (s (e ( (e ( (e a<&"b>) ) ) ) <EOF>)
+		NodeList lines = document.getElementsByTagName("line");
+		assertEquals(9, lines.getLength());
+		NodeList texts = document.getElementsByTagName("text");
+		List<String> text = new ArrayList<String>();
+		for (int i = 0; i < texts.getLength(); i++) {
+			text.add(texts.item(i).getTextContent());
+		}
+
+		assertEquals(10, text.size());
+		assertTrue(text.toString(), text.contains("a<&\"b>"));
+		assertTrue(text.toString(), text.contains("<EOF>"));
+	}
+
+	@Test public void testCollapseLargeSubtrees() throws Exception {
+		ParserInterpreter parser = createParser("(((a)))");
+		ParseTree t = parser.parse(0);
+		Tree e1 = t.getChild(0);
+		Tree e2 = e1.getChild(1);
+		Tree e3 = e2.getChild(1);
+
+		// s, e1 and <EOF>, then the children of e1; showing the children of e2 would exceed the limit
+		VisibleNodeCountViewer viewer = new VisibleNodeCountViewer(Arrays.asList(parser.getRuleNames()));
+		viewer.setMaxVisibleNodes(6);
+		viewer.setTree(t);
+		assertFalse(viewer.isCollapsed(e1));
+		assertTrue(viewer.isCollapsed(e2));
+		assertEquals(6, viewer.getVisibleNodeCount());
+
+		// the children of an expanded node are always shown
+		viewer.expand(e2);
+		assertFalse(viewer.isCollapsed(e2));
+		assertTrue(viewer.isCollapsed(e3));
+		assertEquals(9, viewer.getVisibleNodeCount());
+
+		viewer.collapse(e1);
+		assertTrue(viewer.isCollapsed(e1));
+		assertEquals(3, viewer.getVisibleNodeCount());
+
+		// leaves cannot be collapsed
+		viewer.collapse(t.getChild(1));
+		assertFalse(viewer.isCollapsed(t.getChild(1)));
+
+		// expanding a node collapses large subtrees below it again
+		viewer.expand(e1);
+		assertFalse(viewer.isCollapsed(e1));
+		assertTrue(viewer.isCollapsed(e2));
+		assertEquals(6, viewer.getVisibleNodeCount());
+
+		// showing a new tree resets the collapsed nodes
+		viewer.setTree(t);
+		assertTrue(viewer.isCollapsed(e2));
+		assertFalse(viewer.isCollapsed(e3));
+		assertEquals(6, viewer.getVisibleNodeCount());
+	}
+
+	private static ParserInterpreter createParser(String input) throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"LP : '(' ;\n" +
+			"RP : ')' ;\n" +
+			"ID : ~[()]+ ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : e EOF ;\n" +
+			"e : LP e RP | ID ;",
+			lg);
+
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(new ANTLRInputStream(input));
+		return g.createParserInterpreter(new CommonTokenStream(lexEngine));
+	}
+
+	private static class VisibleNodeCountViewer extends TreeViewer {
+		public VisibleNodeCountViewer(List<String> ruleNames) {
+			super(ruleNames, null);
+		}
+
+		public int getVisibleNodeCount() {
+			return treeLayout.getNodeBounds().size();
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2014 Terence Parr
+ *  Copyright (c) 2014 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.antlr.v4.test;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestWarmDFAPrediction extends BaseTest {
+
+	@Test public void testWarmDFAPredictionDoesNotAllocate() throws Exception {
+		// the allocation counters are only available through the HotSpot
+		// extension of ThreadMXBean, which is not referenced at compile time
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		Method getThreadAllocatedBytes;
+		try {
+			Class<?> beanType = Class.forName("com.sun.management.ThreadMXBean");
+			Assume.assumeTrue(beanType.isInstance(threadBean));
+			Method isSupported = beanType.getMethod("isThreadAllocatedMemorySupported");
+			Method isEnabled = beanType.getMethod("isThreadAllocatedMemoryEnabled");
+			Assume.assumeTrue((Boolean)isSupported.invoke(threadBean) && (Boolean)isEnabled.invoke(threadBean));
+			getThreadAllocatedBytes = beanType.getMethod("getThreadAllocatedBytes", long.class);
+		}
+		catch (ClassNotFoundException ex) {
+			Assume.assumeNoException(ex);
+			return;
+		}
+		catch (NoSuchMethodException ex) {
+			Assume.assumeNoException(ex);
+			return;
+		}
+
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"WS : ' ' -> skip ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : a+ EOF ;\n" +
+			"a : ID INT | ID ID ;",
+			lg);
+
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(new ANTLRInputStream("x y"));
+		CommonTokenStream tokens = new CommonTokenStream(lexEngine);
+		tokens.fill();
+		ParserInterpreter parser = g.createParserInterpreter(tokens);
+		ParserATNSimulator interpreter = parser.getInterpreter();
+		// make sure the prediction goes through the DFA
+		interpreter.optimize_ll1 = false;
+
+		ATN atn = parser.getATN();
+		int ruleIndex = g.rules.get("a").index;
+		int decision = -1;
+		for (int i = 0; i < atn.decisionToState.size(); i++) {
+			if (atn.decisionToState.get(i).ruleIndex == ruleIndex) {
+				decision = i;
+				break;
+			}
+		}
+
+		assertTrue(decision >= 0);
+
+		// the first prediction builds the DFA
+		for (int i = 0; i < 1000; i++) {
+			tokens.seek(0);
+			assertEquals(2, interpreter.adaptivePredict(tokens, decision, null));
+		}
+
+		int predictions = 10000;
+		long threadId = Thread.currentThread().getId();
+		long before = (Long)getThreadAllocatedBytes.invoke(threadBean, threadId);
+		for (int i = 0; i < predictions; i++) {
+			tokens.seek(0);
+			interpreter.adaptivePredict(tokens, decision, null);
+		}
+
+		long allocated = (Long)getThreadAllocatedBytes.invoke(threadBean, threadId) - before;
+		// allow a small constant for the measurement itself
+		assertTrue("allocated " + allocated + " bytes in " + predictions + " predictions", allocated < predictions / 10);
+	}
+}
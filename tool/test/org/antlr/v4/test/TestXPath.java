@@ -3,17 +3,23 @@ package org.antlr.v4.test;
 import org.antlr.v4.runtime.Lexer;
 import org.antlr.v4.runtime.Parser;
 import org.antlr.v4.runtime.RuleContext;
+import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.misc.Tuple2;
 import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeIndex;
 import org.antlr.v4.runtime.tree.TerminalNode;
+import org.antlr.v4.runtime.tree.Trees;
+import org.antlr.v4.runtime.tree.xpath.CompiledXPath;
 import org.antlr.v4.runtime.tree.xpath.XPath;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class TestXPath extends BaseTest {
@@ -111,6 +117,74 @@ public class TestXPath extends BaseTest {
 		}
 	}
 
+	/**
+	 * Paths evaluated by {@link XPath#findAll} and by the alternative
+	 * evaluators, which must return the same nodes.
+	 */
+	private static final String[] COMPARED_PATHS = {
+		"/prog/func", "/prog/*", "/*/func", "prog", "/prog", "/*", "*",
+		"//ID", "//expr/primary/ID", "//body//ID", "//'return'", "//RETURN",
+		"//primary/*", "//func/*/stat", "/prog/func/'def'", "//stat/';'",
+		"//expr/primary/!ID", "//expr/!primary", "//!*", "/!*", "//expr//ID",
+		"//ID//ID", "//ID//*", "//primary//ID", "//expr//*", "//'return'//*",
+	};
+
+	@Test public void testCompiledPaths() throws Exception {
+		boolean ok =
+			rawGenerateAndBuildRecognizer("Expr.g4", grammar, "ExprParser",
+										  "ExprLexer", false);
+		assertTrue(ok);
+
+		Tuple2<Parser, Lexer> pl = getParserAndLexer(SAMPLE_PROGRAM, "ExprParser", "ExprLexer");
+		Parser parser = pl.getItem1();
+		ParseTree tree = execStartRule("prog", parser);
+
+		List<CompiledXPath> paths = new ArrayList<CompiledXPath>();
+		for (String path : COMPARED_PATHS) {
+			CompiledXPath compiled = CompiledXPath.compile(parser, path);
+			assertSame(compiled, CompiledXPath.compile(parser, path));
+			paths.add(compiled);
+		}
+
+		// evaluate all of the paths in a single walk
+		List<List<ParseTree>> results = CompiledXPath.evaluate(tree, paths);
+		for (int i=0; i<COMPARED_PATHS.length; i++) {
+			List<ParseTree> expected = new ArrayList<ParseTree>(XPath.findAll(tree, COMPARED_PATHS[i], parser));
+			assertEquals("path "+COMPARED_PATHS[i]+" failed", expected, results.get(i));
+			assertEquals(results.get(i), paths.get(i).evaluate(tree));
+		}
+	}
+
+	@Test public void testIndexedPaths() throws Exception {
+		boolean ok =
+			rawGenerateAndBuildRecognizer("Expr.g4", grammar, "ExprParser",
+										  "ExprLexer", false);
+		assertTrue(ok);
+
+		Tuple2<Parser, Lexer> pl = getParserAndLexer(SAMPLE_PROGRAM, "ExprParser", "ExprLexer");
+		Parser parser = pl.getItem1();
+		ParseTreeIndex index = new ParseTreeIndex();
+		parser.addParseListener(index);
+		ParseTree tree = execStartRule("prog", parser);
+		assertTrue(index.contains(tree));
+
+		for (String path : COMPARED_PATHS) {
+			List<String> expected = getNodeStrings(SAMPLE_PROGRAM, path, "prog", "ExprParser", "ExprLexer");
+			assertEquals("path "+path+" failed", expected, toNodeStrings(parser, XPath.findAll(tree, path, parser)));
+		}
+
+		// the index returns the same nodes as a scan of every subtree
+		for (ParseTree subtree : Trees.descendants(tree)) {
+			for (int ruleIndex = 0; ruleIndex < parser.getRuleNames().length; ruleIndex++) {
+				assertEquals(Trees.findAllRuleNodes(subtree, ruleIndex), index.findAllRuleNodes(subtree, ruleIndex));
+			}
+
+			for (int ttype = Token.EOF; ttype <= parser.getATN().maxTokenType; ttype++) {
+				assertEquals(Trees.findAllTokenNodes(subtree, ttype), index.findAllTokenNodes(subtree, ttype));
+			}
+		}
+	}
+
 	@Test public void testWeirdChar() throws Exception {
 		boolean ok =
 			rawGenerateAndBuildRecognizer("Expr.g4", grammar, "ExprParser",
@@ -212,8 +286,12 @@ public class TestXPath extends BaseTest {
 		Parser parser = pl.getItem1();
 		ParseTree tree = execStartRule(startRuleName, parser);
 
+		return toNodeStrings(parser, XPath.findAll(tree, xpath, parser));
+	}
+
+	protected List<String> toNodeStrings(Parser parser, Collection<ParseTree> trees) {
 		List<String> nodes = new ArrayList<String>();
-		for (ParseTree t : XPath.findAll(tree, xpath, parser) ) {
+		for (ParseTree t : trees) {
 			if ( t instanceof RuleContext) {
 				RuleContext r = (RuleContext)t;
 				nodes.add(parser.getRuleNames()[r.getRuleIndex()]);